@@ -0,0 +1,88 @@
+package org.g1ga.truckplatooning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Diese Klasse ordnet Platoons per Consistent Hashing den Shards des MonitoringServices zu. Jeder Shard wird über
+ * seinen Port identifiziert und mit mehreren virtuellen Knoten auf einen Ring aus 64-Bit-Hashwerten gelegt. Ein Platoon
+ * gehört dem Shard, dessen virtueller Knoten im Ring als nächster auf den Hashwert der Platoon-ID folgt.
+ * Die Zuordnung hängt nur von den Ports der Shards ab, sodass RegistrationServer und Aggregator aus derselben Liste
+ * denselben Ring bauen. Kommt ein Shard hinzu, wechseln nur die Platoons den Shard, die danach dem neuen Shard gehören.
+ */
+public final class ConsistentHashRing {
+
+    //Virtuelle Knoten pro Shard, damit sich die Platoons auch bei wenigen Shards gleichmäßig verteilen
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private static final long KEY_SALT = 0x5DEECE66DL;
+
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final List<Integer> nodes;
+
+    /**
+     * Konstruktor, der den Ring mit der Standardanzahl virtueller Knoten baut.
+     * @param nodes Ports der Shards
+     */
+    public ConsistentHashRing(Collection<Integer> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Konstruktor, der den Ring baut.
+     * @param nodes Ports der Shards, doppelte Ports werden nur einmal berücksichtigt
+     * @param virtualNodes Anzahl virtueller Knoten pro Shard
+     */
+    public ConsistentHashRing(Collection<Integer> nodes, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Jeder Shard benötigt mindestens einen virtuellen Knoten.");
+        }
+        List<Integer> distinct = new ArrayList<>();
+        for (int node : nodes) {
+            if (!distinct.contains(node)) {
+                distinct.add(node);
+                for (int replica = 0; replica < virtualNodes; replica++) {
+                    ring.put(hash(((long) node << 32) | replica), node);
+                }
+            }
+        }
+        this.nodes = Collections.unmodifiableList(distinct);
+    }
+
+    /**
+     * Gibt den Shard zurück, dem das Platoon gehört
+     * @param key ID des Platoons
+     * @return Port des Shards
+     * @throws IllegalStateException falls der Ring keine Shards enthält
+     */
+    public int nodeFor(int key) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("Der Ring enthält keine Shards.");
+        }
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(key ^ KEY_SALT));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    /**
+     * Gibt die Ports aller Shards in der Reihenfolge zurück, in der sie übergeben wurden
+     * @return unveränderliche Liste der Ports
+     */
+    public List<Integer> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Verteilt die Bits eines Wertes gleichmäßig auf den gesamten Wertebereich (Finalizer von SplitMix64)
+     */
+    private static long hash(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.g1ga.truckplatooning;
+
+import org.springframework.http.HttpEntity;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Diese Klasse hält die URIs der Nachrichten vor, die die Services im laufenden Betrieb ständig verschicken
+ * (Geschwindigkeitsbefehle, Health-Checks, Geschwindigkeitsmeldungen). Pro Empfänger-Port gibt es eine Tabelle, die zu
+ * jedem Pfad aus dem PathRegister die fertige URI enthält. Nur beim ersten Aufruf wird die URI mit dem
+ * UriComponentsBuilder gebaut, danach kommt die Abfrage ohne Allokationen aus. Da die URI bereits fertig ist, muss auch
+ * das RestTemplate keine URL-Vorlage mehr auflösen.
+ * Außerdem werden die Request-Entities für kleine Zahlen und Wahrheitswerte wiederverwendet, da HttpEntity
+ * unveränderlich ist.
+ */
+public final class EndpointTable {
+
+    private static final int PORTS = 65536;
+    private static final int CACHED_VALUES = 256;
+
+    //Port des Empfängers -> Pfad -> URI
+    private static final AtomicReferenceArray<Map<String, URI>> ENDPOINTS = new AtomicReferenceArray<>(PORTS);
+    private static final HttpEntity<?>[] INTEGER_ENTITIES = new HttpEntity<?>[CACHED_VALUES];
+    private static final HttpEntity<Boolean> TRUE_ENTITY = new HttpEntity<>(true);
+    private static final HttpEntity<Boolean> FALSE_ENTITY = new HttpEntity<>(false);
+
+    static {
+        for (int i = 0; i < CACHED_VALUES; i++) {
+            INTEGER_ENTITIES[i] = new HttpEntity<>(i);
+        }
+    }
+
+    private EndpointTable() {}
+
+    /**
+     * Gibt die URI einer Nachricht an einen Service zurück. Beim ersten Aufruf für einen Port und Pfad wird sie gebaut
+     * und in die Tabelle des Ports eingetragen.
+     * @param port Port des Empfängers
+     * @param path Pfad aus dem PathRegister ohne URL-Vorlagen
+     * @return die URI der Nachricht
+     */
+    public static URI get(int port, String path) {
+        Map<String, URI> endpoints = ENDPOINTS.get(port);
+        if (endpoints == null) {
+            ENDPOINTS.compareAndSet(port, null, new ConcurrentHashMap<>());
+            endpoints = ENDPOINTS.get(port);
+        }
+        URI uri = endpoints.get(path);
+        if (uri == null) {
+            uri = Util.getBaseUriComponentsBuilder(port, path).build().toUri();
+            endpoints.putIfAbsent(path, uri);
+        }
+        return uri;
+    }
+
+    /**
+     * Gibt die Request-Entity für den Body einer Nachricht zurück. Für kleine Zahlen und Wahrheitswerte wird eine
+     * vorgefertigte Entity verwendet, für alle anderen Bodies wird wie im RestTemplate eine neue erstellt.
+     * @param body Body der Nachricht, null falls die Nachricht keinen Body hat
+     * @return die Entity, null falls die Nachricht keinen Body hat
+     */
+    public static HttpEntity<?> entityOf(Object body) {
+        if (body == null) {
+            return null;
+        }
+        if (body instanceof Integer) {
+            int value = (Integer) body;
+            if (value >= 0 && value < CACHED_VALUES) {
+                return INTEGER_ENTITIES[value];
+            }
+        } else if (body instanceof Boolean) {
+            return (Boolean) body ? TRUE_ENTITY : FALSE_ENTITY;
+        }
+        return new HttpEntity<>(body);
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.g1ga.truckplatooning;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Dieser Filter wertet bei jeder eingehenden Anfrage den Header PathRegister.SENDER_PORT_HEADER aus, den die
+ * RestClientFactory bei allen ausgehenden Anfragen setzt. Jede Anfrage eines überwachten Services zählt so als Heartbeat,
+ * sodass für diesen Service keine eigene Health-Check-Anfrage nötig ist, solange Nachrichten ausgetauscht werden.
+ * Wird über @Import im Platooning und im Cruise Service registriert.
+ */
+public class HeartbeatFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String senderPort = request.getHeader(PathRegister.SENDER_PORT_HEADER);
+        if (senderPort != null) {
+            try {
+                HeartbeatMonitor.messageFrom(Integer.parseInt(senderPort));
+            } catch (NumberFormatException ex) {
+                System.err.println("Ungültiger Absender-Port: " + senderPort);
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+}
@@ -0,0 +1,270 @@
+package org.g1ga.truckplatooning;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Diese Klasse überwacht die Services, von denen ein Service abhängt (z.B. den eigenen Cruise Service und den
+ * Front-Truck). Im Heartbeat-Takt wird jedem überwachten Service eine Health-Check-Anfrage geschickt, jede erfolgreiche
+ * Antwort zählt als Heartbeat für den PhiAccrualFailureDetector. Die Anfragen laufen asynchron, pro Service ist höchstens
+ * eine unterwegs, sodass ein hängender Service weder die Überwachung der anderen noch den Takt verzögert.
+ * Ein Ausfall wird erst gemeldet, wenn der Verdachtswert phi den Schwellwert überschreitet.
+ * Jede andere Nachricht eines überwachten Services (eingehende Anfragen über den HeartbeatFilter, Antworten auf eigene
+ * Anfragen über den RestClientFactory-Interceptor) zählt ebenfalls als Heartbeat. Eine Health-Check-Anfrage wird daher
+ * nur geschickt, wenn seit einem Heartbeat-Takt keine Nachricht des Services eingegangen ist.
+ * Die Verdachtswerte sind als Metrik truckplatooning.failure-detector.phi über /actuator/metrics abrufbar, die Anzahl
+ * der gesendeten und der eingesparten Health-Checks als truckplatooning.failure-detector.probes und .piggybacked.
+ */
+public final class HeartbeatMonitor {
+
+    private static final long HEARTBEAT_INTERVAL = Long.getLong("failure-detector.heartbeat-ms", 100);
+    private static final double THRESHOLD = Double.parseDouble(System.getProperty("failure-detector.threshold", "8"));
+    private static final int MAX_SAMPLE_SIZE = Integer.getInteger("failure-detector.sample-size", 200);
+    private static final long MIN_STD_DEVIATION = Long.getLong("failure-detector.min-std-deviation-ms", 50);
+    private static final long ACCEPTABLE_PAUSE = Long.getLong("failure-detector.acceptable-pause-ms", 300);
+    //Die erste Anfrage eines gerade gestarteten Services dauert deutlich länger als die folgenden
+    private static final long FIRST_HEARTBEAT_ESTIMATE = Long.getLong("failure-detector.first-heartbeat-estimate-ms", 1000);
+    //Mehrere Nachrichten innerhalb eines halben Takts zählen als ein Heartbeat, damit viel Verkehr die Statistik nicht verzerrt
+    private static final long COALESCE_NANOS = TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_INTERVAL) / 2;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_INTERVAL);
+
+    //Alle laufenden Monitore des Prozesses, an die eingehende Nachrichten weitergereicht werden
+    private static final Set<HeartbeatMonitor> MONITORS = new CopyOnWriteArraySet<>();
+
+    private final String service;
+    private final IntConsumer probe;
+    private final PhiAccrualFailureDetector detector;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService probeExecutor;
+    private final Set<Integer> probesInFlight = ConcurrentHashMap.newKeySet();
+    //Ausgefallene Services werden erst wieder überwacht, wenn sie zwischenzeitlich nicht mehr überwacht werden sollten
+    private final Set<Integer> failed = new HashSet<>();
+    private final Map<Integer, Gauge> gauges = new HashMap<>();
+    //Zeitpunkt der letzten Nachricht und des letzten gezählten Heartbeats pro Port in Nanosekunden
+    private final Map<Integer, Long> lastMessage = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> lastHeartbeat = new ConcurrentHashMap<>();
+    private final Counter probes;
+    private final Counter piggybacked;
+    private ScheduledFuture<?> task;
+    private long lastTick = 0;
+    private long evaluateAfter = 0;
+
+    /**
+     * Konstruktor, der einen Monitor mit den über System-Properties konfigurierten Werten erstellt.
+     * @param service Name des überwachenden Services, wird als Tag der Metrik verwendet
+     * @param probe Funktion, die einem Port eine Health-Check-Anfrage schickt und bei einem Fehler eine Exception wirft
+     */
+    public HeartbeatMonitor(String service, IntConsumer probe) {
+        this(service, probe, new PhiAccrualFailureDetector(THRESHOLD, MAX_SAMPLE_SIZE, MIN_STD_DEVIATION,
+                ACCEPTABLE_PAUSE, FIRST_HEARTBEAT_ESTIMATE, () -> System.nanoTime() / 1_000_000));
+    }
+
+    /**
+     * Konstruktor, der einen Monitor mit dem übergebenen Detektor erstellt.
+     * @param service Name des überwachenden Services, wird als Tag der Metrik verwendet
+     * @param probe Funktion, die einem Port eine Health-Check-Anfrage schickt und bei einem Fehler eine Exception wirft
+     * @param detector der zu verwendende Detektor
+     */
+    public HeartbeatMonitor(String service, IntConsumer probe, PhiAccrualFailureDetector detector) {
+        this.service = service;
+        this.probe = probe;
+        this.detector = detector;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads(service + "-heartbeat"));
+        this.probeExecutor = Executors.newCachedThreadPool(daemonThreads(service + "-heartbeat-probe"));
+        this.probes = Counter.builder("truckplatooning.failure-detector.probes")
+                .description("Anzahl gesendeter Health-Check-Anfragen")
+                .tag("service", service)
+                .register(Metrics.globalRegistry);
+        this.piggybacked = Counter.builder("truckplatooning.failure-detector.piggybacked")
+                .description("Anzahl Nachrichten überwachter Services, die als Heartbeat gezählt wurden")
+                .tag("service", service)
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Meldet allen laufenden Monitoren, dass gerade eine Nachricht des Services eingegangen ist. Wird vom HeartbeatFilter
+     * für eingehende Anfragen und vom Interceptor der RestClientFactory für Antworten aufgerufen.
+     * @param port Port des Services, von dem die Nachricht stammt
+     */
+    public static void messageFrom(int port) {
+        for (HeartbeatMonitor monitor : MONITORS) {
+            monitor.onMessage(port, true);
+        }
+    }
+
+    /**
+     * Zählt eine Nachricht als Heartbeat, falls der Service überwacht wird und der letzte Heartbeat mindestens einen
+     * halben Takt zurückliegt.
+     * @param port Port des Services
+     * @param piggyback true, falls die Nachricht kein eigener Health-Check war
+     */
+    private void onMessage(int port, boolean piggyback) {
+        if (!detector.isMonitoring(port)) {
+            return;
+        }
+        long now = System.nanoTime();
+        lastMessage.put(port, now);
+        if (piggyback) {
+            piggybacked.increment();
+        }
+        boolean[] counted = {false};
+        lastHeartbeat.compute(port, (p, last) -> {
+            if (last == null || now - last >= COALESCE_NANOS) {
+                counted[0] = true;
+                return now;
+            }
+            return last;
+        });
+        if (counted[0]) {
+            detector.heartbeat(port);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Startet die Überwachung. Die zu überwachenden Ports werden in jedem Takt neu abgefragt, sodass z.B. ein neuer
+     * Front-Truck ohne Neustart des Monitors übernommen wird. Ports kleiner 1 werden ignoriert.
+     * Wird der Monitor bereits ausgeführt, passiert nichts.
+     * @param targets liefert die aktuell zu überwachenden Ports
+     * @param onFailure wird einmal pro Ausfall mit dem Port des ausgefallenen Services aufgerufen, darf den Takt nicht blockieren
+     */
+    public synchronized void start(Supplier<int[]> targets, IntConsumer onFailure) {
+        if (task == null) {
+            MONITORS.add(this);
+            task = scheduler.scheduleAtFixedRate(() -> {
+                try {
+                    for (int port : tick(targets.get(), System.nanoTime())) {
+                        onFailure.accept(port);
+                    }
+                } catch (RuntimeException ex) {
+                    System.err.println("Fehler bei der Überwachung der Heartbeats: " + ex);
+                }
+            }, 0, HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Ein Takt der Überwachung: nicht mehr benötigte Ports werden verworfen, allen anderen wird eine Anfrage geschickt
+     * und Services, deren Verdachtswert den Schwellwert überschreitet, werden als ausgefallen gemeldet.
+     * Kam der Takt selbst deutlich zu spät, stand vermutlich der eigene Prozess (z.B. GC-Pause). Dann fehlen die
+     * Heartbeats aller Services aus eigener Schuld und es wird erst wieder bewertet, wenn neue Antworten eintreffen konnten.
+     * @param ports die aktuell zu überwachenden Ports
+     * @param now aktuelle Zeit in Nanosekunden
+     * @return die Ports der Services, die in diesem Takt als ausgefallen erkannt wurden
+     */
+    private synchronized List<Integer> tick(int[] ports, long now) {
+        if (lastTick != 0 && now - lastTick > TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_INTERVAL + ACCEPTABLE_PAUSE)) {
+            System.out.println("Heartbeat-Takt war " + TimeUnit.NANOSECONDS.toMillis(now - lastTick) + " ms unterbrochen, setze Bewertung kurz aus.");
+            evaluateAfter = now + TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_INTERVAL + ACCEPTABLE_PAUSE);
+        }
+        lastTick = now;
+        boolean evaluate = now - evaluateAfter >= 0;
+
+        List<Integer> newlyFailed = new ArrayList<>();
+        Set<Integer> current = new HashSet<>();
+        for (int port : ports) {
+            if (port > 0) {
+                current.add(port);
+            }
+        }
+        failed.retainAll(current);
+        for (Integer port : new ArrayList<>(gauges.keySet())) {
+            if (!current.contains(port)) {
+                unwatch(port);
+            }
+        }
+
+        for (int port : current) {
+            if (failed.contains(port)) {
+                continue;
+            }
+            if (!gauges.containsKey(port)) {
+                watch(port);
+            }
+            if (evaluate && !detector.isAvailable(port)) {
+                System.out.println("Service mit Port " + port + " antwortet nicht mehr (phi = "
+                        + String.format("%.1f", detector.phi(port)) + ")");
+                failed.add(port);
+                unwatch(port);
+                newlyFailed.add(port);
+            } else if (isIdle(port, now) && probesInFlight.add(port)) {
+                probes.increment();
+                probeExecutor.execute(() -> sendProbe(port));
+            }
+        }
+        return newlyFailed;
+    }
+
+    private boolean isIdle(int port, long now) {
+        Long last = lastMessage.get(port);
+        return last == null || now - last >= IDLE_NANOS;
+    }
+
+    private void sendProbe(int port) {
+        try {
+            probe.accept(port);
+            onMessage(port, false);
+        } catch (RuntimeException ex) {
+            //Kein Heartbeat, der Verdachtswert steigt weiter
+        } finally {
+            probesInFlight.remove(port);
+        }
+    }
+
+    private void watch(int port) {
+        lastMessage.remove(port);
+        lastHeartbeat.remove(port);
+        detector.watch(port);
+        gauges.put(port, Gauge.builder("truckplatooning.failure-detector.phi", detector, d -> d.phi(port))
+                .description("Verdachtswert des Failure-Detectors für einen überwachten Service")
+                .tag("service", service)
+                .tag("peer", String.valueOf(port))
+                .register(Metrics.globalRegistry));
+    }
+
+    private void unwatch(int port) {
+        detector.remove(port);
+        lastMessage.remove(port);
+        lastHeartbeat.remove(port);
+        Gauge gauge = gauges.remove(port);
+        if (gauge != null) {
+            Metrics.globalRegistry.remove(gauge);
+        }
+    }
+
+    /**
+     * Gibt die Verdachtswerte aller überwachten Services zurück.
+     * @return Port des Services und sein aktueller Verdachtswert
+     */
+    public Map<Integer, Double> getSuspicionLevels() {
+        return detector.getSuspicionLevels();
+    }
+
+    /**
+     * Beendet die Überwachung.
+     */
+    public synchronized void shutdown() {
+        MONITORS.remove(this);
+        scheduler.shutdownNow();
+        probeExecutor.shutdownNow();
+        for (Integer port : new ArrayList<>(gauges.keySet())) {
+            unwatch(port);
+        }
+    }
+
+}
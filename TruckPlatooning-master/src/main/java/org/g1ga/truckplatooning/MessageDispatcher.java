@@ -0,0 +1,119 @@
+package org.g1ga.truckplatooning;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Diese Klasse stellt einen gemeinsamen, begrenzten Thread-Pool für das Versenden von Nachrichten an andere Services bereit.
+ * Statt für jede ausgehende Nachricht einen eigenen Thread zu starten, werden die Aufgaben hier eingereiht.
+ * Die Länge der Warteschlange, die Anzahl aktiver Threads sowie Warte- und Ausführungszeiten werden als Metriken
+ * registriert und sind über /actuator/metrics abrufbar.
+ * Aufrufer, die einen Lock halten, nutzen handOff: Ist die Warteschlange voll, wird die Aufgabe dort nicht im
+ * aufrufenden Thread ausgeführt, sondern in eine unbegrenzte Überlaufwarteschlange gestellt.
+ */
+public final class MessageDispatcher {
+
+    private static final int THREADS = Integer.getInteger("dispatch.threads", 16);
+    private static final int QUEUE_CAPACITY = Integer.getInteger("dispatch.queue-capacity", 1024);
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor("dispatch-", new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+    //Nimmt die Aufgaben von handOff auf, die bei voller Warteschlange nicht im aufrufenden Thread laufen dürfen
+    private static final ThreadPoolExecutor OVERFLOW_EXECUTOR = createExecutor("dispatch-overflow-", new LinkedBlockingQueue<>());
+
+    private static final Timer QUEUE_WAIT_TIMER = Timer.builder("truckplatooning.dispatch.queue.wait")
+            .description("Zeit, die eine Nachricht in der Warteschlange verbringt")
+            .register(Metrics.globalRegistry);
+    private static final Timer EXECUTION_TIMER = Timer.builder("truckplatooning.dispatch.execution")
+            .description("Dauer des Versendens einer Nachricht")
+            .register(Metrics.globalRegistry);
+
+    static {
+        Gauge.builder("truckplatooning.dispatch.queue.depth", EXECUTOR, executor -> executor.getQueue().size())
+                .description("Anzahl wartender Nachrichten")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("truckplatooning.dispatch.active", EXECUTOR, ThreadPoolExecutor::getActiveCount)
+                .description("Anzahl gerade versendender Threads")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("truckplatooning.dispatch.overflow.depth", OVERFLOW_EXECUTOR, executor -> executor.getQueue().size())
+                .description("Anzahl wartender Nachrichten in der Überlaufwarteschlange")
+                .register(Metrics.globalRegistry);
+    }
+
+    private MessageDispatcher() {}
+
+    /**
+     * Reiht eine Aufgabe zum Versenden ein. Ist die Warteschlange voll, wird die Aufgabe im aufrufenden Thread ausgeführt,
+     * sodass keine Nachricht verloren geht.
+     * @param task die auszuführende Aufgabe
+     * @return Future, das nach dem Ausführen der Aufgabe abgeschlossen ist
+     */
+    public static CompletableFuture<Void> dispatch(Runnable task) {
+        return submit(task, command -> {
+            try {
+                EXECUTOR.execute(command);
+            } catch (RejectedExecutionException e) {
+                command.run();
+            }
+        });
+    }
+
+    /**
+     * Reiht eine Aufgabe zum Versenden ein, ohne sie jemals im aufrufenden Thread auszuführen. Ist die Warteschlange voll,
+     * wird die Aufgabe in die unbegrenzte Überlaufwarteschlange gestellt. Für Aufrufer, die einen Lock halten und daher
+     * nicht selbst auf einen anderen Service warten dürfen.
+     * @param task die auszuführende Aufgabe
+     * @return Future, das nach dem Ausführen der Aufgabe abgeschlossen ist
+     */
+    public static CompletableFuture<Void> handOff(Runnable task) {
+        return submit(task, command -> {
+            try {
+                EXECUTOR.execute(command);
+            } catch (RejectedExecutionException e) {
+                OVERFLOW_EXECUTOR.execute(command);
+            }
+        });
+    }
+
+    private static CompletableFuture<Void> submit(Runnable task, Executor executor) {
+        long enqueued = System.nanoTime();
+        return CompletableFuture.runAsync(() -> {
+            long started = System.nanoTime();
+            QUEUE_WAIT_TIMER.record(started - enqueued, TimeUnit.NANOSECONDS);
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                System.err.println("Fehler beim Versenden einer Nachricht: " + ex);
+                throw ex;
+            } finally {
+                EXECUTION_TIMER.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }, executor);
+    }
+
+    /**
+     * Gibt die aktuelle Anzahl wartender Aufgaben zurück
+     * @return Länge der Warteschlange
+     */
+    public static int getQueueDepth() {
+        return EXECUTOR.getQueue().size();
+    }
+
+    private static ThreadPoolExecutor createExecutor(String threadPrefix, BlockingQueue<Runnable> queue) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                queue,
+                runnable -> {
+                    Thread thread = new Thread(runnable, threadPrefix + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+}
@@ -6,6 +6,10 @@ package org.g1ga.truckplatooning;
 public final class PathRegister {
 
     public static final String HEALTH_CHECK = "/healthcheck";
+    public static final String SUSPICION = "/suspicion";
+    public static final String WIRE_PORT = "/wireport";
+    //Header, über den jede Anfrage den Port ihres Absenders mitschickt, damit sie beim Empfänger als Heartbeat zählt
+    public static final String SENDER_PORT_HEADER = "X-Truck-Port";
     public static final String CHECK_BACK_TRUCK_PORT = "/checkBackTruckPort";
     public static final String CLOSE_GAP = "/closegap";
     public static final String UPDATE_FRONT_TRUCK_PORT = "/updatefronttruck";
@@ -13,8 +17,17 @@ public final class PathRegister {
     public static final String ADD_CRUISE_CONTROL = "/addcruisecontrol";
     public static final String RECEIVE_CONTINUE_ELECTION_PATH = "/rce";
     public static final String RECEIVE_NEW_LEADER_PATH = "/rnl";
+    public static final String RECEIVE_ELECTION_PATH = "/election";
+    public static final String RECEIVE_COORDINATOR_PATH = "/coordinator";
+    public static final String RECEIVE_ELECTION_REPORT_PATH = "/electionreport";
     public static final String SHUTDOWN = "/actuator/shutdown";
     public static final String NOTIFY_BACK_TRUCK_LEAVE_PLATOON = "/notifyBackTruckLeavePlatoon";
+    //Parameter, mit dem Anfragen an Registration und Monitoring die ID ihres Platoons angeben
+    public static final String PLATOON_PARAM = "platoon";
+    public static final String DEFAULT_PLATOON = "1";
+    //Parameter, mit dem ein startender Service angibt, wie lange er höchstens auf seine Zulassung wartet
+    public static final String WAIT_PARAM = "waitMs";
+    public static final String GET_PLATOONS = "/platoons";
 
     //CruiseService
     public static final String CLOSE_GAP_LEADER = "/closegapleader";
@@ -27,12 +40,25 @@ public final class PathRegister {
     public static final String IS_LEADER = "/isleader";
     public static final String GET_INITIAL_SPEED = "/getinitialspeed";
     public static final String NEW_TRUCK_SIGN_IN = "/newTruckSignIn";
+    public static final String REPORT_SPEED = "/reportspeed";
+    public static final String SET_REPORT_PORT = "/setreportport";
+    //Header, über den der Leader einem neuen Truck die Term-Nummer der letzten Wahl mitteilt
+    public static final String ELECTION_EPOCH_HEADER = "X-Election-Epoch";
+    //Header, über den der Leader einem neuen Truck mitteilt, dass er die Wahl für eine Gruppe von Trucks selbst startet
+    public static final String ELECTION_DEFERRED_HEADER = "X-Election-Deferred";
+    //Header, über den ein Truck, der nicht Leader ist, einem neuen Truck den Port des ihm bekannten Leaders mitteilt
+    public static final String LEADER_PORT_HEADER = "X-Leader-Port";
 
     //Monitoring
     public static final String SET_LIST = "/setList";
     public static final String REMOVE_TRUCK_BY_PLATOON = "/removeTruckByPlatoon/{platooningPort}";
     public static final String SET_SPEED = "/setSpeed/{cruisePort}";
+    public static final String SET_SPEED_BATCH = "/setSpeedBatch";
     public static final String GET_TRUCK_DATA = "/getTruckData/{truckPos}";
+    public static final String GET_TRUCK_HISTORY = "/getTruckHistory/{cruisePort}";
+    public static final String GET_PLATOON_HISTORY = "/getPlatoonHistory";
+    public static final String TELEMETRY_STREAM = "/telemetry";
+    public static final String DASHBOARD_STREAM = "/dashboard/stream";
 
     //Registration
     public static final String SET_LEADER_PORT = "/setleaderport";
@@ -40,6 +66,15 @@ public final class PathRegister {
     public static final String REGISTER_CRUISE = "/registercruise/{port}";
     public static final String RESET = "/reset";
     public static final String UPDATE_ELECTION_STATUS = "/updateElectionStatus";
+    public static final String CLOSE_BATCH = "/closeBatch";
+    public static final String GET_MONITORING_SHARD = "/monitoringShard";
+    public static final String GET_MONITORING_SHARDS = "/monitoringShards";
+    public static final String GET_LEADER = "/leader";
+    public static final String REPLICATION_VOTE = "/replication/vote";
+    public static final String REPLICATION_APPEND = "/replication/append";
+    public static final String REPLICATION_STATUS = "/replication/status";
+    //Header, über den ein Registration-Replikat, das nicht Leader ist, den Port des Leaders mitteilt
+    public static final String REGISTRATION_LEADER_HEADER = "X-Registration-Leader";
 
     private PathRegister() {}
 
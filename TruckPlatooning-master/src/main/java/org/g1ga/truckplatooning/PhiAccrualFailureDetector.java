@@ -0,0 +1,197 @@
+package org.g1ga.truckplatooning;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Diese Klasse ist ein Phi-Accrual-Failure-Detector nach Hayashibara et al. Statt einen Service beim ersten
+ * ausbleibenden Heartbeat für ausgefallen zu erklären, werden pro Service die Abstände zwischen den Heartbeats
+ * gespeichert. Aus Mittelwert und Standardabweichung dieser Abstände wird der Verdachtswert phi berechnet:
+ * phi = 1 bedeutet eine Irrtumswahrscheinlichkeit von 10 %, phi = 2 von 1 %, phi = 3 von 0,1 % usw.
+ * Überschreitet phi den Schwellwert, gilt der Service als ausgefallen. Schwankende Antwortzeiten (z.B. durch GC-Pausen)
+ * erhöhen die Standardabweichung und damit automatisch die Toleranz des Detektors.
+ * Die Zeit wird über eine Uhr übergeben, sodass sich der Detektor ohne Warten testen lässt.
+ */
+public class PhiAccrualFailureDetector {
+
+    private final double threshold;
+    private final int maxSampleSize;
+    private final double minStdDeviationMillis;
+    private final long acceptableHeartbeatPauseMillis;
+    private final long firstHeartbeatEstimateMillis;
+    private final LongSupplier clock;
+    private final Map<Integer, History> histories = new HashMap<>();
+
+    /**
+     * Konstruktor, der einen Detektor ohne überwachte Services erstellt.
+     * @param threshold Verdachtswert, ab dem ein Service als ausgefallen gilt
+     * @param maxSampleSize Anzahl der Abstände, die pro Service gespeichert werden
+     * @param minStdDeviationMillis untere Grenze der Standardabweichung, damit sehr gleichmäßige Heartbeats nicht zu einem überempfindlichen Detektor führen
+     * @param acceptableHeartbeatPauseMillis Pause in Millisekunden, die zusätzlich zum Mittelwert toleriert wird
+     * @param firstHeartbeatEstimateMillis erwarteter Abstand, mit dem die Statistik vor dem ersten Heartbeat vorbelegt wird
+     * @param clock monotone Uhr, die die aktuelle Zeit in Millisekunden liefert, z.B. aus System.nanoTime, damit ein
+     *              Verstellen der Systemzeit nicht als Ausfall oder Heartbeat gewertet wird
+     */
+    public PhiAccrualFailureDetector(double threshold, int maxSampleSize, long minStdDeviationMillis,
+                                     long acceptableHeartbeatPauseMillis, long firstHeartbeatEstimateMillis, LongSupplier clock) {
+        this.threshold = threshold;
+        this.maxSampleSize = Math.max(2, maxSampleSize);
+        this.minStdDeviationMillis = minStdDeviationMillis;
+        this.acceptableHeartbeatPauseMillis = acceptableHeartbeatPauseMillis;
+        this.firstHeartbeatEstimateMillis = firstHeartbeatEstimateMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Beginnt die Überwachung eines Services. Der Beginn zählt wie ein Heartbeat, sodass auch ein Service, der nie
+     * antwortet, nach der erwarteten Zeit verdächtigt wird. Wird der Service bereits überwacht, passiert nichts.
+     * @param peer Port des Services
+     */
+    public synchronized void watch(int peer) {
+        histories.computeIfAbsent(peer, p -> new History(clock.getAsLong()));
+    }
+
+    /**
+     * Verarbeitet einen Heartbeat des Services. Heartbeats von Services, die nicht überwacht werden (z.B. verspätete
+     * Antworten eines bereits als ausgefallen gemeldeten Services), werden ignoriert.
+     * @param peer Port des Services
+     */
+    public synchronized void heartbeat(int peer) {
+        History history = histories.get(peer);
+        if (history == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        if (history.awaitingFirstHeartbeat) {
+            //Der Abstand zum Beginn der Überwachung ist nur die Antwortzeit und sagt nichts über den Heartbeat-Takt aus
+            history.awaitingFirstHeartbeat = false;
+        } else {
+            history.add(now - history.lastHeartbeat);
+        }
+        history.lastHeartbeat = now;
+    }
+
+    /**
+     * Berechnet den aktuellen Verdachtswert des Services.
+     * @param peer Port des Services
+     * @return phi, 0 falls der Service nicht überwacht wird
+     */
+    public synchronized double phi(int peer) {
+        History history = histories.get(peer);
+        if (history == null) {
+            return 0.0;
+        }
+        long timeDiff = clock.getAsLong() - history.lastHeartbeat;
+        double mean = history.mean() + acceptableHeartbeatPauseMillis;
+        double stdDeviation = Math.max(history.stdDeviation(), minStdDeviationMillis);
+        return phi(timeDiff, mean, stdDeviation);
+    }
+
+    /**
+     * Berechnet phi über eine logistische Näherung der Normalverteilung, die auch für große Abweichungen nicht
+     * numerisch unendlich wird.
+     */
+    private static double phi(long timeDiff, double mean, double stdDeviation) {
+        double y = (timeDiff - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (timeDiff > mean) {
+            return -Math.log10(e / (1.0 + e));
+        } else {
+            return -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+    }
+
+    /**
+     * Prüft, ob der Verdachtswert des Services unter dem Schwellwert liegt.
+     * @param peer Port des Services
+     * @return true, falls der Service als erreichbar gilt oder nicht überwacht wird
+     */
+    public boolean isAvailable(int peer) {
+        return phi(peer) < threshold;
+    }
+
+    /**
+     * Prüft, ob der Service überwacht wird.
+     * @param peer Port des Services
+     * @return true, falls der Service überwacht wird
+     */
+    public synchronized boolean isMonitoring(int peer) {
+        return histories.containsKey(peer);
+    }
+
+    /**
+     * Beendet die Überwachung des Services und verwirft seine Statistik.
+     * @param peer Port des Services
+     */
+    public synchronized void remove(int peer) {
+        histories.remove(peer);
+    }
+
+    /**
+     * Gibt die Verdachtswerte aller überwachten Services zurück.
+     * @return Port des Services und sein aktueller Verdachtswert, nach Ports sortiert
+     */
+    public synchronized Map<Integer, Double> getSuspicionLevels() {
+        Map<Integer, Double> levels = new TreeMap<>();
+        for (Integer peer : histories.keySet()) {
+            levels.put(peer, phi(peer));
+        }
+        return levels;
+    }
+
+    /**
+     * Gibt den Schwellwert zurück
+     * @return Verdachtswert, ab dem ein Service als ausgefallen gilt
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Die Abstände zwischen den Heartbeats eines Services als Ringpuffer mit laufender Summe und Quadratsumme,
+     * sodass Mittelwert und Varianz ohne Durchlauf über alle Werte berechnet werden.
+     */
+    private final class History {
+        private final long[] intervals = new long[maxSampleSize];
+        private int size = 0;
+        private int next = 0;
+        private double sum = 0;
+        private double squaredSum = 0;
+        private long lastHeartbeat;
+        private boolean awaitingFirstHeartbeat = true;
+
+        private History(long start) {
+            this.lastHeartbeat = start;
+            //Vorbelegung mit dem erwarteten Abstand und einer Standardabweichung von einem Viertel davon
+            long deviation = firstHeartbeatEstimateMillis / 4;
+            add(firstHeartbeatEstimateMillis - deviation);
+            add(firstHeartbeatEstimateMillis + deviation);
+        }
+
+        private void add(long interval) {
+            if (size == intervals.length) {
+                long removed = intervals[next];
+                sum -= removed;
+                squaredSum -= (double) removed * removed;
+            } else {
+                size++;
+            }
+            intervals[next] = interval;
+            next = (next + 1) % intervals.length;
+            sum += interval;
+            squaredSum += (double) interval * interval;
+        }
+
+        private double mean() {
+            return sum / size;
+        }
+
+        private double stdDeviation() {
+            double mean = mean();
+            return Math.sqrt(Math.max(0.0, squaredSum / size - mean * mean));
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package org.g1ga.truckplatooning;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Diese Klasse schickt Anfragen an die Replikate des RegistrationServers. Die Ports der Replikate werden über die
+ * System-Property registration.replicas angegeben (Standard 1111). Änderungen gehen an den zuletzt bekannten Leader.
+ * Antwortet ein Replikat mit dem Status 503, wird die Anfrage an den Leader aus dem Header
+ * PathRegister.REGISTRATION_LEADER_HEADER geschickt, ist ein Replikat nicht erreichbar, an das nächste Replikat.
+ * Lesende Anfragen werden reihum auf alle Replikate verteilt.
+ */
+public final class RegistrationClient {
+
+    private static final List<Integer> REPLICAS = parseReplicas(System.getProperty("registration.replicas", "1111"));
+    //Zeit nach dem ersten Fehlschlag, in der eine Änderung bei anderen Replikaten erneut versucht wird
+    private static final long FAILOVER_MS = Long.getLong("registration.failover-ms", 5000);
+    private static final long RETRY_BACKOFF_MS = 100;
+
+    private static volatile int leaderPort = REPLICAS.get(0);
+    private static final AtomicInteger nextRead = new AtomicInteger();
+
+    private RegistrationClient() {}
+
+    /**
+     * Schickt eine Änderung an den Leader der Replikate und sucht bei Bedarf den neuen Leader.
+     * @param request die Anfrage, die den Port des Replikats erhält
+     * @param <T> Typ der Antwort
+     * @return Antwort des Leaders
+     * @throws ResourceAccessException falls kein Replikat die Änderung innerhalb von registration.failover-ms annimmt
+     */
+    public static <T> T write(IntFunction<T> request) {
+        int port = leaderPort;
+        long deadline = 0;
+        while (true) {
+            boolean redirected = false;
+            RestClientException failure;
+            try {
+                T response = request.apply(port);
+                leaderPort = port;
+                return response;
+            } catch (HttpStatusCodeException e) {
+                if (e.getStatusCode() != HttpStatus.SERVICE_UNAVAILABLE) {
+                    throw e;
+                }
+                failure = e;
+                int leader = parseLeader(e);
+                redirected = leader > 0 && leader != port;
+                port = redirected ? leader : next(port);
+            } catch (ResourceAccessException e) {
+                failure = e;
+                port = next(port);
+            }
+            if (deadline == 0) {
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FAILOVER_MS);
+            } else if (System.nanoTime() >= deadline) {
+                throw new ResourceAccessException("Kein Replikat des RegistrationServers hat die Anfrage angenommen: " + failure.getMessage());
+            }
+            if (!redirected) {
+                sleep();
+            }
+        }
+    }
+
+    /**
+     * Schickt eine lesende Anfrage an ein beliebiges Replikat. Ist es nicht erreichbar, wird das nächste gefragt.
+     * @param request die Anfrage, die den Port des Replikats erhält
+     * @param <T> Typ der Antwort
+     * @return Antwort des Replikats
+     * @throws ResourceAccessException falls kein Replikat erreichbar ist
+     */
+    public static <T> T read(IntFunction<T> request) {
+        int start = Math.floorMod(nextRead.getAndIncrement(), REPLICAS.size());
+        RestClientException failure = null;
+        for (int i = 0; i < REPLICAS.size(); i++) {
+            try {
+                return request.apply(REPLICAS.get((start + i) % REPLICAS.size()));
+            } catch (ResourceAccessException e) {
+                failure = e;
+            } catch (HttpStatusCodeException e) {
+                if (!e.getStatusCode().is5xxServerError()) {
+                    throw e;
+                }
+                failure = e;
+            }
+        }
+        throw new ResourceAccessException("Kein Replikat des RegistrationServers ist erreichbar: " + failure.getMessage());
+    }
+
+    /**
+     * Gibt die Ports aller Replikate zurück
+     * @return unveränderliche Liste der Ports
+     */
+    public static List<Integer> getReplicas() {
+        return REPLICAS;
+    }
+
+    private static int next(int port) {
+        int index = REPLICAS.indexOf(port);
+        return REPLICAS.get((index + 1) % REPLICAS.size());
+    }
+
+    private static int parseLeader(HttpStatusCodeException e) {
+        String header = e.getResponseHeaders() == null ? null : e.getResponseHeaders().getFirst(PathRegister.REGISTRATION_LEADER_HEADER);
+        try {
+            return header == null ? 0 : Integer.parseInt(header);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Warten auf den RegistrationServer wurde unterbrochen.");
+        }
+    }
+
+    private static List<Integer> parseReplicas(String replicas) {
+        List<Integer> ports = new ArrayList<>();
+        for (String port : replicas.split(",")) {
+            if (!port.isBlank()) {
+                ports.add(Integer.parseInt(port.trim()));
+            }
+        }
+        if (ports.isEmpty()) {
+            ports.add(1111);
+        }
+        return Collections.unmodifiableList(ports);
+    }
+
+}
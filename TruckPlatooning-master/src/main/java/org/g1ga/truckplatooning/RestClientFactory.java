@@ -0,0 +1,96 @@
+package org.g1ga.truckplatooning;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diese Klasse stellt die RestTemplates für alle Services bereit. Alle RestTemplates teilen sich einen Pool aus
+ * persistenten Verbindungen, sodass nicht für jeden Health-Check und jeden Befehl eine neue TCP-Verbindung aufgebaut wird.
+ * Die Größe des Pools und die Timeouts können über System-Properties konfiguriert werden.
+ * Ist der Port des eigenen Services gesetzt, schickt jede Anfrage ihn im Header PathRegister.SENDER_PORT_HEADER mit.
+ * Jede Antwort eines anderen Services wird dem HeartbeatMonitor als Lebenszeichen gemeldet.
+ */
+public final class RestClientFactory {
+
+    private static final int CONNECT_TIMEOUT = Integer.getInteger("http.connect-timeout-ms", 1000);
+    private static final int READ_TIMEOUT = Integer.getInteger("http.read-timeout-ms", 5000);
+    private static final int MAX_CONNECTIONS_PER_ROUTE = Integer.getInteger("http.max-per-route", 20);
+    private static final int MAX_CONNECTIONS = Integer.getInteger("http.max-total", 500);
+
+    private static volatile int senderPort = 0;
+
+    private static final HttpClient HTTP_CLIENT = createHttpClient();
+    private static final RestTemplate REST_TEMPLATE = createRestTemplate(READ_TIMEOUT);
+
+    private RestClientFactory() {}
+
+    /**
+     * Gibt das gemeinsame RestTemplate mit den Standard-Timeouts zurück
+     * @return das gemeinsame RestTemplate
+     */
+    public static RestTemplate getRestTemplate() {
+        return REST_TEMPLATE;
+    }
+
+    /**
+     * Setzt den Port des eigenen Services, der bei jeder Anfrage als Absender mitgeschickt wird
+     * @param port Port des eigenen Services
+     */
+    public static void setSenderPort(int port) {
+        senderPort = port;
+    }
+
+    /**
+     * Erstellt ein RestTemplate mit einem eigenen Read-Timeout, das denselben Verbindungspool nutzt.
+     * @param readTimeoutMillis Read-Timeout in Millisekunden
+     * @return das neue RestTemplate
+     */
+    public static RestTemplate createRestTemplate(int readTimeoutMillis) {
+        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(HTTP_CLIENT);
+        requestFactory.setConnectTimeout(CONNECT_TIMEOUT);
+        requestFactory.setConnectionRequestTimeout(CONNECT_TIMEOUT);
+        requestFactory.setReadTimeout(readTimeoutMillis);
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(RestClientFactory::intercept);
+        return restTemplate;
+    }
+
+    /**
+     * Setzt den Absender-Header und meldet eine erhaltene Antwort als Lebenszeichen des Empfängers. Antworten auf
+     * Health-Checks zählt der HeartbeatMonitor selbst.
+     */
+    private static ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (senderPort > 0) {
+            request.getHeaders().set(PathRegister.SENDER_PORT_HEADER, String.valueOf(senderPort));
+        }
+        ClientHttpResponse response = execution.execute(request, body);
+        if (!PathRegister.HEALTH_CHECK.equals(request.getURI().getPath())) {
+            HeartbeatMonitor.messageFrom(request.getURI().getPort());
+        }
+        return response;
+    }
+
+    private static HttpClient createHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        //Verbindungen zu inzwischen beendeten Services werden vor der Wiederverwendung geprüft
+        connectionManager.setValidateAfterInactivity(1000);
+
+        return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.g1ga.truckplatooning;
+
+/**
+ * Diese Klasse beschreibt das Format, in dem mehrere Geschwindigkeitsmeldungen in einer einzigen Anfrage an den
+ * MonitoringService geschickt werden. Eine Batch ist ein flaches long-Array, in dem jede Meldung aus vier Werten besteht:
+ * <pre>
+ * cruisePort | timestamp | speed | targetSpeed
+ * </pre>
+ * Der Zeitstempel ist die Zeit in Millisekunden, zu der der Truck die Werte gemessen hat. Meldungen, die älter sind als
+ * die zuletzt übernommene Meldung eines Trucks, werden vom MonitoringService verworfen.
+ */
+public final class SpeedReportBatch {
+
+    public static final int TUPLE_SIZE = 4;
+    public static final int CRUISE_PORT = 0;
+    public static final int TIMESTAMP = 1;
+    public static final int SPEED = 2;
+    public static final int TARGET_SPEED = 3;
+
+    private SpeedReportBatch() {}
+
+    /**
+     * Erzeugt eine Batch mit einer einzelnen Meldung.
+     * @param cruisePort Port des meldenden Cruise Services
+     * @param timestamp Zeitpunkt der Messung in Millisekunden
+     * @param speed aktuelle Geschwindigkeit in km/h
+     * @param targetSpeed angestrebte Geschwindigkeit in km/h
+     * @return die Batch
+     */
+    public static long[] of(int cruisePort, long timestamp, int speed, int targetSpeed) {
+        return new long[] {cruisePort, timestamp, speed, targetSpeed};
+    }
+
+    /**
+     * Gibt die Anzahl vollständiger Meldungen in der Batch zurück. Unvollständige Meldungen am Ende werden ignoriert.
+     * @param batch die Batch
+     * @return Anzahl der Meldungen
+     */
+    public static int size(long[] batch) {
+        return batch == null ? 0 : batch.length / TUPLE_SIZE;
+    }
+
+    /**
+     * Liest einen Wert einer Meldung.
+     * @param batch die Batch
+     * @param index Index der Meldung
+     * @param field einer der Werte CRUISE_PORT, TIMESTAMP, SPEED oder TARGET_SPEED
+     * @return der gelesene Wert
+     */
+    public static long get(long[] batch, int index, int field) {
+        return batch[index * TUPLE_SIZE + field];
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.g1ga.truckplatooning;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Diese Klasse kodiert die Telemetrie-Daten eines Trucks in ein kompaktes Binärformat, das vom CruiseService über den
+ * Telemetrie-Stream an den MonitoringService geschickt wird.
+ * Ein Frame besteht aus dem Cruise-Port, einer Bitmaske und nur den Werten, die sich seit dem letzten Frame geändert haben:
+ * <pre>
+ * int cruisePort | byte mask | [int speed] | [int targetSpeed] | [double gap] | [double traveledDistance]
+ * </pre>
+ * Eine Nachricht kann mehrere Frames hintereinander enthalten.
+ */
+public final class TelemetryCodec {
+
+    public static final int SPEED = 1;
+    public static final int TARGET_SPEED = 1 << 1;
+    public static final int GAP = 1 << 2;
+    public static final int TRAVELED_DISTANCE = 1 << 3;
+    public static final int ALL = SPEED | TARGET_SPEED | GAP | TRAVELED_DISTANCE;
+
+    //Größe eines Frames, in dem alle Werte enthalten sind
+    public static final int MAX_FRAME_SIZE = 4 + 1 + 4 + 4 + 8 + 8;
+
+    private TelemetryCodec() {}
+
+    /**
+     * Schreibt einen Frame in den Buffer. Es werden nur die in der Maske gesetzten Werte geschrieben.
+     * @param buffer der Buffer, in den geschrieben wird
+     * @param cruisePort Port des sendenden Cruise Services
+     * @param mask Bitmaske der enthaltenen Werte
+     * @param speed aktuelle Geschwindigkeit in km/h
+     * @param targetSpeed angestrebte Geschwindigkeit in km/h
+     * @param gap zu schließende Lücke in km
+     * @param traveledDistance insgesamt zurückgelegte Strecke in km
+     */
+    public static void encode(ByteBuffer buffer, int cruisePort, int mask, int speed, int targetSpeed, double gap, double traveledDistance) {
+        buffer.putInt(cruisePort);
+        buffer.put((byte) mask);
+        if ((mask & SPEED) != 0) {
+            buffer.putInt(speed);
+        }
+        if ((mask & TARGET_SPEED) != 0) {
+            buffer.putInt(targetSpeed);
+        }
+        if ((mask & GAP) != 0) {
+            buffer.putDouble(gap);
+        }
+        if ((mask & TRAVELED_DISTANCE) != 0) {
+            buffer.putDouble(traveledDistance);
+        }
+    }
+
+    /**
+     * Liest alle Frames aus dem Buffer und übergibt sie nacheinander an den Empfänger. Nicht enthaltene Werte werden
+     * als 0 übergeben und müssen anhand der Maske ignoriert werden.
+     * @param buffer der zu lesende Buffer
+     * @param sink Empfänger der gelesenen Frames
+     */
+    public static void decode(ByteBuffer buffer, Sink sink) {
+        while (buffer.remaining() >= 5) {
+            int cruisePort = buffer.getInt();
+            int mask = buffer.get() & 0xFF;
+            int speed = (mask & SPEED) != 0 ? buffer.getInt() : 0;
+            int targetSpeed = (mask & TARGET_SPEED) != 0 ? buffer.getInt() : 0;
+            double gap = (mask & GAP) != 0 ? buffer.getDouble() : 0;
+            double traveledDistance = (mask & TRAVELED_DISTANCE) != 0 ? buffer.getDouble() : 0;
+            sink.accept(cruisePort, mask, speed, targetSpeed, gap, traveledDistance);
+        }
+    }
+
+    /**
+     * Empfänger der dekodierten Frames
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(int cruisePort, int mask, int speed, int targetSpeed, double gap, double traveledDistance);
+    }
+
+}
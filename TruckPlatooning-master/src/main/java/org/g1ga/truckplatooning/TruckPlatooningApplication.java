@@ -1,5 +1,6 @@
 package org.g1ga.truckplatooning;
 
+import org.g1ga.truckplatooning.aggregator.MonitoringAggregator;
 import org.g1ga.truckplatooning.monitoring.MonitoringService;
 import org.g1ga.truckplatooning.registration.RegistrationServer;
 import org.g1ga.truckplatooning.truck.cruise.CruiseService;
@@ -9,12 +10,13 @@ public class TruckPlatooningApplication {
 
     /**
      * Main-Methode für das TruckPlatooning-Programm.
-     * Hier kann über ein Konsolenargument gewählt werden, welcher Microservice genau gestartet werden soll.
+     * Hier kann über ein Konsolenargument gewählt werden, welcher Microservice genau gestartet werden soll. Dem
+     * CruiseService kann als zweites Argument das Pairing-Token seines PlatooningService übergeben werden.
      *
      * @param args Konsolen-Argumente
      */
     public static void main(String[] args) {
-        if (args.length == 1) {
+        if (args.length >= 1) {
             switch (args[0].toLowerCase()) {
                 case "platooning":
                     PlatooningService.main(args);
@@ -28,6 +30,9 @@ public class TruckPlatooningApplication {
                 case "monitoring":
                     MonitoringService.main(args);
                     break;
+                case "aggregator":
+                    MonitoringAggregator.main(args);
+                    break;
                 default:
                     showUsage();
                     break;
@@ -37,8 +42,12 @@ public class TruckPlatooningApplication {
         }
     }
 
-    private static void showUsage() {
-        System.out.println("Verwendung: java -jar ... <server-name>\nwobei\nserver-name 'platooning', 'cruise', 'registration' oder 'monitoring' sein kann.");
+    /**
+     * Gibt aus, wie das Programm gestartet wird.
+     */
+    public static void showUsage() {
+        System.out.println("Verwendung: java -jar ... <server-name> [pairing-token]\nwobei\nserver-name 'platooning', 'cruise', 'registration', 'monitoring' oder 'aggregator' sein kann" +
+                "\nund pairing-token das vom PlatooningService ausgegebene Token für den CruiseService ist.");
     }
 
 }
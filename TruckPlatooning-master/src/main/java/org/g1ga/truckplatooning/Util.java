@@ -2,10 +2,12 @@ package org.g1ga.truckplatooning;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -13,8 +15,21 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public final class Util {
 
-    private final static RestTemplate restTemplate = new RestTemplate();
+    //Zeit, die ein startender Service höchstens auf seine Zulassung wartet. Sie wird dem RegistrationServer mitgeschickt,
+    //der die Anfrage nie länger hält, sodass der Read-Timeout nicht von dessen Konfiguration abhängt
+    private final static int REGISTRATION_WAIT_MILLIS = Integer.getInteger("registration.wait-timeout-ms", 120000);
+    private final static RestTemplate registrationRestTemplate = RestClientFactory.createRestTemplate(REGISTRATION_WAIT_MILLIS + 5000);
     private final static String HOST = "localhost";
+    //ID des Platoons, dem dieser Truck angehört, beide Services eines Trucks müssen dieselbe ID verwenden
+    private final static int PLATOON_ID = Integer.getInteger("platoon.id", 1);
+    //Port des MonitoringServices, falls der RegistrationServer keinen Shard nennen kann
+    private final static int DEFAULT_MONITORING_PORT = 1112;
+    //Shard des MonitoringServices, der das eigene Platoon anzeigt, 0 solange er noch nicht abgefragt wurde
+    private static volatile int monitoringPort = 0;
+    //Abstand, in dem der Shard nach einer fehlgeschlagenen Abfrage erneut abgefragt wird
+    private final static long SHARD_RETRY_MILLIS = Long.getLong("monitoring.shard-retry-ms", 5000);
+    //Zeitpunkt (System.nanoTime), vor dem der Shard nicht erneut abgefragt wird
+    private static volatile long nextShardLookup = System.nanoTime();
 
     private Util() {}
 
@@ -25,9 +40,28 @@ public final class Util {
      * @return Antwort des Registration Servers
      */
     public static int[] getRegistrationData(String urlParameter, int port) {
-        String url = getBaseUriComponentsBuilder(1111, urlParameter).buildAndExpand(port).toUriString();
+        return getRegistrationData(urlParameter, port, 0);
+    }
+
+    /**
+     * Stellt die Verbindung zwsichen startenden Services zum Registration Server her und gibt dabei ein Pairing-Token an.
+     * @param urlParameter der auszuführende Pfad
+     * @param port der port des Senders
+     * @param token Pairing-Token des zugehörigen Platooning Service, 0 falls keines angegeben werden soll
+     * @return Antwort des Registration Servers
+     */
+    public static int[] getRegistrationData(String urlParameter, int port, int token) {
         try {
-            ResponseEntity<int[]> response = restTemplate.getForEntity(url, int[].class);
+            System.out.println("Warte auf die Zulassung durch den RegistrationServer...");
+            ResponseEntity<int[]> response = RegistrationClient.write(registrationPort -> {
+                UriComponentsBuilder builder = getBaseUriComponentsBuilder(registrationPort, urlParameter)
+                        .queryParam(PathRegister.PLATOON_PARAM, PLATOON_ID)
+                        .queryParam(PathRegister.WAIT_PARAM, REGISTRATION_WAIT_MILLIS);
+                if (token > 0) {
+                    builder.queryParam("token", token);
+                }
+                return registrationRestTemplate.getForEntity(builder.buildAndExpand(port).toUriString(), int[].class);
+            });
             return response.getBody();
         } catch (ResourceAccessException e) {
             System.err.println("Der Registration-Server ist offline, bitte starte ihn zuerst und versuche es erneut!");
@@ -47,6 +81,56 @@ public final class Util {
                 .path(path);
     }
 
+    /**
+     * Gibt die ID des Platoons zurück, dem dieser Truck angehört
+     * @return ID des Platoons aus platoon.id, standardmäßig 1
+     */
+    public static int getPlatoonId() {
+        return PLATOON_ID;
+    }
+
+    /**
+     * Gibt den Port des Shards des MonitoringServices zurück, dem das eigene Platoon gehört. Der Shard wird beim ersten
+     * Aufruf beim RegistrationServer abgefragt. Kann er nicht abgefragt werden, wird der Standard-Port verwendet und erst
+     * nach monitoring.shard-retry-ms erneut gefragt, sodass nicht jeder Aufruf auf den RegistrationServer wartet.
+     * @return Port des zuständigen MonitoringServices
+     */
+    public static int getMonitoringPort() {
+        int port = monitoringPort;
+        if (port > 0) {
+            return port;
+        }
+        long now = System.nanoTime();
+        synchronized (Util.class) {
+            if (now - nextShardLookup < 0) {
+                return DEFAULT_MONITORING_PORT;
+            }
+            //Gleichzeitige Aufrufer verwenden bis zum Ende dieser Abfrage den Standard-Port
+            nextShardLookup = now + TimeUnit.MILLISECONDS.toNanos(SHARD_RETRY_MILLIS);
+        }
+        try {
+            Integer shard = RegistrationClient.read(registrationPort -> RestClientFactory.getRestTemplate().getForObject(
+                    getBaseUriComponentsBuilder(registrationPort, PathRegister.GET_MONITORING_SHARD)
+                            .queryParam(PathRegister.PLATOON_PARAM, PLATOON_ID).toUriString(), Integer.class));
+            if (shard != null && shard > 0) {
+                monitoringPort = shard;
+                System.out.println("Platoon " + PLATOON_ID + " wird vom MonitoringService auf Port " + shard + " angezeigt.");
+                return shard;
+            }
+        } catch (RestClientException e) {
+            System.err.println("Shard des MonitoringServices konnte nicht abgefragt werden, verwende Port " + DEFAULT_MONITORING_PORT + ": " + e.getMessage());
+        }
+        return DEFAULT_MONITORING_PORT;
+    }
+
+    /**
+     * Gibt den Host zurück, unter dem alle Services erreichbar sind
+     * @return der Host der Services
+     */
+    public static String getHost() {
+        return HOST;
+    }
+
     /**
      * Übernimmt das ständige (ent-)locken von kritischen Bereichen. Der Bereich, der von dieser Methode gelockt wird,
      * gibt einen Wert zurück, deswegen wird Callable verwendet.
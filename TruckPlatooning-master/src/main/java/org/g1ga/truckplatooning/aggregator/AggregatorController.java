@@ -0,0 +1,253 @@
+package org.g1ga.truckplatooning.aggregator;
+
+import org.g1ga.truckplatooning.ConsistentHashRing;
+import org.g1ga.truckplatooning.PathRegister;
+import org.g1ga.truckplatooning.RegistrationClient;
+import org.g1ga.truckplatooning.RestClientFactory;
+import org.g1ga.truckplatooning.Util;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+
+/**
+ * Der Aggregator ist der gemeinsame Einstiegspunkt vor den Shards des MonitoringServices. Jeder Shard zeigt nur die
+ * Platoons an, die ihm per Consistent Hashing zugeordnet sind. Der Aggregator baut aus den Ports der Shards denselben
+ * Ring wie der RegistrationServer und leitet Anfragen zu einem Platoon an dessen Shard weiter. Anfragen über alle
+ * Platoons schickt er gleichzeitig an alle Shards und führt die Antworten zusammen. Shards, die nicht rechtzeitig
+ * antworten, fehlen im Ergebnis, anstatt die gesamte Anfrage aufzuhalten.
+ * Die Ports der Shards werden unter monitoring.shards angegeben oder, falls dort nichts steht, regelmäßig beim
+ * RegistrationServer abgefragt.
+ */
+@RestController
+public class AggregatorController {
+
+    private final RestTemplate REST_TEMPLATE = RestClientFactory.getRestTemplate();
+    private static final ParameterizedTypeReference<Map<Integer, Integer>> PLATOON_SIZES = new ParameterizedTypeReference<Map<Integer, Integer>>() {};
+
+    private final ExecutorService execFanOut;
+    private final long deadlineMs;
+    private final long refreshMs;
+    //true, falls die Shards fest konfiguriert sind und nicht beim RegistrationServer abgefragt werden
+    private final boolean staticShards;
+    private volatile ConsistentHashRing ring;
+    private volatile long ringLoadedAt;
+
+    /**
+     * Konstruktor, der den Aggregator erstellt.
+     * @param shards Ports der Shards, leer um sie beim RegistrationServer abzufragen
+     * @param fanOutThreads Threads, mit denen die Shards gleichzeitig angefragt werden
+     * @param deadlineMs Zeit, die höchstens auf die Antworten der Shards gewartet wird
+     * @param refreshMs Zeit, nach der die Shards erneut beim RegistrationServer abgefragt werden
+     */
+    public AggregatorController(@Value("${monitoring.shards:}") Integer[] shards,
+                                @Value("${aggregator.fanout-threads:16}") int fanOutThreads,
+                                @Value("${aggregator.deadline-ms:2000}") long deadlineMs,
+                                @Value("${aggregator.refresh-ms:5000}") long refreshMs) {
+        this.deadlineMs = deadlineMs;
+        this.refreshMs = refreshMs;
+        this.staticShards = shards.length > 0;
+        if (staticShards) {
+            ring = new ConsistentHashRing(Arrays.asList(shards));
+        }
+        execFanOut = Executors.newFixedThreadPool(fanOutThreads, runnable -> {
+            Thread thread = new Thread(runnable, "aggregator-fanout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        execFanOut.shutdownNow();
+    }
+
+    /**
+     * Gibt den Ring der Shards zurück. Sind die Shards nicht fest konfiguriert, wird er nach refreshMs neu beim
+     * RegistrationServer abgefragt. Ist kein Replikat erreichbar, wird der zuletzt bekannte Ring weiterverwendet.
+     * @return der Ring der Shards
+     */
+    private ConsistentHashRing ring() {
+        long now = System.currentTimeMillis();
+        if (!staticShards && (ring == null || now - ringLoadedAt >= refreshMs)) {
+            try {
+                Integer[] shards = RegistrationClient.read(registrationPort -> REST_TEMPLATE.getForObject(
+                        Util.getBaseUriComponentsBuilder(registrationPort, PathRegister.GET_MONITORING_SHARDS).toUriString(), Integer[].class));
+                if (shards != null && shards.length > 0) {
+                    ring = new ConsistentHashRing(Arrays.asList(shards));
+                    ringLoadedAt = now;
+                }
+            } catch (RestClientException e) {
+                System.err.println("Shards konnten nicht beim RegistrationServer abgefragt werden: " + e.getMessage());
+            }
+        }
+        if (ring == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Die Shards des MonitoringServices sind nicht bekannt.");
+        }
+        return ring;
+    }
+
+    /**
+     * Schickt eine Anfrage gleichzeitig an alle Shards und wartet höchstens deadlineMs auf die Antworten.
+     * @param query Anfrage, die mit dem Port eines Shards aufgerufen wird
+     * @param <T> Typ der Antwort
+     * @return Port des Shards -> Antwort, Shards ohne rechtzeitige Antwort fehlen
+     */
+    private <T> Map<Integer, T> fanOut(IntFunction<T> query) {
+        Map<Integer, Future<T>> futures = new LinkedHashMap<>();
+        for (int shard : ring().getNodes()) {
+            futures.put(shard, execFanOut.submit(() -> query.apply(shard)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        Map<Integer, T> results = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Future<T>> entry : futures.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                System.err.println("Shard " + entry.getKey() + " hat nicht rechtzeitig geantwortet.");
+            } catch (ExecutionException e) {
+                System.err.println("Shard " + entry.getKey() + " ist nicht erreichbar: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Leitet eine Anfrage an den Shard weiter, dem das Platoon gehört, und gibt dessen Antwort unverändert zurück.
+     * @param platoonId ID des Platoons
+     * @param path Pfad der Anfrage
+     * @param queryParams weitere Parameter der Anfrage
+     * @param uriVariables Werte der Platzhalter im Pfad
+     * @return die Antwort des Shards
+     */
+    private ResponseEntity<String> forward(int platoonId, String path, Map<String, ?> queryParams, Object... uriVariables) {
+        UriComponentsBuilder builder = Util.getBaseUriComponentsBuilder(ring().nodeFor(platoonId), path)
+                .queryParam(PathRegister.PLATOON_PARAM, platoonId);
+        queryParams.forEach(builder::queryParam);
+        try {
+            String body = REST_TEMPLATE.getForObject(builder.buildAndExpand(uriVariables).toUri(), String.class);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        } catch (RestClientException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Shard des Platoons " + platoonId + " ist nicht erreichbar.", e);
+        }
+    }
+
+    /**
+     * Leitet die Monitoring-Website eines Platoons auf den Shard um, der das Platoon anzeigt. Die Website erhält ihre
+     * Änderungen dann direkt von diesem Shard.
+     * @param platoonId ID des Platoons
+     * @return Umleitung auf die Website des Shards
+     */
+    @GetMapping("/")
+    private ResponseEntity<Void> dashboard(@RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+        URI location = Util.getBaseUriComponentsBuilder(ring().nodeFor(platoonId), "/")
+                .queryParam(PathRegister.PLATOON_PARAM, platoonId).build().toUri();
+        return ResponseEntity.status(HttpStatus.FOUND).location(location).build();
+    }
+
+    /**
+     * Gibt alle Platoons aller Shards mit der Anzahl ihrer Trucks zurück
+     * @return ID des Platoons -> Anzahl der Trucks
+     */
+    @GetMapping(PathRegister.GET_PLATOONS)
+    private Map<Integer, Integer> getPlatoons() {
+        Map<Integer, Integer> sizes = new TreeMap<>();
+        fanOut(this::getPlatoonSizes).values().forEach(sizes::putAll);
+        return sizes;
+    }
+
+    /**
+     * Gibt alle Shards mit der Anzahl der Platoons zurück, die sie anzeigen
+     * @return Port des Shards -> Anzahl der Platoons, -1 falls der Shard nicht rechtzeitig geantwortet hat
+     */
+    @GetMapping(PathRegister.GET_MONITORING_SHARDS)
+    private Map<Integer, Integer> getShards() {
+        Map<Integer, Map<Integer, Integer>> results = fanOut(this::getPlatoonSizes);
+        Map<Integer, Integer> shards = new LinkedHashMap<>();
+        for (int shard : ring().getNodes()) {
+            Map<Integer, Integer> sizes = results.get(shard);
+            shards.put(shard, sizes != null ? sizes.size() : -1);
+        }
+        return shards;
+    }
+
+    private Map<Integer, Integer> getPlatoonSizes(int shard) {
+        URI uri = Util.getBaseUriComponentsBuilder(shard, PathRegister.GET_PLATOONS).build().toUri();
+        Map<Integer, Integer> sizes = REST_TEMPLATE.exchange(uri, HttpMethod.GET, null, PLATOON_SIZES).getBody();
+        return sizes != null ? sizes : Collections.emptyMap();
+    }
+
+    /**
+     * Gibt die Informationen eines Trucks vom Shard seines Platoons zurück
+     * @param truckPos die Position des Trucks im Platoon (0...x)
+     * @param platoonId ID des Platoons
+     * @return Informationen des Trucks
+     */
+    @GetMapping(PathRegister.GET_TRUCK_DATA)
+    private ResponseEntity<String> getTruckData(@PathVariable int truckPos,
+                                                @RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+        return forward(platoonId, PathRegister.GET_TRUCK_DATA, Collections.emptyMap(), truckPos);
+    }
+
+    /**
+     * Gibt den Verlauf aller Trucks eines Platoons vom Shard des Platoons zurück
+     * @param platoonId ID des Platoons
+     * @param from Beginn des Zeitfensters in Millisekunden seit 1970
+     * @param to Ende des Zeitfensters in Millisekunden seit 1970
+     * @param resolution gewünschte Auflösung in Millisekunden
+     * @return Verläufe aller Trucks
+     */
+    @GetMapping(PathRegister.GET_PLATOON_HISTORY)
+    private ResponseEntity<String> getPlatoonHistory(@RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId,
+                                                     @RequestParam(defaultValue = "0") long from, @RequestParam(defaultValue = "0") long to,
+                                                     @RequestParam(defaultValue = "0") long resolution) {
+        Map<String, Long> queryParams = new LinkedHashMap<>();
+        queryParams.put("from", from);
+        queryParams.put("to", to);
+        queryParams.put("resolution", resolution);
+        return forward(platoonId, PathRegister.GET_PLATOON_HISTORY, queryParams);
+    }
+
+    /**
+     * Gibt den Verlauf eines Trucks zurück. Da der Shard des Trucks nicht bekannt ist, werden alle Shards gefragt.
+     * @param cruisePort Port des Cruise Services
+     * @param from Beginn des Zeitfensters in Millisekunden seit 1970
+     * @param to Ende des Zeitfensters in Millisekunden seit 1970
+     * @param resolution gewünschte Auflösung in Millisekunden
+     * @return Verlauf des Trucks, leer falls kein Shard einen Verlauf zu dem Truck hat
+     */
+    @GetMapping(PathRegister.GET_TRUCK_HISTORY)
+    private ResponseEntity<String> getTruckHistory(@PathVariable int cruisePort, @RequestParam(defaultValue = "0") long from,
+                                                   @RequestParam(defaultValue = "0") long to, @RequestParam(defaultValue = "0") long resolution) {
+        Map<Integer, String> results = fanOut(shard -> REST_TEMPLATE.getForObject(Util.getBaseUriComponentsBuilder(shard, PathRegister.GET_TRUCK_HISTORY)
+                .queryParam("from", from).queryParam("to", to).queryParam("resolution", resolution)
+                .buildAndExpand(cruisePort).toUri(), String.class));
+        for (String body : results.values()) {
+            if (body != null && !body.isEmpty()) {
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+            }
+        }
+        return ResponseEntity.ok().build();
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.g1ga.truckplatooning.aggregator;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * Diese Klasse startet den Aggregator vor den Shards des MonitoringServices und greift dabei auf die in der
+ * dazugehörigen aggregator-server.yml Datei hinterlegten Informationen zu.
+ */
+@SpringBootApplication
+public class MonitoringAggregator {
+
+    /**
+     * Startet den Aggregator
+     * @param args Argumente die zum Starten übergeben werden
+     */
+    public static void main(String[] args) {
+        System.setProperty("spring.config.name", "aggregator-server");
+
+        SpringApplication.run(MonitoringAggregator.class, args);
+    }
+
+}
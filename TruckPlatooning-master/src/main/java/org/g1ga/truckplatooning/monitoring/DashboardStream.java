@@ -0,0 +1,259 @@
+package org.g1ga.truckplatooning.monitoring;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.g1ga.truckplatooning.PathRegister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dieser Controller schickt die Daten der Trucks per Server-Sent Events an die geöffneten Monitoring-Websites.
+ * In einem festen Intervall wird geprüft, welche Trucks sich seit dem letzten Intervall geändert haben. Nur diese Zeilen
+ * werden einmal serialisiert und an alle Websites geschickt, die sie dann selbst in die Tabelle übernehmen.
+ * Es gibt zwei Events:
+ * "members" enthält alle Trucks in der Reihenfolge des Platoons und wird nur bei einer Änderung der Mitglieder gesendet,
+ * "rows" enthält die geänderten Werte einzelner Trucks.
+ * Jede Website abonniert genau ein Platoon. Die Änderungen werden pro Platoon ermittelt und nur für Platoons, die
+ * gerade angezeigt werden.
+ */
+@RestController
+public class DashboardStream {
+
+    //Änderung der Strecke in km, ab der sie erneut gesendet wird (entspricht der Anzeige mit 3 Nachkommastellen)
+    private static final double DISTANCE_RESOLUTION = 0.001;
+    //Intervall, in dem ohne Änderungen ein Kommentar gesendet wird, um geschlossene Websites zu erkennen
+    private static final long KEEP_ALIVE_MILLIS = 15000;
+
+    private final MonitoringController monitoringController;
+    private final ObjectMapper objectMapper;
+    private final long pushMillis;
+    private final ScheduledExecutorService execPush = Executors.newSingleThreadScheduledExecutor();
+
+    //ID des Platoons -> Websites, die es anzeigen; wird nur vom Thread execPush gelesen und geschrieben
+    private final Map<Integer, PlatoonStream> streams = new HashMap<>();
+
+    /**
+     * Konstruktor, der den Stream mit dem MonitoringController verbindet.
+     * @param monitoringController der Controller, dessen Trucks gesendet werden
+     * @param objectMapper zum Serialisieren der Events
+     * @param pushMillis Intervall, in dem Änderungen gesendet werden
+     */
+    public DashboardStream(MonitoringController monitoringController, ObjectMapper objectMapper, @Value("${monitoring.push-ms:250}") long pushMillis) {
+        this.monitoringController = monitoringController;
+        this.objectMapper = objectMapper;
+        this.pushMillis = pushMillis;
+    }
+
+    @PostConstruct
+    private void start() {
+        execPush.scheduleAtFixedRate(this::push, pushMillis, pushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        execPush.shutdownNow();
+        for (PlatoonStream stream : streams.values()) {
+            for (SseEmitter emitter : stream.emitters) {
+                emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * Öffnet einen neuen Stream für eine Monitoring-Website. Die Website erhält zunächst alle Trucks und danach nur
+     * noch Änderungen.
+     * @param platoonId ID des angezeigten Platoons
+     * @return der Stream
+     */
+    @GetMapping(value = PathRegister.DASHBOARD_STREAM, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    private SseEmitter subscribe(@RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+        //kein Timeout, der Stream bleibt offen, bis die Website geschlossen wird
+        SseEmitter emitter = new SseEmitter(0L);
+
+        //Der vollständige Stand wird im Thread execPush gesendet, damit er nicht zwischen zwei Änderungen fällt
+        execPush.execute(() -> {
+            try {
+                PlatoonStream stream = streams.computeIfAbsent(platoonId, id -> new PlatoonStream());
+                emitter.onCompletion(() -> stream.emitters.remove(emitter));
+                emitter.onTimeout(() -> stream.emitters.remove(emitter));
+                emitter.onError(e -> stream.emitters.remove(emitter));
+                List<MonitoringModel> members = getOrdered(platoonId);
+                emitter.send(SseEmitter.event().name("members").data(serializeMembers(members), MediaType.APPLICATION_JSON));
+                emitter.send(SseEmitter.event().name("rows").data(serializeRows(members), MediaType.APPLICATION_JSON));
+                if (stream.emitters.isEmpty()) {
+                    //erste Website des Platoons: der gesendete Stand ist der Ausgangspunkt für die Änderungen
+                    stream.sentMembers = members;
+                    stream.sentRows.clear();
+                    for (MonitoringModel monitoringModel : members) {
+                        Row row = new Row();
+                        row.update(monitoringModel);
+                        stream.sentRows.put(monitoringModel.getCruisePort(), row);
+                    }
+                    stream.lastSend = System.currentTimeMillis();
+                }
+                stream.emitters.add(emitter);
+            } catch (IOException | RuntimeException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * Ermittelt für jedes angezeigte Platoon die Änderungen seit dem letzten Intervall und schickt sie an seine Websites.
+     * Platoons, die keine Website mehr anzeigt, werden nicht weiter verfolgt.
+     */
+    private void push() {
+        streams.values().removeIf(stream -> stream.emitters.isEmpty());
+        for (Map.Entry<Integer, PlatoonStream> entry : streams.entrySet()) {
+            try {
+                push(entry.getValue(), getOrdered(entry.getKey()));
+            } catch (RuntimeException e) {
+                System.err.println("Dashboard-Stream konnte nicht gesendet werden: " + e.getMessage());
+            }
+        }
+    }
+
+    private void push(PlatoonStream stream, List<MonitoringModel> members) {
+        boolean membersChanged = members != stream.sentMembers;
+        List<MonitoringModel> changed = new ArrayList<>();
+        for (MonitoringModel monitoringModel : members) {
+            Row row = stream.sentRows.get(monitoringModel.getCruisePort());
+            if (row == null) {
+                row = new Row();
+                stream.sentRows.put(monitoringModel.getCruisePort(), row);
+            }
+            if (row.update(monitoringModel)) {
+                changed.add(monitoringModel);
+            }
+        }
+        if (membersChanged) {
+            stream.sentRows.keySet().retainAll(cruisePorts(members));
+            stream.sentMembers = members;
+        }
+
+        long now = System.currentTimeMillis();
+        if (membersChanged) {
+            broadcast(stream, SseEmitter.event().name("members").data(serializeMembers(members), MediaType.APPLICATION_JSON));
+        }
+        if (!changed.isEmpty()) {
+            broadcast(stream, SseEmitter.event().name("rows").data(serializeRows(changed), MediaType.APPLICATION_JSON));
+        }
+        if (membersChanged || !changed.isEmpty()) {
+            stream.lastSend = now;
+        } else if (now - stream.lastSend >= KEEP_ALIVE_MILLIS) {
+            broadcast(stream, SseEmitter.event().comment("keep-alive"));
+            stream.lastSend = now;
+        }
+    }
+
+    private List<MonitoringModel> getOrdered(int platoonId) {
+        MonitoredPlatoon platoon = monitoringController.platoons.get(platoonId);
+        return platoon != null ? platoon.getTrucks().getOrdered() : Collections.emptyList();
+    }
+
+    private void broadcast(PlatoonStream stream, SseEmitter.SseEventBuilder event) {
+        for (SseEmitter emitter : stream.emitters) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                //Website wurde geschlossen
+                stream.emitters.remove(emitter);
+            }
+        }
+    }
+
+    private Set<Integer> cruisePorts(List<MonitoringModel> members) {
+        Set<Integer> cruisePorts = new HashSet<>();
+        for (MonitoringModel monitoringModel : members) {
+            cruisePorts.add(monitoringModel.getCruisePort());
+        }
+        return cruisePorts;
+    }
+
+    private String serializeMembers(List<MonitoringModel> members) {
+        List<Map<String, Object>> list = new ArrayList<>(members.size());
+        for (MonitoringModel monitoringModel : members) {
+            Map<String, Object> member = new LinkedHashMap<>();
+            member.put("pid", monitoringModel.getPid());
+            member.put("platoonPort", monitoringModel.getPlatoonPort());
+            member.put("cruisePort", monitoringModel.getCruisePort());
+            list.add(member);
+        }
+        return toJson(list);
+    }
+
+    private String serializeRows(List<MonitoringModel> rows) {
+        List<Map<String, Object>> list = new ArrayList<>(rows.size());
+        for (MonitoringModel monitoringModel : rows) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("cruisePort", monitoringModel.getCruisePort());
+            row.put("speed", monitoringModel.getSpeed());
+            row.put("targetSpeed", monitoringModel.getTargetSpeed());
+            row.put("traveledDistance", monitoringModel.getTraveledDistance());
+            list.add(row);
+        }
+        return toJson(list);
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Websites eines Platoons und der Stand, der zuletzt an sie gesendet wurde.
+     */
+    private static class PlatoonStream {
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        //wird wie sentRows und lastSend nur vom Thread execPush gelesen und geschrieben
+        private List<MonitoringModel> sentMembers = Collections.emptyList();
+        private final Map<Integer, Row> sentRows = new HashMap<>();
+        private long lastSend = 0;
+    }
+
+    /**
+     * Zuletzt gesendete Werte eines Trucks.
+     */
+    private static class Row {
+        private int speed = -1;
+        private int targetSpeed = -1;
+        private double traveledDistance = -1;
+
+        /**
+         * Übernimmt die Werte des Models, falls sie sich geändert haben.
+         * @param monitoringModel das aktuelle Model des Trucks
+         * @return true, wenn sich mindestens ein Wert geändert hat
+         */
+        private boolean update(MonitoringModel monitoringModel) {
+            int currentSpeed = monitoringModel.getSpeed();
+            int currentTargetSpeed = monitoringModel.getTargetSpeed();
+            double currentTraveledDistance = monitoringModel.getTraveledDistance();
+            if (currentSpeed == speed && currentTargetSpeed == targetSpeed
+                    && Math.abs(currentTraveledDistance - traveledDistance) < DISTANCE_RESOLUTION) {
+                return false;
+            }
+            speed = currentSpeed;
+            targetSpeed = currentTargetSpeed;
+            traveledDistance = currentTraveledDistance;
+            return true;
+        }
+    }
+
+}
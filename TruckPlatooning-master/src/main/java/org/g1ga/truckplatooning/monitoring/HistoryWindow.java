@@ -0,0 +1,52 @@
+package org.g1ga.truckplatooning.monitoring;
+
+/**
+ * Diese Klasse ist das Ergebnis einer Abfrage der TelemetryHistory. Sie enthält die Werte eines Trucks in einem
+ * Zeitfenster in der Auflösung einer Stufe. Der i-te Eintrag aller Arrays gehört zum selben Zeitpunkt.
+ */
+public class HistoryWindow {
+
+    public final int cruisePort;
+    //Auflösung der Einträge in Millisekunden
+    public final long resolution;
+    //Beginn des Zeitraums eines Eintrags in Millisekunden seit 1970
+    public final long[] timestamps;
+    public final double[] speedAvg;
+    public final int[] speedMin;
+    public final int[] speedMax;
+    //letzte Werte im Zeitraum eines Eintrags
+    public final int[] targetSpeed;
+    public final double[] traveledDistance;
+
+    /**
+     * Konstruktor, der ein neues Ergebnis mit den übergebenen Werten erzeugt.
+     * @param cruisePort Port des Cruise Services
+     * @param resolution Auflösung in Millisekunden
+     * @param timestamps Beginn des Zeitraums der Einträge
+     * @param speedAvg durchschnittliche Geschwindigkeit
+     * @param speedMin minimale Geschwindigkeit
+     * @param speedMax maximale Geschwindigkeit
+     * @param targetSpeed angestrebte Geschwindigkeit
+     * @param traveledDistance zurückgelegte Strecke in km
+     */
+    public HistoryWindow(int cruisePort, long resolution, long[] timestamps, double[] speedAvg, int[] speedMin, int[] speedMax,
+                         int[] targetSpeed, double[] traveledDistance) {
+        this.cruisePort = cruisePort;
+        this.resolution = resolution;
+        this.timestamps = timestamps;
+        this.speedAvg = speedAvg;
+        this.speedMin = speedMin;
+        this.speedMax = speedMax;
+        this.targetSpeed = targetSpeed;
+        this.traveledDistance = traveledDistance;
+    }
+
+    /**
+     * Gibt die Anzahl der Einträge zurück
+     * @return Anzahl der Einträge
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+}
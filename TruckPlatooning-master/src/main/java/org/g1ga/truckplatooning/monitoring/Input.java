@@ -7,6 +7,8 @@ public class Input {
 
     //Geschwindigkeit in km/h
     private double pace;
+    //ID des Platoons, dessen Leader gesteuert wird
+    private int platoon = 1;
 
     /**
      * Die Methode gibt die Geschwindigkeit aus dem Formular zurück.
@@ -24,4 +26,20 @@ public class Input {
         this.pace=pace;
     }
 
+    /**
+     * Die Methode gibt das Platoon aus dem Formular zurück.
+     * @return ID des gesteuerten Platoons
+     */
+    public int getPlatoon() {
+        return platoon;
+    }
+
+    /**
+     * Methode wird im monitoring.html genutzt, um das Platoon zu setzen.
+     * @param platoon ID des zu steuernden Platoons
+     */
+    public void setPlatoon(int platoon) {
+        this.platoon = platoon;
+    }
+
 }
@@ -0,0 +1,49 @@
+package org.g1ga.truckplatooning.monitoring;
+
+import org.g1ga.truckplatooning.truck.platoon.PlatooningContact;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Diese Klasse hält den Zustand eines Platoons im Monitoring: seine Trucks, seinen Leader und den Lock, der
+ * gleichzeitiges Steuern des Leaders verbietet. Jedes Platoon hat einen eigenen Lock, sodass die Steuerung eines
+ * Platoons die anderen nicht aufhält.
+ */
+public class MonitoredPlatoon {
+
+    private final int id;
+    //Registry, welche die Monitoring Models zur Anzeige auf der Website beinhaltet
+    private final TruckRegistry trucks = new TruckRegistry();
+    //Lock zur Synchronisierung; Verbietet gleichzeitiges Steuern des Leaders
+    private final ReentrantLock controlLock = new ReentrantLock(true);
+    private volatile PlatooningContact leaderContact;
+
+    /**
+     * Konstruktor, der ein leeres Platoon anlegt.
+     * @param id ID des Platoons
+     */
+    public MonitoredPlatoon(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public TruckRegistry getTrucks() {
+        return trucks;
+    }
+
+    public ReentrantLock getControlLock() {
+        return controlLock;
+    }
+
+    public PlatooningContact getLeaderContact() {
+        return leaderContact;
+    }
+
+    public void setLeaderContact(PlatooningContact leaderContact) {
+        this.leaderContact = leaderContact;
+    }
+
+}
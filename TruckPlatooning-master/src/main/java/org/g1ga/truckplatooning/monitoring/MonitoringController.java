@@ -2,49 +2,201 @@ package org.g1ga.truckplatooning.monitoring;
 
 
 import org.g1ga.truckplatooning.PathRegister;
+import org.g1ga.truckplatooning.RestClientFactory;
+import org.g1ga.truckplatooning.SpeedReportBatch;
+import org.g1ga.truckplatooning.TelemetryCodec;
 import org.g1ga.truckplatooning.Util;
 import org.g1ga.truckplatooning.truck.platoon.PlatooningContact;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 /**
  * Dieser Controller ist für die Verwaltung der Monitoring Schnittstelle zuständig. Er definiert die Methoden, die auf
  * dieser zur Verfügung stehen und empfängt sowohl Informationen von den einzelnen Trucks, gibt aer auch Informationen an
  * diese weiter.
+ * Ein MonitoringService zeigt beliebig viele Platoons an. Nachrichten der Platooning Services und Anfragen der Website
+ * geben die ID ihres Platoons als Parameter platoon an (Standard 1). Geschwindigkeitsmeldungen enthalten nur den
+ * Cruise Port und werden über den Index des PlatoonDirectory dem richtigen Platoon zugeordnet.
  */
 @Controller
 public class MonitoringController {
 
-    final RestTemplate REST_TEMPLATE = new RestTemplate();
+    final RestTemplate REST_TEMPLATE = RestClientFactory.getRestTemplate();
 
-    PlatooningContact leaderContact;
+    //Zeitfenster der Historie, falls bei einer Abfrage kein Beginn angegeben ist
+    private static final long DEFAULT_HISTORY_WINDOW = TimeUnit.MINUTES.toMillis(5);
 
-    //Synchronisierte Liste, welche Monitoring Models zur Anzeige auf der Website beinhaltet
-    List<MonitoringModel> trucks = Collections.synchronizedList(new ArrayList<>());
+    private static final int DEFAULT_PLATOON = Integer.parseInt(PathRegister.DEFAULT_PLATOON);
 
-    //Locks zur Synchronisierung; Verbieten gleichzeitigen Zugriff auf wichtige Ressourcen
-    ReentrantLock truckListLock = new ReentrantLock(true);
-    ReentrantLock controlTruckLock = new ReentrantLock(true);
+    //Alle angezeigten Platoons mit ihren Trucks, ihrem Leader und ihrem Lock zum Steuern des Leaders
+    final PlatoonDirectory platoons = new PlatoonDirectory();
+    private final int maxPlatoons;
+
+    //Verlauf der Telemetrie-Daten aller Trucks in den Stufen 1 s, 10 s und 1 min
+    final TelemetryHistory history;
+    private final ScheduledExecutorService execHistory = Executors.newSingleThreadScheduledExecutor();
+    //Persistentes Log aller Ereignisse, null wenn monitoring.log.dir nicht gesetzt ist
+    private TelemetryLog telemetryLog;
+
+    /**
+     * Konstruktor, der die Historie mit den konfigurierten Kapazitäten anlegt und jede Sekunde die aktuellen Werte
+     * aller Trucks aufzeichnet. Ist ein Verzeichnis für das Telemetrie-Log angegeben, werden zunächst die Trucks und
+     * ihr Verlauf aus dem Log wiederhergestellt und alle weiteren Ereignisse in das Log geschrieben.
+     * @param capacitySeconds Einträge der Stufe mit 1 s Auflösung
+     * @param capacityTenSeconds Einträge der Stufe mit 10 s Auflösung
+     * @param capacityMinutes Einträge der Stufe mit 1 min Auflösung
+     * @param logDirectory Verzeichnis des Telemetrie-Logs, leer um das Log abzuschalten
+     * @param logSegmentBytes Größe eines Segments des Telemetrie-Logs
+     * @param logMaxSegments Anzahl der Segmente, die aufbewahrt werden
+     * @param maxPlatoons maximale Anzahl an Platoons, die angezeigt werden
+     */
+    public MonitoringController(@Value("${monitoring.history.capacity-1s:600}") int capacitySeconds,
+                                @Value("${monitoring.history.capacity-10s:720}") int capacityTenSeconds,
+                                @Value("${monitoring.history.capacity-1m:1440}") int capacityMinutes,
+                                @Value("${monitoring.log.dir:}") String logDirectory,
+                                @Value("${monitoring.log.segment-bytes:67108864}") int logSegmentBytes,
+                                @Value("${monitoring.log.max-segments:16}") int logMaxSegments,
+                                @Value("${monitoring.max-platoons:1024}") int maxPlatoons) {
+        this.maxPlatoons = maxPlatoons;
+        history = new TelemetryHistory(new long[] {1000, 10000, 60000}, new int[] {capacitySeconds, capacityTenSeconds, capacityMinutes});
+        if (!logDirectory.isEmpty()) {
+            Path directory = Paths.get(logDirectory);
+            try {
+                long replayed = TelemetryLog.replay(directory, new LogReplay());
+                System.out.println(replayed + " Einträge aus dem Telemetrie-Log " + directory.toAbsolutePath() + " wiederhergestellt.");
+                telemetryLog = new TelemetryLog(directory, logSegmentBytes, logMaxSegments, this::writeCheckpoint);
+            } catch (IOException e) {
+                System.err.println("Telemetrie-Log konnte nicht geöffnet werden: " + e.getMessage());
+            }
+        }
+        execHistory.scheduleAtFixedRate(this::recordHistory, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        execHistory.shutdownNow();
+        if (telemetryLog != null) {
+            try {
+                telemetryLog.close();
+            } catch (IOException e) {
+                System.err.println("Telemetrie-Log konnte nicht geschlossen werden: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Schreibt ein Ereignis in das Telemetrie-Log, falls es eingeschaltet ist.
+     */
+    private void log(byte type, int cruisePort, long timestamp, int value1, int value2, long value3) {
+        if (telemetryLog != null) {
+            telemetryLog.append(type, cruisePort, timestamp, value1, value2, value3);
+        }
+    }
+
+    /**
+     * Schreibt die aktuellen Mitglieder aller Platoons an den Anfang eines neuen Segments des Telemetrie-Logs. Ohne
+     * diesen Checkpoint kennt das Replay keine Trucks mehr, sobald das Segment mit ihren MEMBERS Einträgen gelöscht ist.
+     * Die Mitglieder werden ohne den Lock der Platoons gelesen, da setList ihn beim Schreiben in das Log bereits hält.
+     * Jedes Platoon ersetzt seine Liste als Ganzes, daher ist die gelesene Liste immer vollständig.
+     * @param log das Telemetrie-Log, in dem gerade ein neues Segment angelegt wurde
+     */
+    private void writeCheckpoint(TelemetryLog log) {
+        long now = System.currentTimeMillis();
+        for (MonitoredPlatoon platoon : platoons.getAll()) {
+            List<MonitoringModel> trucks = platoon.getTrucks().getOrdered();
+            if (trucks.isEmpty()) {
+                continue;
+            }
+            log.append(TelemetryLog.MEMBERS, 0, now, trucks.size(), platoon.getId(), 0);
+            for (MonitoringModel monitoringModel : trucks) {
+                log.append(TelemetryLog.MEMBER, monitoringModel.getCruisePort(), now, monitoringModel.getPlatoonPort(), 0, monitoringModel.getPid());
+            }
+        }
+    }
+
+    /**
+     * Zeichnet die aktuellen Werte aller Trucks in der Historie auf und löscht Verläufe von Trucks, die länger als der
+     * gesamte Zeitraum der Historie nicht mehr gemeldet wurden.
+     */
+    private void recordHistory() {
+        long now = System.currentTimeMillis();
+        for (MonitoredPlatoon platoon : platoons.getAll()) {
+            for (MonitoringModel monitoringModel : platoon.getTrucks().getOrdered()) {
+                history.record(monitoringModel.getCruisePort(), now, monitoringModel.getSpeed(), monitoringModel.getTargetSpeed(),
+                        monitoringModel.getTraveledDistance());
+            }
+        }
+        history.evict(now - history.getRetention());
+    }
+
+    /**
+     * Gibt das Platoon zurück, an das sich eine Nachricht richtet, und legt es beim ersten Zugriff an.
+     * @param platoonId ID des Platoons
+     * @return das Platoon
+     */
+    private MonitoredPlatoon platoon(int platoonId) {
+        MonitoredPlatoon platoon = platoons.get(platoonId);
+        if (platoon != null) {
+            return platoon;
+        }
+        if (platoonId <= 0 || platoons.size() >= maxPlatoons) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Platoon " + platoonId + " kann nicht angelegt werden.");
+        }
+        return platoons.getOrCreate(platoonId);
+    }
+
+    /**
+     * Gibt die Trucks eines Platoons in der Reihenfolge des Platoons zurück
+     * @param platoonId ID des Platoons
+     * @return geordnete Liste der Trucks, leer falls das Platoon nicht bekannt ist
+     */
+    private List<MonitoringModel> getOrdered(int platoonId) {
+        MonitoredPlatoon platoon = platoons.get(platoonId);
+        return platoon != null ? platoon.getTrucks().getOrdered() : Collections.emptyList();
+    }
+
+    /**
+     * Füllt das Model der Monitoring-Website mit den Trucks eines Platoons.
+     * @param model das Model der Monitoring-Website
+     * @param platoonId ID des angezeigten Platoons
+     * @return aktuelle Website monitoring.html
+     */
+    private String render(Model model, int platoonId) {
+        Input input = new Input();
+        input.setPlatoon(platoonId);
+        model.addAttribute("input", input);
+        model.addAttribute("trucks", getOrdered(platoonId));
+        model.addAttribute("platoonIds", platoons.getAll().stream().map(MonitoredPlatoon::getId).sorted().collect(Collectors.toList()));
+        return "monitoring";
+    }
 
     /**
      * Gibt monitoring.html bei url: http://localhost:1112 wieder
+     * @param platoonId ID des angezeigten Platoons
      * @param model das Model der Monitoring-Website
      * @return aktuelle Website monitoring.html
      */
     @GetMapping("/")
-    private String monitoring(Model model) {
-        model.addAttribute("input", new Input());
-        model.addAttribute("trucks", trucks);
-
-        return "monitoring";
+    private String monitoring(@RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId,
+                              Model model) {
+        return render(model, platoonId);
     }
 
     /**
@@ -52,21 +204,25 @@ public class MonitoringController {
      * um dem Monitoring Informationen über alle aktuellen Trucks zu senden. Der Methode wird dazu die gefüllte, geordnete
      * Liste am Ende des Wahlalgorithmus übergeben.
      * @param platooningContacts Liste der Trucks mit PID, Cruise Port und Platoon Port
+     * @param platoonId ID des Platoons
      * @param model das Model der Monitoring-Website
      * @return aktuelle Website monitoring.html
      */
     @PutMapping(PathRegister.SET_LIST)
-    private String setList(@RequestBody List<PlatooningContact> platooningContacts, Model model){
-        return enqueueTask(truckListLock, () -> {
-            leaderContact = Collections.max(platooningContacts);
-            trucks.clear();
+    private String setList(@RequestBody List<PlatooningContact> platooningContacts,
+                           @RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId,
+                           Model model){
+        MonitoredPlatoon platoon = platoon(platoonId);
+        long now = System.currentTimeMillis();
+        //Leader und Mitglieder werden gemeinsam geändert, Geschwindigkeitsmeldungen warten darauf nicht
+        synchronized (platoons) {
+            platoons.replaceMembers(platoon, platooningContacts);
+            log(TelemetryLog.MEMBERS, 0, now, platooningContacts.size(), platoonId, 0);
             for (PlatooningContact platooningContact : platooningContacts) {
-                trucks.add(new MonitoringModel(platooningContact.getPlatooningPid(), platooningContact.getPlatooningPort(), platooningContact.getCruisePort(), 0));
+                log(TelemetryLog.MEMBER, platooningContact.getCruisePort(), now, platooningContact.getPlatooningPort(), 0, platooningContact.getPlatooningPid());
             }
-            model.addAttribute("input", new Input());
-            model.addAttribute("trucks", trucks);
-            return "monitoring";
-        });
+        }
+        return render(model, platoonId);
     }
 
     /**
@@ -78,37 +234,82 @@ public class MonitoringController {
      */
     @PutMapping(PathRegister.SET_SPEED)
     private String setSpeed(@PathVariable("cruisePort") int cruisePort, @RequestBody int speed, Model model){
-        return enqueueTask(truckListLock, () -> {
-            for (MonitoringModel monitoringModel: trucks) {
-                if (monitoringModel.getCruisePort() == cruisePort) {
-                    monitoringModel.setSpeed(speed);
-                }
+        MonitoredPlatoon platoon = platoons.getPlatoonByCruisePort(cruisePort);
+        MonitoringModel monitoringModel = platoon != null ? platoon.getTrucks().getByCruisePort(cruisePort) : null;
+        if (monitoringModel != null) {
+            monitoringModel.setSpeed(speed);
+            log(TelemetryLog.SPEED, cruisePort, System.currentTimeMillis(), speed, monitoringModel.getTargetSpeed(), 0);
+        }
+        return render(model, platoon != null ? platoon.getId() : DEFAULT_PLATOON);
+    }
+
+    /**
+     * Übernimmt mehrere Geschwindigkeitsmeldungen auf einmal, z.B. die vom Leader gesammelten Meldungen seines Platoons.
+     * Meldungen unbekannter Trucks und veraltete Meldungen werden verworfen.
+     * @param reports Meldungen im Format von SpeedReportBatch
+     * @return Anzahl der übernommenen Meldungen
+     */
+    @PutMapping(PathRegister.SET_SPEED_BATCH)
+    @ResponseBody
+    private int setSpeedBatch(@RequestBody long[] reports) {
+        int applied = 0;
+        for (int i = 0; i < SpeedReportBatch.size(reports); i++) {
+            int cruisePort = (int) SpeedReportBatch.get(reports, i, SpeedReportBatch.CRUISE_PORT);
+            long timestamp = SpeedReportBatch.get(reports, i, SpeedReportBatch.TIMESTAMP);
+            int speed = (int) SpeedReportBatch.get(reports, i, SpeedReportBatch.SPEED);
+            int targetSpeed = (int) SpeedReportBatch.get(reports, i, SpeedReportBatch.TARGET_SPEED);
+            MonitoringModel monitoringModel = platoons.getByCruisePort(cruisePort);
+            if (monitoringModel != null && monitoringModel.applyReport(timestamp, speed, targetSpeed)) {
+                log(TelemetryLog.SPEED, cruisePort, timestamp, speed, targetSpeed, 0);
+                applied++;
             }
-            model.addAttribute("input", new Input());
-            model.addAttribute("trucks", trucks);
-            return "monitoring";
-        });
+        }
+        return applied;
+    }
+
+    /**
+     * Übernimmt die über den Telemetrie-Stream empfangenen Werte eines Trucks. Es werden nur die Werte gesetzt, die in
+     * der Maske enthalten sind.
+     * @param cruisePort Port des Cruise Services, der die Werte sendet
+     * @param mask Bitmaske der enthaltenen Werte (siehe TelemetryCodec)
+     * @param speed aktuelle Geschwindigkeit
+     * @param targetSpeed angestrebte Geschwindigkeit
+     * @param gap zu schließende Lücke in km
+     * @param traveledDistance zurückgelegte Strecke in km
+     */
+    void applyTelemetry(int cruisePort, int mask, int speed, int targetSpeed, double gap, double traveledDistance) {
+        MonitoringModel monitoringModel = platoons.getByCruisePort(cruisePort);
+        if (monitoringModel == null) {
+            return;
+        }
+        if ((mask & TelemetryCodec.SPEED) != 0) monitoringModel.setSpeed(speed);
+        if ((mask & TelemetryCodec.TARGET_SPEED) != 0) monitoringModel.setTargetSpeed(targetSpeed);
+        if ((mask & TelemetryCodec.GAP) != 0) monitoringModel.setGap(gap);
+        if ((mask & TelemetryCodec.TRAVELED_DISTANCE) != 0) monitoringModel.setTraveledDistance(traveledDistance);
+        log(TelemetryLog.TELEMETRY, cruisePort, System.currentTimeMillis(), monitoringModel.getSpeed(), monitoringModel.getTargetSpeed(),
+                Double.doubleToRawLongBits(monitoringModel.getTraveledDistance()));
     }
 
     /**
      * Diese Methode wird benötigt, um einenTruck, falls er aufällt, aus der Anzeige zu entfernen. Dies geschieht, falls
      * einem anderen Truck beim Healthcheck auffällt, dass sein Vordermann nicht mehr da ist.
      * @param platooningPort Port des Platoons das entfernt werden soll
+     * @param platoonId ID des Platoons, in dem der Truck gefahren ist
      * @param model das Model der Monitoring-Website
      * @return aktuelle Website monitoring.html
      */
     @DeleteMapping(PathRegister.REMOVE_TRUCK_BY_PLATOON)
-    private String removeTruckByPlatoon(@PathVariable int platooningPort, Model model){
-        return enqueueTask(truckListLock, () -> {
-            trucks.removeIf(monitoringModel -> monitoringModel.getPlatoonPort() == platooningPort);
-            if (platooningPort == leaderContact.getPlatooningPort() && trucks.size() == 1) {
-                MonitoringModel truck = trucks.get(0);
-                leaderContact = new PlatooningContact(truck.getPlatoonPort(), truck.getCruisePort(), truck.getPid());
-            }
-            model.addAttribute("input", new Input());
-            model.addAttribute("trucks", trucks);
-            return "monitoring";
-        });
+    private String removeTruckByPlatoon(@PathVariable int platooningPort,
+                                        @RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId,
+                                        Model model){
+        MonitoredPlatoon platoon = platoons.get(platoonId);
+        if (platoon != null) {
+            synchronized (platoons) {
+                platoons.remove(platoon, platooningPort);
+                log(TelemetryLog.REMOVE, 0, System.currentTimeMillis(), platooningPort, platoonId, 0);
+            }
+        }
+        return render(model, platoonId);
     }
 
     /**
@@ -121,13 +322,16 @@ public class MonitoringController {
      */
     @RequestMapping(value="/", method=RequestMethod.POST, params="action=speedup")
     private String accelerate(@ModelAttribute Input input, Model model) {
-        return enqueueTask(controlTruckLock, () -> {
-            if(!trucks.isEmpty()){
-                String url = Util.getBaseUriComponentsBuilder(leaderContact.getCruisePort(), PathRegister.SPEEDUP).toUriString();
+        MonitoredPlatoon platoon = platoons.get(input.getPlatoon());
+        if (platoon == null) {
+            return render(model, input.getPlatoon());
+        }
+        return enqueueTask(platoon.getControlLock(), () -> {
+            if(!platoon.getTrucks().isEmpty()){
+                String url = Util.getBaseUriComponentsBuilder(platoon.getLeaderContact().getCruisePort(), PathRegister.SPEEDUP).toUriString();
                 REST_TEMPLATE.put(url, input.getPace());
             }
-            model.addAttribute("trucks", trucks);
-            return "monitoring";
+            return render(model, platoon.getId());
         });
     }
 
@@ -141,13 +345,16 @@ public class MonitoringController {
      */
     @RequestMapping(value="/", method=RequestMethod.POST, params="action=slowdown")
     private String brake(@ModelAttribute Input input, Model model) {
-        return enqueueTask(controlTruckLock, () -> {
-            if(!trucks.isEmpty()){
-                String url = Util.getBaseUriComponentsBuilder(leaderContact.getCruisePort(), PathRegister.SLOW_DOWN).toUriString();
+        MonitoredPlatoon platoon = platoons.get(input.getPlatoon());
+        if (platoon == null) {
+            return render(model, input.getPlatoon());
+        }
+        return enqueueTask(platoon.getControlLock(), () -> {
+            if(!platoon.getTrucks().isEmpty()){
+                String url = Util.getBaseUriComponentsBuilder(platoon.getLeaderContact().getCruisePort(), PathRegister.SLOW_DOWN).toUriString();
                 REST_TEMPLATE.put(url, input.getPace());
             }
-            model.addAttribute("trucks", trucks);
-            return "monitoring";
+            return render(model, platoon.getId());
         });
     }
 
@@ -160,13 +367,16 @@ public class MonitoringController {
      */
     @RequestMapping(value="/", method=RequestMethod.POST, params="action=stop")
     private String stop(@ModelAttribute Input input, Model model) {
-        return enqueueTask(controlTruckLock, () -> {
-            if(!trucks.isEmpty()){
-                String url = Util.getBaseUriComponentsBuilder(leaderContact.getCruisePort(), PathRegister.STOP).toUriString();
+        MonitoredPlatoon platoon = platoons.get(input.getPlatoon());
+        if (platoon == null) {
+            return render(model, input.getPlatoon());
+        }
+        return enqueueTask(platoon.getControlLock(), () -> {
+            if(!platoon.getTrucks().isEmpty()){
+                String url = Util.getBaseUriComponentsBuilder(platoon.getLeaderContact().getCruisePort(), PathRegister.STOP).toUriString();
                 REST_TEMPLATE.put(url, null);
             }
-            model.addAttribute("trucks", trucks);
-            return "monitoring";
+            return render(model, platoon.getId());
         });
     }
 
@@ -181,6 +391,61 @@ public class MonitoringController {
         return Util.enqueueTask(lock, callable);
     }
 
+    /**
+     * Stellt beim Start die Trucks, ihre letzten Werte und ihren Verlauf aus dem Telemetrie-Log wieder her.
+     */
+    private class LogReplay implements TelemetryLog.Sink {
+
+        private List<PlatooningContact> members;
+        private int expectedMembers;
+        private MonitoredPlatoon membersPlatoon;
+
+        @Override
+        public void accept(byte type, int cruisePort, long timestamp, int value1, int value2, long value3) {
+            MonitoringModel monitoringModel;
+            switch (type) {
+                case TelemetryLog.MEMBERS:
+                    members = new ArrayList<>(value1);
+                    expectedMembers = value1;
+                    membersPlatoon = platoons.getOrCreate(value2 != 0 ? value2 : DEFAULT_PLATOON);
+                    break;
+                case TelemetryLog.MEMBER:
+                    if (members != null) {
+                        members.add(new PlatooningContact(value1, cruisePort, value3));
+                        if (members.size() == expectedMembers) {
+                            platoons.replaceMembers(membersPlatoon, members);
+                            members = null;
+                        }
+                    }
+                    break;
+                case TelemetryLog.REMOVE:
+                    platoons.remove(platoons.getOrCreate(value2 != 0 ? value2 : DEFAULT_PLATOON), value1);
+                    break;
+                case TelemetryLog.SPEED:
+                    monitoringModel = platoons.getByCruisePort(cruisePort);
+                    double distance = 0;
+                    if (monitoringModel != null) {
+                        monitoringModel.applyReport(timestamp, value1, value2);
+                        distance = monitoringModel.getTraveledDistance();
+                    }
+                    history.record(cruisePort, timestamp, value1, value2, distance);
+                    break;
+                case TelemetryLog.TELEMETRY:
+                    double traveledDistance = Double.longBitsToDouble(value3);
+                    monitoringModel = platoons.getByCruisePort(cruisePort);
+                    if (monitoringModel != null) {
+                        monitoringModel.setSpeed(value1);
+                        monitoringModel.setTargetSpeed(value2);
+                        monitoringModel.setTraveledDistance(traveledDistance);
+                    }
+                    history.record(cruisePort, timestamp, value1, value2, traveledDistance);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
     /**
      * Diese innere Klasse definiert die Methode, um die Informationen eines Trucks anzeigen zu lassen. Die Methode ist nicht
      * in der Hauptklasse, da die Hauptklass wegen Thymelaf immer den Return der Website erwartet
@@ -191,16 +456,78 @@ public class MonitoringController {
         /**
          * Diese Methode zeigt die hinterlegten Informationen für einen gewünschten Truck an
          * @param truckPos die Position des Trucks im Platoon (0...x)
+         * @param platoonId ID des Platoons
          * @return Informationen des Trucks
          */
         @GetMapping(PathRegister.GET_TRUCK_DATA)
-        private MonitoringModel getTruckData(@PathVariable int truckPos) {
-            return enqueueTask(truckListLock, () -> {
-                if((truckPos >= 0) && (truckPos < trucks.size())) {
-                    return trucks.get(truckPos);
+        private MonitoringModel getTruckData(@PathVariable int truckPos,
+                                             @RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+            MonitoredPlatoon platoon = platoons.get(platoonId);
+            return platoon != null ? platoon.getTrucks().getByPosition(truckPos) : null;
+        }
+
+        /**
+         * Diese Methode gibt alle angezeigten Platoons mit der Anzahl ihrer Trucks zurück
+         * @return ID des Platoons -> Anzahl der Trucks
+         */
+        @GetMapping(PathRegister.GET_PLATOONS)
+        private Map<Integer, Integer> getPlatoons() {
+            Map<Integer, Integer> sizes = new TreeMap<>();
+            for (MonitoredPlatoon platoon : platoons.getAll()) {
+                sizes.put(platoon.getId(), platoon.getTrucks().getOrdered().size());
+            }
+            return sizes;
+        }
+
+        /**
+         * Diese Methode gibt den Verlauf der Werte eines Trucks in einem Zeitfenster zurück
+         * @param cruisePort Port des Cruise Services
+         * @param from Beginn des Zeitfensters in Millisekunden seit 1970, standardmäßig 5 Minuten vor to
+         * @param to Ende des Zeitfensters in Millisekunden seit 1970, standardmäßig jetzt
+         * @param resolution gewünschte Auflösung in Millisekunden, standardmäßig die feinste, die das Fenster abdeckt
+         * @return Verlauf des Trucks, null falls zu dem Truck kein Verlauf vorhanden ist
+         */
+        @GetMapping(PathRegister.GET_TRUCK_HISTORY)
+        private HistoryWindow getTruckHistory(@PathVariable int cruisePort, @RequestParam(defaultValue = "0") long from,
+                                              @RequestParam(defaultValue = "0") long to, @RequestParam(defaultValue = "0") long resolution) {
+            long end = to > 0 ? to : System.currentTimeMillis();
+            long start = from > 0 ? from : end - DEFAULT_HISTORY_WINDOW;
+            return history.query(cruisePort, start, end, resolution);
+        }
+
+        /**
+         * Diese Methode gibt den Verlauf aller Trucks eines Platoons in einem Zeitfenster zurück. Die Trucks des Platoons
+         * stehen in der Reihenfolge des Platoons am Anfang, danach folgen Trucks, die aktuell in keinem Platoon fahren.
+         * @param platoonId ID des Platoons
+         * @param from Beginn des Zeitfensters in Millisekunden seit 1970, standardmäßig 5 Minuten vor to
+         * @param to Ende des Zeitfensters in Millisekunden seit 1970, standardmäßig jetzt
+         * @param resolution gewünschte Auflösung in Millisekunden, standardmäßig die feinste, die das Fenster abdeckt
+         * @return Verläufe aller Trucks
+         */
+        @GetMapping(PathRegister.GET_PLATOON_HISTORY)
+        private List<HistoryWindow> getPlatoonHistory(@RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId,
+                                                      @RequestParam(defaultValue = "0") long from, @RequestParam(defaultValue = "0") long to,
+                                                      @RequestParam(defaultValue = "0") long resolution) {
+            long end = to > 0 ? to : System.currentTimeMillis();
+            long start = from > 0 ? from : end - DEFAULT_HISTORY_WINDOW;
+            Set<Integer> cruisePorts = new LinkedHashSet<>();
+            for (MonitoringModel monitoringModel : getOrdered(platoonId)) {
+                cruisePorts.add(monitoringModel.getCruisePort());
+            }
+            for (int cruisePort : history.getCruisePorts()) {
+                if (platoons.getPlatoonByCruisePort(cruisePort) == null) {
+                    cruisePorts.add(cruisePort);
                 }
-                return null;
-            });
+            }
+
+            List<HistoryWindow> windows = new ArrayList<>(cruisePorts.size());
+            for (int cruisePort : cruisePorts) {
+                HistoryWindow window = history.query(cruisePort, start, end, resolution);
+                if (window != null) {
+                    windows.add(window);
+                }
+            }
+            return windows;
         }
 
     }
@@ -12,7 +12,12 @@ public class MonitoringModel {
     public long pid;
     public int platoonPort;
     public int cruisePort;
-    public int speed;
+    public volatile int speed;
+    public volatile int targetSpeed;
+    public volatile double gap;
+    public volatile double traveledDistance;
+    //Zeitstempel der zuletzt übernommenen Geschwindigkeitsmeldung
+    private long reportTimestamp = Long.MIN_VALUE;
 
     /**
      * Konstruktor welcher neue Instanzen dieser Klasse erzeugt. Es müssen stets alle Attribute angegeben werden.
@@ -53,6 +58,79 @@ public class MonitoringModel {
         this.speed = speed;
     }
 
+    /**
+     * Gibt die Geschwindigkeit des Monitoring-Trucks zurück
+     * @return aktuelle Geschwindigkeit des Trucks
+     */
+    public int getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Gibt die angestrebte Geschwindigkeit des Monitoring-Trucks zurück
+     * @return angestrebte Geschwindigkeit des Trucks
+     */
+    public int getTargetSpeed() {
+        return targetSpeed;
+    }
+
+    /**
+     * Setzt die angestrebte Geschwindigkeit zur Anzeige des Monitoring-Trucks
+     * @param targetSpeed angestrebte Geschwindigkeit des Trucks
+     */
+    public void setTargetSpeed(int targetSpeed) {
+        this.targetSpeed = targetSpeed;
+    }
+
+    /**
+     * Gibt die Lücke zurück, die der Monitoring-Truck gerade schließt
+     * @return Lücke in km, 0 wenn keine Lücke geschlossen wird
+     */
+    public double getGap() {
+        return gap;
+    }
+
+    /**
+     * Setzt die Lücke, die der Monitoring-Truck gerade schließt
+     * @param gap Lücke in km
+     */
+    public void setGap(double gap) {
+        this.gap = gap;
+    }
+
+    /**
+     * Gibt die zurückgelegte Strecke des Monitoring-Trucks zurück
+     * @return Strecke in km
+     */
+    public double getTraveledDistance() {
+        return traveledDistance;
+    }
+
+    /**
+     * Setzt die zurückgelegte Strecke des Monitoring-Trucks
+     * @param traveledDistance Strecke in km
+     */
+    public void setTraveledDistance(double traveledDistance) {
+        this.traveledDistance = traveledDistance;
+    }
+
+    /**
+     * Übernimmt eine Geschwindigkeitsmeldung aus einer Batch, falls sie nicht älter ist als die zuletzt übernommene.
+     * @param timestamp Zeitpunkt der Messung in Millisekunden
+     * @param speed gemeldete Geschwindigkeit
+     * @param targetSpeed gemeldete angestrebte Geschwindigkeit
+     * @return true, wenn die Meldung übernommen wurde
+     */
+    public synchronized boolean applyReport(long timestamp, int speed, int targetSpeed) {
+        if (timestamp < reportTimestamp) {
+            return false;
+        }
+        reportTimestamp = timestamp;
+        this.speed = speed;
+        this.targetSpeed = targetSpeed;
+        return true;
+    }
+
     /**
      * Gibt die Prozess-ID des Monitoring-Trucks zurück
      * @return die Prozess ID
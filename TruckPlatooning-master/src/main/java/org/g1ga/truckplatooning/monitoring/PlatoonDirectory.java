@@ -0,0 +1,124 @@
+package org.g1ga.truckplatooning.monitoring;
+
+import org.g1ga.truckplatooning.truck.platoon.PlatooningContact;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Diese Klasse verwaltet alle Platoons, die der MonitoringService anzeigt. Jedes Platoon hat eine eigene TruckRegistry,
+ * zusätzlich gibt es einen Index vom Cruise Port auf das Platoon des Trucks. Geschwindigkeitsmeldungen, die nur den
+ * Cruise Port enthalten, finden ihren Truck damit ohne Lock und ohne die Platoons zu durchsuchen.
+ * Änderungen der Mitglieder sind selten und werden über die Instanz synchronisiert, da ein Truck dabei das Platoon
+ * wechseln kann und dann aus seinem alten Platoon entfernt wird.
+ */
+public class PlatoonDirectory {
+
+    //ID des Platoons -> Platoon
+    private final ConcurrentHashMap<Integer, MonitoredPlatoon> platoons = new ConcurrentHashMap<>();
+    //Cruise Port -> Platoon, in dem der Truck aktuell fährt
+    private final ConcurrentHashMap<Integer, MonitoredPlatoon> byCruisePort = new ConcurrentHashMap<>();
+
+    /**
+     * Gibt das Platoon mit der übergebenen ID zurück
+     * @param platoonId ID des Platoons
+     * @return das Platoon, null falls es nicht bekannt ist
+     */
+    public MonitoredPlatoon get(int platoonId) {
+        return platoons.get(platoonId);
+    }
+
+    /**
+     * Gibt das Platoon mit der übergebenen ID zurück und legt es beim ersten Zugriff an
+     * @param platoonId ID des Platoons
+     * @return das Platoon
+     */
+    public MonitoredPlatoon getOrCreate(int platoonId) {
+        return platoons.computeIfAbsent(platoonId, MonitoredPlatoon::new);
+    }
+
+    /**
+     * Gibt alle bekannten Platoons zurück
+     * @return die Platoons in beliebiger Reihenfolge
+     */
+    public Collection<MonitoredPlatoon> getAll() {
+        return Collections.unmodifiableCollection(platoons.values());
+    }
+
+    /**
+     * Gibt die Anzahl der bekannten Platoons zurück
+     * @return Anzahl der Platoons
+     */
+    public int size() {
+        return platoons.size();
+    }
+
+    /**
+     * Gibt das Model des Trucks mit dem übergebenen Cruise Port zurück, unabhängig davon in welchem Platoon er fährt
+     * @param cruisePort Port des Cruise Services
+     * @return das Model, null falls der Truck in keinem Platoon bekannt ist
+     */
+    public MonitoringModel getByCruisePort(int cruisePort) {
+        MonitoredPlatoon platoon = byCruisePort.get(cruisePort);
+        return platoon != null ? platoon.getTrucks().getByCruisePort(cruisePort) : null;
+    }
+
+    /**
+     * Gibt das Platoon zurück, in dem der Truck mit dem übergebenen Cruise Port aktuell fährt
+     * @param cruisePort Port des Cruise Services
+     * @return das Platoon, null falls der Truck in keinem Platoon bekannt ist
+     */
+    public MonitoredPlatoon getPlatoonByCruisePort(int cruisePort) {
+        return byCruisePort.get(cruisePort);
+    }
+
+    /**
+     * Ersetzt die Mitglieder eines Platoons durch die übergebene, geordnete Liste. Trucks, die bisher in einem anderen
+     * Platoon gefahren sind, werden dort entfernt.
+     * @param platoon das Platoon, dessen Mitglieder ersetzt werden
+     * @param platooningContacts die Trucks in der Reihenfolge des Platoons
+     */
+    public synchronized void replaceMembers(MonitoredPlatoon platoon, List<PlatooningContact> platooningContacts) {
+        for (PlatooningContact platooningContact : platooningContacts) {
+            MonitoredPlatoon previous = byCruisePort.get(platooningContact.getCruisePort());
+            if (previous != null && previous != platoon) {
+                MonitoringModel moved = previous.getTrucks().getByCruisePort(platooningContact.getCruisePort());
+                if (moved != null) {
+                    remove(previous, moved.getPlatoonPort());
+                }
+            }
+        }
+        for (MonitoringModel monitoringModel : platoon.getTrucks().getOrdered()) {
+            byCruisePort.remove(monitoringModel.getCruisePort(), platoon);
+        }
+        platoon.setLeaderContact(Collections.max(platooningContacts));
+        platoon.getTrucks().replaceAll(platooningContacts);
+        for (PlatooningContact platooningContact : platooningContacts) {
+            byCruisePort.put(platooningContact.getCruisePort(), platoon);
+        }
+    }
+
+    /**
+     * Entfernt einen Truck aus einem Platoon. Bleibt nur ein Truck übrig, wird dieser zum Leader.
+     * @param platoon das Platoon, aus dem der Truck entfernt wird
+     * @param platooningPort Port des Platooning Services des zu entfernenden Trucks
+     * @return das entfernte Model, null falls der Truck in dem Platoon nicht bekannt war
+     */
+    public synchronized MonitoringModel remove(MonitoredPlatoon platoon, int platooningPort) {
+        TruckRegistry trucks = platoon.getTrucks();
+        MonitoringModel removed = trucks.removeByPlatoonPort(platooningPort);
+        if (removed != null) {
+            byCruisePort.remove(removed.getCruisePort(), platoon);
+        }
+        List<MonitoringModel> remaining = trucks.getOrdered();
+        PlatooningContact leaderContact = platoon.getLeaderContact();
+        if (leaderContact != null && platooningPort == leaderContact.getPlatooningPort() && remaining.size() == 1) {
+            MonitoringModel truck = remaining.get(0);
+            platoon.setLeaderContact(new PlatooningContact(truck.getPlatoonPort(), truck.getCruisePort(), truck.getPid()));
+        }
+        return removed;
+    }
+
+}
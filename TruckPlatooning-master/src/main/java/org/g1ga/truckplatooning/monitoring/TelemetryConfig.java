@@ -0,0 +1,31 @@
+package org.g1ga.truckplatooning.monitoring;
+
+import org.g1ga.truckplatooning.PathRegister;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Diese Klasse registriert den Telemetrie-Stream des MonitoringServices unter dem Pfad PathRegister.TELEMETRY_STREAM.
+ */
+@Configuration
+@EnableWebSocket
+public class TelemetryConfig implements WebSocketConfigurer {
+
+    private final TelemetryHandler telemetryHandler;
+
+    /**
+     * Konstruktor, der den zu registrierenden Handler übergeben bekommt.
+     * @param telemetryHandler der Handler des Telemetrie-Streams
+     */
+    public TelemetryConfig(TelemetryHandler telemetryHandler) {
+        this.telemetryHandler = telemetryHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(telemetryHandler, PathRegister.TELEMETRY_STREAM);
+    }
+
+}
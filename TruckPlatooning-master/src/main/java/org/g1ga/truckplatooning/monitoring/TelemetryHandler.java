@@ -0,0 +1,32 @@
+package org.g1ga.truckplatooning.monitoring;
+
+import org.g1ga.truckplatooning.TelemetryCodec;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+/**
+ * Dieser Handler empfängt die Telemetrie-Streams der Cruise Services. Jede Nachricht enthält einen oder mehrere Frames
+ * im Format des TelemetryCodec, deren Werte direkt an den MonitoringController übergeben werden.
+ * Da die Trucks eine dauerhafte Verbindung halten, belegt ein Truck zwischen zwei Nachrichten keinen Tomcat-Thread.
+ */
+@Component
+public class TelemetryHandler extends BinaryWebSocketHandler {
+
+    private final MonitoringController monitoringController;
+
+    /**
+     * Konstruktor, der den Handler mit dem MonitoringController verbindet.
+     * @param monitoringController der Controller, an den die Werte übergeben werden
+     */
+    public TelemetryHandler(MonitoringController monitoringController) {
+        this.monitoringController = monitoringController;
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        TelemetryCodec.decode(message.getPayload(), monitoringController::applyTelemetry);
+    }
+
+}
@@ -0,0 +1,227 @@
+package org.g1ga.truckplatooning.monitoring;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Diese Klasse speichert den Verlauf der Telemetrie-Daten aller Trucks im Speicher. Pro Truck gibt es drei Stufen mit
+ * unterschiedlicher Auflösung (standardmäßig 1 s, 10 s und 1 min). Jede Stufe ist ein Ringpuffer aus primitiven Arrays
+ * fester Größe, sodass beim Aufzeichnen keine Objekte erzeugt werden und alte Einträge automatisch überschrieben werden.
+ * Jede Meldung fließt in alle Stufen ein, die gröberen Stufen speichern pro Zeitraum Durchschnitt, Minimum und Maximum
+ * der Geschwindigkeit sowie die letzten Werte von targetSpeed und der zurückgelegten Strecke.
+ */
+public class TelemetryHistory {
+
+    private final long[] resolutions;
+    private final int[] capacities;
+    private final Map<Integer, TruckHistory> histories = new ConcurrentHashMap<>();
+
+    /**
+     * Konstruktor, der eine Historie mit den übergebenen Stufen erstellt. Die Stufen müssen nach Auflösung aufsteigend
+     * sortiert sein.
+     * @param resolutions Auflösung jeder Stufe in Millisekunden
+     * @param capacities Anzahl der Einträge jeder Stufe
+     */
+    public TelemetryHistory(long[] resolutions, int[] capacities) {
+        if (resolutions.length == 0 || resolutions.length != capacities.length) {
+            throw new IllegalArgumentException("Zu jeder Stufe muss genau eine Kapazität angegeben werden.");
+        }
+        this.resolutions = resolutions.clone();
+        this.capacities = capacities.clone();
+    }
+
+    /**
+     * Zeichnet eine Meldung eines Trucks auf.
+     * @param cruisePort Port des Cruise Services
+     * @param timestamp Zeitpunkt der Meldung in Millisekunden
+     * @param speed Geschwindigkeit
+     * @param targetSpeed angestrebte Geschwindigkeit
+     * @param traveledDistance zurückgelegte Strecke in km
+     */
+    public void record(int cruisePort, long timestamp, int speed, int targetSpeed, double traveledDistance) {
+        histories.computeIfAbsent(cruisePort, port -> new TruckHistory(resolutions, capacities))
+                .record(timestamp, speed, targetSpeed, traveledDistance);
+    }
+
+    /**
+     * Gibt den Verlauf eines Trucks im übergebenen Zeitfenster zurück.
+     * Ist keine Auflösung angegeben, wird die feinste Stufe gewählt, die das Zeitfenster vollständig abdeckt. Reicht
+     * keine Stufe so weit zurück, wird die gröbste Stufe verwendet.
+     * @param cruisePort Port des Cruise Services
+     * @param from Beginn des Zeitfensters in Millisekunden (inklusive)
+     * @param to Ende des Zeitfensters in Millisekunden (inklusive)
+     * @param resolution gewünschte Auflösung in Millisekunden, 0 für automatische Auswahl
+     * @return der Verlauf, null falls der Truck nicht bekannt ist
+     */
+    public HistoryWindow query(int cruisePort, long from, long to, long resolution) {
+        TruckHistory history = histories.get(cruisePort);
+        if (history == null) {
+            return null;
+        }
+        return history.query(cruisePort, from, to, resolution);
+    }
+
+    /**
+     * Gibt die Ports aller Trucks zurück, zu denen ein Verlauf vorhanden ist
+     * @return Cruise Ports
+     */
+    public Set<Integer> getCruisePorts() {
+        return Collections.unmodifiableSet(histories.keySet());
+    }
+
+    /**
+     * Löscht die Verläufe aller Trucks, deren letzte Meldung vor dem übergebenen Zeitpunkt liegt.
+     * @param olderThan Zeitpunkt in Millisekunden
+     */
+    public void evict(long olderThan) {
+        histories.values().removeIf(history -> history.getLastTimestamp() < olderThan);
+    }
+
+    /**
+     * Gibt die Zeitspanne zurück, welche die gröbste Stufe abdeckt
+     * @return Zeitspanne in Millisekunden
+     */
+    public long getRetention() {
+        int last = resolutions.length - 1;
+        return resolutions[last] * capacities[last];
+    }
+
+    /**
+     * Verlauf eines einzelnen Trucks über alle Stufen.
+     */
+    private static class TruckHistory {
+
+        private final Tier[] tiers;
+        private long lastTimestamp = Long.MIN_VALUE;
+
+        private TruckHistory(long[] resolutions, int[] capacities) {
+            tiers = new Tier[resolutions.length];
+            for (int i = 0; i < tiers.length; i++) {
+                tiers[i] = new Tier(resolutions[i], capacities[i]);
+            }
+        }
+
+        private synchronized void record(long timestamp, int speed, int targetSpeed, double traveledDistance) {
+            if (timestamp < lastTimestamp) {
+                //Verspätete Meldungen werden verworfen, damit die Einträge zeitlich geordnet bleiben
+                return;
+            }
+            lastTimestamp = timestamp;
+            for (Tier tier : tiers) {
+                tier.record(timestamp, speed, targetSpeed, traveledDistance);
+            }
+        }
+
+        private synchronized HistoryWindow query(int cruisePort, long from, long to, long resolution) {
+            Tier selected = null;
+            for (Tier tier : tiers) {
+                if (resolution > 0 ? tier.resolution >= resolution : tier.covers(from)) {
+                    selected = tier;
+                    break;
+                }
+            }
+            if (selected == null) {
+                selected = tiers[tiers.length - 1];
+            }
+            return selected.query(cruisePort, from, to);
+        }
+
+        private synchronized long getLastTimestamp() {
+            return lastTimestamp;
+        }
+    }
+
+    /**
+     * Ringpuffer einer Stufe. Der Eintrag des aktuellen Zeitraums wird solange fortgeschrieben, bis eine Meldung aus
+     * einem späteren Zeitraum eintrifft.
+     */
+    private static class Tier {
+
+        private final long resolution;
+        private final long[] timestamps;
+        private final double[] speedSum;
+        private final int[] count;
+        private final int[] speedMin;
+        private final int[] speedMax;
+        private final int[] targetSpeed;
+        private final double[] traveledDistance;
+        //Index des aktuellen Eintrags und Anzahl der belegten Einträge
+        private int head = -1;
+        private int size = 0;
+
+        private Tier(long resolution, int capacity) {
+            this.resolution = resolution;
+            timestamps = new long[capacity];
+            speedSum = new double[capacity];
+            count = new int[capacity];
+            speedMin = new int[capacity];
+            speedMax = new int[capacity];
+            targetSpeed = new int[capacity];
+            traveledDistance = new double[capacity];
+        }
+
+        private void record(long timestamp, int speed, int currentTargetSpeed, double currentTraveledDistance) {
+            long bucket = timestamp - Math.floorMod(timestamp, resolution);
+            if (head < 0 || timestamps[head] != bucket) {
+                head = (head + 1) % timestamps.length;
+                size = Math.min(size + 1, timestamps.length);
+                timestamps[head] = bucket;
+                speedSum[head] = 0;
+                count[head] = 0;
+                speedMin[head] = Integer.MAX_VALUE;
+                speedMax[head] = Integer.MIN_VALUE;
+            }
+            speedSum[head] += speed;
+            count[head]++;
+            speedMin[head] = Math.min(speedMin[head], speed);
+            speedMax[head] = Math.max(speedMax[head], speed);
+            targetSpeed[head] = currentTargetSpeed;
+            traveledDistance[head] = currentTraveledDistance;
+        }
+
+        //Prüft, ob die Stufe alle Einträge ab dem übergebenen Zeitpunkt enthält. Solange der Ringpuffer nicht voll ist,
+        //wurde noch nichts überschrieben
+        private boolean covers(long from) {
+            return size < timestamps.length || timestamps[oldest()] <= from;
+        }
+
+        private int oldest() {
+            return Math.floorMod(head - size + 1, timestamps.length);
+        }
+
+        private HistoryWindow query(int cruisePort, long from, long to) {
+            //Der Eintrag, in dessen Zeitraum from liegt, gehört noch zum Fenster
+            long firstBucket = from - Math.floorMod(from, resolution);
+            int first = -1;
+            int matches = 0;
+            for (int i = 0; i < size; i++) {
+                int index = (oldest() + i) % timestamps.length;
+                if (timestamps[index] >= firstBucket && timestamps[index] <= to) {
+                    if (first < 0) {
+                        first = i;
+                    }
+                    matches++;
+                }
+            }
+
+            long[] resultTimestamps = new long[matches];
+            double[] resultSpeedAvg = new double[matches];
+            int[] resultSpeedMin = new int[matches];
+            int[] resultSpeedMax = new int[matches];
+            int[] resultTargetSpeed = new int[matches];
+            double[] resultTraveledDistance = new double[matches];
+            for (int i = 0; i < matches; i++) {
+                int index = (oldest() + first + i) % timestamps.length;
+                resultTimestamps[i] = timestamps[index];
+                resultSpeedAvg[i] = speedSum[index] / count[index];
+                resultSpeedMin[i] = speedMin[index];
+                resultSpeedMax[i] = speedMax[index];
+                resultTargetSpeed[i] = targetSpeed[index];
+                resultTraveledDistance[i] = traveledDistance[index];
+            }
+            return new HistoryWindow(cruisePort, resolution, resultTimestamps, resultSpeedAvg, resultSpeedMin, resultSpeedMax,
+                    resultTargetSpeed, resultTraveledDistance);
+        }
+    }
+
+}
@@ -0,0 +1,268 @@
+package org.g1ga.truckplatooning.monitoring;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Diese Klasse schreibt die Ereignisse des MonitoringServices in ein Append-only Log auf der Festplatte, damit die
+ * Historie einen Neustart übersteht. Das Log besteht aus Segment-Dateien fester Größe, die per Memory Mapping in den
+ * Speicher eingeblendet werden. Ein Eintrag wird damit lediglich in den Speicher kopiert, das Schreiben auf die
+ * Festplatte übernimmt das Betriebssystem. Ist ein Segment voll, wird ein neues angelegt und das älteste gelöscht,
+ * sobald mehr als die erlaubte Anzahl an Segmenten vorhanden ist. Damit ein Replay auch ohne die gelöschten Segmente
+ * den vollständigen Stand kennt, beginnt jedes neue Segment mit einem Checkpoint, z.B. den aktuellen Mitgliedern.
+ * Jeder Eintrag ist RECORD_SIZE Bytes groß:
+ * <pre>
+ * byte type | 3 byte frei | int cruisePort | long timestamp | int value1 | int value2 | long value3
+ * </pre>
+ * Ein Eintrag mit type 0 markiert das Ende der geschriebenen Daten eines Segments.
+ */
+public class TelemetryLog implements AutoCloseable {
+
+    public static final int RECORD_SIZE = 32;
+
+    //value1 = speed, value2 = targetSpeed
+    public static final byte SPEED = 1;
+    //value1 = speed, value2 = targetSpeed, value3 = traveledDistance (Double.doubleToRawLongBits)
+    public static final byte TELEMETRY = 2;
+    //Beginn einer neuen Liste von Trucks, value1 = Anzahl der folgenden MEMBER Einträge, value2 = ID des Platoons (0 in älteren Logs: Platoon 1)
+    public static final byte MEMBERS = 3;
+    //value1 = platoonPort, value3 = pid
+    public static final byte MEMBER = 4;
+    //value1 = platoonPort, value2 = ID des Platoons (0 in älteren Logs: Platoon 1)
+    public static final byte REMOVE = 5;
+
+    private static final String PREFIX = "telemetry-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    //Schreibt den Checkpoint zu Beginn eines neuen Segments, null falls keiner benötigt wird
+    private final Checkpoint checkpoint;
+    private boolean checkpointing = false;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+
+    /**
+     * Öffnet das Log im übergebenen Verzeichnis. Existiert bereits ein Segment, wird hinter dem letzten Eintrag
+     * weitergeschrieben.
+     * @param directory Verzeichnis der Segmente, wird bei Bedarf angelegt
+     * @param segmentSize Größe eines Segments in Bytes, wird auf ein Vielfaches von RECORD_SIZE abgerundet
+     * @param maxSegments maximale Anzahl an Segmenten, die aufbewahrt werden
+     * @throws IOException falls das Verzeichnis oder das Segment nicht geöffnet werden kann
+     */
+    public TelemetryLog(Path directory, int segmentSize, int maxSegments) throws IOException {
+        this(directory, segmentSize, maxSegments, null);
+    }
+
+    /**
+     * Öffnet das Log im übergebenen Verzeichnis. Existiert bereits ein Segment, wird hinter dem letzten Eintrag
+     * weitergeschrieben. Zu Beginn jedes weiteren Segments wird der übergebene Checkpoint geschrieben.
+     * @param directory Verzeichnis der Segmente, wird bei Bedarf angelegt
+     * @param segmentSize Größe eines Segments in Bytes, wird auf ein Vielfaches von RECORD_SIZE abgerundet
+     * @param maxSegments maximale Anzahl an Segmenten, die aufbewahrt werden
+     * @param checkpoint schreibt den aktuellen Stand an den Anfang eines neuen Segments, null für keinen Checkpoint
+     * @throws IOException falls das Verzeichnis oder das Segment nicht geöffnet werden kann
+     */
+    public TelemetryLog(Path directory, int segmentSize, int maxSegments, Checkpoint checkpoint) throws IOException {
+        if (segmentSize < RECORD_SIZE || maxSegments < 1) {
+            throw new IllegalArgumentException("Ein Segment muss mindestens einen Eintrag fassen und es muss mindestens ein Segment geben.");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        this.maxSegments = maxSegments;
+        this.checkpoint = checkpoint;
+        Files.createDirectories(directory);
+
+        List<Path> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            openSegment(parseIndex(segments.get(segments.size() - 1)));
+            while (segment.hasRemaining() && segment.get(segment.position()) != 0) {
+                segment.position(segment.position() + RECORD_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Hängt einen Eintrag an das Log an.
+     * @param type Art des Eintrags
+     * @param cruisePort Port des Cruise Services
+     * @param timestamp Zeitpunkt in Millisekunden
+     * @param value1 erster Wert, Bedeutung abhängig von type
+     * @param value2 zweiter Wert, Bedeutung abhängig von type
+     * @param value3 dritter Wert, Bedeutung abhängig von type
+     */
+    public synchronized void append(byte type, int cruisePort, long timestamp, int value1, int value2, long value3) {
+        if (segment == null) {
+            return;
+        }
+        try {
+            if (!segment.hasRemaining()) {
+                roll();
+                writeCheckpoint();
+                //Füllt der Checkpoint das ganze Segment, folgt der Eintrag im nächsten
+                if (!segment.hasRemaining()) {
+                    roll();
+                }
+            }
+            int position = segment.position();
+            //Der Typ wird zuletzt geschrieben, damit ein halb geschriebener Eintrag nie als gültig gelesen wird
+            segment.putInt(position + 4, cruisePort);
+            segment.putLong(position + 8, timestamp);
+            segment.putInt(position + 16, value1);
+            segment.putInt(position + 20, value2);
+            segment.putLong(position + 24, value3);
+            segment.put(position, type);
+            segment.position(position + RECORD_SIZE);
+        } catch (IOException e) {
+            System.err.println("Telemetrie-Log konnte nicht geschrieben werden: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Schreibt alle Einträge des aktuellen Segments auf die Festplatte.
+     */
+    public synchronized void force() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Schreibt das aktuelle Segment auf die Festplatte und schließt das Log.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+            channel.close();
+        }
+    }
+
+    private void roll() throws IOException {
+        segment.force();
+        channel.close();
+        openSegment(segmentIndex + 1);
+
+        List<Path> segments = listSegments(directory);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Schreibt den Checkpoint in das gerade angelegte Segment. Einträge des Checkpoints, die selbst ein neues Segment
+     * anlegen, lösen keinen weiteren Checkpoint aus.
+     */
+    private void writeCheckpoint() {
+        if (checkpoint == null || checkpointing) {
+            return;
+        }
+        checkpointing = true;
+        try {
+            checkpoint.write(this);
+        } finally {
+            checkpointing = false;
+        }
+    }
+
+    private void openSegment(long index) throws IOException {
+        segmentIndex = index;
+        channel = FileChannel.open(segmentPath(directory, index), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    /**
+     * Liest alle Einträge im übergebenen Verzeichnis in der Reihenfolge, in der sie geschrieben wurden.
+     * @param directory Verzeichnis der Segmente
+     * @param sink Empfänger der gelesenen Einträge
+     * @return Anzahl der gelesenen Einträge
+     * @throws IOException falls ein Segment nicht gelesen werden kann
+     */
+    public static long replay(Path directory, Sink sink) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        long count = 0;
+        for (Path path : listSegments(directory)) {
+            try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                for (int position = 0; position + RECORD_SIZE <= buffer.limit(); position += RECORD_SIZE) {
+                    byte type = buffer.get(position);
+                    if (type == 0) {
+                        break;
+                    }
+                    sink.accept(type, buffer.getInt(position + 4), buffer.getLong(position + 8), buffer.getInt(position + 16),
+                            buffer.getInt(position + 20), buffer.getLong(position + 24));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        //Die Indizes haben eine feste Länge, daher entspricht die Sortierung nach Namen der Reihenfolge der Segmente
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static Path segmentPath(Path directory, long index) {
+        return directory.resolve(String.format("%s%019d%s", PREFIX, index, SUFFIX));
+    }
+
+    private static long parseIndex(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Schreibt den aktuellen Stand an den Anfang eines neuen Segments.
+     */
+    @FunctionalInterface
+    public interface Checkpoint {
+
+        /**
+         * Wird nach dem Anlegen eines neuen Segments aufgerufen, noch bevor der auslösende Eintrag geschrieben wird.
+         * @param log das Log, in das der Stand mit append geschrieben wird
+         */
+        void write(TelemetryLog log);
+    }
+
+    /**
+     * Empfänger der beim Replay gelesenen Einträge.
+     */
+    @FunctionalInterface
+    public interface Sink {
+
+        /**
+         * Wird für jeden gelesenen Eintrag aufgerufen.
+         * @param type Art des Eintrags
+         * @param cruisePort Port des Cruise Services
+         * @param timestamp Zeitpunkt in Millisekunden
+         * @param value1 erster Wert, Bedeutung abhängig von type
+         * @param value2 zweiter Wert, Bedeutung abhängig von type
+         * @param value3 dritter Wert, Bedeutung abhängig von type
+         */
+        void accept(byte type, int cruisePort, long timestamp, int value1, int value2, long value3);
+    }
+
+}
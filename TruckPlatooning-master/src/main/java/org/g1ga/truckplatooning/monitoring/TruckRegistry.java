@@ -0,0 +1,129 @@
+package org.g1ga.truckplatooning.monitoring;
+
+import org.g1ga.truckplatooning.truck.platoon.PlatooningContact;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diese Klasse verwaltet die Monitoring Models aller Trucks. Die Trucks sind sowohl über den Cruise Port als auch über
+ * den Platooning Port in O(1) auffindbar, sodass Geschwindigkeitsmeldungen ohne Lock direkt in das passende Model
+ * geschrieben werden. Zusätzlich wird eine nach der Position im Platoon geordnete Liste gehalten. Beide Maps und die
+ * Liste sind unveränderlich und werden bei jeder Änderung der Mitglieder gemeinsam über eine einzige volatile Referenz
+ * ersetzt. Lesende Zugriffe blockieren dadurch nie und sehen nie einen halb ersetzten Zustand.
+ */
+public class TruckRegistry {
+
+    private volatile Members members = new Members(Collections.emptyList());
+
+    /**
+     * Ersetzt alle Trucks durch die übergebene, geordnete Liste. Die bereits bekannten Werte von Trucks, die weiterhin
+     * im Platoon sind, bleiben erhalten.
+     * @param platooningContacts die Trucks in der Reihenfolge des Platoons
+     */
+    public synchronized void replaceAll(List<PlatooningContact> platooningContacts) {
+        Members current = members;
+        List<MonitoringModel> newOrdered = new ArrayList<>(platooningContacts.size());
+        for (PlatooningContact platooningContact : platooningContacts) {
+            MonitoringModel monitoringModel = new MonitoringModel(platooningContact.getPlatooningPid(), platooningContact.getPlatooningPort(), platooningContact.getCruisePort(), 0);
+            MonitoringModel old = current.byCruisePort.get(platooningContact.getCruisePort());
+            if (old != null) {
+                monitoringModel.setSpeed(old.getSpeed());
+                monitoringModel.setTargetSpeed(old.getTargetSpeed());
+                monitoringModel.setGap(old.getGap());
+                monitoringModel.setTraveledDistance(old.getTraveledDistance());
+            }
+            newOrdered.add(monitoringModel);
+        }
+        members = new Members(newOrdered);
+    }
+
+    /**
+     * Entfernt den Truck mit dem übergebenen Platooning Port.
+     * @param platoonPort Port des Platooning Services des zu entfernenden Trucks
+     * @return das entfernte Model, null falls der Truck nicht bekannt war
+     */
+    public synchronized MonitoringModel removeByPlatoonPort(int platoonPort) {
+        Members current = members;
+        MonitoringModel removed = current.byPlatoonPort.get(platoonPort);
+        if (removed != null) {
+            List<MonitoringModel> newOrdered = new ArrayList<>(current.ordered);
+            newOrdered.remove(removed);
+            members = new Members(newOrdered);
+        }
+        return removed;
+    }
+
+    /**
+     * Gibt das Model des Trucks mit dem übergebenen Cruise Port zurück
+     * @param cruisePort Port des Cruise Services
+     * @return das Model, null falls der Truck nicht bekannt ist
+     */
+    public MonitoringModel getByCruisePort(int cruisePort) {
+        return members.byCruisePort.get(cruisePort);
+    }
+
+    /**
+     * Gibt das Model des Trucks mit dem übergebenen Platooning Port zurück
+     * @param platoonPort Port des Platooning Services
+     * @return das Model, null falls der Truck nicht bekannt ist
+     */
+    public MonitoringModel getByPlatoonPort(int platoonPort) {
+        return members.byPlatoonPort.get(platoonPort);
+    }
+
+    /**
+     * Gibt den Truck an der übergebenen Position im Platoon zurück
+     * @param truckPos Position im Platoon (0...x)
+     * @return das Model, null falls es die Position nicht gibt
+     */
+    public MonitoringModel getByPosition(int truckPos) {
+        List<MonitoringModel> current = members.ordered;
+        if (truckPos >= 0 && truckPos < current.size()) {
+            return current.get(truckPos);
+        }
+        return null;
+    }
+
+    /**
+     * Gibt alle Trucks in der Reihenfolge des Platoons zurück. Die Liste ist unveränderlich und bleibt auch bei späteren
+     * Änderungen der Mitglieder gleich.
+     * @return geordnete Liste der Trucks
+     */
+    public List<MonitoringModel> getOrdered() {
+        return members.ordered;
+    }
+
+    /**
+     * Gibt zurück, ob aktuell kein Truck bekannt ist
+     * @return true, wenn kein Truck bekannt ist
+     */
+    public boolean isEmpty() {
+        return members.ordered.isEmpty();
+    }
+
+    /**
+     * Unveränderlicher Stand der Mitglieder mit den Maps für beide Ports und der geordneten Liste.
+     */
+    private static final class Members {
+        private final Map<Integer, MonitoringModel> byCruisePort;
+        private final Map<Integer, MonitoringModel> byPlatoonPort;
+        private final List<MonitoringModel> ordered;
+
+        private Members(List<MonitoringModel> ordered) {
+            Map<Integer, MonitoringModel> cruisePorts = new HashMap<>();
+            Map<Integer, MonitoringModel> platoonPorts = new HashMap<>();
+            for (MonitoringModel monitoringModel : ordered) {
+                cruisePorts.put(monitoringModel.getCruisePort(), monitoringModel);
+                platoonPorts.put(monitoringModel.getPlatoonPort(), monitoringModel);
+            }
+            this.byCruisePort = Collections.unmodifiableMap(cruisePorts);
+            this.byPlatoonPort = Collections.unmodifiableMap(platoonPorts);
+            this.ordered = Collections.unmodifiableList(ordered);
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.g1ga.truckplatooning.registration;
+
+/**
+ * Ein Eintrag im replizierten Log der Registration-Replikate. Er enthält den Zustand eines Platoons nach einer Änderung
+ * oder, direkt nach einer Wahl, keinen Zustand. Mit diesem leeren Eintrag stellt ein neuer Leader fest, dass alle
+ * Einträge seiner Vorgänger bestätigt sind.
+ */
+public class LogEntry {
+
+    public long index;
+    public long term;
+    //null beim leeren Eintrag eines neuen Leaders
+    public PlatoonSnapshot snapshot;
+
+    public LogEntry() {}
+
+    LogEntry(long index, long term, PlatoonSnapshot snapshot) {
+        this.index = index;
+        this.term = term;
+        this.snapshot = snapshot;
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.g1ga.truckplatooning.registration;
+
+import org.g1ga.truckplatooning.PathRegister;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Wird geworfen, wenn ein Registration-Replikat eine Änderung nicht annehmen kann, weil es nicht Leader ist oder die
+ * Änderung nicht rechtzeitig bestätigt wurde. Die Antwort hat den Status 503 und nennt im Header
+ * PathRegister.REGISTRATION_LEADER_HEADER den Port des Leaders, falls dieser bekannt ist.
+ */
+public class NotLeaderException extends ResponseStatusException {
+
+    private final int leaderPort;
+
+    /**
+     * Konstruktor, der die Exception erstellt.
+     * @param leaderPort Port des bekannten Leaders, 0 falls gerade kein Leader bekannt ist
+     */
+    public NotLeaderException(int leaderPort) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "Dieses Registration-Replikat kann gerade keine Änderungen annehmen.");
+        this.leaderPort = leaderPort;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        if (leaderPort > 0) {
+            headers.set(PathRegister.REGISTRATION_LEADER_HEADER, String.valueOf(leaderPort));
+        }
+        return headers;
+    }
+
+}
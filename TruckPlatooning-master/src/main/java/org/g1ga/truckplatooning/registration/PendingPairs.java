@@ -0,0 +1,129 @@
+package org.g1ga.truckplatooning.registration;
+
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * Diese Klasse verwaltet die Platooning Services, die registriert sind, deren Cruise Service sich aber noch nicht
+ * angemeldet hat. Jeder Platooning Service erhält ein zufälliges Pairing-Token, über das sich sein Cruise Service ihm
+ * zuordnen kann. Meldet sich der Cruise Service nicht rechtzeitig, verfällt der Eintrag.
+ * Die Klasse ist nicht threadsicher und wird nur unter dem REGISTER_LOCK einer PlatoonRegistration verwendet.
+ */
+class PendingPairs {
+
+    private final long timeoutMs;
+    //Einträge in der Reihenfolge ihrer Registrierung
+    private final Map<Integer, PendingPair> pairs = new LinkedHashMap<>();
+    private final Random random = new SecureRandom();
+
+    /**
+     * Konstruktor, der eine leere Verwaltung erstellt.
+     * @param timeoutMs Zeit in Millisekunden, nach der ein Eintrag ohne Cruise Service verfällt
+     */
+    PendingPairs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Legt einen Eintrag für einen neuen Platooning Service an.
+     * @param platooningPort Port des Platooning Service
+     * @param now aktuelle Zeit in Millisekunden
+     * @return das Pairing-Token des Platooning Service
+     */
+    PendingPair add(int platooningPort, long now) {
+        int token;
+        do {
+            token = random.nextInt(Integer.MAX_VALUE - 1) + 1;
+        } while (pairs.containsKey(token));
+        PendingPair pair = new PendingPair(token, platooningPort, now);
+        pairs.put(token, pair);
+        return pair;
+    }
+
+    /**
+     * Gibt den Eintrag zum übergebenen Token zurück. Ohne Token wird der älteste Eintrag zurückgegeben.
+     * @param token Pairing-Token des Cruise Service, 0 falls keines angegeben wurde
+     * @return der Eintrag, null falls keiner existiert
+     */
+    PendingPair get(int token) {
+        if (token == 0) {
+            return pairs.isEmpty() ? null : pairs.values().iterator().next();
+        }
+        return pairs.get(token);
+    }
+
+    /**
+     * Entfernt einen Eintrag, weil sich der Cruise Service angemeldet hat.
+     * @param pair der zu entfernende Eintrag
+     */
+    void remove(PendingPair pair) {
+        pairs.remove(pair.token);
+    }
+
+    /**
+     * Entfernt alle Einträge, die länger als die erlaubte Zeit auf ihren Cruise Service warten.
+     * @param now aktuelle Zeit in Millisekunden
+     * @return die entfernten Einträge
+     */
+    List<PendingPair> expire(long now) {
+        List<PendingPair> expired = new ArrayList<>();
+        Iterator<PendingPair> iterator = pairs.values().iterator();
+        while (iterator.hasNext()) {
+            PendingPair pair = iterator.next();
+            if (now - pair.createdAt > timeoutMs) {
+                iterator.remove();
+                expired.add(pair);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Übernimmt einen Eintrag aus dem replizierten Zustand, nachdem dieses Replikat Leader geworden ist.
+     * @param token Pairing-Token des Platooning Service
+     * @param platooningPort Port des Platooning Service
+     * @param createdAt Zeitpunkt der Registrierung in Millisekunden
+     */
+    void restore(int token, int platooningPort, long createdAt) {
+        pairs.put(token, new PendingPair(token, platooningPort, createdAt));
+    }
+
+    /**
+     * Gibt alle Einträge in der Reihenfolge ihrer Registrierung für den replizierten Zustand zurück.
+     * @return Tripel aus Token, Port und Zeitpunkt der Registrierung
+     */
+    long[] toTriples() {
+        long[] triples = new long[pairs.size() * 3];
+        int i = 0;
+        for (PendingPair pair : pairs.values()) {
+            triples[i++] = pair.token;
+            triples[i++] = pair.platooningPort;
+            triples[i++] = pair.createdAt;
+        }
+        return triples;
+    }
+
+    boolean isEmpty() {
+        return pairs.isEmpty();
+    }
+
+    void clear() {
+        pairs.clear();
+    }
+
+    /**
+     * Ein Platooning Service, der auf seinen Cruise Service wartet.
+     */
+    static final class PendingPair {
+        final int token;
+        final int platooningPort;
+        final long createdAt;
+
+        private PendingPair(int token, int platooningPort, long createdAt) {
+            this.token = token;
+            this.platooningPort = platooningPort;
+            this.createdAt = createdAt;
+        }
+    }
+
+}
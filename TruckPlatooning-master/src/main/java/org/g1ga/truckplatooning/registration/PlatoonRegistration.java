@@ -0,0 +1,500 @@
+package org.g1ga.truckplatooning.registration;
+
+import org.g1ga.truckplatooning.Util;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Diese Klasse enthält den Zustand der Registrierung eines einzelnen Platoons: Leader-Ports, wartende Platooning
+ * Services, die Warteschlange der Cruise Services und den Status der Wahl. Jedes Platoon hat einen eigenen fairen Lock,
+ * sodass sich Registrierungen verschiedener Platoons nicht gegenseitig blockieren.
+ * Jede Änderung wird über den ReplicationNode an die übrigen Registration-Replikate verteilt und erst beantwortet, wenn
+ * eine Mehrheit sie bestätigt hat. Auf die Bestätigung wird außerhalb des Locks gewartet, sodass weitere Änderungen des
+ * Platoons nicht blockiert werden.
+ */
+class PlatoonRegistration {
+
+    private final int platoonId;
+    private final int batchWindowMs;
+    private final int queueLimit;
+    private final long waitTimeoutMs;
+    private final ReplicationNode replication;
+    private final long commitTimeoutMs;
+
+    private int platoonIdCounter = 1;
+    private int cruiseIdCounter = 1;
+    private int leaderPlatooningPort = -1;
+    private int leaderCruisePort = -1;
+    //Platooning-Services, die auf ihren Cruise-Service warten
+    private final PendingPairs pendingPairs;
+    //Pairing-Token des ersten Trucks, solange dessen Cruise-Service noch nicht angemeldet ist
+    private int leaderToken = 0;
+    private boolean firstPlatooningService = true;
+    private boolean firstCruiseService = true;
+    //Verhindert die Registrierung mehrerer Services des Platoons zur selben Zeit, was zu Fehlern geführt hätte.
+    private final ReentrantLock REGISTER_LOCK = new ReentrantLock(true);
+    private boolean runningElection = false;
+    //Anzahl der Trucks, die seit der letzten gemeinsamen Wahl zugelassen wurden
+    private int batchAdmitted = 0;
+    //Cruise-Services, die auf ihre Zulassung warten, in der Reihenfolge ihres Eingangs
+    private final Deque<QueuedRegistration> queuedCruiseServices = new ArrayDeque<>();
+    //Zugelassene Cruise-Services, die ihre Antwort erst erhalten, wenn ihre Zulassung bestätigt ist
+    private final List<QueuedRegistration> admittedCruiseServices = new ArrayList<>();
+    //Anzahl der an das Log übergebenen Änderungen, erkennt, ob nach einer Änderung weitere vorgeschlagen wurden
+    private long proposedMutations = 0;
+
+    /**
+     * Konstruktor, der die Registrierung eines neuen, leeren Platoons erstellt.
+     * @param platoonId ID des Platoons, wird für die Ausgaben verwendet
+     * @param pairingTimeoutMs Zeit, nach der ein Platooning-Service ohne Cruise-Service verworfen wird
+     * @param batchWindowMs Zeitfenster, in dem der Leader neue Trucks sammelt (0: eine Wahl pro Truck)
+     * @param queueLimit maximale Anzahl wartender Cruise-Services
+     * @param waitTimeoutMs Zeit, die ein Cruise-Service höchstens auf seine Zulassung wartet
+     * @param replication Replikat, über das die Änderungen verteilt werden
+     * @param commitTimeoutMs Zeit, die eine Änderung höchstens auf ihre Bestätigung wartet
+     */
+    PlatoonRegistration(int platoonId, long pairingTimeoutMs, int batchWindowMs, int queueLimit, long waitTimeoutMs,
+                        ReplicationNode replication, long commitTimeoutMs) {
+        this.platoonId = platoonId;
+        this.pendingPairs = new PendingPairs(pairingTimeoutMs);
+        this.batchWindowMs = batchWindowMs;
+        this.queueLimit = queueLimit;
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.replication = replication;
+        this.commitTimeoutMs = commitTimeoutMs;
+    }
+
+    /**
+     * Übernimmt den bestätigten Zustand, nachdem dieses Replikat Leader geworden ist. Wird aufgerufen, bevor die
+     * Registrierung Anfragen erhält.
+     * @param snapshot der bestätigte Zustand des Platoons
+     */
+    void restore(PlatoonSnapshot snapshot) {
+        enqueueTask(() -> apply(snapshot));
+    }
+
+    /**
+     * Übernimmt einen Zustand des Platoons. Muss unter dem REGISTER_LOCK aufgerufen werden.
+     * @param snapshot der Zustand, null für ein neues, leeres Platoon
+     */
+    private void apply(PlatoonSnapshot snapshot) {
+        if (snapshot == null) {
+            snapshot = new PlatoonSnapshot();
+            snapshot.platoonIdCounter = 1;
+            snapshot.cruiseIdCounter = 1;
+            snapshot.leaderPlatooningPort = -1;
+            snapshot.leaderCruisePort = -1;
+            snapshot.firstPlatooningService = true;
+            snapshot.firstCruiseService = true;
+        }
+        platoonIdCounter = snapshot.platoonIdCounter;
+        cruiseIdCounter = snapshot.cruiseIdCounter;
+        leaderPlatooningPort = snapshot.leaderPlatooningPort;
+        leaderCruisePort = snapshot.leaderCruisePort;
+        leaderToken = snapshot.leaderToken;
+        firstPlatooningService = snapshot.firstPlatooningService;
+        firstCruiseService = snapshot.firstCruiseService;
+        runningElection = snapshot.runningElection;
+        batchAdmitted = snapshot.batchAdmitted;
+        pendingPairs.clear();
+        long[] pairs = snapshot.pendingPairs;
+        for (int i = 0; pairs != null && i + 2 < pairs.length; i += 3) {
+            pendingPairs.restore((int) pairs[i], (int) pairs[i + 1], pairs[i + 2]);
+        }
+    }
+
+    /**
+     * Lehnt alle wartenden Cruise Services ab, weil dieses Replikat nicht mehr Leader ist. Sie erhalten den Status 503
+     * und stellen ihre Anfrage beim neuen Leader erneut.
+     * @param leaderPort Port des neuen Leaders, 0 falls er noch nicht bekannt ist
+     */
+    void abandon(int leaderPort) {
+        enqueueTask(() -> {
+            for (QueuedRegistration cruiseService : queuedCruiseServices) {
+                cruiseService.result.setErrorResult(new NotLeaderException(leaderPort));
+            }
+            queuedCruiseServices.clear();
+        });
+    }
+
+    /**
+     * Aktualisiert die Leader-Ports am Ende einer Wahl.
+     * @param platooningPort Port des neuen Leader-Platooning-Services
+     * @param cruisePort Port des CruiseService des neuen Leaders
+     */
+    void updateLeaderPort(int platooningPort, int cruisePort) {
+        enqueueMutation(() -> {
+            System.out.println("Platoon " + platoonId + ": Setze Leader-Port: PlatooningPort: " + platooningPort + ", CruisePort: " + cruisePort);
+            leaderPlatooningPort = platooningPort;
+            leaderCruisePort = cruisePort;
+        });
+    }
+
+    /**
+     * Setzt den Status der Wahl und lässt wartende Cruise-Services zu, falls keine Wahl mehr läuft.
+     * @param running true, solange eine Wahl läuft
+     */
+    void updateElectionStatus(boolean running) {
+        enqueueMutation(() -> {
+            runningElection = running;
+            admitQueuedServices();
+        });
+    }
+
+    /**
+     * Prüft, ob die gemeinsame Wahl für die gesammelten Trucks starten darf.
+     * @param joined Anzahl der Trucks, die sich seit der letzten Wahl beim Leader angemeldet haben
+     * @param force true, falls die Wahl auch dann starten soll, wenn noch nicht alle zugelassenen Trucks angemeldet sind
+     * @return true, falls die Wahl gestartet werden darf
+     */
+    Boolean closeBatch(int joined, boolean force) {
+        return enqueueMutation(() -> {
+            expirePendingPairs();
+            if (!force && joined < batchAdmitted) {
+                System.out.println("Platoon " + platoonId + ": Gemeinsame Wahl muss warten, angemeldet: " + joined + " von " + batchAdmitted + " Trucks");
+                return false;
+            }
+            System.out.println("Platoon " + platoonId + ": Schließe Gruppe mit " + joined + " neuen Trucks und starte die gemeinsame Wahl");
+            batchAdmitted = 0;
+            runningElection = true;
+            return true;
+        });
+    }
+
+    /**
+     * Registriert einen startenden Platooning Service. Der erste Truck wird automatisch zum Leader.
+     * @param port Port des neuen Platooning Service
+     * @return Integer Array mit Platoon-Counter, Leader-Port, batch-window-ms und Pairing-Token
+     */
+    int[] registerPlatooningService(int port) {
+        return enqueueMutation(() -> {
+            expirePendingPairs();
+            PendingPairs.PendingPair pair = pendingPairs.add(port, System.currentTimeMillis());
+            if (firstPlatooningService) {
+                leaderPlatooningPort = port;
+                leaderToken = pair.token;
+                firstPlatooningService = false;
+            } else if (batchWindowMs > 0) {
+                batchAdmitted++;
+            }
+            return new int[] {platoonIdCounter++, leaderPlatooningPort, batchWindowMs, pair.token};
+        });
+    }
+
+    /**
+     * Registriert einen startenden Cruise Service. Kann er nicht sofort zugelassen werden, wartet die Anfrage in der
+     * Warteschlange.
+     * @param port Port des neuen Cruise Service
+     * @param token Pairing-Token des zugehörigen Platooning Service, 0 falls keines angegeben wurde
+     * @param clientWaitMs Zeit, die der Cruise Service höchstens auf die Antwort wartet, 0 falls unbekannt. Die Anfrage
+     * wartet nie länger als registration.wait-timeout-ms des Servers und nie länger als der Cruise Service
+     * @return Integer Array mit Cruise-Counter, Platoon-Port, Cruise-Port des Leaders und Platoon-Port des Leaders,
+     * null wenn keine Platoon zum Token wartet
+     * @throws NotLeaderException falls die Änderung nicht bestätigt wurde; die Anfrage wird dann aus der Warteschlange
+     * entfernt, damit sie nicht später zugelassen wird, obwohl der Aufrufer bereits eine Antwort erhalten hat
+     */
+    DeferredResult<int[]> registerCruiseService(int port, int token, long clientWaitMs) {
+        long timeoutMs = clientWaitMs > 0 ? Math.min(clientWaitMs, waitTimeoutMs) : waitTimeoutMs;
+        QueuedRegistration[] queued = new QueuedRegistration[1];
+        try {
+            return enqueueMutation(() -> {
+                DeferredResult<int[]> result = new DeferredResult<>(timeoutMs);
+                expirePendingPairs();
+                if (pendingPairs.get(token) == null) {
+                    //Ohne passenden Platooning Service kann der Cruise Service nie zugelassen werden
+                    System.out.println("Platoon " + platoonId + ": Kein wartender PlatooningService für den CruiseService mit dem Port " + port + " und dem Token " + token);
+                    result.setResult(null);
+                } else if (queuedCruiseServices.size() >= queueLimit) {
+                    System.out.println("Platoon " + platoonId + ": Die Warteschlange ist voll, lehne CruiseService mit dem Port " + port + " ab.");
+                    result.setResult(null);
+                } else {
+                    QueuedRegistration registration = new QueuedRegistration(port, token, result);
+                    queuedCruiseServices.add(registration);
+                    queued[0] = registration;
+                    result.onTimeout(() -> enqueueTask(() -> {
+                        if (queuedCruiseServices.remove(registration)) {
+                            System.out.println("Platoon " + platoonId + ": CruiseService mit dem Port " + port + " wurde nicht rechtzeitig zugelassen.");
+                            result.setResult(null);
+                        }
+                    }));
+                    admitQueuedServices();
+                    if (queuedCruiseServices.contains(registration)) {
+                        System.out.println("Platoon " + platoonId + ": CruiseService mit dem Port " + port + " wartet auf die Zulassung, Position: " + queuedCruiseServices.size());
+                    }
+                }
+                return result;
+            });
+        } catch (NotLeaderException e) {
+            if (queued[0] != null) {
+                //Die beantwortete Anfrage wird von admitQueuedServices übersprungen, auch bevor sie entfernt ist
+                queued[0].result.setErrorResult(e);
+                enqueueTask(() -> queuedCruiseServices.remove(queued[0]));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Lässt einen Cruise Service zu, falls sein Platooning Service wartet und keine Wahl läuft. Solange der erste Truck
+     * nicht vollständig ist, wird nur dessen Cruise Service zugelassen, da sich alle anderen Trucks bei ihm anmelden.
+     * @param cruiseService die wartende Anfrage, erhält bei der Zulassung das verbrauchte Paar
+     * @return die Daten für den Cruise Service, null falls er noch nicht zugelassen werden kann
+     */
+    private int[] admitCruiseService(QueuedRegistration cruiseService) {
+        int port = cruiseService.port;
+        PendingPairs.PendingPair pair = pendingPairs.get(cruiseService.token);
+        if (pair == null || runningElection || (firstCruiseService && pair.token != leaderToken)) {
+            return null;
+        }
+        pendingPairs.remove(pair);
+        cruiseService.pair = pair;
+        if (firstCruiseService) {
+            leaderCruisePort = port;
+            firstCruiseService = false;
+            leaderToken = 0;
+            //Bis der Leader dem Platoon beigetreten ist, darf sich kein anderer Truck bei ihm anmelden
+            runningElection = true;
+        } else if (batchWindowMs <= 0) {
+            runningElection = true;
+        }
+        return new int[] {cruiseIdCounter++, pair.platooningPort, leaderCruisePort, leaderPlatooningPort};
+    }
+
+    /**
+     * Lässt wartende Cruise Services in der Reihenfolge ihrer Anfragen zu, solange das möglich ist. Anfragen, deren
+     * Platooning Service inzwischen verworfen wurde, werden abgelehnt, bereits beantwortete Anfragen verworfen. Wird nach
+     * jeder Änderung aufgerufen, die eine Zulassung ermöglichen kann.
+     */
+    private void admitQueuedServices() {
+        expirePendingPairs();
+        Iterator<QueuedRegistration> iterator = queuedCruiseServices.iterator();
+        while (iterator.hasNext()) {
+            QueuedRegistration cruiseService = iterator.next();
+            if (cruiseService.result.isSetOrExpired()) {
+                //Die Anfrage wurde bereits beantwortet, z.B. weil ihre Änderung nicht bestätigt wurde
+                iterator.remove();
+                continue;
+            }
+            if (pendingPairs.get(cruiseService.token) == null) {
+                iterator.remove();
+                cruiseService.result.setResult(null);
+                continue;
+            }
+            int[] data = admitCruiseService(cruiseService);
+            if (data != null) {
+                iterator.remove();
+                cruiseService.data = data;
+                admittedCruiseServices.add(cruiseService);
+            }
+        }
+    }
+
+    /**
+     * Verwirft alle Platooning Services, deren Cruise Service sich nicht innerhalb von registration.pairing-timeout-ms
+     * angemeldet hat. War darunter der erste Truck, wird der nächste wartende Truck zum Leader.
+     */
+    private void expirePendingPairs() {
+        for (PendingPairs.PendingPair pair : pendingPairs.expire(System.currentTimeMillis())) {
+            System.out.println("Platoon " + platoonId + ": PlatooningService mit dem Port " + pair.platooningPort + " hat keinen CruiseService erhalten und wird verworfen.");
+            if (pair.token == leaderToken) {
+                PendingPairs.PendingPair next = pendingPairs.get(0);
+                if (next != null) {
+                    leaderToken = next.token;
+                    leaderPlatooningPort = next.platooningPort;
+                } else {
+                    leaderToken = 0;
+                    leaderPlatooningPort = -1;
+                    firstPlatooningService = true;
+                }
+            }
+            if (batchWindowMs > 0 && batchAdmitted > 0) {
+                batchAdmitted--;
+            }
+        }
+    }
+
+    /**
+     * Setzt die Registrierung zurück, damit neue Trucks erkennen, dass das Platoon nicht existiert.
+     */
+    void reset() {
+        enqueueMutation(() -> {
+            System.out.println("Platoon " + platoonId + " wurde zurückgesetzt, weil kein Truck mehr im Platoon ist.");
+            platoonIdCounter = 1;
+            cruiseIdCounter = 1;
+            leaderPlatooningPort = -1;
+            leaderCruisePort = -1;
+            pendingPairs.clear();
+            leaderToken = 0;
+            batchAdmitted = 0;
+            firstPlatooningService = true;
+            firstCruiseService = true;
+            admitQueuedServices();
+        });
+    }
+
+    /**
+     * Erstellt den replizierten Zustand des Platoons. Muss unter dem REGISTER_LOCK aufgerufen werden.
+     * @return der vollständige Zustand ohne die Warteschlange der Cruise Services
+     */
+    private PlatoonSnapshot snapshot() {
+        PlatoonSnapshot snapshot = new PlatoonSnapshot();
+        snapshot.platoonId = platoonId;
+        snapshot.platoonIdCounter = platoonIdCounter;
+        snapshot.cruiseIdCounter = cruiseIdCounter;
+        snapshot.leaderPlatooningPort = leaderPlatooningPort;
+        snapshot.leaderCruisePort = leaderCruisePort;
+        snapshot.leaderToken = leaderToken;
+        snapshot.firstPlatooningService = firstPlatooningService;
+        snapshot.firstCruiseService = firstCruiseService;
+        snapshot.runningElection = runningElection;
+        snapshot.batchAdmitted = batchAdmitted;
+        snapshot.pendingPairs = pendingPairs.toTriples();
+        return snapshot;
+    }
+
+    /**
+     * Führt eine Änderung unter dem REGISTER_LOCK aus und hängt den neuen Zustand noch unter dem Lock an das replizierte
+     * Log an. Erst nachdem eine Mehrheit der Replikate den Zustand bestätigt hat, wird das Ergebnis zurückgegeben und
+     * die dabei zugelassenen Cruise Services erhalten ihre Antwort. Wird die Änderung nicht bestätigt, fällt die
+     * Registrierung auf den bestätigten Zustand zurück, sodass z.B. die Wiederholung einer Registrierung durch den
+     * RegistrationClient kein zweites wartendes Paar mit neuem Token erzeugt.
+     * @param callable die Änderung
+     * @param <T> Typ des Rückgabewertes
+     * @return Rückgabe der Änderung
+     * @throws NotLeaderException falls die Änderung nicht rechtzeitig bestätigt wurde
+     */
+    private <T> T enqueueMutation(Callable<T> callable) {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Boolean>[] commit = new CompletableFuture[1];
+        List<QueuedRegistration> admitted = new ArrayList<>();
+        long[] sequence = new long[1];
+        T result = enqueueTask(() -> {
+            sequence[0] = ++proposedMutations;
+            T value = callable.call();
+            commit[0] = replication.propose(snapshot());
+            admitted.addAll(admittedCruiseServices);
+            admittedCruiseServices.clear();
+            return value;
+        });
+        if (commit[0] == null || !awaitCommit(commit[0])) {
+            System.out.println("Platoon " + platoonId + ": Änderung wurde nicht bestätigt, dieses Replikat ist nicht Leader.");
+            enqueueTask(() -> {
+                //Spätere Änderungen bauen auf dieser auf, die letzte von ihnen setzt den Zustand zurück
+                if (proposedMutations == sequence[0]) {
+                    apply(replication.getCommitted(platoonId));
+                }
+            });
+            NotLeaderException exception = new NotLeaderException(replication.getLeaderPort());
+            admitted.forEach(cruiseService -> cruiseService.result.setErrorResult(exception));
+            throw exception;
+        }
+        for (QueuedRegistration cruiseService : admitted) {
+            if (!cruiseService.result.setResult(cruiseService.data)) {
+                revokeAdmission(cruiseService);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Nimmt die Zulassung eines Cruise Services zurück, dessen Anfrage abgelaufen war, bevor die Zulassung bestätigt
+     * wurde. Sein Platooning Service wartet wieder auf einen Cruise Service und die Cruise-ID wird erneut vergeben,
+     * falls seitdem kein anderer Cruise Service zugelassen wurde.
+     * @param cruiseService die zugelassene Anfrage ohne Empfänger
+     */
+    private void revokeAdmission(QueuedRegistration cruiseService) {
+        System.out.println("Platoon " + platoonId + ": CruiseService mit dem Port " + cruiseService.port + " wartet nicht mehr, die Zulassung wird zurückgenommen.");
+        PendingPairs.PendingPair pair = cruiseService.pair;
+        int cruiseId = cruiseService.data[0];
+        try {
+            enqueueMutation(() -> {
+                pendingPairs.restore(pair.token, pair.platooningPort, pair.createdAt);
+                if (cruiseIdCounter == cruiseId + 1) {
+                    cruiseIdCounter = cruiseId;
+                }
+                if (cruiseId == 1) {
+                    //Der erste Truck ist doch nicht vollständig
+                    firstCruiseService = true;
+                    leaderCruisePort = -1;
+                    leaderToken = pair.token;
+                    runningElection = false;
+                } else if (batchWindowMs <= 0) {
+                    //Die Wahl für diesen Truck wird nie stattfinden
+                    runningElection = false;
+                }
+                admitQueuedServices();
+            });
+        } catch (NotLeaderException e) {
+            //Der neue Leader übernimmt den bestätigten Zustand, das Paar verfällt dort nach registration.pairing-timeout-ms
+        }
+    }
+
+    private void enqueueMutation(Runnable runnable) {
+        enqueueMutation(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    private boolean awaitCommit(CompletableFuture<Boolean> commit) {
+        try {
+            return commit.get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Greift auf die Util Methode zu und lockt Bereiche, nutzt den REGISTER_LOCK, der ein fairer ReentrantLock ist,
+     * um eine Warteschlange für Anfragen zu ermöglichen. Im gelockten Bereich wird etwas zurückgegeben.
+     * @param callable das, was in dem kritischen Bereich ausgeführt werden soll
+     * @param <T> Typ des Rückgabewertes
+     * @return Rückgabe von den in dem in callable ausgeführten Code, null, falls eine Exception auftritt
+     */
+    private <T> T enqueueTask(Callable<T> callable) {
+        return Util.enqueueTask(REGISTER_LOCK, callable);
+    }
+
+    /**
+     * Greift auf die Util Methode zu und lockt Bereiche, nutzt den REGISTER_LOCK, der ein fairer ReentrantLock ist,
+     * um eine Warteschlange für Anfragen zu ermöglichen. Im gelockten Bereich wird nichts zurückgegeben.
+     * @param runnable das, was in dem kritischen Bereich ausgeführt werden soll
+     */
+    private void enqueueTask(Runnable runnable) {
+        Util.enqueueTask(REGISTER_LOCK, runnable);
+    }
+
+    /**
+     * Anfrage eines Cruise Services, die auf ihre Zulassung wartet.
+     */
+    private static final class QueuedRegistration {
+        private final int port;
+        private final int token;
+        private final DeferredResult<int[]> result;
+        //Antwort nach der Zulassung
+        private int[] data;
+        //Bei der Zulassung verbrauchtes Paar, damit die Zulassung zurückgenommen werden kann
+        private PendingPairs.PendingPair pair;
+
+        private QueuedRegistration(int port, int token, DeferredResult<int[]> result) {
+            this.port = port;
+            this.token = token;
+            this.result = result;
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.g1ga.truckplatooning.registration;
+
+/**
+ * Diese Klasse enthält den replizierten Zustand der Registrierung eines Platoons. Nach jeder Änderung schreibt der
+ * Leader der Registration-Replikate den vollständigen Zustand des Platoons in das Log, sodass die Follower ihn nur
+ * übernehmen müssen und nicht selbst berechnen. Die Warteschlange der Cruise-Services wird nicht repliziert, da die
+ * wartenden Anfragen an der Verbindung zum Leader hängen und nach einem Wechsel des Leaders neu gestellt werden.
+ */
+public class PlatoonSnapshot {
+
+    public int platoonId;
+    public int platoonIdCounter;
+    public int cruiseIdCounter;
+    public int leaderPlatooningPort;
+    public int leaderCruisePort;
+    public int leaderToken;
+    public boolean firstPlatooningService;
+    public boolean firstCruiseService;
+    public boolean runningElection;
+    public int batchAdmitted;
+    //Wartende Platooning-Services als Tripel aus Token, Port und Zeitpunkt der Registrierung
+    public long[] pendingPairs;
+
+}
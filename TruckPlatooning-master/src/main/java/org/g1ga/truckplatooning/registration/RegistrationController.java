@@ -1,150 +1,275 @@
 package org.g1ga.truckplatooning.registration;
 
+import org.g1ga.truckplatooning.ConsistentHashRing;
 import org.g1ga.truckplatooning.PathRegister;
-import org.g1ga.truckplatooning.Util;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.util.concurrent.Callable;
-import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Der Registration-Controller ist lediglich dafür da, neuen Services die benötigten Ports zum Platoonbeitritt mitzuteilen.
  * Er Macht damit die manuelle Eingabe der Ports hinfällig. Dazu teilt er zum einen neuen Cruise-Services den Port ihrer
  * Platooning-Services mit, zum anderen teilt er neuen Trucks den Port des aktuellen Leaders mit.
+ * Jeder Platooning-Service erhält ein Pairing-Token, mit dem sich sein Cruise-Service ihm zuordnet, sodass beliebig viele
+ * Trucks gleichzeitig starten können. Kann ein Cruise-Service gerade nicht zugelassen werden, z.B. weil eine Wahl läuft,
+ * wird seine Anfrage nicht abgelehnt, sondern in eine Warteschlange gestellt und beantwortet, sobald er an der Reihe ist.
+ * Ein Registration Server verwaltet beliebig viele unabhängige Platoons. Jede Anfrage gibt die ID ihres Platoons als
+ * Parameter platoon an (Standard 1). Der Zustand jedes Platoons liegt in einer eigenen PlatoonRegistration mit eigenem
+ * Lock, sodass sich die Platoons nicht gegenseitig ausbremsen.
+ * Läuft der MonitoringService als mehrere Shards, teilt der Registration Server den Trucks außerdem mit, welcher Shard ihr
+ * Platoon anzeigt. Die Platoons werden per Consistent Hashing auf die unter monitoring.shards konfigurierten Ports verteilt.
+ * Sind unter registration.replicas mehrere Replikate konfiguriert, wird die Registrierung über den ReplicationNode
+ * repliziert. Änderungen nimmt nur der Leader der Replikate an, alle anderen antworten mit dem Status 503 und nennen den
+ * Port des Leaders. Lesende Anfragen beantwortet jedes Replikat aus dem bestätigten Zustand.
  */
 @RestController
 public class RegistrationController {
 
-    private int platoonIdCounter = 1;
-    private int cruiseIdCounter = 1;
-    private int leaderPlatooningPort = -1;
-    private int leaderCruisePort = -1;
-    private int waitingPlatooningServicePort = -1;
-    private boolean firstPlatooningService = true;
-    private boolean firstCruiseService = true;
-    //Verhindert die Registrierung mehrerer Services zur selben Zeit, was zu Fehlern geführt hätte.
-    private final ReentrantLock REGISTER_LOCK = new ReentrantLock(true);
-    private boolean runningElection = false;
+    //ID des Platoons -> Zustand seiner Registrierung, nur solange dieses Replikat Leader ist
+    private final Map<Integer, PlatoonRegistration> platoons = new ConcurrentHashMap<>();
+    private final long pairingTimeoutMs;
+    //Ports der Shards des MonitoringServices
+    private final ConsistentHashRing monitoringShards;
+    //Zeitfenster, in dem der Leader neue Trucks sammelt, bevor er eine gemeinsame Wahl startet (0: eine Wahl pro Truck)
+    @Value("${registration.batch-window-ms:0}")
+    private int batchWindowMs;
+    @Value("${registration.queue-limit:64}")
+    private int queueLimit;
+    @Value("${registration.wait-timeout-ms:120000}")
+    private long waitTimeoutMs;
+    @Value("${registration.max-platoons:1024}")
+    private int maxPlatoons;
+    @Value("${server.port:1111}")
+    private int ownPort;
+    //Ports aller Registration-Replikate, leer falls die Registrierung nicht repliziert wird
+    @Value("${registration.replicas:}")
+    private Integer[] replicas;
+    @Value("${registration.replication.heartbeat-ms:100}")
+    private long heartbeatMs;
+    @Value("${registration.replication.election-timeout-ms:500}")
+    private long electionTimeoutMs;
+    @Value("${registration.commit-timeout-ms:2000}")
+    private long commitTimeoutMs;
+    //Verzeichnis für Term, Stimme und Log der Replikation, leer falls nichts gespeichert werden soll
+    @Value("${registration.replication.dir:replication-state}")
+    private String replicationDir;
+    private ReplicationNode replication;
+
+    /**
+     * Konstruktor, der den Controller erstellt.
+     * @param pairingTimeoutMs Zeit, nach der ein Platooning-Service ohne Cruise-Service verworfen wird
+     * @param monitoringShards Ports der Shards des MonitoringServices
+     */
+    public RegistrationController(@Value("${registration.pairing-timeout-ms:120000}") long pairingTimeoutMs,
+                                  @Value("${monitoring.shards:1112}") Integer[] monitoringShards) {
+        this.pairingTimeoutMs = pairingTimeoutMs;
+        this.monitoringShards = new ConsistentHashRing(Arrays.asList(monitoringShards));
+    }
+
+    /**
+     * Startet die Replikation, nachdem alle Properties gesetzt sind.
+     */
+    @PostConstruct
+    private void startReplication() {
+        replication = new ReplicationNode(ownPort, Arrays.asList(replicas), heartbeatMs, electionTimeoutMs,
+                this::restorePlatoons, this::abandonPlatoons, replicationDir.isBlank() ? null : Paths.get(replicationDir));
+    }
+
+    @PreDestroy
+    private void stopReplication() {
+        replication.shutdown();
+    }
+
+    ReplicationNode getReplication() {
+        return replication;
+    }
+
+    /**
+     * Baut die Registrierungen aller Platoons aus dem bestätigten Zustand neu auf, nachdem dieses Replikat Leader
+     * geworden ist.
+     */
+    private void restorePlatoons() {
+        platoons.clear();
+        replication.getCommitted().forEach((platoonId, snapshot) -> {
+            PlatoonRegistration registration = createRegistration(platoonId);
+            registration.restore(snapshot);
+            platoons.put(platoonId, registration);
+        });
+        System.out.println("Registrierung von " + platoons.size() + " Platoons aus dem replizierten Zustand übernommen.");
+    }
+
+    /**
+     * Verwirft die Registrierungen, nachdem dieses Replikat nicht mehr Leader ist. Wartende Cruise Services wenden sich
+     * an den neuen Leader.
+     */
+    private void abandonPlatoons() {
+        int leaderPort = replication.getLeaderPort();
+        platoons.values().forEach(registration -> registration.abandon(leaderPort));
+        platoons.clear();
+    }
+
+    private PlatoonRegistration createRegistration(int platoonId) {
+        return new PlatoonRegistration(platoonId, pairingTimeoutMs, batchWindowMs, queueLimit, waitTimeoutMs, replication, commitTimeoutMs);
+    }
+
+    /**
+     * Gibt die Registrierung des Platoons zurück und legt sie beim ersten Zugriff an.
+     * @param platoonId ID des Platoons
+     * @return die Registrierung des Platoons
+     * @throws NotLeaderException falls dieses Replikat keine Änderungen annehmen kann
+     */
+    private PlatoonRegistration platoon(int platoonId) {
+        if (!replication.isReadyLeader()) {
+            throw new NotLeaderException(replication.getLeaderPort());
+        }
+        PlatoonRegistration registration = platoons.get(platoonId);
+        if (registration != null) {
+            return registration;
+        }
+        if (platoonId <= 0 || platoons.size() >= maxPlatoons) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Platoon " + platoonId + " kann nicht angelegt werden.");
+        }
+        return platoons.computeIfAbsent(platoonId, this::createRegistration);
+    }
 
     /**
      * Diese Methode wird am Ende des Wahlalgorithmus aufgerufen und aktualisiert die Leader-Ports, damit neue Trucks
      * stets die Möglichkeit haben, den Leader bezüglich des Platoonbeitritts zu kontaktieren.
      * @param platooningPort Port des neuen Leader-Platooning-Services
      * @param cruisePort Port des CruiseService des neuen Leaders
+     * @param platoonId ID des Platoons
      */
     @PutMapping(PathRegister.SET_LEADER_PORT)
-    private void updateLeaderPort(@RequestParam Integer platooningPort, @RequestParam Integer cruisePort) {
-        enqueueTask(() -> {
-            System.out.println("Setze Leader-Port: PlatooningPort: " + platooningPort + ", CruisePort: " + cruisePort);
-            leaderPlatooningPort = platooningPort;
-            leaderCruisePort = cruisePort;
-        });
+    private void updateLeaderPort(@RequestParam Integer platooningPort, @RequestParam Integer cruisePort,
+                                  @RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+        platoon(platoonId).updateLeaderPort(platooningPort, cruisePort);
     }
 
     /**
      * Diese Methode ist dafür da, zu verhindern, dass Trucks joinen während der Wahlalgorithmus gerade ausgeführt wird.
      * Ansonsten können komische Probleme entstehen.
      * @param running
+     * @param platoonId ID des Platoons
      */
     @PutMapping(PathRegister.UPDATE_ELECTION_STATUS)
-    private void updateElectionStatus(@RequestBody boolean running) {
-        enqueueTask(() -> {
-            runningElection = running;
-        });
+    private void updateElectionStatus(@RequestBody boolean running,
+                                      @RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+        platoon(platoonId).updateElectionStatus(running);
+    }
+
+    /**
+     * Wird vom Leader aufgerufen, bevor er die gemeinsame Wahl für die gesammelten Trucks startet. Die Wahl darf erst
+     * beginnen, wenn sich alle zugelassenen Trucks beim Leader angemeldet haben, da sie sonst einen veralteten Leader-Port
+     * verwenden würden. Ab dann werden bis zum Ende der Wahl keine weiteren Trucks zugelassen.
+     * @param joined Anzahl der Trucks, die sich seit der letzten Wahl beim Leader angemeldet haben
+     * @param force true, falls die Wahl auch dann starten soll, wenn noch nicht alle zugelassenen Trucks angemeldet sind
+     * @param platoonId ID des Platoons
+     * @return true, falls die Wahl gestartet werden darf
+     */
+    @PutMapping(PathRegister.CLOSE_BATCH)
+    private Boolean closeBatch(@RequestParam int joined, @RequestParam(defaultValue = "false") boolean force,
+                               @RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+        return platoon(platoonId).closeBatch(joined, force);
     }
 
     /**
      * Startende Platoon-Services rufen diese Methode auf. Dabei geben sie ihren Port mit, damit der Registration Server diesen den
-     * dazugehörigen Cruise-Services mitteilen kann. Außerdem wird der übergebene Port, falls es der erste Truck ist,
-     * automatisch zum Leader.
+     * dazugehörigen Cruise-Services mitteilen kann. Außerdem wird der übergebene Port, falls es der erste Truck des
+     * Platoons ist, automatisch zum Leader.
+     * Jeder Platooning-Service erhält ein Pairing-Token, das er ausgibt und das sein Cruise-Service beim Start angibt.
      *
      * @param port Port des neuen Platooning Service
-     * @return Integer Array mit Platoon-Counter und Leader-Port, null wenn bereits ein Platoon-Service auf seinen Cruise-Service wartet
+     * @param platoonId ID des Platoons, dem der Truck beitreten möchte
+     * @return Integer Array mit Platoon-Counter, Leader-Port, batch-window-ms und Pairing-Token
      */
     @GetMapping(PathRegister.REGISTER_PLATOON)
-    private int[] registerPlatooningService(@PathVariable("port") int port) {
-        return enqueueTask(() -> {
-            int[] data = null;
-            if (waitingPlatooningServicePort == -1 && !runningElection) {
-                if (firstPlatooningService) {
-                    leaderPlatooningPort = port;
-                    firstPlatooningService = false;
-                }
-                waitingPlatooningServicePort = port;
-
-                data = new int[] {platoonIdCounter++, leaderPlatooningPort};
-            }
-            return data;
-        });
+    private int[] registerPlatooningService(@PathVariable("port") int port,
+                                            @RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+        return platoon(platoonId).registerPlatooningService(port);
     }
 
     /**
      * Diese Methode wird von startenden Cruise-Services aufgerufen. Dabei wird geprüft,
      * ob deren Platooning-Service bereits registriert ist. Ist dies der Fall, wird ihnen der Port zurückgegeben.
      * Ist dies nicht der Fall, wird nichts zurückgegeben, sodass der Start des Cruise-Service abgebrochen wird.
+     * Ohne Pairing-Token erhält der Cruise-Service den Platooning-Service, der am längsten wartet. Läuft gerade eine Wahl
+     * oder ist der erste Truck noch nicht vollständig, wartet die Anfrage in der Warteschlange.
      *
      * @param port Port des neuen Cruise Service
-     * @return Integer Array mit Cruise-Counter und Platoon-Port, null wenn keine Platoon wartet
+     * @param token Pairing-Token des zugehörigen Platooning Service, 0 falls keines angegeben wurde
+     * @param platoonId ID des Platoons, bei dem sich der Platooning Service registriert hat
+     * @param waitMs Zeit, die der Cruise Service höchstens auf seine Antwort wartet, 0 falls er sie nicht angegeben hat
+     * @return Integer Array mit Cruise-Counter, Platoon-Port, Cruise-Port des Leaders und Platoon-Port des Leaders,
+     * null wenn keine Platoon zum Token wartet
      */
     @GetMapping(PathRegister.REGISTER_CRUISE)
-    private int[] registerCruiseService(@PathVariable("port") int port) {
-         return enqueueTask(() -> {
-            int[] data = null;
-            if (waitingPlatooningServicePort != -1 && !runningElection) {
-                if (firstCruiseService) {
-                    leaderCruisePort = port;
-                    firstCruiseService = false;
-                }
-                data = new int[] {cruiseIdCounter++, waitingPlatooningServicePort, leaderCruisePort};
-                waitingPlatooningServicePort = -1;
-                runningElection = true;
-
-            }
-            return data;
-        });
+    private DeferredResult<int[]> registerCruiseService(@PathVariable("port") int port, @RequestParam(defaultValue = "0") int token,
+                                                        @RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId,
+                                                        @RequestParam(name = PathRegister.WAIT_PARAM, defaultValue = "0") long waitMs) {
+        return platoon(platoonId).registerCruiseService(port, token, waitMs);
     }
 
     /**
-     * Hier wird der Registration Server zurückgesetzt, damit neue Trucks erkennen, dass der Platoon nicht existiert.
+     * Hier wird die Registrierung eines Platoons zurückgesetzt, damit neue Trucks erkennen, dass der Platoon nicht existiert.
      * Wird nur ausgeführt, wenn Truck das Platoon "ordentlich" verlässt.
+     * @param platoonId ID des Platoons
      */
     @PutMapping(PathRegister.RESET)
-    private void reset() {
-        enqueueTask(() -> {
-            System.out.println("Registration Server wurde zurückgesetzt, weil kein Truck mehr im Platoon ist.");
-            platoonIdCounter = 1;
-            cruiseIdCounter = 1;
-            leaderPlatooningPort = -1;
-            leaderCruisePort = -1;
-            waitingPlatooningServicePort = -1;
-            firstPlatooningService = true;
-            firstCruiseService = true;
-        });
+    private void reset(@RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+        platoon(platoonId).reset();
     }
 
+    /**
+     * GetMapping um die Leader aller bekannten Platoons abzufragen. Wird von jedem Replikat beantwortet.
+     * @return ID des Platoons -> Platooning Port und Cruise Port des Leaders, -1 falls das Platoon keinen Leader hat
+     */
+    @GetMapping(PathRegister.GET_PLATOONS)
+    private Map<Integer, int[]> getPlatoons() {
+        Map<Integer, int[]> leaders = new TreeMap<>();
+        replication.getCommitted().forEach((platoonId, snapshot) ->
+                leaders.put(platoonId, new int[] {snapshot.leaderPlatooningPort, snapshot.leaderCruisePort}));
+        return leaders;
+    }
 
+    /**
+     * GetMapping um den Leader eines Platoons abzufragen. Wird von jedem Replikat beantwortet.
+     * @param platoonId ID des Platoons
+     * @return Platooning Port und Cruise Port des Leaders, -1 falls das Platoon keinen Leader hat
+     */
+    @GetMapping(PathRegister.GET_LEADER)
+    private int[] getLeader(@RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+        PlatoonSnapshot snapshot = replication.getCommitted(platoonId);
+        return snapshot == null ? new int[] {-1, -1} : new int[] {snapshot.leaderPlatooningPort, snapshot.leaderCruisePort};
+    }
 
     /**
-     * Greift auf die Util Methode zu und lockt Bereiche, nutzt den REGISTER_LOCK, der ein fairer ReentrantLock ist,
-     * um eine Warteschlange für Anfragen zu ermöglichen. (REST-Anfragen werden standardmäßig asynchron verarbeitet.)
-     * Im gelockten Bereich wird etwas zurückgegeben.
-     * @param callable das, was in dem kritischen Bereich ausgeführt werden soll in einem Objekt einer Klasse, dass das Callable-Interface implementiert.
-     * @param <T> Typ des Rückgabewertes
-     * @return Rückgabe von den in dem in callable ausgeführten Code,
-     *         null, falls eine Exception auftritt
+     * GetMapping, über das ein Truck abfragt, welcher Shard des MonitoringServices sein Platoon anzeigt.
+     * @param platoonId ID des Platoons
+     * @return Port des Shards
      */
-    private <T> T enqueueTask(Callable<T> callable) {
-        return Util.enqueueTask(REGISTER_LOCK, callable);
+    @GetMapping(PathRegister.GET_MONITORING_SHARD)
+    private int getMonitoringShard(@RequestParam(name = PathRegister.PLATOON_PARAM, defaultValue = PathRegister.DEFAULT_PLATOON) int platoonId) {
+        return monitoringShards.nodeFor(platoonId);
     }
 
     /**
-     * Greift auf die Util Methode zu und lockt Bereiche, nutzt den REGISTER_LOCK, der ein fairer ReentrantLock ist,
-     * um eine Warteschlange für Anfragen zu ermöglichen. (REST-Anfragen werden standardmäßig asynchron verarbeitet.)
-     * Im gelockten Bereich wird nichts zurückgegeben.
-     * @param runnable das, was in dem kritischen Bereich ausgeführt werden soll in einem Objekt einer Klasse, dass das Runnable-Interface implementiert.
+     * GetMapping, über das der Aggregator alle Shards des MonitoringServices abfragt.
+     * @return Ports der Shards
      */
-    private void enqueueTask(Runnable runnable) {
-        Util.enqueueTask(REGISTER_LOCK, runnable);
+    @GetMapping(PathRegister.GET_MONITORING_SHARDS)
+    private List<Integer> getMonitoringShards() {
+        return monitoringShards.getNodes();
     }
 
 }
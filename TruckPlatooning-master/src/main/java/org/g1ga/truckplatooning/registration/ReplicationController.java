@@ -0,0 +1,56 @@
+package org.g1ga.truckplatooning.registration;
+
+import org.g1ga.truckplatooning.PathRegister;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Über diesen Controller tauschen die Registration-Replikate Stimmabfragen und Einträge des Logs aus.
+ */
+@RestController
+public class ReplicationController {
+
+    private final RegistrationController registrationController;
+
+    /**
+     * Konstruktor, der den Controller erstellt.
+     * @param registrationController Controller, dem das Replikat gehört
+     */
+    public ReplicationController(RegistrationController registrationController) {
+        this.registrationController = registrationController;
+    }
+
+    /**
+     * PostMapping, über das ein Kandidat die Stimme dieses Replikats erbittet.
+     * @param request die Stimmabfrage
+     * @return eigener Term und ob die Stimme vergeben wurde
+     */
+    @PostMapping(PathRegister.REPLICATION_VOTE)
+    private ReplicationNode.VoteResponse vote(@RequestBody ReplicationNode.VoteRequest request) {
+        return registrationController.getReplication().handleVote(request);
+    }
+
+    /**
+     * PostMapping, über das der Leader Einträge und Heartbeats verschickt.
+     * @param request die Einträge des Leaders
+     * @return Ergebnis der Übernahme
+     */
+    @PostMapping(PathRegister.REPLICATION_APPEND)
+    private ReplicationNode.AppendResponse append(@RequestBody ReplicationNode.AppendRequest request) {
+        return registrationController.getReplication().handleAppend(request);
+    }
+
+    /**
+     * GetMapping, über das der Status der Replikation abgefragt werden kann.
+     * @return Rolle, Term, Leader und Indizes des Logs dieses Replikats
+     */
+    @GetMapping(PathRegister.REPLICATION_STATUS)
+    private Map<String, Object> status() {
+        return registrationController.getReplication().getStatus();
+    }
+
+}
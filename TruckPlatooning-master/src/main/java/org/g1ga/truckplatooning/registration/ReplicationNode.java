@@ -0,0 +1,607 @@
+package org.g1ga.truckplatooning.registration;
+
+import org.g1ga.truckplatooning.PathRegister;
+import org.g1ga.truckplatooning.RestClientFactory;
+import org.g1ga.truckplatooning.Util;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Diese Klasse repliziert den Zustand der Registrierung zwischen mehreren Registration-Replikaten nach dem Vorbild von
+ * Raft. Ein gewähltes Replikat ist Leader und nimmt alle Änderungen an. Jede Änderung wird als Eintrag an das Log
+ * angehängt, an die Follower verteilt und erst bestätigt, sobald eine Mehrheit der Replikate sie gespeichert hat.
+ * Bestätigte Einträge übernimmt jedes Replikat in der Reihenfolge des Logs in seinen Zustand, sodass Lesezugriffe von
+ * jedem Replikat beantwortet werden können. Meldet sich der Leader nicht mehr, wählen die übrigen Replikate einen neuen.
+ * Term, Stimme und Log werden über den ReplicationStorage gespeichert, bevor das Replikat auf eine Stimmabfrage oder
+ * neue Einträge antwortet, sodass ein neu gestartetes Replikat in einem Term nicht ein zweites Mal abstimmt und
+ * bestätigte Einträge einen Neustart der Mehrheit überstehen. Fehlende Einträge erhält es vom aktuellen Leader.
+ * Ist kein weiteres Replikat konfiguriert, ist das Replikat sofort Leader und bestätigt jede Änderung direkt.
+ */
+public class ReplicationNode {
+
+    public enum Role {FOLLOWER, CANDIDATE, LEADER}
+
+    //Höchstens so viele Einträge werden mit einer Anfrage an einen Follower geschickt
+    private static final int MAX_ENTRIES_PER_APPEND = 256;
+
+    private final int ownPort;
+    private final List<Integer> peers;
+    private final long electionTimeoutMs;
+    private final RestTemplate restTemplate;
+    private final ReplicationStorage storage;
+    //Wird aufgerufen, sobald dieses Replikat als Leader alle Einträge seiner Vorgänger bestätigt hat
+    private final Runnable onLeaderReady;
+    //Wird aufgerufen, sobald dieses Replikat nicht mehr Leader ist
+    private final Runnable onStepDown;
+
+    private Role role = Role.FOLLOWER;
+    private long currentTerm = 0;
+    private int votedFor = 0;
+    private int leaderPort = 0;
+    //Das Log beginnt bei Index 1, der Eintrag mit Index i liegt an Position i - 1
+    private final List<LogEntry> log = new ArrayList<>();
+    private long commitIndex = 0;
+    private long lastApplied = 0;
+    //Index des leeren Eintrags, mit dem der aktuelle Leader seine Amtszeit begonnen hat
+    private long readyIndex = 0;
+    private volatile boolean ready = false;
+    private long electionDeadline;
+    private final Map<Integer, Long> nextIndex = new HashMap<>();
+    private final Map<Integer, Long> matchIndex = new HashMap<>();
+    //Follower, an die gerade eine Anfrage unterwegs ist
+    private final Set<Integer> inFlight = new HashSet<>();
+    //Index eines Eintrags -> Future, die nach seiner Bestätigung abgeschlossen wird
+    private final TreeMap<Long, CompletableFuture<Boolean>> waiters = new TreeMap<>();
+    //ID des Platoons -> bestätigter Zustand seiner Registrierung
+    private final Map<Integer, PlatoonSnapshot> committed = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService rpcExecutor;
+
+    /**
+     * Konstruktor, der das Replikat erstellt und die Replikation startet.
+     * @param ownPort Port dieses Replikats
+     * @param replicas Ports aller Replikate einschließlich dieses, leer falls die Registrierung nicht repliziert wird
+     * @param heartbeatMs Abstand der Heartbeats des Leaders
+     * @param electionTimeoutMs minimale Zeit ohne Heartbeat, nach der ein Follower eine Wahl startet
+     * @param onLeaderReady wird aufgerufen, sobald dieses Replikat als Leader Änderungen annehmen kann
+     * @param onStepDown wird aufgerufen, sobald dieses Replikat nicht mehr Leader ist
+     * @param storageDir Verzeichnis, in dem Term, Stimme und Log gespeichert werden, null falls nichts gespeichert wird
+     */
+    public ReplicationNode(int ownPort, Collection<Integer> replicas, long heartbeatMs, long electionTimeoutMs,
+                           Runnable onLeaderReady, Runnable onStepDown, Path storageDir) {
+        this.ownPort = ownPort;
+        List<Integer> others = new ArrayList<>();
+        for (int replica : replicas) {
+            if (replica != ownPort && !others.contains(replica)) {
+                others.add(replica);
+            }
+        }
+        if (!others.isEmpty() && !replicas.contains(ownPort)) {
+            System.err.println("Port " + ownPort + " ist nicht unter registration.replicas eingetragen, die Registrierung wird nicht repliziert.");
+            others.clear();
+        }
+        this.peers = Collections.unmodifiableList(others);
+        this.electionTimeoutMs = electionTimeoutMs;
+        this.onLeaderReady = onLeaderReady;
+        this.onStepDown = onStepDown;
+        this.restTemplate = RestClientFactory.createRestTemplate((int) electionTimeoutMs);
+        //Ein einzelnes Replikat beginnt wie bisher nach jedem Start mit einer leeren Registrierung
+        this.storage = new ReplicationStorage(peers.isEmpty() ? null : storageDir, ownPort);
+        currentTerm = storage.getTerm();
+        votedFor = storage.getVotedFor();
+        log.addAll(storage.getEntries());
+        if (peers.isEmpty()) {
+            ticker = null;
+            rpcExecutor = null;
+            currentTerm = 1;
+            role = Role.LEADER;
+            leaderPort = ownPort;
+            ready = true;
+        } else {
+            ticker = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "replication-ticker"));
+            rpcExecutor = Executors.newCachedThreadPool(runnable -> daemon(runnable, "replication-rpc"));
+            resetElectionDeadline();
+            ticker.scheduleWithFixedDelay(this::tick, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Beendet die Threads der Replikation.
+     */
+    public void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            rpcExecutor.shutdownNow();
+        }
+        synchronized (this) {
+            storage.close();
+        }
+    }
+
+    /**
+     * Hängt den neuen Zustand eines Platoons an das Log an. Wird unter dem Lock des Platoons aufgerufen, damit die
+     * Einträge eines Platoons in derselben Reihenfolge im Log stehen, in der sie entstanden sind.
+     * @param snapshot der vollständige Zustand des Platoons nach der Änderung
+     * @return Future, die mit true abgeschlossen wird, sobald die Änderung bestätigt ist, und mit false, falls dieses
+     * Replikat vorher nicht mehr Leader ist
+     */
+    public synchronized CompletableFuture<Boolean> propose(PlatoonSnapshot snapshot) {
+        if (role != Role.LEADER || !ready) {
+            return CompletableFuture.completedFuture(false);
+        }
+        LogEntry entry = new LogEntry(lastIndex() + 1, currentTerm, snapshot);
+        log.add(entry);
+        storage.append(List.of(entry));
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        waiters.put(entry.index, future);
+        if (peers.isEmpty()) {
+            advanceCommitIndex();
+        } else {
+            replicateAll();
+        }
+        return future;
+    }
+
+    /**
+     * Gibt zurück, ob dieses Replikat Leader ist und Änderungen annehmen kann
+     * @return true, falls Änderungen an dieses Replikat gestellt werden dürfen
+     */
+    public boolean isReadyLeader() {
+        return ready;
+    }
+
+    /**
+     * Gibt den Port des bekannten Leaders zurück
+     * @return Port des Leaders, 0 falls gerade kein Leader bekannt ist
+     */
+    public synchronized int getLeaderPort() {
+        return leaderPort;
+    }
+
+    /**
+     * Gibt den bestätigten Zustand eines Platoons zurück
+     * @param platoonId ID des Platoons
+     * @return der Zustand, null falls das Platoon nicht bekannt ist
+     */
+    public PlatoonSnapshot getCommitted(int platoonId) {
+        return committed.get(platoonId);
+    }
+
+    /**
+     * Gibt den bestätigten Zustand aller Platoons zurück
+     * @return ID des Platoons -> Zustand seiner Registrierung
+     */
+    public Map<Integer, PlatoonSnapshot> getCommitted() {
+        return Collections.unmodifiableMap(committed);
+    }
+
+    /**
+     * Gibt den Status des Replikats für die Anzeige zurück
+     * @return Rolle, Term, Leader und Indizes des Logs
+     */
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("port", ownPort);
+        status.put("role", role);
+        status.put("term", currentTerm);
+        status.put("leader", leaderPort);
+        status.put("ready", ready);
+        status.put("commitIndex", commitIndex);
+        status.put("lastIndex", lastIndex());
+        return status;
+    }
+
+    /**
+     * Beantwortet die Stimmabfrage eines Kandidaten. Die Stimme wird nur vergeben, wenn in diesem Term noch keine andere
+     * Stimme vergeben wurde und das Log des Kandidaten mindestens so aktuell ist wie das eigene.
+     * @param request die Stimmabfrage
+     * @return eigener Term und ob die Stimme vergeben wurde
+     */
+    public synchronized VoteResponse handleVote(VoteRequest request) {
+        if (peers.isEmpty()) {
+            return new VoteResponse(currentTerm, false);
+        }
+        if (request.term > currentTerm) {
+            becomeFollower(request.term, 0);
+        }
+        boolean upToDate = request.lastLogTerm > lastTerm()
+                || (request.lastLogTerm == lastTerm() && request.lastLogIndex >= lastIndex());
+        boolean granted = request.term == currentTerm && upToDate
+                && (votedFor == 0 || votedFor == request.candidatePort);
+        if (granted && votedFor != request.candidatePort) {
+            votedFor = request.candidatePort;
+            storage.saveState(currentTerm, votedFor);
+        }
+        if (granted) {
+            resetElectionDeadline();
+        }
+        return new VoteResponse(currentTerm, granted);
+    }
+
+    /**
+     * Übernimmt die Einträge des Leaders. Einträge, die den Einträgen des Leaders widersprechen, werden verworfen.
+     * Eine Anfrage ohne Einträge dient als Heartbeat.
+     * @param request die Einträge des Leaders
+     * @return eigener Term, ob die Einträge übernommen wurden und bis zu welchem Index das Log mit dem des Leaders
+     * übereinstimmt
+     */
+    public synchronized AppendResponse handleAppend(AppendRequest request) {
+        if (peers.isEmpty() || request.term < currentTerm) {
+            return new AppendResponse(currentTerm, false, 0);
+        }
+        if (request.term > currentTerm || role != Role.FOLLOWER || leaderPort != request.leaderPort) {
+            becomeFollower(request.term, request.leaderPort);
+        }
+        resetElectionDeadline();
+        if (request.prevLogIndex > lastIndex()) {
+            return new AppendResponse(currentTerm, false, lastIndex());
+        }
+        if (termAt(request.prevLogIndex) != request.prevLogTerm) {
+            return new AppendResponse(currentTerm, false, request.prevLogIndex - 1);
+        }
+        long index = request.prevLogIndex;
+        List<LogEntry> appended = new ArrayList<>();
+        boolean truncated = false;
+        for (LogEntry entry : request.entries) {
+            index++;
+            if (index <= lastIndex()) {
+                if (termAt(index) == entry.term) {
+                    continue;
+                }
+                log.subList((int) index - 1, log.size()).clear();
+                truncated = true;
+            }
+            log.add(entry);
+            appended.add(entry);
+        }
+        //Erst wenn die Einträge gespeichert sind, darf der Leader sie zur Mehrheit zählen
+        if (truncated) {
+            storage.rewrite(log);
+        } else {
+            storage.append(appended);
+        }
+        if (request.leaderCommit > commitIndex) {
+            commitIndex = Math.min(request.leaderCommit, index);
+            applyCommitted();
+        }
+        return new AppendResponse(currentTerm, true, index);
+    }
+
+    /**
+     * Wird regelmäßig aufgerufen. Der Leader verschickt Heartbeats, ein Follower startet eine Wahl, falls er zu lange
+     * nichts vom Leader gehört hat.
+     */
+    private void tick() {
+        boolean electionDue;
+        synchronized (this) {
+            if (role == Role.LEADER) {
+                replicateAll();
+                return;
+            }
+            electionDue = System.nanoTime() >= electionDeadline;
+        }
+        if (electionDue) {
+            startElection();
+        }
+    }
+
+    /**
+     * Bewirbt sich als Leader für den nächsten Term und fragt alle anderen Replikate nach ihrer Stimme.
+     */
+    private void startElection() {
+        VoteRequest request;
+        synchronized (this) {
+            role = Role.CANDIDATE;
+            currentTerm++;
+            votedFor = ownPort;
+            storage.saveState(currentTerm, votedFor);
+            leaderPort = 0;
+            resetElectionDeadline();
+            request = new VoteRequest(currentTerm, ownPort, lastIndex(), lastTerm());
+        }
+        System.out.println("Registration-Replikat " + ownPort + " startet die Wahl für Term " + request.term);
+        AtomicInteger votes = new AtomicInteger(1);
+        for (int peer : peers) {
+            rpcExecutor.execute(() -> {
+                VoteResponse response = post(peer, PathRegister.REPLICATION_VOTE, request, VoteResponse.class);
+                if (response == null) {
+                    return;
+                }
+                synchronized (this) {
+                    if (response.term > currentTerm) {
+                        becomeFollower(response.term, 0);
+                    } else if (response.granted && role == Role.CANDIDATE && currentTerm == request.term
+                            && votes.incrementAndGet() > (peers.size() + 1) / 2) {
+                        becomeLeader();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Übernimmt die Rolle des Leaders. Der neue Leader hängt einen leeren Eintrag an. Sobald dieser bestätigt ist, sind
+     * auch alle Einträge der vorherigen Leader bestätigt und der Leader nimmt Änderungen an.
+     */
+    private void becomeLeader() {
+        System.out.println("Registration-Replikat " + ownPort + " ist Leader für Term " + currentTerm);
+        role = Role.LEADER;
+        leaderPort = ownPort;
+        for (int peer : peers) {
+            nextIndex.put(peer, lastIndex() + 1);
+            matchIndex.put(peer, 0L);
+        }
+        LogEntry noOp = new LogEntry(lastIndex() + 1, currentTerm, null);
+        log.add(noOp);
+        storage.append(List.of(noOp));
+        readyIndex = noOp.index;
+        replicateAll();
+    }
+
+    /**
+     * Wird Follower, weil ein anderes Replikat einen höheren Term hat oder Leader ist. War dieses Replikat Leader,
+     * werden alle wartenden Änderungen als nicht bestätigt abgeschlossen.
+     * @param term Term des anderen Replikats
+     * @param leader Port des Leaders, 0 falls er nicht bekannt ist
+     */
+    private void becomeFollower(long term, int leader) {
+        boolean wasLeader = role == Role.LEADER;
+        if (term > currentTerm) {
+            currentTerm = term;
+            votedFor = 0;
+            storage.saveState(currentTerm, votedFor);
+        }
+        role = Role.FOLLOWER;
+        leaderPort = leader;
+        if (wasLeader) {
+            System.out.println("Registration-Replikat " + ownPort + " ist nicht mehr Leader, neuer Term: " + currentTerm);
+            ready = false;
+            waiters.values().forEach(future -> future.complete(false));
+            waiters.clear();
+            //Außerhalb des Locks, da onStepDown die Locks der Platoons benötigt
+            ticker.execute(onStepDown);
+        }
+        resetElectionDeadline();
+    }
+
+    /**
+     * Verschickt die fehlenden Einträge an alle Follower, an die gerade keine Anfrage unterwegs ist.
+     * Muss unter dem Lock des Replikats aufgerufen werden.
+     */
+    private void replicateAll() {
+        for (int peer : peers) {
+            if (inFlight.add(peer)) {
+                rpcExecutor.execute(() -> replicateTo(peer));
+            }
+        }
+    }
+
+    /**
+     * Verschickt die fehlenden Einträge an einen Follower, bis dessen Log mit dem des Leaders übereinstimmt.
+     * @param peer Port des Followers
+     */
+    private void replicateTo(int peer) {
+        while (true) {
+            AppendRequest request;
+            synchronized (this) {
+                if (role != Role.LEADER) {
+                    inFlight.remove(peer);
+                    return;
+                }
+                long prevIndex = nextIndex.get(peer) - 1;
+                int to = (int) Math.min(lastIndex(), prevIndex + MAX_ENTRIES_PER_APPEND);
+                request = new AppendRequest(currentTerm, ownPort, prevIndex, termAt(prevIndex),
+                        new ArrayList<>(log.subList((int) prevIndex, to)), commitIndex);
+            }
+            AppendResponse response = post(peer, PathRegister.REPLICATION_APPEND, request, AppendResponse.class);
+            synchronized (this) {
+                if (response == null) {
+                    inFlight.remove(peer);
+                    return;
+                }
+                if (response.term > currentTerm) {
+                    inFlight.remove(peer);
+                    becomeFollower(response.term, 0);
+                    return;
+                }
+                if (role != Role.LEADER || currentTerm != request.term) {
+                    inFlight.remove(peer);
+                    return;
+                }
+                if (response.success) {
+                    matchIndex.put(peer, response.matchIndex);
+                    nextIndex.put(peer, response.matchIndex + 1);
+                    advanceCommitIndex();
+                    //Der Follower erfährt den neuen Commit-Index spätestens mit dem nächsten Heartbeat
+                    if (response.matchIndex >= lastIndex()) {
+                        inFlight.remove(peer);
+                        return;
+                    }
+                } else {
+                    nextIndex.put(peer, Math.max(1, Math.min(nextIndex.get(peer) - 1, response.matchIndex + 1)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Bestätigt den höchsten Eintrag des aktuellen Terms, den eine Mehrheit der Replikate gespeichert hat, und alle
+     * Einträge davor. Muss unter dem Lock des Replikats aufgerufen werden.
+     */
+    private void advanceCommitIndex() {
+        for (long index = lastIndex(); index > commitIndex; index--) {
+            if (termAt(index) != currentTerm) {
+                break;
+            }
+            int replicated = 1;
+            for (long match : matchIndex.values()) {
+                if (match >= index) {
+                    replicated++;
+                }
+            }
+            if (replicated > (peers.size() + 1) / 2) {
+                commitIndex = index;
+                applyCommitted();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Übernimmt alle bestätigten Einträge in den Zustand und schließt die wartenden Änderungen ab.
+     * Muss unter dem Lock des Replikats aufgerufen werden.
+     */
+    private void applyCommitted() {
+        while (lastApplied < commitIndex) {
+            lastApplied++;
+            PlatoonSnapshot snapshot = log.get((int) lastApplied - 1).snapshot;
+            if (snapshot != null) {
+                committed.put(snapshot.platoonId, snapshot);
+            }
+        }
+        Map<Long, CompletableFuture<Boolean>> done = waiters.headMap(commitIndex, true);
+        done.values().forEach(future -> future.complete(true));
+        done.clear();
+        if (role == Role.LEADER && !ready && commitIndex >= readyIndex) {
+            long term = currentTerm;
+            //Außerhalb des Locks, erst danach nimmt der Leader Änderungen an
+            ticker.execute(() -> {
+                onLeaderReady.run();
+                synchronized (this) {
+                    if (role == Role.LEADER && currentTerm == term) {
+                        ready = true;
+                        System.out.println("Registration-Replikat " + ownPort + " nimmt als Leader Änderungen an.");
+                    }
+                }
+            });
+        }
+    }
+
+    private <T> T post(int peer, String path, Object body, Class<T> responseType) {
+        try {
+            return restTemplate.postForObject(Util.getBaseUriComponentsBuilder(peer, path).toUriString(), body, responseType);
+        } catch (RestClientException e) {
+            return null;
+        }
+    }
+
+    private void resetElectionDeadline() {
+        long timeout = ThreadLocalRandom.current().nextLong(electionTimeoutMs, 2 * electionTimeoutMs);
+        electionDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    private long lastIndex() {
+        return log.size();
+    }
+
+    private long lastTerm() {
+        return termAt(lastIndex());
+    }
+
+    private long termAt(long index) {
+        return index <= 0 ? 0 : log.get((int) index - 1).term;
+    }
+
+    /**
+     * Stimmabfrage eines Kandidaten.
+     */
+    public static class VoteRequest {
+        public long term;
+        public int candidatePort;
+        public long lastLogIndex;
+        public long lastLogTerm;
+
+        public VoteRequest() {}
+
+        VoteRequest(long term, int candidatePort, long lastLogIndex, long lastLogTerm) {
+            this.term = term;
+            this.candidatePort = candidatePort;
+            this.lastLogIndex = lastLogIndex;
+            this.lastLogTerm = lastLogTerm;
+        }
+    }
+
+    /**
+     * Antwort auf eine Stimmabfrage.
+     */
+    public static class VoteResponse {
+        public long term;
+        public boolean granted;
+
+        public VoteResponse() {}
+
+        VoteResponse(long term, boolean granted) {
+            this.term = term;
+            this.granted = granted;
+        }
+    }
+
+    /**
+     * Einträge des Leaders für einen Follower, ohne Einträge ein Heartbeat.
+     */
+    public static class AppendRequest {
+        public long term;
+        public int leaderPort;
+        public long prevLogIndex;
+        public long prevLogTerm;
+        public List<LogEntry> entries;
+        public long leaderCommit;
+
+        public AppendRequest() {}
+
+        AppendRequest(long term, int leaderPort, long prevLogIndex, long prevLogTerm, List<LogEntry> entries, long leaderCommit) {
+            this.term = term;
+            this.leaderPort = leaderPort;
+            this.prevLogIndex = prevLogIndex;
+            this.prevLogTerm = prevLogTerm;
+            this.entries = entries;
+            this.leaderCommit = leaderCommit;
+        }
+    }
+
+    /**
+     * Antwort eines Followers auf die Einträge des Leaders.
+     */
+    public static class AppendResponse {
+        public long term;
+        public boolean success;
+        //Bei Erfolg der letzte übernommene Index, sonst der Index, ab dem der Leader es erneut versuchen soll
+        public long matchIndex;
+
+        public AppendResponse() {}
+
+        AppendResponse(long term, boolean success, long matchIndex) {
+            this.term = term;
+            this.success = success;
+            this.matchIndex = matchIndex;
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package org.g1ga.truckplatooning.registration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Diese Klasse speichert den Zustand eines Registration-Replikats, der nach Raft einen Neustart überstehen muss: den
+ * aktuellen Term, die in diesem Term vergebene Stimme und das Log. Term und Stimme liegen in der Datei
+ * replica-&lt;port&gt;.state, die Einträge des Logs als JSON-Zeilen in replica-&lt;port&gt;.log. Jede Änderung ist auf
+ * der Platte, bevor die Methode zurückkehrt, sodass ein Replikat erst danach auf eine Anfrage antwortet.
+ * Ohne Verzeichnis (registration.replication.dir leer) wird nichts gespeichert.
+ */
+class ReplicationStorage {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path stateFile;
+    private final Path logFile;
+    private FileChannel logChannel;
+    private long term = 0;
+    private int votedFor = 0;
+    private final List<LogEntry> entries = new ArrayList<>();
+
+    /**
+     * Konstruktor, der den gespeicherten Zustand des Replikats lädt.
+     * @param dir Verzeichnis für den Zustand, null falls nichts gespeichert werden soll
+     * @param port Port des Replikats
+     * @throws UncheckedIOException falls der gespeicherte Zustand nicht gelesen werden kann
+     */
+    ReplicationStorage(Path dir, int port) {
+        if (dir == null) {
+            stateFile = null;
+            logFile = null;
+            return;
+        }
+        stateFile = dir.resolve("replica-" + port + ".state");
+        logFile = dir.resolve("replica-" + port + ".log");
+        try {
+            Files.createDirectories(dir);
+            if (Files.exists(stateFile)) {
+                String[] state = Files.readString(stateFile).trim().split(" ");
+                term = Long.parseLong(state[0]);
+                votedFor = Integer.parseInt(state[1]);
+            }
+            if (Files.exists(logFile)) {
+                for (String line : Files.readAllLines(logFile, StandardCharsets.UTF_8)) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        entries.add(MAPPER.readValue(line, LogEntry.class));
+                    } catch (IOException e) {
+                        //Eine unvollständig geschriebene letzte Zeile wurde nie bestätigt
+                        System.err.println("Unvollständiger Eintrag im Log " + logFile + " wird verworfen.");
+                        break;
+                    }
+                }
+            }
+            //Schreibt das Log ohne verworfene Zeilen neu, damit neue Einträge nicht dahinter landen
+            rewrite(entries);
+            if (term > 0 || !entries.isEmpty()) {
+                System.out.println("Registration-Replikat " + port + " übernimmt Term " + term + " und " + entries.size() + " Einträge aus " + dir);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Zustand des Replikats in " + dir + " kann nicht gelesen werden.", e);
+        }
+    }
+
+    long getTerm() {
+        return term;
+    }
+
+    int getVotedFor() {
+        return votedFor;
+    }
+
+    /**
+     * Gibt die geladenen Einträge des Logs zurück
+     * @return Einträge in der Reihenfolge ihres Index
+     */
+    List<LogEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Speichert Term und Stimme, indem die Datei ersetzt wird.
+     * @param term aktueller Term
+     * @param votedFor Port des Kandidaten, der in diesem Term die Stimme erhalten hat, 0 falls keiner
+     */
+    void saveState(long term, int votedFor) {
+        if (stateFile == null) {
+            return;
+        }
+        try {
+            Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap((term + " " + votedFor).getBytes(StandardCharsets.UTF_8)));
+                channel.force(true);
+            }
+            Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Term und Stimme können nicht gespeichert werden.", e);
+        }
+    }
+
+    /**
+     * Hängt Einträge an das gespeicherte Log an.
+     * @param appended die neuen Einträge
+     */
+    void append(List<LogEntry> appended) {
+        if (logFile == null || appended.isEmpty()) {
+            return;
+        }
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (LogEntry entry : appended) {
+                lines.append(MAPPER.writeValueAsString(entry)).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                logChannel.write(buffer);
+            }
+            logChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Einträge können nicht gespeichert werden.", e);
+        }
+    }
+
+    /**
+     * Ersetzt das gespeicherte Log, z.B. nachdem Einträge verworfen wurden, die denen des Leaders widersprechen.
+     * @param log das vollständige Log
+     */
+    void rewrite(List<LogEntry> log) {
+        if (logFile == null) {
+            return;
+        }
+        try {
+            close();
+            Path tmp = logFile.resolveSibling(logFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (LogEntry entry : log) {
+                    ByteBuffer buffer = ByteBuffer.wrap((MAPPER.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logChannel = FileChannel.open(logFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Das Log kann nicht gespeichert werden.", e);
+        }
+    }
+
+    /**
+     * Schließt die Datei des Logs.
+     */
+    void close() {
+        if (logChannel == null) {
+            return;
+        }
+        try {
+            logChannel.close();
+        } catch (IOException e) {
+            System.err.println("Log des Replikats konnte nicht geschlossen werden: " + e);
+        }
+        logChannel = null;
+    }
+
+}
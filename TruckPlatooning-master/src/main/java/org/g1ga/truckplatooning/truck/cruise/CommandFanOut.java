@@ -0,0 +1,168 @@
+package org.g1ga.truckplatooning.truck.cruise;
+
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Diese Klasse verteilt einen Befehl des Leaders gleichzeitig an alle Follower. Jeder Empfänger wird in einem eigenen
+ * Task angesprochen, sodass die Laufzeit eines Befehls nicht mehr von der Länge des Platoons abhängt. Empfänger, die
+ * innerhalb der Deadline nicht geantwortet haben, blockieren die anderen nicht und werden im Ergebnis gesondert aufgeführt.
+ * Ihr Sendevorgang wird abgebrochen, damit er keinen Thread des Pools belegt. Wer die Deadline mehrmals in Folge verpasst,
+ * wird wie ein nicht erreichbarer Empfänger gemeldet und vom Leader aus dem Platoon entfernt.
+ */
+public class CommandFanOut {
+
+    private final ExecutorService executor;
+    private final long deadlineNanos;
+    private final int maxMisses;
+    //Port -> Anzahl der direkt aufeinanderfolgenden verpassten Deadlines
+    private final Map<Integer, Integer> misses = new ConcurrentHashMap<>();
+
+    /**
+     * Konstruktor, der einen neuen Fan-Out mit eigenem Thread-Pool erstellt. Ein Empfänger gilt nach drei verpassten
+     * Deadlines in Folge als nicht erreichbar.
+     * @param parallelism maximale Anzahl gleichzeitig laufender Sendevorgänge
+     * @param deadlineMillis Zeit in Millisekunden, nach der ein Empfänger als zu langsam gilt
+     */
+    public CommandFanOut(int parallelism, long deadlineMillis) {
+        this(parallelism, deadlineMillis, 3);
+    }
+
+    /**
+     * Konstruktor, der einen neuen Fan-Out mit eigenem Thread-Pool erstellt.
+     * @param parallelism maximale Anzahl gleichzeitig laufender Sendevorgänge
+     * @param deadlineMillis Zeit in Millisekunden, nach der ein Empfänger als zu langsam gilt
+     * @param maxMisses Anzahl verpasster Deadlines in Folge, nach der ein Empfänger als nicht erreichbar gilt
+     */
+    public CommandFanOut(int parallelism, long deadlineMillis, int maxMisses) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "cruise-fanout-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        this.maxMisses = Math.max(1, maxMisses);
+    }
+
+    /**
+     * Schickt den Befehl gleichzeitig an alle übergebenen Ports und wartet höchstens bis zur Deadline auf die Antworten.
+     * @param ports Ports der Empfänger
+     * @param sender Funktion, die den Befehl an genau einen Port sendet
+     * @return das Ergebnis mit zugestellten, nicht erreichbaren und zu langsamen Empfängern
+     */
+    public Result dispatch(List<Integer> ports, IntConsumer sender) {
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(ports.size());
+        for (int port : ports) {
+            futures.add(executor.submit(() -> sender.accept(port)));
+        }
+
+        Result result = new Result();
+        long deadline = start + deadlineNanos;
+        for (int i = 0; i < futures.size(); i++) {
+            int port = ports.get(i);
+            Future<?> future = futures.get(i);
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                misses.remove(port);
+                result.delivered.add(port);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                missedDeadline(port, result);
+            } catch (ExecutionException e) {
+                misses.remove(port);
+                if (e.getCause() instanceof ResourceAccessException) {
+                    result.unreachable.add(port);
+                } else {
+                    System.err.println("Senden an Port " + port + " fehlgeschlagen: " + e.getCause());
+                    result.failed.add(port);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                result.missedDeadline.add(port);
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private void missedDeadline(int port, Result result) {
+        int missed = misses.merge(port, 1, Integer::sum);
+        if (missed >= maxMisses) {
+            System.err.println("Port " + port + " hat die Deadline " + missed + " Mal in Folge verpasst und gilt als nicht erreichbar.");
+            misses.remove(port);
+            result.unreachable.add(port);
+        } else {
+            result.missedDeadline.add(port);
+        }
+    }
+
+    /**
+     * Beendet den Thread-Pool des Fan-Outs.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ergebnis eines Fan-Outs. Ein Empfänger ist immer in genau einer der Listen enthalten.
+     */
+    public static final class Result {
+
+        private final List<Integer> delivered = new ArrayList<>();
+        private final List<Integer> unreachable = new ArrayList<>();
+        private final List<Integer> missedDeadline = new ArrayList<>();
+        private final List<Integer> failed = new ArrayList<>();
+        private long elapsedNanos;
+
+        /**
+         * Gibt die Ports zurück, an die der Befehl rechtzeitig zugestellt wurde
+         * @return Ports der erfolgreich erreichten Empfänger
+         */
+        public List<Integer> getDelivered() {
+            return Collections.unmodifiableList(delivered);
+        }
+
+        /**
+         * Gibt die Ports zurück, deren Services nicht erreichbar sind
+         * @return Ports der nicht erreichbaren Empfänger
+         */
+        public List<Integer> getUnreachable() {
+            return Collections.unmodifiableList(unreachable);
+        }
+
+        /**
+         * Gibt die Ports zurück, die bis zur Deadline nicht geantwortet haben
+         * @return Ports der zu langsamen Empfänger
+         */
+        public List<Integer> getMissedDeadline() {
+            return Collections.unmodifiableList(missedDeadline);
+        }
+
+        /**
+         * Gibt die Ports zurück, bei denen das Senden aus einem anderen Grund fehlgeschlagen ist
+         * @return Ports der Empfänger mit sonstigen Fehlern
+         */
+        public List<Integer> getFailed() {
+            return Collections.unmodifiableList(failed);
+        }
+
+        /**
+         * Gibt die Dauer des gesamten Fan-Outs zurück
+         * @return Dauer in Nanosekunden
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+}
@@ -1,19 +1,18 @@
 package org.g1ga.truckplatooning.truck.cruise;
 
+import org.g1ga.truckplatooning.EndpointTable;
+import org.g1ga.truckplatooning.HeartbeatMonitor;
+import org.g1ga.truckplatooning.MessageDispatcher;
 import org.g1ga.truckplatooning.PathRegister;
+import org.g1ga.truckplatooning.RestClientFactory;
 import org.g1ga.truckplatooning.Util;
-import org.springframework.http.HttpEntity;
+import org.g1ga.truckplatooning.wire.MulticastCommandChannel;
+import org.g1ga.truckplatooning.wire.WireClient;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.annotation.PreDestroy;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Die Cruise Klasse dient zur Durchführung der Geschwindigkeitsregulierung.
@@ -23,88 +22,47 @@ import java.util.concurrent.locks.ReentrantLock;
 public class Cruise {
 
     private static Cruise instance;
-    private final RestTemplate REST_TEMPLATE = new RestTemplate();
-
-    private int speed = 0;
-    //maximal 80 km/h
-    private int targetSpeed = 0;
-    //in km
-    private double traveledDistance = 0;
-    private double gap;
-    private double traveledDistanceFrontTruck = 0;
-    private double truckDistance;
+    private final RestTemplate REST_TEMPLATE = RestClientFactory.getRestTemplate();
 
     private boolean isLeader;
     private final int OWN_PORT = CruiseService.getPort();
 
-    private final ScheduledExecutorService execHealth = Executors.newSingleThreadScheduledExecutor();
-    private final ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor();
-    private final ScheduledExecutorService execMon = Executors.newSingleThreadScheduledExecutor();
+    //Überwacht den eigenen Platooning Service mit einem Phi-Accrual-Failure-Detector
+    private final HeartbeatMonitor HEARTBEAT_MONITOR = new HeartbeatMonitor("cruise", this::sendHealthCheck);
+    //Verteilt Befehle des Leaders gleichzeitig an alle Follower
+    private final CommandFanOut FAN_OUT = new CommandFanOut(Integer.getInteger("cruise.fanout.threads", 64),
+            Long.getLong("cruise.fanout.deadline-ms", 500), Integer.getInteger("cruise.fanout.max-misses", 3));
+    //Regelkreis, der speed, targetSpeed und gap hält
+    private final CruiseControlLoop CONTROL_LOOP = new CruiseControlLoop(Integer.getInteger("cruise.tick-rate", 50), this::onGapClosed);
+    //Schickt Befehle an andere Trucks über das binäre Protokoll, null falls wire.enabled nicht gesetzt ist
+    private final WireClient WIRE_CLIENT = WireClient.createIfEnabled(OWN_PORT);
+    //Verteilt Geschwindigkeitsbefehle mit einem Datagramm an alle Follower, null falls multicast.enabled nicht gesetzt ist
+    private MulticastCommandChannel commandChannel;
+    //Schickt die Telemetrie-Daten an den MonitoringService
+    private final TelemetryPublisher TELEMETRY = new TelemetryPublisher(this, OWN_PORT);
 
     private ArrayList<Integer> cruisePorts = new ArrayList<>();
 
-    ReentrantLock closeGapLock = new ReentrantLock();
-
 
     /**
-     * In der Cruise Methode wird ein Thread ausgeführt, der im Sekundentakt targetSpeed und das vorhandensein einer Lücke überprüft.
-     * Ist targetSpeed größer als speed, wird je nach Ausgandsgeschwindigkeit unterschiedlich schnell beschleunigt, indem speed unterschiedlich schnell hochgezählt wird.
-     * speed kann, aufgrund der Abstufungen, targetSpeed kurzzeitig überschreiten, regelt jedoch automatisch wieder runter. Dies ist für den Realismus so gewollt (keine perfekte Punktlandung beim beschleunigen).
-     * Ist targetSpeed kleiner als speed, wird gebremst, indem speed runtergezählt wird.
-     * Ist gap ungleich 0, wird die Geschwindigkeiten des jeweiligen Trucks kurzzeitig erhöht um die Lücke zu schließen.
-     * Dafür wird die zurückgelegte Strecke des aktuellen Trucks und des Vordermanns, zu dem aufgeschlossen werden muss, sekundengenau berechnet.
+     * Im Cruise Konstruktor wird der Regelkreis gestartet, der in einem festen Takt (standardmäßig 50 Hz) speed an
+     * targetSpeed angleicht und beim Schließen einer Lücke die zurückgelegten Strecken des Trucks und des Vordermanns berechnet.
      * Sobald der Abstand einen bestimmten Punkt unterschreitet, wird die Geschwindigkeit wieder an das Platoon angepasst.
-     * Außerdem qir die aktuelle Geschwindigkeit in regekmäßigen Abständen an die Monitoring Schnittstelle geschickt, um die aktuelle Geschwindigkeit anzuzeigen
+     * Außerdem werden die aktuellen Werte über den Telemetrie-Stream an die Monitoring Schnittstelle geschickt, um sie anzuzeigen
      */
     private Cruise() {
-        execHealth.scheduleAtFixedRate(new HealthCheckTask(), 0, 5, TimeUnit.SECONDS);
-        //updates speed to target speed
-
-        exec.scheduleAtFixedRate(() -> {
-            //Umrechnung von speed in km/h in km/s
-
-            //System.out.println("traveled distance: " + traveledDistance);
-            if(speed < targetSpeed) {
-                if (speed < 5){
-                    speed += 1;
-                    System.out.println("new speed: " + speed);
-                } else if(speed < 20){
-                    speed += 3;
-                    System.out.println("new speed: " + speed);
-                } else if(speed < 50){
-                    speed += 2;
-                    System.out.println("new speed: " + speed);
-                } else {
-                    speed += 1;
-                    System.out.println("new speed: " + speed);
-                }
-            } else if(speed > targetSpeed) {
-                speed -= 1;
-                System.out.println("new speed: " + speed);
-            }
-            if (getGap() != 0) {
-                traveledDistance += speed/3600.0;
-                traveledDistanceFrontTruck += (targetSpeed-10)/3600.0;
-                truckDistance = gap + traveledDistanceFrontTruck - traveledDistance;
-                if (truckDistance <= 0.025){
-                    setGap(0);
-                    traveledDistance = 0;
-                    traveledDistanceFrontTruck = 0;
-                    System.out.println("Gap closed!");
-                    slowDown(10);
-                }
-            }
-
-        }, 0, 1, TimeUnit.SECONDS);
+        HEARTBEAT_MONITOR.start(() -> new int[] {CruiseService.getPlatooningPort()}, this::onPlatooningServiceFailure);
+        CONTROL_LOOP.start();
+        TELEMETRY.start();
+    }
 
-        execMon.scheduleAtFixedRate(() -> {
-            try {
-                String url = Util.getBaseUriComponentsBuilder(1112, PathRegister.SET_SPEED).buildAndExpand(OWN_PORT).toUriString();
-                REST_TEMPLATE.put(url, speed);
-            } catch(ResourceAccessException e) {
-                //Monitoring Service ist offline
-            }
-        }, 0, 2, TimeUnit.SECONDS);
+    /**
+     * Wird vom Regelkreis aufgerufen, sobald die Lücke zum Vordermann geschlossen ist, und passt die Geschwindigkeit
+     * wieder an das Platoon an.
+     */
+    private void onGapClosed() {
+        System.out.println("Gap closed!");
+        slowDown(10);
     }
 
     /**
@@ -124,8 +82,8 @@ public class Cruise {
      */
     public int stop() {
         sendIfLeader(PathRegister.STOP, null);
-        targetSpeed = 0;
-        return speed = 0;
+        CONTROL_LOOP.setSpeeds(0, 0);
+        return 0;
     }
 
     /**
@@ -137,14 +95,15 @@ public class Cruise {
      */
     public int speedUp(int plus) {
         if(plus>0){
+            int targetSpeed = CONTROL_LOOP.getTargetSpeed();
             if(targetSpeed+plus<=80){
-                targetSpeed+=plus;
-            } else if (gap != 0){
-                targetSpeed+=plus;
+                CONTROL_LOOP.setTargetSpeed(targetSpeed+plus);
+            } else if (CONTROL_LOOP.getGap() != 0){
+                CONTROL_LOOP.setTargetSpeed(targetSpeed+plus);
             }
         }
         sendIfLeader(PathRegister.SPEEDUP, plus);
-        return speed;
+        return getSpeed();
     }
 
     /**
@@ -155,12 +114,13 @@ public class Cruise {
      */
     public int slowDown(int minus) {
         if(minus>0) {
+            int targetSpeed = CONTROL_LOOP.getTargetSpeed();
             if (targetSpeed-minus >= 0) {
-                targetSpeed-=minus;
+                CONTROL_LOOP.setTargetSpeed(targetSpeed-minus);
             }
         }
         sendIfLeader(PathRegister.SLOW_DOWN, minus);
-        return speed;
+        return getSpeed();
     }
 
     /**
@@ -169,7 +129,7 @@ public class Cruise {
      */
     public void setTargetSpeed(int targetSpeed) {
         if(targetSpeed >= 0){
-            this.targetSpeed = targetSpeed;
+            CONTROL_LOOP.setTargetSpeed(targetSpeed);
         }
     }
 
@@ -178,7 +138,7 @@ public class Cruise {
      * @return aktuellen Wert von targetSpeed
      */
     public int getTargetSpeed() {
-        return targetSpeed;
+        return CONTROL_LOOP.getTargetSpeed();
     }
 
     /**
@@ -187,6 +147,27 @@ public class Cruise {
      */
     public void setCruisePorts(ArrayList<Integer> ports) {
         cruisePorts = ports;
+        if (TELEMETRY.isBatchMode()) {
+            //Die Follower schicken ihre Geschwindigkeitsmeldungen ab jetzt an diesen Truck. Wird unter dem leaderLock
+            //aufgerufen, daher darf die Nachricht bei voller Warteschlange nicht im aufrufenden Thread verschickt werden
+            MessageDispatcher.handOff(() -> sendToOtherCruiseServices(0, PathRegister.SET_REPORT_PORT, OWN_PORT));
+        }
+    }
+
+    /**
+     * Nimmt Geschwindigkeitsmeldungen der Follower entgegen, die der Leader gesammelt an das Monitoring weiterleitet.
+     * @param reports Meldungen im Format von SpeedReportBatch
+     */
+    public void acceptSpeedReports(long[] reports) {
+        TELEMETRY.acceptReports(reports);
+    }
+
+    /**
+     * Setzt den Cruise Port des Leaders, an den die eigenen Geschwindigkeitsmeldungen geschickt werden.
+     * @param leaderCruisePort Cruise Port des Leaders
+     */
+    public void setReportPort(int leaderCruisePort) {
+        TELEMETRY.setReportPort(leaderCruisePort);
     }
 
     /**
@@ -199,10 +180,10 @@ public class Cruise {
 
     /**
      * Getter Methode für speed.
-     * @return Wert von speed
+     * @return Wert von speed, gerundet auf ganze km/h
      */
     public int getSpeed() {
-        return speed;
+        return (int) Math.round(CONTROL_LOOP.getSpeed());
     }
 
     /**
@@ -210,7 +191,7 @@ public class Cruise {
      * @param speed die gewollte Geschwindigkeit
      */
     public void setSpeed(int speed) {
-        this.speed = speed;
+        CONTROL_LOOP.setSpeed(speed);
     }
 
     /**
@@ -224,22 +205,34 @@ public class Cruise {
     /**
      * Setter Methode für isLeader.
      * Wenn leader false ist wird cruisePorts auf null gesetzt, weil er den anderen Trucks dann keine Nachrichten mehr
-     * schicken muss.
+     * schicken muss, und der Multicast-Kanal kündigt den Followern an, dass sie die Befehle des neuen Leaders annehmen.
      * @param leader Wert auf den isLeader gesetzt wird
      */
     public void setLeader(boolean leader) {
         isLeader = leader;
         if (!leader) {
             cruisePorts = null;
+            MulticastCommandChannel channel = commandChannel;
+            if (channel != null) {
+                channel.resign();
+            }
         }
     }
 
+    /**
+     * Gibt die insgesamt zurückgelegte Strecke des Trucks zurück
+     * @return Strecke in km
+     */
+    public double getTraveledDistance() {
+        return CONTROL_LOOP.getOdometer();
+    }
+
     /**
      * Setter Methode für gap
      * @param gap Wert auf den gap gesetzt werden soll
      */
     public void setGap(double gap) {
-        enqueueTask(closeGapLock, () -> this.gap=gap);
+        CONTROL_LOOP.setGap(gap);
     }
 
     /**
@@ -247,7 +240,7 @@ public class Cruise {
      * @return Wert von gap
      */
     public double getGap() {
-        return enqueueTask(closeGapLock,()-> gap);
+        return CONTROL_LOOP.getGap();
     }
 
 
@@ -257,85 +250,125 @@ public class Cruise {
      * @param startCruisePort port des Trucks der closeGap startet.
      */
     public void sendCloseGap(int startCruisePort) {
-        Thread thread = new Thread(() -> {
+        MessageDispatcher.handOff(() -> {
             int startIndex = cruisePorts.indexOf(startCruisePort);
             sendToOtherCruiseServices(startIndex, PathRegister.CLOSE_GAP, null);
         });
-        thread.start();
+    }
 
+    /**
+     * Setter Methode für den Multicast-Kanal, über den der Leader seine Geschwindigkeitsbefehle verteilt.
+     * @param channel der gestartete Kanal, null falls die Befehle einzeln verschickt werden sollen
+     */
+    public void setCommandChannel(MulticastCommandChannel channel) {
+        commandChannel = channel;
     }
 
     /**
-     * Methode sendet anderen Trucks zu, ob aktueller Truck der Leadertruck ist.
+     * Methode sendet anderen Trucks zu, ob aktueller Truck der Leadertruck ist. Ist der Multicast-Kanal aktiv, erreicht
+     * ein einziges Datagramm alle Follower, sonst wird der Befehl jedem Follower einzeln geschickt. Follower, die im
+     * Multicast-Kanal nicht mehr antworten, erhalten einen Health-Check und werden wie beim einzelnen Versand aus der
+     * Liste gelöscht, falls sie nicht erreichbar sind.
      * @param path Pfad des Zieltrucks
      * @param value Der zu sendende Wert
      */
     public void sendIfLeader(String path, Integer value) {
         if(isLeader) {
-            Thread thread = new Thread(() -> sendToOtherCruiseServices(0, path, value));
-            thread.start();
+            MulticastCommandChannel channel = commandChannel;
+            ArrayList<Integer> ports = cruisePorts;
+            if (channel != null && ports != null && !ports.isEmpty() && channel.publish(path, value)) {
+                List<Integer> silent = channel.takeSilentFollowers(ports);
+                if (!silent.isEmpty()) {
+                    MessageDispatcher.handOff(() -> sendToOtherCruiseServices(silent, PathRegister.HEALTH_CHECK, null));
+                }
+                return;
+            }
+            //Wird unter dem speedLock aufgerufen und darf daher nie selbst auf die Follower warten
+            MessageDispatcher.handOff(() -> sendToOtherCruiseServices(0, path, value));
         }
     }
 
     /**
-     * Sendet Informationen abhängig von der Position im Platoon an andere Cruise Services.
+     * Sendet Informationen abhängig von der Position im Platoon an andere Cruise Services. Alle Empfänger werden dabei
+     * gleichzeitig angesprochen. Nicht erreichbare Cruise Services werden anschließend aus der Liste gelöscht, Trucks die
+     * die Deadline verpasst haben werden lediglich gemeldet.
      * @param startIndex Position im Platoon, ab der alle Trucks die Nschricht bekommen sollen
      * @param path Pfad im Controller des Zieltrucks, der ausgeführt werden soll
      * @param toSend Inhalt der Nachricht
      * @param <T> Objekttyp der Nachricht
      */
     private <T> void sendToOtherCruiseServices(int startIndex, String path, T toSend) {
-        ArrayList<Integer> portIndexesToRemove = new ArrayList<>();
-        for (int i = startIndex; i < cruisePorts.size(); i++) {
-            int cruisePort = cruisePorts.get(i);
-            try {
-                sendToTruck(path, cruisePort, toSend);
-            } catch (ResourceAccessException e) {
-                System.out.println("CruiseService mit dem Port " + cruisePort + " ist nicht erreichbar und wird im Anschluss aus der Liste gelöscht...");
-                portIndexesToRemove.add(i);
-            }
+        ArrayList<Integer> ports = cruisePorts;
+        if (ports == null || startIndex < 0 || startIndex >= ports.size()) {
+            return;
         }
-        for (int index : portIndexesToRemove) {
-            cruisePorts.remove(index);
+        sendToOtherCruiseServices(new ArrayList<>(ports.subList(startIndex, ports.size())), path, toSend);
+    }
+
+    /**
+     * Sendet Informationen gleichzeitig an die übergebenen Cruise Services und löscht die nicht erreichbaren aus der Liste.
+     * @param targets Ports der Cruise Services, die die Nachricht bekommen sollen
+     * @param path Pfad im Controller des Zieltrucks, der ausgeführt werden soll
+     * @param toSend Inhalt der Nachricht
+     * @param <T> Objekttyp der Nachricht
+     */
+    private <T> void sendToOtherCruiseServices(List<Integer> targets, String path, T toSend) {
+        ArrayList<Integer> ports = cruisePorts;
+        if (ports == null) {
+            return;
+        }
+        CommandFanOut.Result result = FAN_OUT.dispatch(targets, cruisePort -> sendToTruck(path, cruisePort, toSend));
+
+        for (int cruisePort : result.getUnreachable()) {
+            System.out.println("CruiseService mit dem Port " + cruisePort + " ist nicht erreichbar und wird aus der Liste gelöscht...");
         }
+        if (!result.getMissedDeadline().isEmpty()) {
+            System.out.println("Folgende CruiseServices haben " + path + " nicht rechtzeitig bestätigt: " + result.getMissedDeadline());
+        }
+        ports.removeAll(result.getUnreachable());
     }
 
     /**
-     * Sendet Informationen an einen anderen Truck
+     * Sendet Informationen an einen anderen Truck. Ist das binäre Protokoll aktiviert und besteht die Nachricht höchstens
+     * aus einer Zahl, wird sie als Frame geschickt, sonst über HTTP. Die URI kommt dabei aus der EndpointTable.
      * @param path Pfad im Controller des Zieltrucks, der ausgeführt werden soll
      * @param port Port des Trucks
      * @param toSend Inhalt der Nachricht
      * @param <T> Objekttyp der Nachricht
      */
     private <T> void sendToTruck(String path, int port, T toSend) throws ResourceAccessException {
-        UriComponentsBuilder builder = Util.getBaseUriComponentsBuilder(port, path);
-        HttpEntity<T> entity = null;
-        if (toSend != null) {
-            entity = new HttpEntity<>(toSend);
+        if (WIRE_CLIENT != null && (toSend == null || toSend instanceof Integer) && WIRE_CLIENT.send(port, path, (Integer) toSend)) {
+            return;
         }
-        REST_TEMPLATE.put(builder.toUriString(), entity);
+        REST_TEMPLATE.put(EndpointTable.get(port, path), EndpointTable.entityOf(toSend));
     }
 
     /**
-     * Schickt eine Anfrage an den eigenen Platooning_Service die prüft, ob er noch online ist. Wenn ja passiert nichts,
-     * wenn nein fährt auch der Cruise Service herunter
+     * Schickt eine Health-Check-Anfrage an den eigenen Platooning Service. Jede Antwort zählt als Heartbeat.
+     * @param ownPlatooningPort Port des eigenen Platooning Services
      */
-    private class HealthCheckTask implements Runnable {
-
-        @Override
-        public void run() {
-            int ownPlatooningPort = CruiseService.getPlatooningPort();
-            if (ownPlatooningPort > 0) {
-                try {
-                    UriComponentsBuilder builder = Util.getBaseUriComponentsBuilder(ownPlatooningPort, PathRegister.HEALTH_CHECK);
-                    REST_TEMPLATE.put(builder.toUriString(), null);
-                } catch (ResourceAccessException e) {
-                    System.out.println("Platooning-Service mit Port: " + ownPlatooningPort + " ist ausgefallen!");
-                    System.out.println("Service wird heruntergefahren...");
-                    System.exit(0);
-                }
-            }
-        }
+    private void sendHealthCheck(int ownPlatooningPort) {
+        sendToTruck(PathRegister.HEALTH_CHECK, ownPlatooningPort, null);
+    }
+
+    /**
+     * Wird vom HeartbeatMonitor aufgerufen, wenn der eigene Platooning Service nicht mehr antwortet. Dann fährt auch der
+     * Cruise Service herunter.
+     * @param ownPlatooningPort Port des eigenen Platooning Services
+     */
+    private void onPlatooningServiceFailure(int ownPlatooningPort) {
+        System.out.println("Platooning-Service mit Port: " + ownPlatooningPort + " ist ausgefallen!");
+        System.out.println("Service wird heruntergefahren...");
+        //Nicht im Takt des HeartbeatMonitors beenden, da dieser beim Herunterfahren gestoppt wird
+        MessageDispatcher.handOff(() -> System.exit(0));
+    }
+
+    /**
+     * Gibt die Verdachtswerte des Failure-Detectors für den eigenen Platooning Service zurück.
+     * @return Port des Platooning Services und sein aktueller Verdachtswert phi
+     */
+    public Map<Integer, Double> getSuspicionLevels() {
+        return HEARTBEAT_MONITOR.getSuspicionLevels();
     }
 
     /**
@@ -345,9 +378,13 @@ public class Cruise {
     @PreDestroy
     public void shutdown() {
         System.out.println("Stoppe CruiseService...");
-        execHealth.shutdown();
-        execMon.shutdown();
-        exec.shutdown();
+        HEARTBEAT_MONITOR.shutdown();
+        if (WIRE_CLIENT != null) {
+            WIRE_CLIENT.shutdown();
+        }
+        TELEMETRY.shutdown();
+        CONTROL_LOOP.stop();
+        FAN_OUT.shutdown();
         System.out.println("CruiseService wird heruntergefahren...");
     }
 
@@ -367,15 +404,4 @@ public class Cruise {
         return 0.02;
     }
 
-    /**
-     * Übernimmt die Sychronisierung und arbeitet mit der Util Klasse. In dem gelockten Bereich wird etwas zurückgegeben.
-     * @param lock der Lock der verwendet werden soll.
-     * @param callable das, was in dem kritischen Bereich ausgeführt werden soll in einem Objekt einer Klasse, dass das Callable-Interface implementiert.
-     * @param <T> Typ des Rückgabewertes
-     * @return Rückgabe von den in dem in callable ausgeführten Code, null, falls eine Exception auftritt
-     */
-    private <T> T enqueueTask(ReentrantLock lock, Callable<T> callable) {
-        return Util.enqueueTask(lock, callable);
-    }
-
 }
@@ -0,0 +1,225 @@
+package org.g1ga.truckplatooning.truck.cruise;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Diese Klasse ist der Regelkreis des Cruise Services. Sie führt in einem festen Zeitschritt die Anpassung von speed an
+ * targetSpeed durch und berechnet beim Schließen einer Lücke die zurückgelegten Strecken.
+ * Die Taktrate ist frei wählbar (z.B. 50-100 Hz). Der Takt wird gegen absolute Zeitpunkte geplant, sodass sich
+ * Verzögerungen einzelner Ticks nicht aufsummieren und jeder Tick genau einen Zeitschritt dt integriert.
+ * Im Takt selbst werden keine Objekte erzeugt und keine Ausgaben gemacht. Ein Tick und die Setter laufen unter
+ * demselben Monitor, sodass ein Tick eine gleichzeitig gesetzte Geschwindigkeit (z.B. beim Stoppen) nicht mit dem
+ * zuvor gelesenen Wert überschreibt.
+ */
+public class CruiseControlLoop {
+
+    //Abstand in km, ab dem eine Lücke als geschlossen gilt
+    private static final double GAP_CLOSED_DISTANCE = 0.025;
+    //Geschwindigkeitsdifferenz zum Vordermann beim Schließen einer Lücke in km/h
+    private static final int GAP_CLOSING_SPEED_DIFFERENCE = 10;
+    //Maximal nachzuholende Zeit nach einer längeren Pause des Threads
+    private static final long MAX_CATCH_UP_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long periodNanos;
+    private final double dtSeconds;
+    private final Runnable onGapClosed;
+
+    //in km/h
+    private volatile double speed = 0;
+    //maximal 80 km/h
+    private volatile int targetSpeed = 0;
+    //in km
+    private volatile double gap = 0;
+    private volatile double truckDistance = 0;
+    //insgesamt zurückgelegte Strecke in km
+    private volatile double odometer = 0;
+    //werden nur vom Regelkreis selbst geschrieben
+    private double traveledDistance = 0;
+    private double traveledDistanceFrontTruck = 0;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Konstruktor, der einen neuen Regelkreis mit der übergebenen Taktrate erstellt. Der Regelkreis läuft erst nach
+     * dem Aufruf von start().
+     * @param tickRateHz Anzahl der Zeitschritte pro Sekunde
+     * @param onGapClosed wird im Regelkreis ausgeführt, sobald eine Lücke geschlossen wurde
+     */
+    public CruiseControlLoop(int tickRateHz, Runnable onGapClosed) {
+        int ticks = Math.max(1, tickRateHz);
+        this.periodNanos = TimeUnit.SECONDS.toNanos(1) / ticks;
+        this.dtSeconds = 1.0 / ticks;
+        this.onGapClosed = onGapClosed;
+    }
+
+    /**
+     * Startet den Thread des Regelkreises.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::runLoop, "cruise-control-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Beendet den Thread des Regelkreises.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void runLoop() {
+        long nextTick = System.nanoTime();
+        while (running) {
+            tick();
+            nextTick += periodNanos;
+            long delay = nextTick - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            } else if (-delay > MAX_CATCH_UP_NANOS) {
+                //Der Thread stand zu lange, die verpasste Zeit wird nicht nachgeholt
+                nextTick = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Führt einen einzelnen Zeitschritt dt aus.
+     * Ist targetSpeed größer als speed, wird je nach Ausgangsgeschwindigkeit unterschiedlich stark beschleunigt
+     * (1, 3, 2 bzw. 1 km/h pro Sekunde), ist targetSpeed kleiner, wird mit 1 km/h pro Sekunde gebremst. Durch den
+     * kleinen Zeitschritt wird targetSpeed dabei genau erreicht.
+     * Ist gap ungleich 0, werden die zurückgelegten Strecken des Trucks und des Vordermanns aufsummiert, bis der Abstand
+     * einen bestimmten Punkt unterschreitet.
+     */
+    public void tick() {
+        if (integrate()) {
+            //Außerhalb des Monitors, da der Callback die Geschwindigkeit wieder über die Setter ändert
+            onGapClosed.run();
+        }
+    }
+
+    /**
+     * Integriert einen Zeitschritt.
+     * @return true, falls in diesem Zeitschritt die Lücke geschlossen wurde
+     */
+    private synchronized boolean integrate() {
+        double currentSpeed = speed;
+        int currentTargetSpeed = targetSpeed;
+        if (currentSpeed < currentTargetSpeed) {
+            double acceleration;
+            if (currentSpeed < 5) {
+                acceleration = 1;
+            } else if (currentSpeed < 20) {
+                acceleration = 3;
+            } else if (currentSpeed < 50) {
+                acceleration = 2;
+            } else {
+                acceleration = 1;
+            }
+            currentSpeed = Math.min(currentTargetSpeed, currentSpeed + acceleration * dtSeconds);
+        } else if (currentSpeed > currentTargetSpeed) {
+            currentSpeed = Math.max(currentTargetSpeed, currentSpeed - dtSeconds);
+        }
+        speed = currentSpeed;
+        odometer += currentSpeed * dtSeconds / 3600.0;
+
+        double currentGap = gap;
+        if (currentGap != 0) {
+            //Umrechnung von speed in km/h in km pro Zeitschritt
+            traveledDistance += currentSpeed * dtSeconds / 3600.0;
+            traveledDistanceFrontTruck += (currentTargetSpeed - GAP_CLOSING_SPEED_DIFFERENCE) * dtSeconds / 3600.0;
+            truckDistance = currentGap + traveledDistanceFrontTruck - traveledDistance;
+            if (truckDistance <= GAP_CLOSED_DISTANCE) {
+                gap = 0;
+                traveledDistance = 0;
+                traveledDistanceFrontTruck = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Getter Methode für speed.
+     * @return aktuelle Geschwindigkeit in km/h
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Setzt die Geschwindigkeit direkt.
+     * @param speed die gewollte Geschwindigkeit in km/h
+     */
+    public synchronized void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Setzt Geschwindigkeit und angestrebte Geschwindigkeit gemeinsam, sodass kein Tick dazwischen liegt.
+     * @param speed die gewollte Geschwindigkeit in km/h
+     * @param targetSpeed angestrebte Geschwindigkeit in km/h
+     */
+    public synchronized void setSpeeds(double speed, int targetSpeed) {
+        this.speed = speed;
+        this.targetSpeed = targetSpeed;
+    }
+
+    /**
+     * Getter Methode für targetSpeed.
+     * @return angestrebte Geschwindigkeit in km/h
+     */
+    public int getTargetSpeed() {
+        return targetSpeed;
+    }
+
+    /**
+     * Setter Methode für targetSpeed.
+     * @param targetSpeed angestrebte Geschwindigkeit in km/h
+     */
+    public synchronized void setTargetSpeed(int targetSpeed) {
+        this.targetSpeed = targetSpeed;
+    }
+
+    /**
+     * Getter Methode für gap
+     * @return die zu schließende Lücke in km, 0 wenn keine Lücke besteht
+     */
+    public double getGap() {
+        return gap;
+    }
+
+    /**
+     * Setter Methode für gap
+     * @param gap die zu schließende Lücke in km
+     */
+    public synchronized void setGap(double gap) {
+        this.gap = gap;
+    }
+
+    /**
+     * Gibt die insgesamt zurückgelegte Strecke zurück
+     * @return Strecke in km
+     */
+    public double getOdometer() {
+        return odometer;
+    }
+
+    /**
+     * Gibt den zuletzt berechneten Abstand zum Vordermann beim Schließen einer Lücke zurück
+     * @return Abstand in km
+     */
+    public double getTruckDistance() {
+        return truckDistance;
+    }
+
+}
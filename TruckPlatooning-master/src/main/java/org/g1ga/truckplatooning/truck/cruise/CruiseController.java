@@ -2,16 +2,23 @@ package org.g1ga.truckplatooning.truck.cruise;
 
 import org.g1ga.truckplatooning.PathRegister;
 import org.g1ga.truckplatooning.Util;
+import org.g1ga.truckplatooning.wire.MulticastCommandChannel;
+import org.g1ga.truckplatooning.wire.WireFrame;
+import org.g1ga.truckplatooning.wire.WireServer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
 
 /**
  *  Die CruiseController Klasse dient als Controller für die Cruise Schnittstelle.
@@ -23,15 +30,60 @@ public class CruiseController {
     private final Cruise CRUISECONTROL = Cruise.getInstance();
     ReentrantLock speedLock = new ReentrantLock();
     ReentrantLock leaderLock = new ReentrantLock();
+    //Nimmt die Befehle des Leaders über das binäre Protokoll entgegen, null falls wire.enabled nicht gesetzt ist
+    private final WireServer WIRE_SERVER = WireServer.startIfEnabled("cruise", wireHandlers());
+    //Empfängt die Geschwindigkeitsbefehle des Leaders über Multicast, null falls multicast.enabled nicht gesetzt ist
+    private final MulticastCommandChannel COMMAND_CHANNEL = MulticastCommandChannel.startIfEnabled("cruise", CruiseService.getPort(), wireHandlers());
 
 
     /**
-     * Konstruktor, welcher auf der Konsole lediglich ausgibt, dass der HealthCheck begonnen hat
+     * Konstruktor, welcher den Multicast-Kanal an Cruise übergibt und auf der Konsole ausgibt, dass der HealthCheck
+     * begonnen hat
      */
     public CruiseController() {
+        CRUISECONTROL.setCommandChannel(COMMAND_CHANNEL);
         System.out.println("Starte regelmäßige Überprüfung ob Platoonong-Service am Port: " +CruiseService.getPlatooningPort() + " noch erreichbar ist.");
     }
 
+    /**
+     * Ordnet den Frames des binären Protokolls dieselben Methoden zu wie den entsprechenden HTTP-Pfaden.
+     * @return Handler pro Frame-Typ
+     */
+    private Map<Byte, IntConsumer> wireHandlers() {
+        Map<Byte, IntConsumer> handlers = new HashMap<>();
+        handlers.put(WireFrame.HEALTH_CHECK, value -> {});
+        handlers.put(WireFrame.SPEEDUP, this::speedUp);
+        handlers.put(WireFrame.SLOW_DOWN, this::slowDown);
+        handlers.put(WireFrame.STOP, value -> stop());
+        handlers.put(WireFrame.CLOSE_GAP, value -> closeGap());
+        handlers.put(WireFrame.CLOSE_GAP_LEADER, this::closeGapLeader);
+        handlers.put(WireFrame.SET_REPORT_PORT, this::setReportPort);
+        return handlers;
+    }
+
+    /**
+     * GetMapping um den Port des binären Protokolls abzufragen.
+     * @return Port des WireServers, -1 falls das Protokoll nicht aktiviert ist
+     */
+    @GetMapping(PathRegister.WIRE_PORT)
+    private int getWirePort() {
+        return WIRE_SERVER != null ? WIRE_SERVER.getPort() : -1;
+    }
+
+    /**
+     * Beendet das binäre Protokoll und den Multicast-Kanal beim Herunterfahren.
+     */
+    @PreDestroy
+    private void shutdownWire() {
+        if (WIRE_SERVER != null) {
+            WIRE_SERVER.shutdown();
+        }
+        if (COMMAND_CHANNEL != null) {
+            CRUISECONTROL.setCommandChannel(null);
+            COMMAND_CHANNEL.shutdown();
+        }
+    }
+
     /**
      * GetMapping um speed eines Trucks abzufragen.
      * @return speed des angesprochenen Trucks
@@ -104,6 +156,24 @@ public class CruiseController {
         enqueueTask(leaderLock, () -> CRUISECONTROL.setCruisePorts(ports));
     }
 
+    /**
+     * PutMapping, über das der Leader die Geschwindigkeitsmeldungen seiner Follower sammelt.
+     * @param reports Meldungen im Format von SpeedReportBatch
+     */
+    @PutMapping(PathRegister.REPORT_SPEED)
+    private void reportSpeed(@RequestBody long[] reports) {
+        CRUISECONTROL.acceptSpeedReports(reports);
+    }
+
+    /**
+     * PutMapping, über das der Leader mitteilt, an welchen Port die Geschwindigkeitsmeldungen geschickt werden sollen.
+     * @param leaderCruisePort Cruise Port des Leaders
+     */
+    @PutMapping(PathRegister.SET_REPORT_PORT)
+    private void setReportPort(@RequestBody Integer leaderCruisePort) {
+        CRUISECONTROL.setReportPort(leaderCruisePort);
+    }
+
     /**
      * PutMapping für die Weiterleitung von closeGap an alle hinteren Trucks.
      * @param cruiseControlPort
@@ -140,6 +210,15 @@ public class CruiseController {
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    /**
+     * GetMapping um die Verdachtswerte des Failure-Detectors für den eigenen Platooning Service abzufragen.
+     * @return Port des Platooning Services und sein aktueller Verdachtswert phi
+     */
+    @GetMapping(PathRegister.SUSPICION)
+    private Map<Integer, Double> getSuspicionLevels() {
+        return CRUISECONTROL.getSuspicionLevels();
+    }
+
 
     /**
      * Greift auf die Util Methode zu und lockt Bereiche. Im gelockten Bereich wird nichts zurückgegeben.
@@ -1,11 +1,16 @@
 package org.g1ga.truckplatooning.truck.cruise;
 
+import org.g1ga.truckplatooning.HeartbeatFilter;
 import org.g1ga.truckplatooning.PathRegister;
+import org.g1ga.truckplatooning.RestClientFactory;
+import org.g1ga.truckplatooning.TruckPlatooningApplication;
 import org.g1ga.truckplatooning.Util;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 import org.springframework.util.SocketUtils;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.Scanner;
 
@@ -14,19 +19,33 @@ import java.util.Scanner;
  * Kontakt zum Leader (für den Erhalt der aktuellen Geschwindigkeit) und dem eigenen Platooning Service auf.
  */
 @SpringBootApplication
+@Import(HeartbeatFilter.class)
 public class CruiseService {
 
     private static int platooningPort;
     private static final int PORT = SocketUtils.findAvailableTcpPort(49152, 65535);
-    private static final RestTemplate REST_TEMPLATE = new RestTemplate();
+    private static final RestTemplate REST_TEMPLATE = RestClientFactory.getRestTemplate();
+    //Der Platooning Service antwortet auf ADD_CRUISE_CONTROL erst nach dem Anhängen an den Platoon, daher ist der Read-Timeout länger
+    private static final RestTemplate JOIN_REST_TEMPLATE = RestClientFactory.createRestTemplate(
+            Integer.getInteger("platooning.join-timeout-ms", 300000) + 5000);
 
     /**
      * Starten den Cruise Service. Ist nur möglich, wenn der Registration Server läuft und ein Platooning Service frei ist.
+     * Das Pairing-Token des zugehörigen Platooning Service kann als zweites Argument oder über die System-Property
+     * registration.token angegeben werden. Ohne Token wird der Platooning Service zugeordnet, der am längsten wartet.
+     * Ist das Token keine Zahl größer oder gleich 0, wird die Verwendung ausgegeben und der Start abgebrochen.
      * @param args Konsolen-Argumente
      */
     public static void main(String[] args) {
 
-        int[] data = Util.getRegistrationData(PathRegister.REGISTER_CRUISE, PORT);
+        String token = args.length > 1 ? args[1] : System.getProperty("registration.token", "0");
+        int pairingToken = parseToken(token);
+        if (pairingToken < 0) {
+            System.err.println("Ungültiges Pairing-Token: " + token);
+            TruckPlatooningApplication.showUsage();
+            return;
+        }
+        int[] data = Util.getRegistrationData(PathRegister.REGISTER_CRUISE, PORT, pairingToken);
 
         if (data != null) {
 
@@ -34,6 +53,7 @@ public class CruiseService {
 
             System.setProperty("spring.config.name", "cruise-server");
             System.setProperty("server.port", String.valueOf(PORT));
+            RestClientFactory.setSenderPort(PORT);
 
             System.out.println("CruiseService with ID: " + id + " on PORT: "
                     + System.getProperty("server.port")+" with PID: "+ProcessHandle.current().pid());
@@ -71,8 +91,12 @@ public class CruiseService {
             Cruise.getInstance().setTargetSpeed(initialTargetSpeed);
 
             System.out.println("Melde CruiseService beim PlatooningService an...");
-            String url = Util.getBaseUriComponentsBuilder(platooningPort, PathRegister.ADD_CRUISE_CONTROL).toUriString();
-            REST_TEMPLATE.put(url, PORT);
+            UriComponentsBuilder builder = Util.getBaseUriComponentsBuilder(platooningPort, PathRegister.ADD_CRUISE_CONTROL);
+            if (data.length > 3) {
+                //Der Leader kann sich seit der Registrierung des Platooning Service geändert haben
+                builder.queryParam("leaderPort", data[3]);
+            }
+            JOIN_REST_TEMPLATE.put(builder.toUriString(), PORT);
 
             Scanner sc = new Scanner(System.in);
             while (sc.hasNext()) {
@@ -99,12 +123,25 @@ public class CruiseService {
             }
         } else {
             System.err.println("Der Start musste abgebrochen werden, bitte:" +
-                    "\n- stelle sicher, dass gerade keine Wahl läuft" +
                     "\n- beachte, dass immer ein PlatooningService und danach ein CruiseService gestartet werden muss." +
+                    "\n- beachte, dass die Warteschlange des RegistrationServers voll sein oder die Wartezeit abgelaufen sein kann" +
                     "\n- stelle sicher, dass der RegistrationServer online ist");
         }
     }
 
+    /**
+     * Liest das Pairing-Token von der Kommandozeile oder aus registration.token.
+     * @param token das angegebene Token
+     * @return das Token, -1 falls es keine Zahl größer oder gleich 0 ist
+     */
+    private static int parseToken(String token) {
+        try {
+            return Math.max(Integer.parseInt(token.trim()), -1);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     /**
      * Ermöglich den Zugriff auf den Port des eigenen Platooning Services, welcher vom Registration Server übergeben wird
      * @return der Port dieses Platooning Services
@@ -0,0 +1,297 @@
+package org.g1ga.truckplatooning.truck.cruise;
+
+import org.g1ga.truckplatooning.EndpointTable;
+import org.g1ga.truckplatooning.PathRegister;
+import org.g1ga.truckplatooning.RestClientFactory;
+import org.g1ga.truckplatooning.SpeedReportBatch;
+import org.g1ga.truckplatooning.TelemetryCodec;
+import org.g1ga.truckplatooning.Util;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diese Klasse schickt die Telemetrie-Daten (speed, targetSpeed, gap und zurückgelegte Strecke) eines Cruise Services
+ * über eine dauerhafte WebSocket-Verbindung an den MonitoringService. Pro Sendeintervall wird höchstens ein Frame
+ * geschickt, der nur die Werte enthält, die sich seit dem letzten Frame geändert haben. Hat sich nichts geändert, wird
+ * nichts gesendet. In regelmäßigen Abständen wird ein vollständiger Frame geschickt, damit der MonitoringService
+ * nach einem Neustart wieder alle Werte kennt.
+ * Ist der Stream nicht verfügbar, wird die Geschwindigkeit wie bisher per HTTP an den MonitoringService geschickt.
+ * Mit telemetry.transport=batch wird statt des Streams in jedem Intervall eine Geschwindigkeitsmeldung verschickt. Die
+ * Follower schicken sie an den Leader, der alle Meldungen sammelt und als eine einzige Batch an den MonitoringService
+ * weiterleitet. Solange ein Follower den Leader nicht kennt oder nicht erreicht, meldet er sich direkt beim
+ * MonitoringService.
+ * Der Port des zuständigen Shards wird bei jedem Senden über Util.getMonitoringPort bestimmt, sodass der Publisher nach
+ * einem zunächst nicht erreichbaren RegistrationServer auf den richtigen Shard wechselt.
+ */
+public class TelemetryPublisher {
+
+    //Änderung der Strecke in km, ab der sie erneut gesendet wird
+    private static final double DISTANCE_RESOLUTION = 0.001;
+    private static final long RECONNECT_INTERVAL_MILLIS = 2000;
+    private static final long HTTP_FALLBACK_INTERVAL_MILLIS = 2000;
+
+    private final Cruise cruise;
+    private final int ownPort;
+    private final long flushMillis;
+    private final int keyFrameInterval;
+    private final RestTemplate REST_TEMPLATE = RestClientFactory.getRestTemplate();
+    private final StandardWebSocketClient webSocketClient = new StandardWebSocketClient();
+    private final ScheduledExecutorService execFlush = Executors.newSingleThreadScheduledExecutor();
+    private final ByteBuffer buffer = ByteBuffer.allocate(TelemetryCodec.MAX_FRAME_SIZE);
+    private final boolean batchMode;
+    private final long batchMillis;
+    //beim Leader gesammelte, noch nicht weitergeleitete Meldungen der Follower
+    private final ConcurrentHashMap<Integer, long[]> followerReports = new ConcurrentHashMap<>();
+    //Cruise Port des Leaders, an den die eigenen Meldungen geschickt werden, 0 wenn unbekannt
+    private volatile int reportPort = 0;
+
+    private volatile WebSocketSession session;
+    //Port des Shards, zu dem der Stream aufgebaut wurde
+    private volatile int streamPort = 0;
+    private volatile boolean connecting = false;
+    private long lastConnectAttempt = 0;
+    private long lastHttpFallback = 0;
+    private volatile int flushesSinceKeyFrame = 0;
+
+    //zuletzt gesendete Werte
+    private int sentSpeed = -1;
+    private int sentTargetSpeed = -1;
+    private double sentGap = -1;
+    private double sentTraveledDistance = -1;
+
+    /**
+     * Konstruktor, der einen neuen Publisher für den übergebenen Cruise Service erstellt.
+     * @param cruise der Cruise Service, dessen Werte gesendet werden
+     * @param ownPort Port des eigenen Cruise Services
+     */
+    public TelemetryPublisher(Cruise cruise, int ownPort) {
+        this.cruise = cruise;
+        this.ownPort = ownPort;
+        this.flushMillis = Long.getLong("telemetry.flush-ms", 100);
+        this.keyFrameInterval = Integer.getInteger("telemetry.keyframe-interval", 50);
+        this.batchMode = "batch".equals(System.getProperty("telemetry.transport", "stream"));
+        this.batchMillis = Long.getLong("telemetry.batch-ms", 1000);
+    }
+
+    /**
+     * Startet das regelmäßige Senden.
+     */
+    public void start() {
+        if (batchMode) {
+            execFlush.scheduleAtFixedRate(this::flushBatch, 0, batchMillis, TimeUnit.MILLISECONDS);
+        } else {
+            execFlush.scheduleAtFixedRate(this::flush, 0, flushMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Gibt zurück, ob die Werte als Batch statt über den Stream gesendet werden.
+     * @return true bei telemetry.transport=batch
+     */
+    public boolean isBatchMode() {
+        return batchMode;
+    }
+
+    /**
+     * Setzt den Cruise Port des Leaders, an den die eigenen Meldungen geschickt werden.
+     * @param reportPort Cruise Port des Leaders
+     */
+    public void setReportPort(int reportPort) {
+        this.reportPort = reportPort;
+    }
+
+    /**
+     * Nimmt Meldungen von Followern entgegen, die mit der nächsten eigenen Batch weitergeleitet werden. Pro Truck wird
+     * nur die neueste Meldung behalten.
+     * @param reports Meldungen im Format von SpeedReportBatch
+     */
+    public void acceptReports(long[] reports) {
+        for (int i = 0; i < SpeedReportBatch.size(reports); i++) {
+            int from = i * SpeedReportBatch.TUPLE_SIZE;
+            long[] report = Arrays.copyOfRange(reports, from, from + SpeedReportBatch.TUPLE_SIZE);
+            followerReports.merge((int) report[SpeedReportBatch.CRUISE_PORT], report, (old, current) ->
+                    current[SpeedReportBatch.TIMESTAMP] >= old[SpeedReportBatch.TIMESTAMP] ? current : old);
+        }
+    }
+
+    /**
+     * Beendet das Senden und schließt den Stream.
+     */
+    public void shutdown() {
+        execFlush.shutdown();
+        WebSocketSession currentSession = session;
+        if (currentSession != null) {
+            try {
+                currentSession.close();
+            } catch (IOException e) {
+                //Stream ist bereits geschlossen
+            }
+        }
+    }
+
+    private void flush() {
+        try {
+            int monitoringPort = Util.getMonitoringPort();
+            WebSocketSession currentSession = session;
+            if (currentSession != null && currentSession.isOpen() && streamPort != monitoringPort) {
+                //Der Shard ist inzwischen bekannt, der Stream zum Standard-Port wird ersetzt
+                session = null;
+                currentSession.close();
+                currentSession = null;
+            }
+            if (currentSession == null || !currentSession.isOpen()) {
+                connect(monitoringPort);
+                sendViaHttp(monitoringPort);
+                return;
+            }
+
+            int speed = cruise.getSpeed();
+            int targetSpeed = cruise.getTargetSpeed();
+            double gap = cruise.getGap();
+            double traveledDistance = cruise.getTraveledDistance();
+
+            int mask = 0;
+            if (++flushesSinceKeyFrame >= keyFrameInterval) {
+                mask = TelemetryCodec.ALL;
+                flushesSinceKeyFrame = 0;
+            } else {
+                if (speed != sentSpeed) mask |= TelemetryCodec.SPEED;
+                if (targetSpeed != sentTargetSpeed) mask |= TelemetryCodec.TARGET_SPEED;
+                if (gap != sentGap) mask |= TelemetryCodec.GAP;
+                if (Math.abs(traveledDistance - sentTraveledDistance) >= DISTANCE_RESOLUTION) mask |= TelemetryCodec.TRAVELED_DISTANCE;
+            }
+            if (mask == 0) {
+                return;
+            }
+
+            buffer.clear();
+            TelemetryCodec.encode(buffer, ownPort, mask, speed, targetSpeed, gap, traveledDistance);
+            buffer.flip();
+            currentSession.sendMessage(new BinaryMessage(buffer));
+
+            sentSpeed = speed;
+            sentTargetSpeed = targetSpeed;
+            sentGap = gap;
+            if ((mask & TelemetryCodec.TRAVELED_DISTANCE) != 0) {
+                sentTraveledDistance = traveledDistance;
+            }
+        } catch (IOException | RuntimeException e) {
+            //Stream ist abgebrochen, beim nächsten Intervall wird neu verbunden
+            session = null;
+        }
+    }
+
+    /**
+     * Verschickt die eigene Meldung. Der Leader hängt die gesammelten Meldungen seiner Follower an und schickt alles
+     * an den MonitoringService, Follower schicken ihre Meldung an den Leader.
+     */
+    private void flushBatch() {
+        long[] own = SpeedReportBatch.of(ownPort, System.currentTimeMillis(), cruise.getSpeed(), cruise.getTargetSpeed());
+        try {
+            if (cruise.isLeader()) {
+                sendBatch(collectBatch(own));
+                return;
+            }
+            int leaderPort = reportPort;
+            if (leaderPort > 0) {
+                try {
+                    REST_TEMPLATE.put(EndpointTable.get(leaderPort, PathRegister.REPORT_SPEED), own);
+                    return;
+                } catch (RestClientException e) {
+                    //Leader ist nicht erreichbar, bis zur nächsten Meldung des Leaders wird direkt gesendet
+                    reportPort = 0;
+                }
+            }
+            sendBatch(own);
+        } catch (ResourceAccessException e) {
+            //Monitoring Service ist offline
+        } catch (RuntimeException e) {
+            System.err.println("Geschwindigkeitsmeldung konnte nicht gesendet werden: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fasst die eigene Meldung und alle gesammelten Meldungen der Follower zu einer Batch zusammen.
+     * @param own die eigene Meldung
+     * @return die Batch
+     */
+    private long[] collectBatch(long[] own) {
+        List<long[]> collected = new ArrayList<>(followerReports.size());
+        for (Integer cruisePort : followerReports.keySet()) {
+            long[] report = followerReports.remove(cruisePort);
+            if (report != null) {
+                collected.add(report);
+            }
+        }
+        long[] batch = Arrays.copyOf(own, own.length + collected.size() * SpeedReportBatch.TUPLE_SIZE);
+        int offset = own.length;
+        for (long[] report : collected) {
+            System.arraycopy(report, 0, batch, offset, SpeedReportBatch.TUPLE_SIZE);
+            offset += SpeedReportBatch.TUPLE_SIZE;
+        }
+        return batch;
+    }
+
+    private void sendBatch(long[] batch) {
+        REST_TEMPLATE.put(EndpointTable.get(Util.getMonitoringPort(), PathRegister.SET_SPEED_BATCH), batch);
+    }
+
+    /**
+     * Baut den Stream zum MonitoringService auf, falls gerade kein Verbindungsaufbau läuft.
+     * @param monitoringPort Port des zuständigen Shards
+     */
+    private void connect(int monitoringPort) {
+        long now = System.currentTimeMillis();
+        if (connecting || now - lastConnectAttempt < RECONNECT_INTERVAL_MILLIS) {
+            return;
+        }
+        lastConnectAttempt = now;
+        connecting = true;
+        String url = Util.getBaseUriComponentsBuilder(monitoringPort, PathRegister.TELEMETRY_STREAM).scheme("ws").toUriString();
+        webSocketClient.doHandshake(new AbstractWebSocketHandler() {}, url).addCallback(
+                newSession -> {
+                    System.out.println("Telemetrie-Stream zum MonitoringService aufgebaut.");
+                    //Nach dem Verbindungsaufbau wird zunächst ein vollständiger Frame gesendet
+                    flushesSinceKeyFrame = keyFrameInterval;
+                    streamPort = monitoringPort;
+                    session = newSession;
+                    connecting = false;
+                },
+                ex -> connecting = false);
+    }
+
+    /**
+     * Schickt die Geschwindigkeit per HTTP, solange der Stream nicht verfügbar ist.
+     * @param monitoringPort Port des zuständigen Shards
+     */
+    private void sendViaHttp(int monitoringPort) {
+        long now = System.currentTimeMillis();
+        if (now - lastHttpFallback < HTTP_FALLBACK_INTERVAL_MILLIS) {
+            return;
+        }
+        lastHttpFallback = now;
+        try {
+            URI setSpeedUri = Util.getBaseUriComponentsBuilder(monitoringPort, PathRegister.SET_SPEED).buildAndExpand(ownPort).toUri();
+            REST_TEMPLATE.put(setSpeedUri, EndpointTable.entityOf(cruise.getSpeed()));
+        } catch (ResourceAccessException e) {
+            //Monitoring Service ist offline
+        }
+    }
+
+}
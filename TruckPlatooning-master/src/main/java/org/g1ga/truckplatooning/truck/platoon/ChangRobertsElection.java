@@ -0,0 +1,190 @@
+package org.g1ga.truckplatooning.truck.platoon;
+
+import java.util.*;
+import java.util.function.IntSupplier;
+
+/**
+ * Diese Klasse setzt den Wahlalgorithmus nach Chang und Roberts für den Ring der PlatooningServices um. Anders als bei
+ * der bisherigen Ringwahl wird keine wachsende Liste durch den Ring geschickt:
+ * <ol>
+ *     <li>Wahl: Jede Nachricht enthält nur den PlatooningContact des bisher besten Kandidaten (größte PID). Ein Truck
+ *     leitet einen besseren Kandidaten weiter, ersetzt einen schlechteren durch sich selbst, sofern er noch nicht an der
+ *     Wahl teilnimmt, und verwirft ihn sonst. Erhält ein Truck seinen eigenen Kandidaten zurück, hat er gewonnen.</li>
+ *     <li>Bekanntgabe: Der Gewinner schickt eine Koordinator-Nachricht einmal durch den Ring. Jeder Truck übernimmt den
+ *     neuen Leader und meldet diesem direkt seinen eigenen PlatooningContact und seinen BackTruckPort. Aus diesen
+ *     Meldungen baut der Leader die Reihenfolge des Platoons auf, sobald die Koordinator-Nachricht zurückgekommen ist und
+ *     alle Meldungen eingetroffen sind.</li>
+ * </ol>
+ * Jede Nachricht hat eine feste Größe, insgesamt werden O(n) Nachrichten verschickt. Die Klasse selbst verschickt
+ * keine Nachrichten, sondern nutzt dafür den übergebenen Transport, und ist daher auch ohne Netzwerk verwendbar.
+ */
+public class ChangRobertsElection {
+
+    private final PlatooningContact self;
+    private final IntSupplier frontTruckPort;
+    private final IntSupplier backTruckPort;
+    private final Transport transport;
+    private final Listener listener;
+
+    private boolean participant = false;
+    //Zustand des Leaders während der Bekanntgabe
+    private final Map<Integer, PlatooningContact> reportedContacts = new HashMap<>();
+    private final Map<Integer, Integer> reportedBackTruckPorts = new HashMap<>();
+    private int expectedReports = -1;
+
+    /**
+     * Konstruktor, der die Wahl für einen Truck erstellt.
+     * @param self PlatooningContact des eigenen Trucks
+     * @param frontTruckPort liefert den aktuellen Port des Vordermanns, an den alle Ring-Nachrichten gehen
+     * @param backTruckPort liefert den aktuellen Port des Hintermanns
+     * @param transport verschickt die Nachrichten
+     * @param listener wird über das Ergebnis der Wahl informiert
+     */
+    public ChangRobertsElection(PlatooningContact self, IntSupplier frontTruckPort, IntSupplier backTruckPort, Transport transport, Listener listener) {
+        this.self = self;
+        this.frontTruckPort = frontTruckPort;
+        this.backTruckPort = backTruckPort;
+        this.transport = transport;
+        this.listener = listener;
+    }
+
+    /**
+     * Startet eine Wahl mit dem eigenen Truck als Kandidaten.
+     */
+    public synchronized void start() {
+        reset();
+        participant = true;
+        transport.sendElection(frontTruckPort.getAsInt(), self);
+    }
+
+    /**
+     * Verwirft den Zustand der bisherigen Wahl, z.B. weil eine neuere Wahl begonnen hat.
+     */
+    public synchronized void reset() {
+        participant = false;
+        reportedContacts.clear();
+        reportedBackTruckPorts.clear();
+        expectedReports = -1;
+    }
+
+    /**
+     * Verarbeitet eine Wahl-Nachricht.
+     * @param candidate der bisher beste Kandidat
+     */
+    public synchronized void onElection(PlatooningContact candidate) {
+        if (candidate.getPlatooningPid() == self.getPlatooningPid()) {
+            //Der eigene Kandidat ist einmal durch den Ring gelaufen, dieser Truck ist der neue Leader
+            reset();
+            listener.onNewLeader(self);
+            transport.sendCoordinator(frontTruckPort.getAsInt(), self, 0);
+        } else if (candidate.compareTo(self) > 0) {
+            participant = true;
+            transport.sendElection(frontTruckPort.getAsInt(), candidate);
+        } else if (!participant) {
+            participant = true;
+            transport.sendElection(frontTruckPort.getAsInt(), self);
+        }
+        //Ein schlechterer Kandidat wird verworfen, wenn dieser Truck seinen eigenen bereits losgeschickt hat
+    }
+
+    /**
+     * Verarbeitet eine Koordinator-Nachricht.
+     * @param leader der Gewinner der Wahl
+     * @param hops Anzahl der Trucks, welche die Nachricht bereits verarbeitet haben
+     */
+    public synchronized void onCoordinator(PlatooningContact leader, int hops) {
+        if (leader.getPlatooningPid() == self.getPlatooningPid()) {
+            //Die Nachricht ist einmal durch den Ring gelaufen, jeder andere Truck hat genau eine Meldung geschickt
+            expectedReports = hops;
+            completeIfPossible();
+            return;
+        }
+        participant = false;
+        listener.onNewLeader(leader);
+        transport.sendReport(leader.getPlatooningPort(), self, backTruckPort.getAsInt());
+        transport.sendCoordinator(frontTruckPort.getAsInt(), leader, hops + 1);
+    }
+
+    /**
+     * Verarbeitet beim Leader die Meldung eines anderen Trucks.
+     * @param member PlatooningContact des meldenden Trucks
+     * @param memberBackTruckPort BackTruckPort des meldenden Trucks
+     */
+    public synchronized void onReport(PlatooningContact member, int memberBackTruckPort) {
+        reportedContacts.put(member.getPlatooningPort(), member);
+        reportedBackTruckPorts.put(member.getPlatooningPort(), memberBackTruckPort);
+        completeIfPossible();
+    }
+
+    /**
+     * Baut die Reihenfolge des Platoons auf, sobald alle Meldungen eingetroffen sind. Beginnend beim Leader wird jeweils
+     * der BackTruckPort verfolgt, bis der Ring wieder beim Leader ankommt.
+     */
+    private void completeIfPossible() {
+        if (expectedReports < 0 || reportedContacts.size() < expectedReports) {
+            return;
+        }
+        List<PlatooningContact> ordered = new ArrayList<>(reportedContacts.size() + 1);
+        ordered.add(self);
+        int next = backTruckPort.getAsInt();
+        while (reportedContacts.containsKey(next)) {
+            ordered.add(reportedContacts.remove(next));
+            next = reportedBackTruckPorts.get(next);
+        }
+        //Trucks, die nicht über die BackTruckPorts erreichbar waren, werden hinten angehängt
+        ordered.addAll(reportedContacts.values());
+
+        reportedContacts.clear();
+        reportedBackTruckPorts.clear();
+        expectedReports = -1;
+        listener.onMembership(ordered);
+    }
+
+    /**
+     * Verschickt die Nachrichten der Wahl.
+     */
+    public interface Transport {
+
+        /**
+         * Schickt eine Wahl-Nachricht.
+         * @param port Port des Empfängers
+         * @param candidate der bisher beste Kandidat
+         */
+        void sendElection(int port, PlatooningContact candidate);
+
+        /**
+         * Schickt eine Koordinator-Nachricht.
+         * @param port Port des Empfängers
+         * @param leader der Gewinner der Wahl
+         * @param hops Anzahl der Trucks, welche die Nachricht bereits verarbeitet haben
+         */
+        void sendCoordinator(int port, PlatooningContact leader, int hops);
+
+        /**
+         * Schickt die Meldung eines Trucks an den Leader.
+         * @param port Port des Leaders
+         * @param member PlatooningContact des meldenden Trucks
+         * @param backTruckPort BackTruckPort des meldenden Trucks
+         */
+        void sendReport(int port, PlatooningContact member, int backTruckPort);
+    }
+
+    /**
+     * Wird über das Ergebnis der Wahl informiert.
+     */
+    public interface Listener {
+
+        /**
+         * Wird bei jedem Truck aufgerufen, sobald er den neuen Leader kennt.
+         * @param leader der Gewinner der Wahl
+         */
+        void onNewLeader(PlatooningContact leader);
+
+        /**
+         * Wird nur beim Leader aufgerufen, sobald die Reihenfolge des Platoons feststeht.
+         * @param ordered alle Trucks, beginnend mit dem Leader
+         */
+        void onMembership(List<PlatooningContact> ordered);
+    }
+
+}
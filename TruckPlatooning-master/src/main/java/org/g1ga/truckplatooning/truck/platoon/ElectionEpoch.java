@@ -0,0 +1,95 @@
+package org.g1ga.truckplatooning.truck.platoon;
+
+import java.util.Objects;
+
+/**
+ * Diese Klasse kennzeichnet eine Wahl eindeutig. Jede Wahl erhält beim Start eine Term-Nummer, die um eins größer ist als
+ * die größte bisher bekannte. Starten zwei Trucks gleichzeitig eine Wahl mit derselben Term-Nummer, entscheidet die PID
+ * des Initiators. Jede Nachricht einer Wahl trägt ihre Epoche mit sich, sodass ein Truck veraltete oder doppelte Wahlen
+ * beim ersten Empfang verwerfen kann, statt sie einmal durch den ganzen Ring zu schicken.
+ */
+public final class ElectionEpoch implements Comparable<ElectionEpoch> {
+
+    public static final ElectionEpoch NONE = new ElectionEpoch(0, 0);
+
+    private final long term;
+    private final long initiatorPid;
+
+    /**
+     * Konstruktor, der eine Epoche mit den übergebenen Werten erzeugt.
+     * @param term Term-Nummer der Wahl
+     * @param initiatorPid PID des Trucks, der die Wahl gestartet hat
+     */
+    public ElectionEpoch(long term, long initiatorPid) {
+        this.term = term;
+        this.initiatorPid = initiatorPid;
+    }
+
+    /**
+     * Erzeugt die Epoche einer neuen Wahl, die der übergebene Truck startet
+     * @param initiatorPid PID des Trucks, der die Wahl startet
+     * @return Epoche mit der nächsten Term-Nummer
+     */
+    public ElectionEpoch next(long initiatorPid) {
+        return new ElectionEpoch(term + 1, initiatorPid);
+    }
+
+    /**
+     * Vergleicht zuerst die Term-Nummer und bei Gleichstand die PID des Initiators.
+     * @param electionEpoch die zu vergleichende Epoche
+     * @return negativ, falls diese Epoche älter ist, 0 bei derselben Wahl, sonst positiv
+     */
+    @Override
+    public int compareTo(ElectionEpoch electionEpoch) {
+        int comparison = Long.compare(term, electionEpoch.term);
+        return comparison != 0 ? comparison : Long.compare(initiatorPid, electionEpoch.initiatorPid);
+    }
+
+    /**
+     * Zwei Epochen sind gleich, wenn Term-Nummer und PID des Initiators übereinstimmen.
+     * @param o das zu vergleichende Objekt
+     * @return true, falls beide dieselbe Wahl kennzeichnen
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ElectionEpoch that = (ElectionEpoch) o;
+        return term == that.term && initiatorPid == that.initiatorPid;
+    }
+
+    /**
+     * Berechnet den Hashcode aus Term-Nummer und PID des Initiators.
+     * @return Hashcode der Epoche
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(term, initiatorPid);
+    }
+
+    /**
+     * Gibt die Epoche in der Form term/initiatorPid aus.
+     * @return die Epoche als String
+     */
+    @Override
+    public String toString() {
+        return term + "/" + initiatorPid;
+    }
+
+    /**
+     * Gibt die Term-Nummer zurück
+     * @return Term-Nummer der Wahl
+     */
+    public long getTerm() {
+        return term;
+    }
+
+    /**
+     * Gibt die PID des Initiators zurück
+     * @return PID des Trucks, der die Wahl gestartet hat
+     */
+    public long getInitiatorPid() {
+        return initiatorPid;
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.g1ga.truckplatooning.truck.platoon;
+
+/**
+ * Diese Klasse speichert, unter welchem Port der Platooning Service des Leaders zu erreichen ist. Jeder Eintrag trägt
+ * die Term-Nummer der Wahl, aus der er stammt, sodass ein Hinweis aus einer älteren Wahl einen neueren Eintrag nicht
+ * überschreiben kann. Antwortet der gespeicherte Port, dass er nicht (mehr) Leader ist, wird der Eintrag verworfen.
+ * Im Gegensatz zum Leader-Port des Platoonings enthält der Cache auch den eigenen Port, wenn dieser Truck Leader ist.
+ */
+public final class LeaderCache {
+
+    public static final int UNKNOWN = -1;
+
+    private int leaderPort = UNKNOWN;
+    private long term = ElectionEpoch.NONE.getTerm();
+
+    /**
+     * Übernimmt den Port eines Leaders, falls er aus derselben oder einer neueren Wahl stammt als der gespeicherte.
+     * @param leaderPort Port des Platooning Services des Leaders
+     * @param term Term-Nummer der Wahl, aus der der Port stammt
+     * @return true, falls der Port übernommen wurde
+     */
+    public synchronized boolean update(int leaderPort, long term) {
+        if (leaderPort <= 0 || term < this.term) {
+            return false;
+        }
+        this.leaderPort = leaderPort;
+        this.term = term;
+        return true;
+    }
+
+    /**
+     * Verwirft den gespeicherten Port, falls er der übergebene ist. Die Term-Nummer bleibt erhalten, damit ältere Hinweise
+     * weiterhin abgelehnt werden.
+     * @param leaderPort Port, der geantwortet hat, dass er nicht Leader ist
+     * @return true, falls der Eintrag verworfen wurde
+     */
+    public synchronized boolean invalidate(int leaderPort) {
+        if (this.leaderPort != leaderPort) {
+            return false;
+        }
+        this.leaderPort = UNKNOWN;
+        return true;
+    }
+
+    /**
+     * Gibt den gespeicherten Port des Leaders zurück
+     * @return Port des Leaders, UNKNOWN falls keiner bekannt ist
+     */
+    public synchronized int getLeaderPort() {
+        return leaderPort;
+    }
+
+    /**
+     * Gibt die Term-Nummer der Wahl zurück, aus der der gespeicherte Eintrag stammt
+     * @return Term-Nummer des Eintrags
+     */
+    public synchronized long getTerm() {
+        return term;
+    }
+
+}
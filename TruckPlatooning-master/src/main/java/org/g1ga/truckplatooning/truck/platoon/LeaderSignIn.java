@@ -0,0 +1,109 @@
+package org.g1ga.truckplatooning.truck.platoon;
+
+import org.g1ga.truckplatooning.PathRegister;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Diese Klasse meldet einen neuen Truck beim Leader aus dem LeaderCache an. Antwortet der Truck, dass er nicht Leader
+ * ist, wird der Eintrag verworfen und der Truck beim Leader angemeldet, den die Antwort nennt. Erst wenn kein Leader
+ * mehr bekannt ist, wird der RegistrationServer einmal nach dem Leader gefragt. Die Header der Antwort stammen von
+ * einem anderen Truck; ist der genannte Leader oder seine Term-Nummer keine Zahl, wird die Antwort wie eine Antwort
+ * ohne Hinweis behandelt. Die Klasse selbst verschickt keine Nachrichten, sondern nutzt dafür den übergebenen Transport.
+ */
+public class LeaderSignIn {
+
+    private final LeaderCache leaderCache;
+    private final int maxAttempts;
+    private final Transport transport;
+
+    /**
+     * Konstruktor
+     * @param leaderCache Cache des Leaders, wird bei jeder Antwort aktualisiert
+     * @param maxAttempts Anzahl der Leader, bei denen nacheinander eine Anmeldung versucht wird
+     * @param transport verschickt die Anmeldung und fragt den RegistrationServer
+     */
+    public LeaderSignIn(LeaderCache leaderCache, int maxAttempts, Transport transport) {
+        this.leaderCache = leaderCache;
+        this.maxAttempts = maxAttempts;
+        this.transport = transport;
+    }
+
+    /**
+     * Meldet den Truck beim Leader an.
+     * @param ownPlatooningPort Port dieses Platooning Services
+     * @return Antwort des Leaders mit dem Port des hintersten Trucks, null falls kein Leader gefunden wurde
+     */
+    public ResponseEntity<Integer> signIn(int ownPlatooningPort) {
+        boolean askedRegistration = false;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            int leaderPort = leaderCache.getLeaderPort();
+            if (leaderPort == LeaderCache.UNKNOWN || leaderPort == ownPlatooningPort) {
+                if (askedRegistration) {
+                    return null;
+                }
+                askedRegistration = true;
+                leaderPort = transport.lookupLeader();
+                if (leaderPort <= 0 || leaderPort == ownPlatooningPort || !leaderCache.update(leaderPort, leaderCache.getTerm())) {
+                    return null;
+                }
+            }
+            System.out.println("Melde beim Leader " + leaderPort + " an und erfrage den Port des hintersten Trucks zum Anhängen...");
+            ResponseEntity<Integer> response;
+            try {
+                response = transport.signIn(leaderPort, ownPlatooningPort);
+            } catch (ResourceAccessException ex) {
+                System.err.println("Der gespeicherte Leader " + leaderPort + " ist nicht verfügbar!");
+                leaderCache.invalidate(leaderPort);
+                continue;
+            }
+            Integer frontTruckPort = response.getBody();
+            if (frontTruckPort != null && frontTruckPort > 0) {
+                return response;
+            }
+            System.err.println("Der gespeicherte Leader " + leaderPort + " ist aktuell nicht der Leader!");
+            leaderCache.invalidate(leaderPort);
+            applyHint(response.getHeaders().getFirst(PathRegister.LEADER_PORT_HEADER),
+                    response.getHeaders().getFirst(PathRegister.ELECTION_EPOCH_HEADER));
+        }
+        return null;
+    }
+
+    /**
+     * Übernimmt den Leader, den ein Truck in seiner NOT_LEADER-Antwort nennt.
+     * @param hint Header LEADER_PORT_HEADER, null falls nicht vorhanden
+     * @param term Header ELECTION_EPOCH_HEADER, null falls nicht vorhanden
+     */
+    private void applyHint(String hint, String term) {
+        if (hint == null) {
+            return;
+        }
+        try {
+            leaderCache.update(Integer.parseInt(hint), term != null ? Long.parseLong(term) : leaderCache.getTerm());
+        } catch (NumberFormatException e) {
+            System.err.println("Ungültiger Hinweis auf den Leader wird ignoriert: " + hint + " (Term " + term + ")");
+        }
+    }
+
+    /**
+     * Verschickt die Anmeldung und fragt den RegistrationServer nach dem Leader.
+     */
+    public interface Transport {
+
+        /**
+         * Meldet den Truck beim übergebenen Leader an.
+         * @param leaderPort Port des Platooning Services des Leaders
+         * @param ownPlatooningPort Port dieses Platooning Services
+         * @return Antwort mit dem Port des hintersten Trucks, -1 oder leer falls der Truck nicht Leader ist
+         * @throws ResourceAccessException falls der Truck nicht erreichbar ist
+         */
+        ResponseEntity<Integer> signIn(int leaderPort, int ownPlatooningPort);
+
+        /**
+         * Fragt den RegistrationServer nach dem Leader des eigenen Platoons.
+         * @return Port des Platooning Services des Leaders, LeaderCache.UNKNOWN falls er nicht bekannt ist
+         */
+        int lookupLeader();
+    }
+
+}
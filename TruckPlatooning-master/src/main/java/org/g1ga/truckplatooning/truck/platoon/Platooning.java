@@ -13,6 +13,8 @@ public class Platooning {
     private int frontTruckPort;
     private int backTruckPort;
     private int ownCruiseControlPort;
+    //Epoche der neuesten Wahl, die dieser Truck gesehen hat
+    private ElectionEpoch electionEpoch = ElectionEpoch.NONE;
 
     /**
      * Konstruktor, der ein Platoonoing standartmäßig als nicht-leader setzt
@@ -116,4 +118,20 @@ public class Platooning {
         this.ownCruiseControlPort = ownCruiseControlPort;
     }
 
+    /**
+     * Gibt die Epoche der neuesten Wahl zurück, die dieser Truck gesehen hat
+     * @return Epoche der neuesten Wahl
+     */
+    ElectionEpoch getElectionEpoch() {
+        return electionEpoch;
+    }
+
+    /**
+     * Setzt die Epoche der neuesten Wahl, die dieser Truck gesehen hat
+     * @param electionEpoch Epoche der neuesten Wahl
+     */
+    void setElectionEpoch(ElectionEpoch electionEpoch) {
+        this.electionEpoch = electionEpoch;
+    }
+
 }
@@ -1,10 +1,20 @@
 package org.g1ga.truckplatooning.truck.platoon;
 
+import org.g1ga.truckplatooning.EndpointTable;
+import org.g1ga.truckplatooning.HeartbeatMonitor;
+import org.g1ga.truckplatooning.MessageDispatcher;
 import org.g1ga.truckplatooning.PathRegister;
+import org.g1ga.truckplatooning.RegistrationClient;
+import org.g1ga.truckplatooning.RestClientFactory;
 import org.g1ga.truckplatooning.Util;
+import org.g1ga.truckplatooning.wire.WireClient;
+import org.g1ga.truckplatooning.wire.WireFrame;
+import org.g1ga.truckplatooning.wire.WireServer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -12,6 +22,7 @@ import javax.annotation.PreDestroy;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
 
 import static org.g1ga.truckplatooning.Util.getBaseUriComponentsBuilder;
 
@@ -21,105 +32,189 @@ import static org.g1ga.truckplatooning.Util.getBaseUriComponentsBuilder;
 @RestController
 public class PlatooningController {
 
-    private final RestTemplate REST_TEMPLATE = new RestTemplate();
+    private final RestTemplate REST_TEMPLATE = RestClientFactory.getRestTemplate();
     private final Platooning PLATOONING = Platooning.getInstance();
     private final PlatooningContact PLATOONING_CONTACT = new PlatooningContact(PlatooningService.getPort(), ProcessHandle.current().pid());
-    private ScheduledExecutorService healthCheckExecutor = Executors.newSingleThreadScheduledExecutor();
+    //Binäres Protokoll für Befehle zwischen den Trucks, jeweils null falls wire.enabled nicht gesetzt ist
+    private final WireClient WIRE_CLIENT = WireClient.createIfEnabled(PlatooningService.getPort());
+    private final WireServer WIRE_SERVER = WireServer.startIfEnabled("platooning", wireHandlers());
+    //Überwacht den eigenen Cruise Service und den Front-Truck mit einem Phi-Accrual-Failure-Detector
+    private final HeartbeatMonitor HEARTBEAT_MONITOR = new HeartbeatMonitor("platooning", port -> sendViaPut(PathRegister.HEALTH_CHECK, port, null));
+    //Port des Leaders mit der Term-Nummer der Wahl, aus der er stammt; enthält auch den eigenen Port, falls dieser Truck Leader ist
+    private final LeaderCache LEADER_CACHE = new LeaderCache();
+    //Anzahl der Leader, bei denen sich ein neuer Truck nacheinander anzumelden versucht, bevor er nach dem Port fragt
+    private static final int MAX_JOIN_ATTEMPTS = 4;
+    //Meldet einen neuen Truck beim Leader aus dem LEADER_CACHE an und folgt dabei den Hinweisen auf den aktuellen Leader
+    private final LeaderSignIn LEADER_SIGN_IN = new LeaderSignIn(LEADER_CACHE, MAX_JOIN_ATTEMPTS, new LeaderSignIn.Transport() {
+        @Override
+        public ResponseEntity<Integer> signIn(int leaderPort, int ownPlatooningPort) {
+            return REST_TEMPLATE.exchange(Util.getBaseUriComponentsBuilder(leaderPort, PathRegister.NEW_TRUCK_SIGN_IN).toUriString(),
+                    HttpMethod.PUT, new HttpEntity<>(ownPlatooningPort), Integer.class);
+        }
+
+        @Override
+        public int lookupLeader() {
+            return lookupLeaderAtRegistration();
+        }
+    });
     private boolean waitingForNewFrontTruckPort = false;
     private boolean startElectionAfterNewFrontTruckPort = false;
-    private final int MONITORING_PORT = 1112;
-    private final int REGISTRATION_PORT = 1111;
     private final ReentrantLock PLATOONING_CONTROLLING_LOCK = new ReentrantLock(true);
+    //Führt die Endpunkte nacheinander im kritischen Bereich aus, damit kein Tomcat-Thread auf den Lock warten muss
+    private final ExecutorService CONTROL_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "platooning-control");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //Benachrichtigungen des letzten handleNewLeader; Wahl-Nachrichten werden erst danach weitergeschickt
+    private CompletableFuture<Void> leaderNotification = CompletableFuture.completedFuture(null);
     private boolean gapToClose = false;
+    //Wahlalgorithmus: "ring" (Liste aller Trucks läuft zweimal durch den Ring) oder "chang-roberts"
+    @Value("${election.mode:ring}")
+    private String electionMode;
+    //Sammelt die Anmeldungen neuer Trucks beim Leader für eine gemeinsame Wahl (registration.batch-window-ms)
+    private final ScheduledExecutorService batchElectionExecutor = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> batchElection;
+    private int batchJoined = 0;
+    private int batchCloseAttempts = 0;
+    private static final int MAX_BATCH_CLOSE_ATTEMPTS = 10;
+    private final ChangRobertsElection CHANG_ROBERTS_ELECTION = new ChangRobertsElection(PLATOONING_CONTACT,
+            PLATOONING::getFrontTruckPort, PLATOONING::getBackTruckPort, new ElectionTransport(), new ElectionListener());
 
     /**
      * Wird von dem zugehörigen CruiseService aufgerufen, um sich bei diesem PlatooningService anzumelden.
      * Durch den Aufruf dieser Methode ist der Truck komplett. (Trucks bestehen immer aus einem Platooning- und einem CruiseService.)
+     * Das Anhängen an den Platoon läuft in einem eigenen Thread, da es auf eine Eingabe über die Kommandozeile warten
+     * kann. Die Antwort folgt, sobald der Truck angehängt ist.
      *
      * @param cruisePort Port des sich anmeldenden Cruise Services
+     * @param leaderPort Port des aktuellen Leaders zum Zeitpunkt der Zulassung des Cruise Services, -1 falls unbekannt
+     * @return Future, das abgeschlossen ist, sobald der Truck dem Platoon angehängt ist
      */
     @PutMapping(PathRegister.ADD_CRUISE_CONTROL)
-    private void addCruiseControl(@RequestBody Integer cruisePort) {
-        enqueueTask(() -> {
-            if (PLATOONING.getOwnCruiseControlPort() <= 0) {
-                System.out.println("CruiseService mit dem Port " + cruisePort + " wurde hinzugefügt!");
-                PLATOONING.setOwnCruiseControlPort(cruisePort);
-                PLATOONING_CONTACT.setCruisePort(cruisePort);
-
-                Scanner sc = new Scanner(System.in);
-                int initialLeaderPort = PlatooningService.getInitialLeaderPort();
-                while (!joinPlatoon(initialLeaderPort)) {
-                    System.err.println("Der Leaderport ist nicht mehr aktuell, kann nicht an den Platoon anhängen.\n" +
-                            "Bitte gib 'joinplatoon <leaderPort>' ein, wobei 'leaderPort' der PlatooningService-Port des aktuellen Leaders ist, um den Truck dem Platoon anzuhängen.");
-                    String s = sc.next();
-                    String arg = sc.next();
-                    if (s.equalsIgnoreCase("joinplatoon")) {
-                        initialLeaderPort = Integer.parseInt(arg);
-                    }
-                }
+    private CompletableFuture<Void> addCruiseControl(@RequestBody Integer cruisePort, @RequestParam(defaultValue = "-1") int leaderPort) {
+        return enqueueAsync(() -> {
+            if (PLATOONING.getOwnCruiseControlPort() > 0) {
+                return false;
             }
-        });
+            System.out.println("CruiseService mit dem Port " + cruisePort + " wurde hinzugefügt!");
+            PLATOONING.setOwnCruiseControlPort(cruisePort);
+            PLATOONING_CONTACT.setCruisePort(cruisePort);
+            LEADER_CACHE.update(leaderPort > 0 ? leaderPort : PlatooningService.getInitialLeaderPort(), ElectionEpoch.NONE.getTerm());
+            return true;
+        }).thenCompose(added -> Boolean.TRUE.equals(added)
+                ? CompletableFuture.runAsync(this::joinPlatoonUntilSuccessful, runnable -> {
+                    Thread thread = new Thread(runnable, "platooning-join");
+                    thread.setDaemon(true);
+                    thread.start();
+                })
+                : CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Versucht so lange, den Truck dem Platoon anzuhängen, bis es gelingt. Ist kein Leader zu finden, wird der Port des
+     * Leaders auf der Kommandozeile erfragt.
+     */
+    private void joinPlatoonUntilSuccessful() {
+        Scanner sc = new Scanner(System.in);
+        while (!joinPlatoon()) {
+            System.err.println("Der Leaderport ist nicht mehr aktuell, kann nicht an den Platoon anhängen.\n" +
+                    "Bitte gib 'joinplatoon <leaderPort>' ein, wobei 'leaderPort' der PlatooningService-Port des aktuellen Leaders ist, um den Truck dem Platoon anzuhängen.");
+            String s = sc.next();
+            String arg = sc.next();
+            if (s.equalsIgnoreCase("joinplatoon")) {
+                LEADER_CACHE.update(Integer.parseInt(arg), LEADER_CACHE.getTerm());
+            }
+        }
     }
 
     /**
      * Diese Methode setzt das Joinen des Platoons um und setzt im Hintergrund wichtige Werte. So wird der hinterste Truck
      * abgefragt, an dem sich angehängt werden woll, bevor die Wahl startet. Außerdem teilt der Truck der Monitoring Seite mit, dass es ihn gibt.
-     * @param initialLeaderPort Port des aktuellen Leaders
+     * Der Leader wird dem LEADER_CACHE entnommen. Die Anmeldung beim Leader findet außerhalb des PLATOONING_CONTROLLING_LOCK statt.
      * @return gibt an ob das Joinen erfolgreich ist
      */
-    private boolean joinPlatoon(int initialLeaderPort) {
+    private boolean joinPlatoon() {
         int ownPlatooningPort = PlatooningService.getPort();
+        boolean leader = ownPlatooningPort == LEADER_CACHE.getLeaderPort();
+        ResponseEntity<Integer> response = leader ? null : LEADER_SIGN_IN.signIn(ownPlatooningPort);
+        if (!leader && response == null) {
+            return false;
+        }
+        enqueueTask(() -> applyJoin(leader, response));
+        return true;
+    }
 
-        PLATOONING.setLeader(ownPlatooningPort == initialLeaderPort);
-
-        if (!PLATOONING.isLeader()) {
-            PLATOONING.setLeaderPort(initialLeaderPort);
-            //Jeder hinten angehängte Truck hat den Leader als BackTruck, um einen bidirektionalen Ring zu bilden.
-            PLATOONING.setBackTruckPort(initialLeaderPort);
+    /**
+     * Übernimmt das Ergebnis der Anmeldung beim Leader und startet die Wahl, falls der Leader sie nicht gemeinsam für
+     * mehrere neue Trucks startet.
+     * @param leader true, falls dieser Truck der erste Truck und damit Leader ist
+     * @param response Antwort des Leaders mit dem Port des hintersten Trucks, null falls dieser Truck Leader ist
+     */
+    private void applyJoin(boolean leader, ResponseEntity<Integer> response) {
+        boolean electionDeferred = false;
 
-            System.out.println("Melde beim aktuellen Leader an und erfrage den Port des hintersten Trucks zum Anhängen...");
-            try {
-                ResponseEntity<Integer> response = REST_TEMPLATE.exchange(Util.getBaseUriComponentsBuilder(initialLeaderPort, PathRegister.NEW_TRUCK_SIGN_IN).toUriString(),
-                        HttpMethod.PUT, new HttpEntity<>(ownPlatooningPort), Integer.class);
-                Integer frontTruckPort = response.getBody();
+        PLATOONING.setLeader(leader);
 
-                if(frontTruckPort != null && frontTruckPort > 0) {
-                    PLATOONING.setFrontTruckPort(frontTruckPort);
-                } else {
-                    System.err.println("Der gespeicherte Leader ist aktuell nicht der Leader!");
-                    return false;
+        if (!leader) {
+            int leaderPort = LEADER_CACHE.getLeaderPort();
+            PLATOONING.setLeaderPort(leaderPort);
+            //Jeder hinten angehängte Truck hat den Leader als BackTruck, um einen bidirektionalen Ring zu bilden.
+            PLATOONING.setBackTruckPort(leaderPort);
+            PLATOONING.setFrontTruckPort(response.getBody());
+            //Die eigene Wahl muss neuer sein als die letzte Wahl des Platoons, sonst wird sie sofort verworfen
+            String term = response.getHeaders().getFirst(PathRegister.ELECTION_EPOCH_HEADER);
+            if (term != null) {
+                try {
+                    PLATOONING.setElectionEpoch(new ElectionEpoch(Long.parseLong(term), 0));
+                } catch (NumberFormatException e) {
+                    System.err.println("Ungültige Term-Nummer des Leaders wird ignoriert: " + term);
                 }
-            } catch(ResourceAccessException ex) {
-                System.err.println("Der gespeicherte Leader ist nicht verfügbar!");
-                return false;
             }
+            electionDeferred = Boolean.parseBoolean(response.getHeaders().getFirst(PathRegister.ELECTION_DEFERRED_HEADER));
         } else {
-            Thread threadM = new Thread(() -> {
+            MessageDispatcher.handOff(() -> {
                 try {
                     ArrayList<PlatooningContact> firstTruck = new ArrayList<>();
                     firstTruck.add(PLATOONING_CONTACT);
-                    sendViaPut(PathRegister.SET_LIST, MONITORING_PORT, firstTruck);
+                    REST_TEMPLATE.put(getPlatoonUriComponentsBuilder(Util.getMonitoringPort(), PathRegister.SET_LIST).toUriString(), firstTruck);
                 } catch (ResourceAccessException e) {
                     System.err.println("Es wurde versucht, die Liste der aktuellen Trucks an den MonitoringService zu senden, aber dieser ist nicht online.");
                 }
             });
-            threadM.start();
 
-            Thread thread = new Thread(() -> REST_TEMPLATE.put(getBaseUriComponentsBuilder(REGISTRATION_PORT, PathRegister.UPDATE_ELECTION_STATUS).toUriString(), false));
-            thread.start();
+            MessageDispatcher.handOff(() -> sendElectionStatus(false));
         }
 
-        healthCheckExecutor.scheduleAtFixedRate(new HealthCheckTask(), 0, 5, TimeUnit.SECONDS);
+        HEARTBEAT_MONITOR.start(() -> new int[] {PLATOONING.getOwnCruiseControlPort(), PLATOONING.getFrontTruckPort()},
+                port -> MessageDispatcher.handOff(() -> handleHeartbeatFailure(port)));
 
-        if (!PLATOONING.isLeader()) {
+        if (!leader && !electionDeferred) {
             startElection();
+        } else if (electionDeferred) {
+            System.out.println("Der Leader startet die Wahl gemeinsam für alle neuen Trucks.");
+        }
+    }
+
+    /**
+     * Fragt den RegistrationServer nach dem Leader des eigenen Platoons.
+     * @return Port des Platooning Services des Leaders, LeaderCache.UNKNOWN falls er nicht bekannt ist
+     */
+    private int lookupLeaderAtRegistration() {
+        try {
+            int[] leader = RegistrationClient.read(port -> REST_TEMPLATE.getForObject(
+                    getPlatoonUriComponentsBuilder(port, PathRegister.GET_LEADER).toUriString(), int[].class));
+            return leader != null && leader.length > 0 && leader[0] > 0 ? leader[0] : LeaderCache.UNKNOWN;
+        } catch (RestClientException e) {
+            System.err.println("Der Leader konnte nicht beim RegistrationServer abgefragt werden: " + e.getMessage());
+            return LeaderCache.UNKNOWN;
         }
-        return true;
     }
 
     /**
      * Wird vom hinteren Platooning Service aufgerufen, der damit prüft, ob sein Vordermann noch da ist. Außerdem wird diese
      * Methode von dem eigenen Cruise Service aufgerufen, der so auch noch prüft ob der Platooning Service noch online ist.
+     * Jede Antwort zählt beim Aufrufer als Heartbeat.
      * @return den "OK"-Http-Status
      */
     @PutMapping(PathRegister.HEALTH_CHECK)
@@ -128,15 +223,100 @@ public class PlatooningController {
     }
 
     /**
-     * Diese Methode startet den Wahlalgorithmus
+     * Ordnet den Frames des binären Protokolls dieselben Methoden zu wie den entsprechenden HTTP-Pfaden. Die Handler
+     * laufen im Thread-Pool des WireServers und warten auf das Future der Methode, damit das ACK wie die HTTP-Antwort
+     * erst nach der Zustandsänderung geschickt wird.
+     * @return Handler pro Frame-Typ
+     */
+    private Map<Byte, IntConsumer> wireHandlers() {
+        Map<Byte, IntConsumer> handlers = new HashMap<>();
+        handlers.put(WireFrame.HEALTH_CHECK, value -> {});
+        handlers.put(WireFrame.CLOSE_GAP, value -> closeGap(value).join());
+        handlers.put(WireFrame.UPDATE_FRONT_TRUCK_PORT, value -> updateFrontTruck(value).join());
+        handlers.put(WireFrame.UPDATE_BACK_TRUCK, value -> updateBackTruck(value).join());
+        return handlers;
+    }
+
+    /**
+     * Gibt den Port zurück, auf dem der Platooning Service Frames des binären Protokolls annimmt.
+     * @return Port des WireServers, -1 falls das Protokoll nicht aktiviert ist
+     */
+    @GetMapping(PathRegister.WIRE_PORT)
+    private int getWirePort() {
+        return WIRE_SERVER != null ? WIRE_SERVER.getPort() : -1;
+    }
+
+    /**
+     * Gibt die Verdachtswerte des Failure-Detectors für den eigenen Cruise Service und den Front-Truck zurück.
+     * @return Port des überwachten Services und sein aktueller Verdachtswert phi
+     */
+    @GetMapping(PathRegister.SUSPICION)
+    private Map<Integer, Double> getSuspicionLevels() {
+        return HEARTBEAT_MONITOR.getSuspicionLevels();
+    }
+
+    /**
+     * Diese Methode startet den Wahlalgorithmus. Die Wahl erhält eine neue Epoche, die größer ist als alle bisher
+     * gesehenen, damit ältere Wahlen, die noch im Ring unterwegs sind, verworfen werden.
      */
     private void startElection() {
+        ElectionEpoch epoch = PLATOONING.getElectionEpoch().next(PLATOONING_CONTACT.getPlatooningPid());
+        PLATOONING.setElectionEpoch(epoch);
+        if ("chang-roberts".equals(electionMode)) {
+            System.out.println("Starte Wahl nach Chang und Roberts mit dem eigenen PlatooningContact: " + PLATOONING_CONTACT);
+            CHANG_ROBERTS_ELECTION.start();
+            return;
+        }
         List<PlatooningContact> platooningContacts = new ArrayList<>();
         platooningContacts.add(PLATOONING_CONTACT);
         System.out.println("Zu sendende Liste mit dem eigenen PlatooningContact: " + Arrays.toString(platooningContacts.toArray()));
 
-        Thread thread = new Thread(() -> sendViaPut(PathRegister.RECEIVE_CONTINUE_ELECTION_PATH, PLATOONING.getFrontTruckPort(), platooningContacts));
-        thread.start();
+        UriComponentsBuilder builder = getElectionUriComponentsBuilder(PLATOONING.getFrontTruckPort(), PathRegister.RECEIVE_CONTINUE_ELECTION_PATH, epoch);
+        MessageDispatcher.handOff(() -> REST_TEMPLATE.put(builder.toUriString(), platooningContacts));
+    }
+
+    /**
+     * Prüft die Epoche einer empfangenen Wahl-Nachricht. Nachrichten einer älteren Wahl werden verworfen, bei einer
+     * neueren Wahl wird deren Epoche übernommen und der Zustand der bisherigen Wahl verworfen.
+     * @param epoch Epoche der empfangenen Nachricht
+     * @return true, falls die Nachricht verarbeitet werden soll
+     */
+    private boolean acceptElectionEpoch(ElectionEpoch epoch) {
+        ElectionEpoch currentEpoch = PLATOONING.getElectionEpoch();
+        int comparison = epoch.compareTo(currentEpoch);
+        if (comparison < 0) {
+            System.out.println("Verwerfe Nachricht der veralteten Wahl " + epoch + ", aktuelle Wahl: " + currentEpoch);
+            return false;
+        }
+        if (comparison > 0) {
+            PLATOONING.setElectionEpoch(epoch);
+            CHANG_ROBERTS_ELECTION.reset();
+        }
+        return true;
+    }
+
+    /**
+     * Erstellt die URI einer Nachricht an den Registration- oder MonitoringService, welche die ID des eigenen Platoons
+     * als Parameter enthält
+     * @param port Port des Registration- oder MonitoringServices
+     * @param path Pfad der aufgerufen werden soll
+     * @return UriComponentsBuilder der Nachricht
+     */
+    private UriComponentsBuilder getPlatoonUriComponentsBuilder(int port, String path) {
+        return getBaseUriComponentsBuilder(port, path).queryParam(PathRegister.PLATOON_PARAM, Util.getPlatoonId());
+    }
+
+    /**
+     * Erstellt die URI einer Wahl-Nachricht, welche die Epoche der Wahl als Parameter enthält
+     * @param port Port des Empfängers
+     * @param path Pfad der aufgerufen werden soll
+     * @param epoch Epoche der Wahl
+     * @return UriComponentsBuilder der Nachricht
+     */
+    private UriComponentsBuilder getElectionUriComponentsBuilder(int port, String path, ElectionEpoch epoch) {
+        return getBaseUriComponentsBuilder(port, path)
+                .queryParam("term", epoch.getTerm())
+                .queryParam("initiatorPid", epoch.getInitiatorPid());
     }
 
     /**
@@ -144,31 +324,26 @@ public class PlatooningController {
      * Wird anschließend jeweils beim hinteren Truck aufgerufen, bis der Truck gefunden wurde, der den ausgefallenen Truck als backTruckPort gespeichert hat.
      * @param unreachablePort der Port des ausgefallenen Platooning Services
      * @param callerPort der Port des Platoonong Services, dem aufgefallen ist, dass sein Vordermann nicht erreichbar ist
-     * @return den HTTP Status "ok"
+     * @return Future mit dem HTTP Status "ok"
      */
     @PutMapping(PathRegister.CHECK_BACK_TRUCK_PORT)
-    private ResponseEntity<?> checkBackTruckPort(@RequestParam Integer unreachablePort, @RequestParam Integer callerPort) {
-        return enqueueTask(() -> {
+    private CompletableFuture<ResponseEntity<?>> checkBackTruckPort(@RequestParam Integer unreachablePort, @RequestParam Integer callerPort) {
+        return enqueueAsync(() -> {
             if(PLATOONING.getBackTruckPort() == unreachablePort) {
                 System.out.println("Dieser Truck war vor dem ausgefallenen Fahrzeug!\nAktualisiere BackTruckPort mit dem Port: " + callerPort);
                 //Dieser Truck war vor dem ausgefallenen Fahrzeug
                 PLATOONING.setBackTruckPort(callerPort);
                 System.out.println("Sende Caller mit dem Port " + callerPort + " den eigenen Port: " + PlatooningService.getPort());
                 //Sende dem Caller den eigenen Port, um die Kette zu schließen.
-                Thread thread = new Thread(() -> {
-                    String url = Util.getBaseUriComponentsBuilder(callerPort, PathRegister.UPDATE_FRONT_TRUCK_PORT).toUriString();
-                    REST_TEMPLATE.put(url, PlatooningService.getPort());
-                });
-                thread.start();
+                MessageDispatcher.handOff(() -> sendViaPut(PathRegister.UPDATE_FRONT_TRUCK_PORT, callerPort, PlatooningService.getPort()));
             } else {
                 //Reiche den unreachable Port nach hinten weiter
-                Thread thread = new Thread(() -> {
+                MessageDispatcher.handOff(() -> {
                     UriComponentsBuilder builder = getBaseUriComponentsBuilder(PLATOONING.getBackTruckPort(), PathRegister.CHECK_BACK_TRUCK_PORT)
                             .queryParam("unreachablePort", unreachablePort)
                             .queryParam("callerPort", callerPort);
                     REST_TEMPLATE.put(builder.toUriString(), null);
                 });
-                thread.start();
             }
             return new ResponseEntity<>(HttpStatus.OK);
         });
@@ -178,11 +353,11 @@ public class PlatooningController {
      * Methode, die die Anfrage zum updaten des Fronttruck-Ports verarbeitet. Dazu wird der Port des neuen Fronttrucks übergeben.
      * Dies ist z.B. der Fall, wenn sich ein neuer Truck verbindet oder eine Lücke geschlossen wird.
      * @param platooningPort Der neue Front-Truck-Port
+     * @return Future, das nach dem Aktualisieren abgeschlossen ist
      */
     @PutMapping(PathRegister.UPDATE_FRONT_TRUCK_PORT)
-    private void updateFrontTruck(@RequestBody Integer platooningPort) {
-        healthCheckExecutor.shutdownNow();
-        enqueueTask(() -> updateFrontTruckHelper(platooningPort));
+    private CompletableFuture<Void> updateFrontTruck(@RequestBody Integer platooningPort) {
+        return enqueueAsync(() -> updateFrontTruckHelper(platooningPort));
     }
 
     /**
@@ -197,19 +372,17 @@ public class PlatooningController {
             waitingForNewFrontTruckPort = false;
             if (gapToClose) {
                 gapToClose = false;
-                System.out.println("aktueller Leader-Port: " + PLATOONING.getLeaderPort());
-                Thread thread = new Thread(() -> sendViaPut(PathRegister.CLOSE_GAP, PLATOONING.getLeaderPort(), PLATOONING.getOwnCruiseControlPort()));
-                thread.start();
+                MessageDispatcher.handOff(this::sendCloseGap);
             }
         }
+        //Der HeartbeatMonitor übernimmt den neuen Front-Truck im nächsten Takt
         System.out.println("Starte HealthCheck für neuen Front-Truck...");
-        healthCheckExecutor = Executors.newSingleThreadScheduledExecutor();
-        healthCheckExecutor.scheduleAtFixedRate(new HealthCheckTask(), 0, 5, TimeUnit.SECONDS);
         if (startElectionAfterNewFrontTruckPort) {
             startElectionAfterNewFrontTruckPort = false;
             System.out.println("Ring wiederhergestellt, starte Wahl...");
-            REST_TEMPLATE.put(getBaseUriComponentsBuilder(REGISTRATION_PORT, PathRegister.UPDATE_ELECTION_STATUS).toUriString(), true);
-            startElection();
+            //Der RegistrationServer muss die laufende Wahl kennen, bevor sie startet
+            MessageDispatcher.handOff(() -> sendElectionStatus(true))
+                    .whenComplete((result, ex) -> enqueueTask(this::startElection));
         }
     }
 
@@ -218,11 +391,11 @@ public class PlatooningController {
      * dass der neue Vordermann der Vordermann des verlassenden Trucks ist.
      * @param newFrontTruckPort der Port des neuen Front-Trucks
      * @param nowAlone gibt an, ob das der letzte Truck des Platoonings ist
+     * @return Future, das nach dem Aktualisieren abgeschlossen ist
      */
     @PutMapping(PathRegister.NOTIFY_BACK_TRUCK_LEAVE_PLATOON)
-    private void notifyBackTruckLeavePlatoon(@RequestBody Integer newFrontTruckPort, @RequestParam boolean nowAlone) {
-        healthCheckExecutor.shutdownNow();
-        enqueueTask(() -> {
+    private CompletableFuture<Void> notifyBackTruckLeavePlatoon(@RequestBody Integer newFrontTruckPort, @RequestParam boolean nowAlone) {
+        return enqueueAsync(() -> {
             //Der Platooning-Port, der das Platoon verlässt
             int frontTruckPort = PLATOONING.getFrontTruckPort();
 
@@ -246,13 +419,13 @@ public class PlatooningController {
      * Wird vom Truck, der den Ausfall eines PlatooningServices erkannt hat, beim Leader aufgerufen, damit dieser über seinen CruiseService
      * die CruiseServices der anderen Trucks befehlen kann, die Lücke durch Beschleunigung zu schließen.
      * @param cruiseControlPort der Port des Cruise Services des Trucks, der den Platoon verlassen hat
+     * @return Future, das nach dem Einreihen der Weiterleitung abgeschlossen ist
      */
     @PutMapping(PathRegister.CLOSE_GAP)
-    private void closeGap(@RequestBody Integer cruiseControlPort) {
-        enqueueTask(() -> {
+    private CompletableFuture<Void> closeGap(@RequestBody Integer cruiseControlPort) {
+        return enqueueAsync(() -> {
             if (PLATOONING.isLeader()) {
-                Thread thread = new Thread(() -> sendViaPut(PathRegister.CLOSE_GAP_LEADER, PLATOONING.getOwnCruiseControlPort(), cruiseControlPort));
-                thread.start();
+                MessageDispatcher.handOff(() -> sendViaPut(PathRegister.CLOSE_GAP_LEADER, PLATOONING.getOwnCruiseControlPort(), cruiseControlPort));
             }
         });
     }
@@ -260,49 +433,132 @@ public class PlatooningController {
     /**
      * Wird nur beim Leadertruck aufgerufen und gibt den Frontruck von diesem zurück (letzte Fahrzeug des Platoons durch Ring), weil das der Truck ist,
      * an dem sich neue Fahrzeige hinten anhängen.
-     * @return Port des letzten Fahrzeugs
+     * Über den Header ELECTION_EPOCH_HEADER erfährt der neue Truck die Term-Nummer der letzten Wahl. Ist
+     * registration.batch-window-ms gesetzt, startet der neue Truck keine eigene Wahl (ELECTION_DEFERRED_HEADER), sondern
+     * der Leader startet eine gemeinsame Wahl, sobald sich für ein Zeitfenster kein weiterer Truck angemeldet hat.
+     * Ist dieser Truck nicht der Leader, nennt er im Header LEADER_PORT_HEADER den ihm bekannten Leader und im Header
+     * ELECTION_EPOCH_HEADER die Term-Nummer der Wahl, aus der dieser stammt.
+     * Der hinterste Truck wird außerhalb des PLATOONING_CONTROLLING_LOCK über seinen neuen BackTruck informiert, die
+     * Antwort folgt erst danach.
+     * @return Future mit dem Port des letzten Fahrzeugs, -1 falls dieser Truck nicht der Leader ist
      */
     @PutMapping(PathRegister.NEW_TRUCK_SIGN_IN)
-    private int newTruckSignIn(@RequestBody Integer platooningPort) {
-        return enqueueTask(() -> {
+    private CompletableFuture<ResponseEntity<Integer>> newTruckSignIn(@RequestBody Integer platooningPort) {
+        return enqueueAsync(() -> {
             if (PLATOONING.isLeader()) {
                 int currentFrontTruckPort = PLATOONING.getFrontTruckPort();
+                CompletableFuture<Void> backTruckUpdated;
                 if (currentFrontTruckPort > 0) {
                     System.out.println("Melde den neuen PlatooningService beim aktuell letzten Truck an...");
-                    REST_TEMPLATE.put(Util.getBaseUriComponentsBuilder(currentFrontTruckPort, PathRegister.UPDATE_BACK_TRUCK).toUriString(), platooningPort);
+                    backTruckUpdated = MessageDispatcher.handOff(() -> sendViaPut(PathRegister.UPDATE_BACK_TRUCK, currentFrontTruckPort, platooningPort));
                 } else {
-                    //Schicke den eigenen Port, um direkt am Leader anzuhängen.
-                    currentFrontTruckPort = PlatooningService.getPort();
+                    backTruckUpdated = CompletableFuture.completedFuture(null);
                 }
-                healthCheckExecutor.shutdownNow();
+                //Schicke den eigenen Port, um direkt am Leader anzuhängen.
+                int frontTruckPortForNewTruck = currentFrontTruckPort > 0 ? currentFrontTruckPort : PlatooningService.getPort();
                 updateFrontTruckHelper(platooningPort);
                 if(PLATOONING.getBackTruckPort() < 1) {
                     PLATOONING.setBackTruckPort(platooningPort);
                 }
-                return currentFrontTruckPort;
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                        .header(PathRegister.ELECTION_EPOCH_HEADER, String.valueOf(PLATOONING.getElectionEpoch().getTerm()));
+                if (PlatooningService.getBatchWindowMs() > 0) {
+                    batchJoined++;
+                    scheduleBatchElection();
+                    response.header(PathRegister.ELECTION_DEFERRED_HEADER, "true");
+                }
+                return backTruckUpdated.handle((result, ex) -> response.body(frontTruckPortForNewTruck));
             } else {
-                return -1;
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                int knownLeaderPort = LEADER_CACHE.getLeaderPort();
+                if (knownLeaderPort > 0 && knownLeaderPort != PlatooningService.getPort()) {
+                    response.header(PathRegister.LEADER_PORT_HEADER, String.valueOf(knownLeaderPort))
+                            .header(PathRegister.ELECTION_EPOCH_HEADER, String.valueOf(LEADER_CACHE.getTerm()));
+                }
+                return CompletableFuture.completedFuture(response.body(-1));
             }
-        });
+        }).thenCompose(response -> response != null ? response : CompletableFuture.completedFuture(ResponseEntity.ok().<Integer>build()));
+    }
 
+    /**
+     * Plant die gemeinsame Wahl für die gesammelten Trucks neu, sodass sie erst startet, wenn sich für ein Zeitfenster
+     * kein weiterer Truck angemeldet hat.
+     */
+    private void scheduleBatchElection() {
+        if (batchElection != null) {
+            batchElection.cancel(false);
+        }
+        batchElection = batchElectionExecutor.schedule(this::startBatchElection, PlatooningService.getBatchWindowMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Startet die gemeinsame Wahl für die gesammelten Trucks, sobald der RegistrationServer bestätigt, dass sich alle
+     * zugelassenen Trucks angemeldet haben. Andernfalls wird ein weiteres Zeitfenster gewartet, nach
+     * MAX_BATCH_CLOSE_ATTEMPTS Versuchen startet die Wahl trotzdem. Die Anfrage an den RegistrationServer wird außerhalb
+     * des PLATOONING_CONTROLLING_LOCK gestellt.
+     */
+    private void startBatchElection() {
+        int[] batch = enqueueTask(() -> {
+            if (batchJoined == 0) {
+                return null;
+            }
+            if (!PLATOONING.isLeader()) {
+                //Eine andere Wahl hat die gesammelten Trucks bereits aufgenommen
+                batchJoined = 0;
+                batchCloseAttempts = 0;
+                return null;
+            }
+            return new int[] {batchJoined, ++batchCloseAttempts};
+        });
+        if (batch == null) {
+            return;
+        }
+        boolean force = batch[1] >= MAX_BATCH_CLOSE_ATTEMPTS;
+        Boolean closed;
+        try {
+            closed = RegistrationClient.write(port -> REST_TEMPLATE.exchange(getPlatoonUriComponentsBuilder(port, PathRegister.CLOSE_BATCH)
+                    .queryParam("joined", batch[0])
+                    .queryParam("force", force).toUriString(), HttpMethod.PUT, null, Boolean.class).getBody());
+        } catch (ResourceAccessException e) {
+            System.err.println("Der Registration-Server ist offline, starte die gemeinsame Wahl ohne Bestätigung.");
+            closed = true;
+        }
+        boolean startElection = Boolean.TRUE.equals(closed);
+        enqueueTask(() -> {
+            if (!startElection) {
+                scheduleBatchElection();
+                return;
+            }
+            //Ist der Truck inzwischen nicht mehr Leader, hat eine andere Wahl die gesammelten Trucks bereits aufgenommen
+            if (PLATOONING.isLeader()) {
+                System.out.println("Starte gemeinsame Wahl für " + batchJoined + " neue Trucks...");
+                startElection();
+            }
+            batchJoined = 0;
+            batchCloseAttempts = 0;
+        });
     }
 
     /**
      * Aktualisiert den Back Truck dieses Platooning Services
      * @param platooningPort der Port des Platooning Services des neuen Backtrucks
+     * @return Future, das nach dem Aktualisieren abgeschlossen ist
      */
     @PutMapping(PathRegister.UPDATE_BACK_TRUCK)
-    private void updateBackTruck(@RequestBody Integer platooningPort) {
-        enqueueTask(() -> PLATOONING.setBackTruckPort(platooningPort));
+    private CompletableFuture<Void> updateBackTruck(@RequestBody Integer platooningPort) {
+        return enqueueAsync(() -> PLATOONING.setBackTruckPort(platooningPort));
     }
 
     /**
      * Diese Methode verarbeit die Informationen zu dem aus der Wahl resultierenden Leader. Je nachem ob die Wahl gewonnen
      * oder verloren wurde, wird der CruiseService benachrichtigt und der Port des neuen Leaders dem RegistrationServer mitgeteilt.
+     * Auf die Benachrichtigungen wird nicht im PLATOONING_CONTROLLING_LOCK gewartet, sie werden in leaderNotification
+     * gemerkt. Nachrichten an den eigenen CruiseService werden in der Reihenfolge der Wahlen zugestellt.
      * @param newLeaderContact der PlatooningContact des neuen Leaders
      */
     private void handleNewLeader(PlatooningContact newLeaderContact) {
-        ExecutorService es = Executors.newCachedThreadPool();
+        List<CompletableFuture<Void>> notifications = new ArrayList<>();
+        CompletableFuture<Void> previousNotification = leaderNotification.exceptionally(ex -> null);
         int newLeaderPort;
         boolean isLeader;
 
@@ -312,12 +568,12 @@ public class PlatooningController {
             newLeaderPort = -1;
             isLeader = true;
 
-            es.submit(() -> setCruiseControlAsLeader(true));
-            es.submit(() -> setRegistrationServerLeaderPort(PLATOONING_CONTACT.getPlatooningPort(), PLATOONING_CONTACT.getCruisePort()));
+            notifications.add(previousNotification.thenCompose(result -> MessageDispatcher.handOff(() -> setCruiseControlAsLeader(true))));
+            notifications.add(MessageDispatcher.handOff(() -> setRegistrationServerLeaderPort(PLATOONING_CONTACT.getPlatooningPort(), PLATOONING_CONTACT.getCruisePort())));
         } else {
             //Überprüfung, ob dieser Truck vorher Leader war
             if (PLATOONING.isLeader()) {
-                es.submit(() -> setCruiseControlAsLeader(false));
+                notifications.add(previousNotification.thenCompose(result -> MessageDispatcher.handOff(() -> setCruiseControlAsLeader(false))));
             }
             System.out.println("Speichere Port des Leaders: " + newLeaderContact.getPlatooningPort());
             newLeaderPort = newLeaderContact.getPlatooningPort();
@@ -325,16 +581,24 @@ public class PlatooningController {
         }
         PLATOONING.setLeaderPort(newLeaderPort);
         PLATOONING.setLeader(isLeader);
-        es.shutdown();
+        LEADER_CACHE.update(newLeaderContact.getPlatooningPort(), PLATOONING.getElectionEpoch().getTerm());
 
-        try {
-            if (!es.awaitTermination(60, TimeUnit.SECONDS)) {
-                System.err.println("handleNewLeader konnte nicht erfolgreich abgeschlossen werden!");
-            }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        leaderNotification = CompletableFuture.allOf(notifications.toArray(new CompletableFuture[0]))
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        System.err.println("handleNewLeader konnte nicht erfolgreich abgeschlossen werden!");
+                    }
+                });
+    }
 
+    /**
+     * Verschickt eine Nachricht, sobald die Benachrichtigungen des letzten handleNewLeader abgeschlossen sind. So erfährt
+     * der nächste Truck erst vom neuen Leader, wenn CruiseService und RegistrationServer ihn kennen, ohne dass dabei der
+     * PLATOONING_CONTROLLING_LOCK gehalten wird.
+     * @param task die zu versendende Nachricht
+     */
+    private void dispatchAfterLeaderNotification(Runnable task) {
+        leaderNotification.whenComplete((result, ex) -> MessageDispatcher.handOff(task));
     }
 
     /**
@@ -345,12 +609,20 @@ public class PlatooningController {
      * Ring vollständig durchlaufen hat. Das heißt der neue Leader kann anhand der PID ermittelt werden und über den Ring den anderen
      * Trucks mitgeteilt werden. Ist das eigene PlatooningContact-Objekt allerdings nicht in der Liste drin, wird das PlatooningContact-Objekt dieses Trucks in die Liste hinzugefügt
      * und an den Vordermann im Ring weitergeschickt.
+     * Nachrichten einer veralteten Wahl werden nicht weitergeschickt.
      * @param platooningContacts Liste mit den PlatooningContacts der Trucks, die diese Nachricht bereits erhalten haben
-     * @return HTTP-Status "ok"
+     * @param term Term-Nummer der Wahl
+     * @param initiatorPid PID des Trucks, der die Wahl gestartet hat
+     * @return Future mit dem HTTP-Status "ok"
      */
     @PutMapping(PathRegister.RECEIVE_CONTINUE_ELECTION_PATH)
-    private ResponseEntity<?> receiveContinueElection(@RequestBody List<PlatooningContact> platooningContacts) {
-        return enqueueTask(() -> {
+    private CompletableFuture<ResponseEntity<?>> receiveContinueElection(@RequestBody List<PlatooningContact> platooningContacts, @RequestParam long term,
+                                                      @RequestParam long initiatorPid) {
+        return enqueueAsync(() -> {
+            ElectionEpoch epoch = new ElectionEpoch(term, initiatorPid);
+            if (!acceptElectionEpoch(epoch)) {
+                return new ResponseEntity<>(HttpStatus.OK);
+            }
             System.out.println("PlatooningContacts: " + Arrays.toString(platooningContacts.toArray()));
             System.out.println("Eigener PlatooningContact: " + PLATOONING_CONTACT);
             if (platooningContacts.contains(PLATOONING_CONTACT)) {
@@ -369,37 +641,18 @@ public class PlatooningController {
                 int leaderIndex = platooningContacts.indexOf(newLeaderContact);
                 Collections.rotate(platooningContacts,platooningContacts.size()-leaderIndex);
 
-                //Sende vollständige Liste der Trucks an die Monitoring Schnittstelle
-                Thread threadM = new Thread(() -> {
-                    try {
-                        sendViaPut(PathRegister.SET_LIST, MONITORING_PORT, platooningContacts);
-                    } catch(ResourceAccessException e) {
-                        System.err.println("Es wurde versucht, die Liste der aktuellen Trucks an den MonitoringService zu senden, aber dieser ist nicht online.");
-                    }
-                });
-                threadM.start();
-
                 handleNewLeader(newLeaderContact);
-
-                ArrayList<Integer> cruisePortsForLeader = new ArrayList<>();
-                for (PlatooningContact pc: platooningContacts){
-                    if (pc.getCruisePort() != newLeaderContact.getCruisePort()) {
-                        cruisePortsForLeader.add(pc.getCruisePort());
-                    }
-                }
-
-                Thread threadC = new Thread(() -> sendViaPut(PathRegister.SET_CRUISE_PORTS, newLeaderContact.getCruisePort(), cruisePortsForLeader));
-                threadC.start();
+                publishMembership(platooningContacts, newLeaderContact);
 
                 //Sende an nächsten Truck, wer der neue Koordinator ist.
                 System.out.println("Sende, dass " + newLeaderContact.getPlatooningPid() + " der neue Koordinator ist!");
-                sendNewLeader(PLATOONING_CONTACT.getPlatooningPid(), newLeaderContact);
+                sendNewLeader(PLATOONING_CONTACT.getPlatooningPid(), newLeaderContact, epoch);
             } else {
                 //Füge eigene PID hinzu und leite die Wahl-Nachricht weiter.
                 platooningContacts.add(PLATOONING_CONTACT);
 
-                Thread thread = new Thread(() -> sendViaPut(PathRegister.RECEIVE_CONTINUE_ELECTION_PATH, PLATOONING.getFrontTruckPort(), platooningContacts));
-                thread.start();
+                UriComponentsBuilder builder = getElectionUriComponentsBuilder(PLATOONING.getFrontTruckPort(), PathRegister.RECEIVE_CONTINUE_ELECTION_PATH, epoch);
+                MessageDispatcher.handOff(() -> REST_TEMPLATE.put(builder.toUriString(), platooningContacts));
             }
             return new ResponseEntity<>(HttpStatus.OK);
         });
@@ -411,11 +664,18 @@ public class PlatooningController {
      * bereits einmal komplett druchlaufen hat wird geprüft, indem die Initiator-PID immer mitgeschickt wird.
      * @param newLeaderContact der Platooning Contact des neuen Leaders
      * @param senderPID die Prozess-ID des Initiators der New-Leader Nachricht
-     * @return HTTP-Status "ok"
+     * @param term Term-Nummer der Wahl
+     * @param initiatorPid PID des Trucks, der die Wahl gestartet hat
+     * @return Future mit dem HTTP-Status "ok"
      */
     @PutMapping(PathRegister.RECEIVE_NEW_LEADER_PATH)
-    private ResponseEntity<?> receiveNewLeader(@RequestBody PlatooningContact newLeaderContact, @RequestParam int senderPID) {
-        return enqueueTask(() -> {
+    private CompletableFuture<ResponseEntity<?>> receiveNewLeader(@RequestBody PlatooningContact newLeaderContact, @RequestParam int senderPID,
+                                               @RequestParam long term, @RequestParam long initiatorPid) {
+        return enqueueAsync(() -> {
+            ElectionEpoch epoch = new ElectionEpoch(term, initiatorPid);
+            if (!acceptElectionEpoch(epoch)) {
+                return new ResponseEntity<>(HttpStatus.OK);
+            }
             System.out.println("Sender-PID: " + senderPID);
             //System.out.println("Meine PID: " + PLATOONING.getPid());
             long platooningPID = PLATOONING_CONTACT.getPlatooningPid();
@@ -427,26 +687,151 @@ public class PlatooningController {
 
                 //Sende an nächsten Truck, wer der neue Koordinator ist.
                 System.out.println("Leite weiter, dass " + newLeaderContact.getPlatooningPid() + " der neue Koordinator ist!");
-                sendNewLeader(senderPID, newLeaderContact);
+                sendNewLeader(senderPID, newLeaderContact, epoch);
             } else {
-                Thread thread = new Thread(() -> REST_TEMPLATE.put(getBaseUriComponentsBuilder(REGISTRATION_PORT, PathRegister.UPDATE_ELECTION_STATUS).toUriString(), false));
-                thread.start();
+                MessageDispatcher.handOff(() -> sendElectionStatus(false));
+            }
+            return new ResponseEntity<>(HttpStatus.OK);
+        });
+    }
+
+
+    /**
+     * Schickt die vollständige, geordnete Liste der Trucks an die Monitoring Schnittstelle und die Cruise Ports der
+     * anderen Trucks an den CruiseService des Leaders.
+     * @param platooningContacts alle Trucks, beginnend mit dem Leader
+     * @param newLeaderContact der PlatooningContact des Leaders
+     */
+    private void publishMembership(List<PlatooningContact> platooningContacts, PlatooningContact newLeaderContact) {
+        MessageDispatcher.handOff(() -> {
+            try {
+                REST_TEMPLATE.put(getPlatoonUriComponentsBuilder(Util.getMonitoringPort(), PathRegister.SET_LIST).toUriString(), platooningContacts);
+            } catch(ResourceAccessException e) {
+                System.err.println("Es wurde versucht, die Liste der aktuellen Trucks an den MonitoringService zu senden, aber dieser ist nicht online.");
+            }
+        });
+
+        ArrayList<Integer> cruisePortsForLeader = new ArrayList<>();
+        for (PlatooningContact pc: platooningContacts){
+            if (pc.getCruisePort() != newLeaderContact.getCruisePort()) {
+                cruisePortsForLeader.add(pc.getCruisePort());
+            }
+        }
+
+        dispatchAfterLeaderNotification(() -> sendViaPut(PathRegister.SET_CRUISE_PORTS, newLeaderContact.getCruisePort(), cruisePortsForLeader));
+    }
+
+    /**
+     * Empfängt eine Wahl-Nachricht der Wahl nach Chang und Roberts (election.mode=chang-roberts)
+     * @param candidate der bisher beste Kandidat
+     * @param term Term-Nummer der Wahl
+     * @param initiatorPid PID des Trucks, der die Wahl gestartet hat
+     * @return Future mit dem HTTP-Status "ok"
+     */
+    @PutMapping(PathRegister.RECEIVE_ELECTION_PATH)
+    private CompletableFuture<ResponseEntity<?>> receiveElection(@RequestBody PlatooningContact candidate, @RequestParam long term, @RequestParam long initiatorPid) {
+        return enqueueAsync(() -> {
+            if (acceptElectionEpoch(new ElectionEpoch(term, initiatorPid))) {
+                CHANG_ROBERTS_ELECTION.onElection(candidate);
+            }
+            return new ResponseEntity<>(HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Empfängt die Koordinator-Nachricht der Wahl nach Chang und Roberts, über die der Gewinner bekannt gegeben wird
+     * @param leader der Gewinner der Wahl
+     * @param hops Anzahl der Trucks, welche die Nachricht bereits verarbeitet haben
+     * @param term Term-Nummer der Wahl
+     * @param initiatorPid PID des Trucks, der die Wahl gestartet hat
+     * @return Future mit dem HTTP-Status "ok"
+     */
+    @PutMapping(PathRegister.RECEIVE_COORDINATOR_PATH)
+    private CompletableFuture<ResponseEntity<?>> receiveCoordinator(@RequestBody PlatooningContact leader, @RequestParam int hops, @RequestParam long term,
+                                                 @RequestParam long initiatorPid) {
+        return enqueueAsync(() -> {
+            if (acceptElectionEpoch(new ElectionEpoch(term, initiatorPid))) {
+                CHANG_ROBERTS_ELECTION.onCoordinator(leader, hops);
+            }
+            return new ResponseEntity<>(HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Empfängt beim Leader die Meldung eines Trucks während der Bekanntgabe der Wahl nach Chang und Roberts
+     * @param member PlatooningContact des meldenden Trucks
+     * @param backTruckPort BackTruckPort des meldenden Trucks
+     * @param term Term-Nummer der Wahl
+     * @param initiatorPid PID des Trucks, der die Wahl gestartet hat
+     * @return Future mit dem HTTP-Status "ok"
+     */
+    @PutMapping(PathRegister.RECEIVE_ELECTION_REPORT_PATH)
+    private CompletableFuture<ResponseEntity<?>> receiveElectionReport(@RequestBody PlatooningContact member, @RequestParam int backTruckPort,
+                                                    @RequestParam long term, @RequestParam long initiatorPid) {
+        return enqueueAsync(() -> {
+            //Meldungen gehören immer zu der Wahl, die der Leader gerade abschließt
+            if (PLATOONING.getElectionEpoch().equals(new ElectionEpoch(term, initiatorPid))) {
+                CHANG_ROBERTS_ELECTION.onReport(member, backTruckPort);
             }
             return new ResponseEntity<>(HttpStatus.OK);
         });
     }
 
+    /**
+     * Verschickt die Nachrichten der Wahl nach Chang und Roberts per HTTP. Jede Nachricht trägt die Epoche der Wahl, die
+     * dieser Truck gerade verarbeitet.
+     */
+    private final class ElectionTransport implements ChangRobertsElection.Transport {
+
+        @Override
+        public void sendElection(int port, PlatooningContact candidate) {
+            UriComponentsBuilder builder = getElectionUriComponentsBuilder(port, PathRegister.RECEIVE_ELECTION_PATH, PLATOONING.getElectionEpoch());
+            MessageDispatcher.handOff(() -> REST_TEMPLATE.put(builder.toUriString(), candidate));
+        }
+
+        @Override
+        public void sendCoordinator(int port, PlatooningContact leader, int hops) {
+            UriComponentsBuilder builder = getElectionUriComponentsBuilder(port, PathRegister.RECEIVE_COORDINATOR_PATH, PLATOONING.getElectionEpoch())
+                    .queryParam("hops", hops);
+            dispatchAfterLeaderNotification(() -> REST_TEMPLATE.put(builder.toUriString(), leader));
+        }
+
+        @Override
+        public void sendReport(int port, PlatooningContact member, int backTruckPort) {
+            UriComponentsBuilder builder = getElectionUriComponentsBuilder(port, PathRegister.RECEIVE_ELECTION_REPORT_PATH, PLATOONING.getElectionEpoch())
+                    .queryParam("backTruckPort", backTruckPort);
+            dispatchAfterLeaderNotification(() -> REST_TEMPLATE.put(builder.toUriString(), member));
+        }
+    }
+
+    /**
+     * Übernimmt das Ergebnis der Wahl nach Chang und Roberts.
+     */
+    private final class ElectionListener implements ChangRobertsElection.Listener {
+
+        @Override
+        public void onNewLeader(PlatooningContact leader) {
+            handleNewLeader(leader);
+        }
+
+        @Override
+        public void onMembership(List<PlatooningContact> ordered) {
+            System.out.println("Reihenfolge des Platoons: " + Arrays.toString(ordered.toArray()));
+            publishMembership(ordered, PLATOONING_CONTACT);
+            dispatchAfterLeaderNotification(() -> sendElectionStatus(false));
+        }
+    }
 
     /**
      * Hier wird die Nachricht über den Gewinner der Wahl losgeschickt
      * @param senderPID die PID des Platooning Services, der die Wahl analysiert hat
      * @param newLeaderContact der Contact des Platooning Services, der der neue Leader ist
+     * @param epoch Epoche der Wahl
      */
-    private void sendNewLeader(long senderPID, PlatooningContact newLeaderContact) {
-        UriComponentsBuilder builder = getBaseUriComponentsBuilder(PLATOONING.getFrontTruckPort(), PathRegister.RECEIVE_NEW_LEADER_PATH)
+    private void sendNewLeader(long senderPID, PlatooningContact newLeaderContact, ElectionEpoch epoch) {
+        UriComponentsBuilder builder = getElectionUriComponentsBuilder(PLATOONING.getFrontTruckPort(), PathRegister.RECEIVE_NEW_LEADER_PATH, epoch)
                 .queryParam("senderPID", senderPID);
-        Thread thread = new Thread(() -> REST_TEMPLATE.put(builder.toUriString(), newLeaderContact));
-        thread.start();
+        dispatchAfterLeaderNotification(() -> REST_TEMPLATE.put(builder.toUriString(), newLeaderContact));
     }
 
     /**
@@ -457,13 +842,22 @@ public class PlatooningController {
     @PreDestroy
     private void leavePlatoon() {
         System.out.println("Verlasse Platoon...");
-        enqueueTask(() -> {
-            try {
-                String url = getBaseUriComponentsBuilder(MONITORING_PORT, PathRegister.REMOVE_TRUCK_BY_PLATOON).buildAndExpand(PlatooningService.getPort()).toUriString();
-                REST_TEMPLATE.delete(url);
-            } catch (ResourceAccessException ex) {
-                System.err.println("Monitoring-Seite ist offline, die Meldung über den Truckausfall kann nicht gesendet werden...");
-            }
+        HEARTBEAT_MONITOR.shutdown();
+        batchElectionExecutor.shutdownNow();
+        if (WIRE_SERVER != null) {
+            WIRE_SERVER.shutdown();
+        }
+        //Die Benachrichtigungen werden im kritischen Bereich eingereiht, gewartet wird erst danach
+        List<CompletableFuture<Void>> notifications = enqueueTask(() -> {
+            List<CompletableFuture<Void>> pending = new ArrayList<>();
+            pending.add(MessageDispatcher.handOff(() -> {
+                try {
+                    String url = getPlatoonUriComponentsBuilder(Util.getMonitoringPort(), PathRegister.REMOVE_TRUCK_BY_PLATOON).buildAndExpand(PlatooningService.getPort()).toUriString();
+                    REST_TEMPLATE.delete(url);
+                } catch (ResourceAccessException ex) {
+                    System.err.println("Monitoring-Seite ist offline, die Meldung über den Truckausfall kann nicht gesendet werden...");
+                }
+            }));
 
             int frontTruckPort = PLATOONING.getFrontTruckPort();
             int backTruckPort = PLATOONING.getBackTruckPort();
@@ -480,26 +874,22 @@ public class PlatooningController {
             }
 
             if(frontTruckPort <= 0 && backTruckPort <= 0){
-                resetRegistrationServer();
+                pending.add(MessageDispatcher.handOff(this::resetRegistrationServer));
             }
 
-            Thread thread = new Thread(() -> REST_TEMPLATE.put(Util.getBaseUriComponentsBuilder(frontTruckPort, PathRegister.UPDATE_BACK_TRUCK).toUriString(), backTruckPortToSet));
             if (frontTruckPort > 0) {
-                thread.start();
+                pending.add(MessageDispatcher.handOff(() -> sendViaPut(PathRegister.UPDATE_BACK_TRUCK, frontTruckPort, backTruckPortToSet)));
             }
-            Thread thread1 = new Thread(() -> REST_TEMPLATE.put(Util.getBaseUriComponentsBuilder(backTruckPort, PathRegister.NOTIFY_BACK_TRUCK_LEAVE_PLATOON).queryParam("nowAlone", frontTruckPortToSet == 0 && backTruckPortToSet == 0).toUriString(), frontTruckPortToSet));
             if (backTruckPort > 0) {
-                thread1.start();
+                pending.add(MessageDispatcher.handOff(() -> REST_TEMPLATE.put(Util.getBaseUriComponentsBuilder(backTruckPort, PathRegister.NOTIFY_BACK_TRUCK_LEAVE_PLATOON).queryParam("nowAlone", frontTruckPortToSet == 0 && backTruckPortToSet == 0).toUriString(), frontTruckPortToSet)));
             }
-            System.out.println("aktueller Leader-Port: " + PLATOONING.getLeaderPort());
-            Thread thread3 = new Thread(() -> sendViaPut(PathRegister.CLOSE_GAP, PLATOONING.getLeaderPort(), PLATOONING.getOwnCruiseControlPort()));
             if (!PLATOONING.isLeader()) {
-                thread3.start();
+                MessageDispatcher.handOff(this::sendCloseGap);
             }
 
             int cruisePort = PLATOONING.getOwnCruiseControlPort();
 
-            Thread thread2 = new Thread(() -> {
+            pending.add(MessageDispatcher.handOff(() -> {
                 if (cruisePort > 0) {
                     HttpHeaders headers = new HttpHeaders();
                     headers.setContentType(MediaType.APPLICATION_JSON);
@@ -512,30 +902,36 @@ public class PlatooningController {
                         System.out.println("CruiseService ist schon offline.");
                     }
                 }
-            });
-            thread2.start();
+            }));
+            return pending;
+        });
 
+        if (notifications != null) {
             try {
-                thread.join();
-                thread1.join();
-                thread2.join();
+                CompletableFuture.allOf(notifications.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+            } catch (TimeoutException | ExecutionException ex) {
+                System.err.println("Nicht alle Trucks konnten über das Verlassen informiert werden.");
             } catch (InterruptedException ex) {
                 System.out.println("interrupted!");
             }
-            System.out.println("PlatooningService wird heruntergefahren...");
-        });
+        }
+        CONTROL_EXECUTOR.shutdown();
+        System.out.println("PlatooningService wird heruntergefahren...");
     }
 
     /**
-     * Lagert das Senden als Put-Request aus
+     * Lagert das Senden als Put-Request aus. Ist das binäre Protokoll aktiviert und besteht die Nachricht höchstens aus
+     * einer Zahl, wird sie als Frame geschickt. Die URI kommt dabei aus der EndpointTable.
      * @param path Pfad der aufgerufen werden soll
      * @param port Port des Trucks, an den die Nachricht geschickt werden soll
      * @param toSend der zu sendende Inhalt
      * @param <T> Objekttyp der Nachricht
      */
     private <T> void sendViaPut(String path, int port, T toSend) {
-        UriComponentsBuilder builder = getBaseUriComponentsBuilder(port, path);
-        REST_TEMPLATE.put(builder.toUriString(), toSend);
+        if (WIRE_CLIENT != null && (toSend == null || toSend instanceof Integer) && WIRE_CLIENT.send(port, path, (Integer) toSend)) {
+            return;
+        }
+        REST_TEMPLATE.put(EndpointTable.get(port, path), EndpointTable.entityOf(toSend));
     }
 
     /**
@@ -553,10 +949,36 @@ public class PlatooningController {
      */
     private void setRegistrationServerLeaderPort(int platooningPort, int cruisePort) {
         System.out.println("Aktualisiere Leader-Ports beim RegistrationServer");
-        UriComponentsBuilder builder = getBaseUriComponentsBuilder(REGISTRATION_PORT, PathRegister.SET_LEADER_PORT)
-                .queryParam("platooningPort", platooningPort)
-                .queryParam("cruisePort", cruisePort);
-        REST_TEMPLATE.put(builder.toUriString(), null);
+        RegistrationClient.write(port -> {
+            REST_TEMPLATE.put(getPlatoonUriComponentsBuilder(port, PathRegister.SET_LEADER_PORT)
+                    .queryParam("platooningPort", platooningPort)
+                    .queryParam("cruisePort", cruisePort).toUriString(), null);
+            return null;
+        });
+    }
+
+    /**
+     * Fordert den Leader aus dem LEADER_CACHE auf, die Lücke vor diesem Truck zu schließen.
+     */
+    private void sendCloseGap() {
+        int leaderPort = LEADER_CACHE.getLeaderPort();
+        System.out.println("aktueller Leader-Port: " + leaderPort);
+        if (leaderPort == LeaderCache.UNKNOWN) {
+            System.err.println("Der Leader ist nicht bekannt, die Lücke kann nicht geschlossen werden.");
+            return;
+        }
+        sendViaPut(PathRegister.CLOSE_GAP, leaderPort, PLATOONING.getOwnCruiseControlPort());
+    }
+
+    /**
+     * Teilt dem RegistrationServer mit, ob gerade eine Wahl läuft, damit er währenddessen keine neuen Trucks zulässt.
+     * @param running true, solange eine Wahl läuft
+     */
+    private void sendElectionStatus(boolean running) {
+        RegistrationClient.write(port -> {
+            REST_TEMPLATE.put(getPlatoonUriComponentsBuilder(port, PathRegister.UPDATE_ELECTION_STATUS).toUriString(), running);
+            return null;
+        });
     }
 
     /**
@@ -564,9 +986,11 @@ public class PlatooningController {
      * um die Daten des RegistrationServers zurückzusetzen.
      */
     private void resetRegistrationServer(){
-        UriComponentsBuilder builder = getBaseUriComponentsBuilder(REGISTRATION_PORT, PathRegister.RESET);
         try {
-            REST_TEMPLATE.put(builder.toUriString(), null);
+            RegistrationClient.write(port -> {
+                REST_TEMPLATE.put(getPlatoonUriComponentsBuilder(port, PathRegister.RESET).toUriString(), null);
+                return null;
+            });
         } catch(ResourceAccessException ex) {
             System.err.println("Der Registration-Server ist offline, kann Anfrage zum Zurücksetzen nicht schicken.");
         }
@@ -574,87 +998,73 @@ public class PlatooningController {
 
 
     /**
-     * Diese Klasse ist für die Überprüfung eines Aufalls im Platoon verantwortlich, indem jeder Platooning Service seinem Vordermann
-     * UND seinem eigenen Cruise Service in kurzen, regelmäßigen Abständen eine Anfrage schickt, die dieser mit einem einfachen HTTP "OK"
-     * zu beantworten hat. Bleibt diese Antwort aus,wird auf einen Ausfall geschlossen und die notwendigen Schritte werden eingeleitet.
+     * Wird vom HeartbeatMonitor aufgerufen, wenn ein überwachter Service nicht mehr antwortet. Jeder Platooning Service
+     * überwacht seinen Vordermann UND seinen eigenen Cruise Service. Ist der eigene Cruise Service ausgefallen, ist der Truck
+     * kaputt und der Platooning Service fährt herunter. Ist der Vordermann ausgefallen, werden die notwendigen Schritte
+     * eingeleitet, um die Lücke zu schließen. Meldungen zu einem Port, der inzwischen nicht mehr der Vordermann ist
+     * (z.B. weil er das Platoon kontrolliert verlassen hat), werden ignoriert.
+     * @param port Port des ausgefallenen Services
      */
-    private final class HealthCheckTask implements Runnable {
-        private boolean shutdown = false;
-
-        @Override
-        public void run() {
-            enqueueTask(() -> {
-                int ownCruisePort = PLATOONING.getOwnCruiseControlPort();
-
-                //Überprüfung, ob der eigene CruiseService noch da ist. Falls nicht -> Abschaltung des PlatooningServices (Truck kaputt)
-                if (ownCruisePort > 0) {
+    private void handleHeartbeatFailure(int port) {
+        if (port == PLATOONING.getOwnCruiseControlPort()) {
+            System.out.println("CruiseService mit dem Port: " + port + " ist unerreichbar!");
+            //Truck ist kaputt
+            HEARTBEAT_MONITOR.shutdown();
+            System.exit(0);
+            return;
+        }
+        enqueueTask(() -> {
+            int frontTruckPort = PLATOONING.getFrontTruckPort();
+            //Ist der FrontTruck ausgefallen -> Leader kontaktieren um Lücke zu schließen
+            if (frontTruckPort > 0 && frontTruckPort == port) {
+                System.out.println("Front-Truck mit Port " + frontTruckPort + " ist ausgefallen!");
+                MessageDispatcher.handOff(() -> {
                     try {
-                        sendViaPut(PathRegister.HEALTH_CHECK, ownCruisePort, null);
-                    } catch (ResourceAccessException e) {
-                        System.out.println("CruiseService mit dem Port: " + ownCruisePort + " ist unerreichbar!");
-                        //Truck ist kaputt
-                        shutdown = true;
+                        String url = getPlatoonUriComponentsBuilder(Util.getMonitoringPort(), PathRegister.REMOVE_TRUCK_BY_PLATOON).buildAndExpand(frontTruckPort).toUriString();
+                        REST_TEMPLATE.delete(url);
+                    } catch (ResourceAccessException ex) {
+                        System.err.println("Monitoring-Seite ist offline, die Meldung über den Truckausfall kann nicht gesendet werden...");
                     }
-                }
-
-                int frontTruckPort = PLATOONING.getFrontTruckPort();
-                //Überprüfung, ob der FrontTruck noch da ist. Falls nicht -> Leader kontaktieren um Lücke zu schließen
-                if (frontTruckPort > 0) {
-                    try {
-                        sendViaPut(PathRegister.HEALTH_CHECK, frontTruckPort, null);
-                    } catch (ResourceAccessException e) {
-                        System.out.println("Front-Truck mit Port " + frontTruckPort + " ist ausgefallen!");
-                        try {
-                            String url = getBaseUriComponentsBuilder(MONITORING_PORT, PathRegister.REMOVE_TRUCK_BY_PLATOON).buildAndExpand(frontTruckPort).toUriString();
-                            REST_TEMPLATE.delete(url);
-                        } catch (ResourceAccessException ex) {
-                            System.err.println("Monitoring-Seite ist offline, die Meldung über den Truckausfall kann nicht gesendet werden...");
-                        }
-                        int portToSendTo = -1;
-                        int backTruckPort = PLATOONING.getBackTruckPort();
-                        int leaderPort = PLATOONING.getLeaderPort();
-                        boolean isLeader = PLATOONING.isLeader();
-                        int ownPlatooningPort = PlatooningService.getPort();
-                        //Wenn der Truck Leader ist oder den Leader vor sich hatte und nicht der vorletzte Truck ausgefallen ist.
-                        if ((isLeader || frontTruckPort == leaderPort) && frontTruckPort != backTruckPort) {
-                            //Reiche den unreachable Port nach hinten weiter, um am Ende den neuen FrontTruckPort zu erhalten.
-                            if(frontTruckPort == leaderPort) {
-                                startElectionAfterNewFrontTruckPort = true;
-                            }
-                            portToSendTo = backTruckPort;
-                        } else {
-                            //Ist dieser Truck der letzte Truck, der übrig ist?
-                            if (frontTruckPort == backTruckPort && frontTruckPort == leaderPort) {
-                                //Dieser Truck ist der neue Leader, weil er der einzige Truck ist, der übrig ist.
-                                System.out.println("Ich bin der neue Leader, weil kein anderer Truck mehr übrig ist.");
-                                PLATOONING.setFrontTruckPort(0);
-                                PLATOONING.setBackTruckPort(0);
-                                handleNewLeader(PLATOONING_CONTACT);
-                            } else {
-                                //Es ist nicht der letzte Truck und der Front Truck ist nicht der Leader
-                                if(!isLeader) {
-                                    gapToClose = true;
-                                }
-                                //Sende Leader den Port des Vordermanns, der nicht erreichbar ist.
-                                portToSendTo = leaderPort;
-                            }
-                        }
-                        if (portToSendTo > 0) {
-                            UriComponentsBuilder builder = getBaseUriComponentsBuilder(portToSendTo, PathRegister.CHECK_BACK_TRUCK_PORT)
-                                    .queryParam("unreachablePort", frontTruckPort)
-                                    .queryParam("callerPort", ownPlatooningPort);
-                            REST_TEMPLATE.put(builder.toUriString(), null);
+                });
+                int portToSendTo = -1;
+                int backTruckPort = PLATOONING.getBackTruckPort();
+                int leaderPort = PLATOONING.getLeaderPort();
+                boolean isLeader = PLATOONING.isLeader();
+                int ownPlatooningPort = PlatooningService.getPort();
+                //Wenn der Truck Leader ist oder den Leader vor sich hatte und nicht der vorletzte Truck ausgefallen ist.
+                if ((isLeader || frontTruckPort == leaderPort) && frontTruckPort != backTruckPort) {
+                    //Reiche den unreachable Port nach hinten weiter, um am Ende den neuen FrontTruckPort zu erhalten.
+                    if(frontTruckPort == leaderPort) {
+                        startElectionAfterNewFrontTruckPort = true;
+                    }
+                    portToSendTo = backTruckPort;
+                } else {
+                    //Ist dieser Truck der letzte Truck, der übrig ist?
+                    if (frontTruckPort == backTruckPort && frontTruckPort == leaderPort) {
+                        //Dieser Truck ist der neue Leader, weil er der einzige Truck ist, der übrig ist.
+                        System.out.println("Ich bin der neue Leader, weil kein anderer Truck mehr übrig ist.");
+                        PLATOONING.setFrontTruckPort(0);
+                        PLATOONING.setBackTruckPort(0);
+                        handleNewLeader(PLATOONING_CONTACT);
+                    } else {
+                        //Es ist nicht der letzte Truck und der Front Truck ist nicht der Leader
+                        if(!isLeader) {
+                            gapToClose = true;
                         }
-                        waitingForNewFrontTruckPort = true;
-                        healthCheckExecutor.shutdown();
+                        //Sende Leader den Port des Vordermanns, der nicht erreichbar ist.
+                        portToSendTo = leaderPort;
                     }
                 }
-            });
-            if (shutdown) {
-                healthCheckExecutor.shutdown();
-                System.exit(0);
+                if (portToSendTo > 0) {
+                    UriComponentsBuilder builder = getBaseUriComponentsBuilder(portToSendTo, PathRegister.CHECK_BACK_TRUCK_PORT)
+                            .queryParam("unreachablePort", frontTruckPort)
+                            .queryParam("callerPort", ownPlatooningPort);
+                    //Die Antwort (UPDATE_FRONT_TRUCK_PORT) wird erst nach dem Verlassen des kritischen Bereichs verarbeitet
+                    MessageDispatcher.handOff(() -> REST_TEMPLATE.put(builder.toUriString(), null));
+                }
+                waitingForNewFrontTruckPort = true;
             }
-        }
+        });
     }
 
     /**
@@ -680,4 +1090,25 @@ public class PlatooningController {
         Util.enqueueTask(PLATOONING_CONTROLLING_LOCK, runnable);
     }
 
+    /**
+     * Führt einen Endpunkt im CONTROL_EXECUTOR unter dem PLATOONING_CONTROLLING_LOCK aus, damit der Tomcat-Thread sofort
+     * wieder frei ist. Spring MVC schickt die Antwort, sobald das Future abgeschlossen ist. Im gelockten Bereich werden
+     * Nachrichten an andere Services nur mit MessageDispatcher.handOff eingereiht, nie abgewartet.
+     * @param callable das, was in dem kritischen Bereich ausgeführt werden soll
+     * @param <T> Typ des Rückgabewertes
+     * @return Future mit der Rückgabe von callable, null falls eine Exception auftritt
+     */
+    private <T> CompletableFuture<T> enqueueAsync(Callable<T> callable) {
+        return CompletableFuture.supplyAsync(() -> enqueueTask(callable), CONTROL_EXECUTOR);
+    }
+
+    /**
+     * Führt einen Endpunkt ohne Rückgabewert im CONTROL_EXECUTOR unter dem PLATOONING_CONTROLLING_LOCK aus.
+     * @param runnable das, was in dem kritischen Bereich ausgeführt werden soll
+     * @return Future, das nach dem Ausführen abgeschlossen ist
+     */
+    private CompletableFuture<Void> enqueueAsync(Runnable runnable) {
+        return CompletableFuture.runAsync(() -> enqueueTask(runnable), CONTROL_EXECUTOR);
+    }
+
 }
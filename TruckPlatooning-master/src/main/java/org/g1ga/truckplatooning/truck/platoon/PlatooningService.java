@@ -1,9 +1,12 @@
 package org.g1ga.truckplatooning.truck.platoon;
 
+import org.g1ga.truckplatooning.HeartbeatFilter;
 import org.g1ga.truckplatooning.PathRegister;
+import org.g1ga.truckplatooning.RestClientFactory;
 import org.g1ga.truckplatooning.Util;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 import org.springframework.util.SocketUtils;
 
 import java.util.Scanner;
@@ -13,15 +16,18 @@ import java.util.Scanner;
  * wartet anschließend darauf, bis der Cruise Service startet, da sie dann zusammen als 1 Truck dem Platoon joinen.
  */
 @SpringBootApplication
+@Import(HeartbeatFilter.class)
 public class PlatooningService {
 
     private static final int PORT = SocketUtils.findAvailableTcpPort(49152, 65535);
     private static int initialLeaderPort;
+    //Zeitfenster, in dem der Leader neue Trucks für eine gemeinsame Wahl sammelt (0: eine Wahl pro Truck)
+    private static int batchWindowMs;
     static Thread scannerThread;
 
     /**
-     * Startet den Platooning Service. Ist nur möglich wenn der Registration Server läuft und gerade kein anderer Platooning
-     * Service auf seinen Cruise Service wartet.
+     * Startet den Platooning Service. Ist nur möglich wenn der Registration Server läuft. Wartet gerade ein anderer Platooning
+     * Service auf seinen Cruise Service oder läuft eine Wahl, wartet der Start, bis der Registration Server ihn zulässt.
      * @param args die Argumente, die zum Start übergeben werden können
      */
     public static void main(String[] args) {
@@ -31,11 +37,16 @@ public class PlatooningService {
         if (idAndLeaderTruckPort != null) {
             int id = idAndLeaderTruckPort[0];
             initialLeaderPort = idAndLeaderTruckPort[1];
+            if (idAndLeaderTruckPort.length > 2) {
+                batchWindowMs = idAndLeaderTruckPort[2];
+            }
+            int token = idAndLeaderTruckPort.length > 3 ? idAndLeaderTruckPort[3] : 0;
 
             // Tell server to look for platooning-server.yml
             System.setProperty("spring.config.name", "platooning-server");
             System.setProperty("spring.application.instance_id", String.valueOf(id));
             System.setProperty("server.port", String.valueOf(PORT));
+            RestClientFactory.setSenderPort(PORT);
 
             SpringApplication.run(PlatooningService.class, args);
 
@@ -57,10 +68,11 @@ public class PlatooningService {
 
             System.out.println("PlatooningService mit Id: " + id + " und Port: "
                     + System.getProperty("server.port")+" und Pid: "+ProcessHandle.current().pid());
+            System.out.println("Pairing-Token für den CruiseService: " + token
+                    + " (java -jar ... cruise " + token + ")");
         } else {
             System.err.println("Der Start musste abgebrochen werden, bitte:" +
-                    "\n- stelle sicher, dass gerade keine Wahl läuft" +
-                    "\n- beachte, dass immer ein PlatooningService und danach ein CruiseService gestartet werden muss bevor ein weiterer PlatooningService gestartet werden kann." +
+                    "\n- beachte, dass die Warteschlange des RegistrationServers voll sein oder die Wartezeit abgelaufen sein kann" +
                     "\n- stelle sicher, dass der RegistrationServer online ist");
         }
     }
@@ -72,4 +84,8 @@ public class PlatooningService {
     static int getInitialLeaderPort() {
         return initialLeaderPort;
     }
+
+    static int getBatchWindowMs() {
+        return batchWindowMs;
+    }
 }
\ No newline at end of file
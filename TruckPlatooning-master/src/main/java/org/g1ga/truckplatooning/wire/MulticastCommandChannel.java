@@ -0,0 +1,457 @@
+package org.g1ga.truckplatooning.wire;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.g1ga.truckplatooning.HeartbeatMonitor;
+import org.g1ga.truckplatooning.Util;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Diese Klasse verteilt die Geschwindigkeitsbefehle des Leaders mit einem einzigen UDP-Datagramm an alle Follower,
+ * statt jedem Follower den Befehl einzeln zu schicken. Die Datagramme haben das Layout eines WireFrames und sind pro
+ * Absender fortlaufend nummeriert. Jeder Follower führt die Befehle mit einem SequenceTracker in der richtigen
+ * Reihenfolge aus und fordert fehlende Sequenznummern per NACK beim Absender an, der sie aus seinem Sendepuffer nur an
+ * diesen Follower wiederholt. Damit auch der Verlust des letzten Befehls auffällt, kündigt der Absender regelmäßig seine
+ * höchste Sequenznummer mit einem SYNC an.
+ * Ein Follower führt nur die Befehle des aktuellen Leaders aus: Er bindet sich an den ersten Absender und dessen
+ * Adresse und nimmt Befehle eines anderen Absenders erst an, wenn der bisherige mit einem SYNC seinen Rücktritt
+ * angekündigt hat oder länger als multicast.leader-timeout-ms nichts mehr gesendet hat. Jedes SYNC seines Leaders
+ * beantwortet der Follower mit einem ACK, sodass der Leader über takeSilentFollowers die Follower erkennt, die nicht
+ * mehr antworten, und sie wie beim einzelnen Versand prüfen und aus dem Platoon entfernen kann.
+ * Jeder Kanal verwendet zwei Sockets: einen, der der Gruppe beitritt, und einen auf einem freien Port, über den gesendet
+ * wird und die NACKs bzw. Wiederholungen ankommen. Der Kanal ist optional und wird nur mit -Dmulticast.enabled=true
+ * gestartet, dann aber bei allen Cruise Services, da die Follower sonst keine Befehle mehr bekommen.
+ */
+public final class MulticastCommandChannel {
+
+    private static final boolean ENABLED = Boolean.getBoolean("multicast.enabled");
+    private static final String GROUP = System.getProperty("multicast.group", "239.255.42.99");
+    private static final int GROUP_PORT = Integer.getInteger("multicast.port", 4446);
+    private static final long NACK_INTERVAL = Long.getLong("multicast.nack-ms", 20);
+    private static final int MAX_NACK_ROUNDS = Integer.getInteger("multicast.max-nack-rounds", 10);
+    private static final long SYNC_INTERVAL = Long.getLong("multicast.sync-ms", 200);
+    private static final int RETRANSMIT_BUFFER = Integer.getInteger("multicast.retransmit-buffer", 1024);
+    private static final long LEADER_TIMEOUT = Long.getLong("multicast.leader-timeout-ms", 1000);
+    private static final long FOLLOWER_TIMEOUT = Long.getLong("multicast.follower-timeout-ms", 1000);
+    //Wert eines SYNC, mit dem ein Absender ankündigt, dass er nicht mehr Leader ist
+    private static final int RESIGNED = 1;
+
+    private final int ownPort;
+    private final InetSocketAddress group;
+    private final Map<Byte, IntConsumer> handlers;
+    private final Predicate<WireFrame> groupFilter;
+    private final MulticastSocket groupSocket;
+    private final MulticastSocket unicastSocket;
+    //Gesendete Befehle, Index ist die Sequenznummer modulo Puffergröße
+    private final WireFrame[] sent = new WireFrame[RETRANSMIT_BUFFER];
+    private int sequence = 0;
+    //true, solange dieser Kanal als Leader Befehle sendet und seine Sequenznummer ankündigt
+    private volatile boolean publishing = false;
+    //HTTP-Port eines Followers -> Zeitpunkt seiner letzten Antwort in ms (monoton)
+    private final Map<Integer, Long> followerHeardAt = new ConcurrentHashMap<>();
+    //Empfangszustand des Leaders, dessen Befehle ausgeführt werden, null solange keiner bekannt ist
+    private volatile Source leader;
+    //Befehle früherer Leader, die nicht wiederholt werden konnten
+    private long retiredSkipped = 0;
+    //Ein Thread, damit die Befehle in der Reihenfolge ihrer Sequenznummern ausgeführt werden
+    private final ExecutorService handlerExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final Counter published;
+    private final Counter nacks;
+    private final Counter retransmitted;
+    private final Counter lost;
+
+    /**
+     * Startet einen Kanal auf der konfigurierten Gruppe, falls er mit multicast.enabled aktiviert wurde.
+     * @param name Name des Services, wird für Thread-Namen und Metriken verwendet
+     * @param ownPort HTTP-Port des eigenen Services, wird in jedem Datagramm mitgeschickt
+     * @param handlers Handler pro Frame-Typ, die mit dem Wert eines empfangenen Befehls aufgerufen werden
+     * @return der gestartete Kanal, null falls er nicht aktiviert ist oder nicht gestartet werden konnte
+     */
+    public static MulticastCommandChannel startIfEnabled(String name, int ownPort, Map<Byte, IntConsumer> handlers) {
+        if (!ENABLED) {
+            return null;
+        }
+        //Jedes Platoon erhält eine eigene Gruppe und einen eigenen Port, damit die Follower nur die Befehle ihres
+        //Platoons empfangen
+        int groupPort = GROUP_PORT + Util.getPlatoonId() - 1;
+        try {
+            InetAddress groupAddress = groupOf(InetAddress.getByName(GROUP), Util.getPlatoonId());
+            NetworkInterface networkInterface = NetworkInterface.getByInetAddress(InetAddress.getByName(Util.getHost()));
+            MulticastCommandChannel channel = new MulticastCommandChannel(name, ownPort,
+                    new InetSocketAddress(groupAddress, groupPort), networkInterface, handlers, frame -> true);
+            System.out.println("Multicast-Kanal für Befehle ist der Gruppe " + groupAddress.getHostAddress() + ":" + groupPort + " beigetreten");
+            return channel;
+        } catch (IOException e) {
+            System.err.println("Multicast-Kanal konnte nicht gestartet werden, Befehle werden einzeln verschickt: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Konstruktor, der der Gruppe beitritt und den Kanal startet.
+     * @param name Name des Services, wird für Thread-Namen und Metriken verwendet
+     * @param ownPort HTTP-Port des eigenen Services, wird in jedem Datagramm mitgeschickt
+     * @param group Adresse und Port der Multicast-Gruppe
+     * @param networkInterface Interface, über das die Gruppe erreicht wird, null für das Standard-Interface
+     * @param handlers Handler pro Frame-Typ, die mit dem Wert eines empfangenen Befehls aufgerufen werden
+     * @param groupFilter Filter für die über die Gruppe empfangenen Datagramme, z.B. um Paketverlust zu simulieren
+     * @throws IOException falls die Sockets nicht geöffnet werden können
+     */
+    public MulticastCommandChannel(String name, int ownPort, InetSocketAddress group, NetworkInterface networkInterface,
+                                   Map<Byte, IntConsumer> handlers, Predicate<WireFrame> groupFilter) throws IOException {
+        this.ownPort = ownPort;
+        this.group = group;
+        this.handlers = handlers;
+        this.groupFilter = groupFilter;
+
+        this.groupSocket = new MulticastSocket(group.getPort());
+        groupSocket.joinGroup(group, networkInterface);
+        this.unicastSocket = new MulticastSocket(0);
+        if (networkInterface != null) {
+            unicastSocket.setNetworkInterface(networkInterface);
+        }
+        unicastSocket.setTimeToLive(1);
+
+        this.handlerExecutor = Executors.newSingleThreadExecutor(daemonThreads(name + "-multicast-handler"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads(name + "-multicast-repair"));
+        this.published = counter("truckplatooning.multicast.published", "Anzahl an die Gruppe gesendeter Befehle", name);
+        this.nacks = counter("truckplatooning.multicast.nacks", "Anzahl angeforderter Wiederholungen", name);
+        this.retransmitted = counter("truckplatooning.multicast.retransmitted", "Anzahl wiederholter Befehle", name);
+        this.lost = counter("truckplatooning.multicast.lost", "Anzahl Befehle, die nicht wiederholt werden konnten", name);
+
+        daemonThreads(name + "-multicast-group").newThread(() -> receiveLoop(groupSocket, true)).start();
+        daemonThreads(name + "-multicast-unicast").newThread(() -> receiveLoop(unicastSocket, false)).start();
+        scheduler.scheduleAtFixedRate(this::repair, NACK_INTERVAL, NACK_INTERVAL, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::sync, SYNC_INTERVAL, SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Bestimmt die Gruppe eines Platoons, indem die konfigurierte IPv4-Gruppe um die ID des Platoons weitergezählt wird.
+     * @param base die mit multicast.group konfigurierte Gruppe, die Platoon 1 verwendet
+     * @param platoonId ID des Platoons
+     * @return die Gruppe des Platoons, bei IPv6 die konfigurierte Gruppe
+     * @throws UnknownHostException falls die Adresse nicht gebildet werden kann
+     */
+    static InetAddress groupOf(InetAddress base, int platoonId) throws UnknownHostException {
+        byte[] address = base.getAddress();
+        if (address.length != 4) {
+            return base;
+        }
+        int offset = ByteBuffer.wrap(address).getInt() + platoonId - 1;
+        return InetAddress.getByAddress(ByteBuffer.allocate(4).putInt(offset).array());
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Counter counter(String name, String description, String service) {
+        return Counter.builder(name).description(description).tag("service", service).register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Schickt einen Befehl mit einem Datagramm an alle Mitglieder der Gruppe.
+     * @param path Pfad aus dem PathRegister, der bei den Followern ausgeführt werden soll
+     * @param value Body der HTTP-Anfrage, null falls sie keinen Body hat
+     * @return true, falls der Befehl gesendet wurde, false falls er einzeln verschickt werden muss
+     */
+    public boolean publish(String path, Integer value) {
+        byte type = WireFrame.typeOf(path);
+        if (type < 0) {
+            return false;
+        }
+        WireFrame frame;
+        synchronized (sent) {
+            frame = new WireFrame(type, ++sequence, ownPort, value != null ? value : 0);
+            sent[frame.getSequence() % sent.length] = frame;
+        }
+        publishing = true;
+        try {
+            send(frame, group);
+        } catch (IOException e) {
+            System.err.println("Befehl " + path + " konnte nicht an die Gruppe geschickt werden: " + e);
+            return false;
+        }
+        published.increment();
+        return true;
+    }
+
+    private void send(WireFrame frame, SocketAddress address) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WireFrame.SIZE);
+        frame.writeTo(buffer);
+        unicastSocket.send(new DatagramPacket(buffer.array(), WireFrame.SIZE, address));
+    }
+
+    private void receiveLoop(DatagramSocket socket, boolean fromGroup) {
+        byte[] data = new byte[WireFrame.SIZE];
+        while (!socket.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(data, data.length);
+            try {
+                socket.receive(packet);
+                if (packet.getLength() != WireFrame.SIZE) {
+                    continue;
+                }
+                WireFrame frame = WireFrame.readFrom(ByteBuffer.wrap(data));
+                if (frame.getSenderPort() == ownPort || (fromGroup && !groupFilter.test(frame))) {
+                    continue;
+                }
+                onFrame(frame, packet.getSocketAddress());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Ungültiges Datagramm im Multicast-Kanal: " + e.getMessage());
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    System.err.println("Fehler im Multicast-Kanal: " + e);
+                }
+            }
+        }
+    }
+
+    private void onFrame(WireFrame frame, SocketAddress address) throws IOException {
+        if (frame.getType() == WireFrame.NACK || frame.getType() == WireFrame.ACK) {
+            //NACKs und ACKs kommen nur von eigenen Followern und zeigen, dass sie noch erreichbar sind
+            followerHeardAt.put(frame.getSenderPort(), now());
+            if (frame.getType() == WireFrame.NACK && frame.getValue() == ownPort) {
+                retransmit(frame.getSequence(), address);
+            }
+            return;
+        }
+        Source source = acceptSender(frame.getSenderPort(), address);
+        if (source == null) {
+            return;
+        }
+        source.heardAt = now();
+        int highestBefore = source.tracker.getHighest();
+        if (frame.getType() == WireFrame.SYNC) {
+            if (frame.getValue() == RESIGNED) {
+                retire(frame.getSenderPort(), "hat seinen Rücktritt als Leader angekündigt");
+                return;
+            }
+            source.tracker.announce(frame.getSequence());
+            send(new WireFrame(WireFrame.ACK, frame.getSequence(), ownPort, WireFrame.STATUS_OK), address);
+        } else {
+            HeartbeatMonitor.messageFrom(frame.getSenderPort());
+            //Gruppe und Wiederholungen kommen in zwei Threads an, die Befehle müssen in Reihenfolge eingereiht werden
+            synchronized (source) {
+                execute(source.tracker.receive(frame.getSequence(), frame));
+            }
+        }
+        //Neue Lücken sofort anfordern, ältere werden im Takt von repair erneut angefordert
+        requestMissing(frame.getSenderPort(), source, highestBefore);
+    }
+
+    /**
+     * Prüft, ob ein Datagramm vom aktuellen Leader stammt. Solange der Leader sendet, werden Datagramme anderer Absender
+     * und Datagramme mit seinem Port von einer anderen Adresse verworfen.
+     * @param senderPort HTTP-Port des Absenders
+     * @param address Adresse, von der das Datagramm kam
+     * @return Empfangszustand des Absenders, null falls das Datagramm verworfen wird
+     */
+    private synchronized Source acceptSender(int senderPort, SocketAddress address) {
+        Source current = leader;
+        if (current != null && current.port == senderPort && current.address.equals(address)) {
+            return current;
+        }
+        if (current != null && now() - current.heardAt <= LEADER_TIMEOUT) {
+            return null;
+        }
+        if (current != null) {
+            retire(current.port, "hat seit " + LEADER_TIMEOUT + " ms nichts gesendet");
+        }
+        leader = new Source(senderPort, address);
+        System.out.println("Multicast-Kanal führt die Befehle des Leaders mit dem Port " + senderPort + " aus.");
+        return leader;
+    }
+
+    private synchronized void retire(int senderPort, String reason) {
+        Source current = leader;
+        if (current != null && current.port == senderPort) {
+            leader = null;
+            retiredSkipped += current.tracker.getSkipped();
+            System.out.println("Leader mit dem Port " + senderPort + " im Multicast-Kanal " + reason + ".");
+        }
+    }
+
+    private void retransmit(int missingSequence, SocketAddress follower) throws IOException {
+        WireFrame frame;
+        synchronized (sent) {
+            frame = sent[missingSequence % sent.length];
+        }
+        if (frame != null && frame.getSequence() == missingSequence) {
+            send(frame, follower);
+            retransmitted.increment();
+        }
+    }
+
+    private void requestMissing(int senderPort, Source source, int after) throws IOException {
+        for (int missingSequence : source.tracker.getMissing()) {
+            if (missingSequence <= after) {
+                continue;
+            }
+            send(new WireFrame(WireFrame.NACK, missingSequence, ownPort, senderPort), source.address);
+            nacks.increment();
+        }
+    }
+
+    private void execute(List<WireFrame> frames) {
+        for (WireFrame frame : frames) {
+            IntConsumer handler = handlers.get(frame.getType());
+            if (handler == null) {
+                continue;
+            }
+            handlerExecutor.execute(() -> {
+                try {
+                    handler.accept(frame.getValue());
+                } catch (RuntimeException e) {
+                    System.err.println("Fehler beim Ausführen eines Befehls aus dem Multicast-Kanal: " + e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Fordert fehlende Befehle erneut an und überspringt Lücken, die nach MAX_NACK_ROUNDS Runden noch bestehen.
+     */
+    private void repair() {
+        Source source = leader;
+        if (source == null) {
+            return;
+        }
+        long skippedBefore = source.tracker.getSkipped();
+        synchronized (source) {
+            execute(source.tracker.skipIfStalled(MAX_NACK_ROUNDS));
+        }
+        long skipped = source.tracker.getSkipped() - skippedBefore;
+        if (skipped > 0) {
+            System.err.println(skipped + " Befehl(e) von Port " + source.port + " konnten nicht wiederholt werden und werden übersprungen.");
+            lost.increment(skipped);
+        }
+        try {
+            requestMissing(source.port, source, 0);
+        } catch (IOException e) {
+            System.err.println("NACK im Multicast-Kanal konnte nicht gesendet werden: " + e);
+        }
+    }
+
+    /**
+     * Kündigt die höchste Sequenznummer an, solange der Kanal als Leader Befehle sendet.
+     */
+    private void sync() {
+        int latest;
+        synchronized (sent) {
+            latest = sequence;
+        }
+        if (latest == 0 || !publishing) {
+            return;
+        }
+        try {
+            send(new WireFrame(WireFrame.SYNC, latest, ownPort, 0), group);
+        } catch (IOException e) {
+            System.err.println("SYNC im Multicast-Kanal konnte nicht gesendet werden: " + e);
+        }
+    }
+
+    /**
+     * Kündigt der Gruppe an, dass dieser Kanal nicht mehr Leader ist, damit die Follower sofort die Befehle des neuen
+     * Leaders annehmen. Danach werden keine SYNCs mehr gesendet, bis der Kanal wieder einen Befehl sendet.
+     */
+    public void resign() {
+        if (!publishing) {
+            return;
+        }
+        publishing = false;
+        followerHeardAt.clear();
+        int latest;
+        synchronized (sent) {
+            latest = sequence;
+        }
+        try {
+            send(new WireFrame(WireFrame.SYNC, latest, ownPort, RESIGNED), group);
+        } catch (IOException e) {
+            System.err.println("Rücktritt im Multicast-Kanal konnte nicht gesendet werden: " + e);
+        }
+    }
+
+    /**
+     * Gibt die Follower zurück, die länger als multicast.follower-timeout-ms weder ein SYNC bestätigt noch ein NACK
+     * geschickt haben. Ein zurückgegebener Follower wird erst nach einem weiteren Timeout erneut gemeldet, ein neuer
+     * Follower erst nach einem Timeout ab dem ersten Aufruf.
+     * @param followers HTTP-Ports der Follower, die die Befehle erhalten sollen
+     * @return die HTTP-Ports der Follower, die geprüft werden sollten
+     */
+    public List<Integer> takeSilentFollowers(Collection<Integer> followers) {
+        long now = now();
+        List<Integer> silent = new ArrayList<>();
+        for (int follower : followers) {
+            long heardAt = followerHeardAt.computeIfAbsent(follower, port -> now);
+            if (now - heardAt > FOLLOWER_TIMEOUT) {
+                silent.add(follower);
+                followerHeardAt.put(follower, now);
+            }
+        }
+        followerHeardAt.keySet().retainAll(followers);
+        return silent;
+    }
+
+    /**
+     * Gibt die Anzahl der Befehle zurück, die von anderen Absendern empfangen, aber nicht wiederholt werden konnten
+     * @return Anzahl verlorener Befehle
+     */
+    public synchronized long getLost() {
+        Source current = leader;
+        return retiredSkipped + (current != null ? current.tracker.getSkipped() : 0);
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    /**
+     * Verlässt die Gruppe und beendet den Kanal.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        groupSocket.close();
+        unicastSocket.close();
+        handlerExecutor.shutdownNow();
+    }
+
+    /**
+     * Empfangszustand für einen Absender.
+     */
+    private static final class Source {
+        private final SequenceTracker<WireFrame> tracker = new SequenceTracker<>();
+        //HTTP-Port des Absenders
+        private final int port;
+        //Adresse des Sockets, über den der Absender sendet und seine NACKs empfängt
+        private final SocketAddress address;
+        //Zeitpunkt des letzten Datagramms in ms (monoton)
+        private volatile long heardAt;
+
+        private Source(int port, SocketAddress address) {
+            this.port = port;
+            this.address = address;
+            this.heardAt = now();
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.g1ga.truckplatooning.wire;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Diese Klasse bringt die Befehle eines Absenders im MulticastCommandChannel in die Reihenfolge ihrer Sequenznummern.
+ * Befehle, die vor einer Lücke ankommen, werden zurückgehalten, bis die Lücke durch eine Wiederholung geschlossen
+ * wurde. Der Kanal fragt über getMissing ab, welche Sequenznummern er per NACK anfordern muss. Bleibt eine Lücke über
+ * mehrere NACK-Runden bestehen, wird sie mit skipIfStalled übersprungen, damit ein verlorener Befehl nicht alle
+ * folgenden Befehle blockiert.
+ * @param <T> Typ der Befehle
+ */
+public final class SequenceTracker<T> {
+
+    //Höchstens so viele Sequenznummern werden in einer Runde angefordert
+    private static final int MAX_MISSING_PER_ROUND = 64;
+
+    private final TreeMap<Integer, T> pending = new TreeMap<>();
+    //Nächste Sequenznummer, die ausgeführt werden darf, 0 solange noch nichts vom Absender empfangen wurde
+    private int next = 0;
+    //Höchste Sequenznummer, von der der Empfänger weiß, dass sie gesendet wurde
+    private int highest = 0;
+    private int stalledAt = 0;
+    private int stalledRounds = 0;
+    private long skipped = 0;
+
+    /**
+     * Nimmt einen Befehl entgegen. Der erste Befehl eines Absenders legt fest, ab welcher Sequenznummer ausgeführt wird,
+     * ältere Befehle werden nicht nachgefordert.
+     * @param sequence Sequenznummer des Befehls
+     * @param command der Befehl
+     * @return alle Befehle, die jetzt in der richtigen Reihenfolge ausgeführt werden können
+     */
+    public synchronized List<T> receive(int sequence, T command) {
+        if (next == 0) {
+            next = sequence;
+        }
+        if (sequence < next || pending.containsKey(sequence)) {
+            //Duplikat, z.B. eine Wiederholung, die ein anderer Follower angefordert hat
+            return new ArrayList<>();
+        }
+        pending.put(sequence, command);
+        highest = Math.max(highest, sequence);
+        return drain();
+    }
+
+    /**
+     * Übernimmt die höchste Sequenznummer, die der Absender zuletzt angekündigt hat. Damit wird auch der Verlust des
+     * letzten Befehls erkannt, auf den kein weiterer Befehl mehr folgt.
+     * @param latestSequence höchste bisher gesendete Sequenznummer
+     */
+    public synchronized void announce(int latestSequence) {
+        if (next == 0) {
+            //Befehle von vor dem Beitritt werden nicht nachgeholt
+            next = latestSequence + 1;
+        }
+        highest = Math.max(highest, latestSequence);
+    }
+
+    /**
+     * Gibt die Sequenznummern zurück, die bis zur höchsten bekannten Sequenznummer noch fehlen.
+     * @return fehlende Sequenznummern in aufsteigender Reihenfolge
+     */
+    public synchronized List<Integer> getMissing() {
+        List<Integer> missing = new ArrayList<>();
+        if (next == 0) {
+            return missing;
+        }
+        for (int sequence = next; sequence <= highest && missing.size() < MAX_MISSING_PER_ROUND; sequence++) {
+            if (!pending.containsKey(sequence)) {
+                missing.add(sequence);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Zählt eine NACK-Runde für die vorderste Lücke. Wurde sie nach maxRounds Runden noch nicht geschlossen, gilt der
+     * Befehl als verloren und die Lücke wird übersprungen.
+     * @param maxRounds Anzahl Runden, nach denen eine Lücke übersprungen wird
+     * @return die Befehle hinter der übersprungenen Lücke, die jetzt ausgeführt werden können
+     */
+    public synchronized List<T> skipIfStalled(int maxRounds) {
+        if (next == 0 || next > highest) {
+            stalledRounds = 0;
+            return new ArrayList<>();
+        }
+        if (stalledAt != next) {
+            stalledAt = next;
+            stalledRounds = 0;
+        }
+        if (++stalledRounds <= maxRounds) {
+            return new ArrayList<>();
+        }
+        int resume = pending.isEmpty() ? highest + 1 : pending.firstKey();
+        skipped += resume - next;
+        next = resume;
+        stalledRounds = 0;
+        return drain();
+    }
+
+    /**
+     * Gibt die höchste bekannte Sequenznummer des Absenders zurück
+     * @return höchste empfangene oder angekündigte Sequenznummer, 0 falls noch nichts empfangen wurde
+     */
+    public synchronized int getHighest() {
+        return highest;
+    }
+
+    /**
+     * Gibt die Anzahl der Befehle zurück, die übersprungen wurden, weil sie nicht wiederholt werden konnten
+     * @return Anzahl verlorener Befehle
+     */
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+
+    private List<T> drain() {
+        List<T> ready = new ArrayList<>();
+        Map.Entry<Integer, T> first;
+        while ((first = pending.firstEntry()) != null && first.getKey() == next) {
+            ready.add(pending.pollFirstEntry().getValue());
+            next++;
+        }
+        return ready;
+    }
+
+}
@@ -0,0 +1,218 @@
+package org.g1ga.truckplatooning.wire;
+
+import org.g1ga.truckplatooning.HeartbeatMonitor;
+import org.g1ga.truckplatooning.PathRegister;
+import org.g1ga.truckplatooning.RestClientFactory;
+import org.g1ga.truckplatooning.Util;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Diese Klasse schickt Befehle über das binäre Protokoll an andere Trucks. Pro Empfänger wird eine persistente
+ * TCP-Verbindung aufgebaut und wiederverwendet. Den Port des WireServers fragt der Client einmalig über
+ * PathRegister.WIRE_PORT beim Empfänger ab. Unterstützt der Empfänger das Protokoll nicht oder lässt sich ein Befehl
+ * nicht als Frame darstellen, gibt send false zurück und der Aufrufer schickt den Befehl wie bisher über HTTP.
+ * Empfänger ohne Protokoll werden nach wire.http-only-ttl-ms erneut gefragt, da ihr WireServer evtl. noch nicht lief.
+ */
+public final class WireClient {
+
+    private static final boolean ENABLED = Boolean.getBoolean("wire.enabled");
+    private static final int CONNECT_TIMEOUT = Integer.getInteger("http.connect-timeout-ms", 1000);
+    private static final int READ_TIMEOUT = Integer.getInteger("http.read-timeout-ms", 5000);
+    private static final int HTTP_ONLY = -1;
+    private static final long HTTP_ONLY_TTL_MS = Long.getLong("wire.http-only-ttl-ms", 30000);
+
+    private final int senderPort;
+    private final IntUnaryOperator wirePortResolver;
+    //HTTP-Port des Empfängers -> Port seines WireServers, HTTP_ONLY falls er das Protokoll nicht unterstützt
+    private final Map<Integer, Integer> wirePorts = new ConcurrentHashMap<>();
+    //HTTP-Port eines Empfängers ohne Protokoll -> Zeitpunkt (System.nanoTime), ab dem er erneut gefragt wird
+    private final Map<Integer, Long> httpOnlyUntil = new ConcurrentHashMap<>();
+    private final long httpOnlyTtlNanos;
+    private final Map<Integer, Connection> connections = new ConcurrentHashMap<>();
+
+    /**
+     * Erstellt einen Client, falls das Protokoll mit wire.enabled aktiviert wurde.
+     * @param senderPort HTTP-Port des eigenen Services, wird in jedem Frame mitgeschickt
+     * @return der Client, null falls das Protokoll nicht aktiviert ist
+     */
+    public static WireClient createIfEnabled(int senderPort) {
+        return ENABLED ? new WireClient(senderPort, WireClient::requestWirePort) : null;
+    }
+
+    /**
+     * Konstruktor, der einen Client ohne offene Verbindungen erstellt.
+     * @param senderPort HTTP-Port des eigenen Services, wird in jedem Frame mitgeschickt
+     * @param wirePortResolver liefert zu einem HTTP-Port den Port des WireServers oder einen negativen Wert
+     */
+    public WireClient(int senderPort, IntUnaryOperator wirePortResolver) {
+        this(senderPort, wirePortResolver, HTTP_ONLY_TTL_MS);
+    }
+
+    /**
+     * Konstruktor, der einen Client ohne offene Verbindungen erstellt.
+     * @param senderPort HTTP-Port des eigenen Services, wird in jedem Frame mitgeschickt
+     * @param wirePortResolver liefert zu einem HTTP-Port den Port des WireServers oder einen negativen Wert
+     * @param httpOnlyTtlMs Zeit, nach der ein Empfänger ohne Protokoll erneut gefragt wird
+     */
+    public WireClient(int senderPort, IntUnaryOperator wirePortResolver, long httpOnlyTtlMs) {
+        this.senderPort = senderPort;
+        this.wirePortResolver = wirePortResolver;
+        this.httpOnlyTtlNanos = TimeUnit.MILLISECONDS.toNanos(httpOnlyTtlMs);
+    }
+
+    private static int requestWirePort(int httpPort) {
+        try {
+            Integer wirePort = RestClientFactory.getRestTemplate().getForObject(
+                    Util.getBaseUriComponentsBuilder(httpPort, PathRegister.WIRE_PORT).toUriString(), Integer.class);
+            return wirePort != null ? wirePort : HTTP_ONLY;
+        } catch (HttpClientErrorException e) {
+            //Der Empfänger kennt das Protokoll noch nicht
+            return HTTP_ONLY;
+        }
+    }
+
+    /**
+     * Schickt einen Befehl über das binäre Protokoll und wartet auf das ACK des Empfängers.
+     * @param httpPort HTTP-Port des Empfängers
+     * @param path Pfad aus dem PathRegister, der beim Empfänger ausgeführt werden soll
+     * @param value Body der HTTP-Anfrage, null falls sie keinen Body hat
+     * @return true, falls der Befehl ausgeführt wurde, false falls er über HTTP geschickt werden muss
+     * @throws ResourceAccessException falls der Empfänger nicht erreichbar ist
+     * @throws RestClientException falls der Empfänger den Befehl nicht ausführen konnte
+     */
+    public boolean send(int httpPort, String path, Integer value) {
+        byte type = WireFrame.typeOf(path);
+        if (type < 0) {
+            return false;
+        }
+        int wirePort = resolveWirePort(httpPort);
+        if (wirePort <= 0) {
+            return false;
+        }
+
+        Connection connection = connections.computeIfAbsent(httpPort, p -> new Connection(wirePort));
+        int status;
+        try {
+            status = connection.send(type, value != null ? value : 0);
+        } catch (IOException e) {
+            connection.close();
+            connections.remove(httpPort, connection);
+            //Der Empfänger wurde evtl. mit einem neuen WireServer neu gestartet
+            wirePorts.remove(httpPort);
+            throw new ResourceAccessException("Truck mit Port " + httpPort + " ist über das binäre Protokoll nicht erreichbar: " + e);
+        }
+
+        if (status == WireFrame.STATUS_UNSUPPORTED) {
+            return false;
+        }
+        if (!PathRegister.HEALTH_CHECK.equals(path)) {
+            HeartbeatMonitor.messageFrom(httpPort);
+        }
+        if (status != WireFrame.STATUS_OK) {
+            throw new RestClientException("Truck mit Port " + httpPort + " konnte " + path + " nicht ausführen.");
+        }
+        return true;
+    }
+
+    /**
+     * Gibt den Port des WireServers eines Empfängers zurück. Die Abfrage per HTTP läuft außerhalb der Map, ein negatives
+     * Ergebnis gilt nur für httpOnlyTtlNanos.
+     * @param httpPort HTTP-Port des Empfängers
+     * @return Port des WireServers, HTTP_ONLY falls der Empfänger das Protokoll nicht unterstützt
+     */
+    private int resolveWirePort(int httpPort) {
+        Integer wirePort = wirePorts.get(httpPort);
+        if (wirePort != null) {
+            return wirePort;
+        }
+        Long retryAt = httpOnlyUntil.get(httpPort);
+        if (retryAt != null && System.nanoTime() - retryAt < 0) {
+            return HTTP_ONLY;
+        }
+        int resolved = wirePortResolver.applyAsInt(httpPort);
+        if (resolved <= 0) {
+            httpOnlyUntil.put(httpPort, System.nanoTime() + httpOnlyTtlNanos);
+            return HTTP_ONLY;
+        }
+        httpOnlyUntil.remove(httpPort);
+        Integer previous = wirePorts.putIfAbsent(httpPort, resolved);
+        return previous != null ? previous : resolved;
+    }
+
+    /**
+     * Schließt alle Verbindungen.
+     */
+    public void shutdown() {
+        for (Connection connection : connections.values()) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    /**
+     * Eine persistente Verbindung zu einem WireServer. Es ist immer höchstens ein Frame unterwegs, der nächste wird erst
+     * nach dem ACK des vorherigen geschickt.
+     */
+    private final class Connection {
+        private final int wirePort;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WireFrame.SIZE);
+        private Socket socket;
+        private int sequence = 0;
+
+        private Connection(int wirePort) {
+            this.wirePort = wirePort;
+        }
+
+        private synchronized int send(byte type, int value) throws IOException {
+            if (socket == null || socket.isClosed()) {
+                socket = new Socket();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(READ_TIMEOUT);
+                socket.connect(new InetSocketAddress(Util.getHost(), wirePort), CONNECT_TIMEOUT);
+            }
+            int frameSequence = ++sequence;
+            buffer.clear();
+            new WireFrame(type, frameSequence, senderPort, value).writeTo(buffer);
+            OutputStream out = socket.getOutputStream();
+            out.write(buffer.array());
+            out.flush();
+
+            buffer.clear();
+            new DataInputStream(socket.getInputStream()).readFully(buffer.array());
+            WireFrame ack;
+            try {
+                ack = WireFrame.readFrom(buffer);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+            if (ack.getType() != WireFrame.ACK || ack.getSequence() != frameSequence) {
+                throw new IOException("Unerwartete Antwort im binären Protokoll: Typ " + ack.getType() + ", Sequenz " + ack.getSequence());
+            }
+            return ack.getValue();
+        }
+
+        private synchronized void close() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    //Die Verbindung ist bereits geschlossen
+                }
+            }
+        }
+    }
+
+}
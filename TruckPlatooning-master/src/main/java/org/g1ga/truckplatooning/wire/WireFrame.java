@@ -0,0 +1,130 @@
+package org.g1ga.truckplatooning.wire;
+
+import org.g1ga.truckplatooning.PathRegister;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Diese Klasse beschreibt einen Frame des binären Protokolls zwischen den Trucks. Jeder Frame ist genau 16 Bytes lang
+ * und hat ein festes Layout (Big Endian):
+ * <pre>
+ *  0-1   Magic 0x5450 ("TP")
+ *  2     Version
+ *  3     Typ (ein Pfad aus dem PathRegister oder ACK)
+ *  4-7   Sequenznummer, die der Empfänger im ACK zurückschickt
+ *  8-11  HTTP-Port des Absenders, wird beim Empfänger als Heartbeat gezählt
+ *  12-15 Wert (Body der entsprechenden HTTP-Anfrage, 0 falls die Anfrage keinen Body hat; im ACK der Status)
+ * </pre>
+ * Übertragen werden nur Befehle, deren HTTP-Anfrage höchstens eine Zahl als Body hat. Alle anderen Nachrichten
+ * (z.B. die Listen einer Wahl) laufen weiterhin über HTTP. Der MulticastCommandChannel verwendet dasselbe Layout für
+ * seine Datagramme.
+ */
+public final class WireFrame {
+
+    public static final int SIZE = 16;
+    private static final short MAGIC = 0x5450;
+    private static final byte VERSION = 1;
+
+    public static final byte ACK = 0;
+    public static final byte HEALTH_CHECK = 1;
+    public static final byte SPEEDUP = 2;
+    public static final byte SLOW_DOWN = 3;
+    public static final byte STOP = 4;
+    public static final byte CLOSE_GAP = 5;
+    public static final byte CLOSE_GAP_LEADER = 6;
+    public static final byte SET_REPORT_PORT = 7;
+    public static final byte UPDATE_FRONT_TRUCK_PORT = 8;
+    public static final byte UPDATE_BACK_TRUCK = 9;
+    //Nur im MulticastCommandChannel: Anforderung einer fehlenden Sequenznummer und Ankündigung der letzten Sequenznummer
+    public static final byte NACK = 10;
+    public static final byte SYNC = 11;
+
+    //Status im Wert eines ACK
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_UNSUPPORTED = 1;
+    public static final int STATUS_FAILED = 2;
+
+    private static final Map<String, Byte> TYPES_BY_PATH = new HashMap<>();
+
+    static {
+        TYPES_BY_PATH.put(PathRegister.HEALTH_CHECK, HEALTH_CHECK);
+        TYPES_BY_PATH.put(PathRegister.SPEEDUP, SPEEDUP);
+        TYPES_BY_PATH.put(PathRegister.SLOW_DOWN, SLOW_DOWN);
+        TYPES_BY_PATH.put(PathRegister.STOP, STOP);
+        TYPES_BY_PATH.put(PathRegister.CLOSE_GAP, CLOSE_GAP);
+        TYPES_BY_PATH.put(PathRegister.CLOSE_GAP_LEADER, CLOSE_GAP_LEADER);
+        TYPES_BY_PATH.put(PathRegister.SET_REPORT_PORT, SET_REPORT_PORT);
+        TYPES_BY_PATH.put(PathRegister.UPDATE_FRONT_TRUCK_PORT, UPDATE_FRONT_TRUCK_PORT);
+        TYPES_BY_PATH.put(PathRegister.UPDATE_BACK_TRUCK, UPDATE_BACK_TRUCK);
+    }
+
+    private final byte type;
+    private final int sequence;
+    private final int senderPort;
+    private final int value;
+
+    /**
+     * Konstruktor, der einen Frame mit den übergebenen Werten erzeugt.
+     * @param type Typ des Frames
+     * @param sequence Sequenznummer
+     * @param senderPort HTTP-Port des Absenders
+     * @param value Wert des Frames
+     */
+    public WireFrame(byte type, int sequence, int senderPort, int value) {
+        this.type = type;
+        this.sequence = sequence;
+        this.senderPort = senderPort;
+        this.value = value;
+    }
+
+    /**
+     * Gibt den Typ zurück, mit dem der Befehl zum übergebenen Pfad übertragen wird
+     * @param path Pfad aus dem PathRegister
+     * @return Typ des Frames, -1 falls der Pfad nur über HTTP erreichbar ist
+     */
+    public static byte typeOf(String path) {
+        return TYPES_BY_PATH.getOrDefault(path, (byte) -1);
+    }
+
+    /**
+     * Schreibt den Frame an die aktuelle Position des Puffers.
+     * @param buffer Puffer mit mindestens SIZE freien Bytes
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putShort(MAGIC).put(VERSION).put(type).putInt(sequence).putInt(senderPort).putInt(value);
+    }
+
+    /**
+     * Liest einen Frame ab der aktuellen Position des Puffers.
+     * @param buffer Puffer mit mindestens SIZE lesbaren Bytes
+     * @return der gelesene Frame
+     * @throws IllegalArgumentException falls Magic oder Version nicht stimmen
+     */
+    public static WireFrame readFrom(ByteBuffer buffer) {
+        short magic = buffer.getShort();
+        byte version = buffer.get();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IllegalArgumentException("Ungültiger Frame: Magic " + magic + ", Version " + version);
+        }
+        return new WireFrame(buffer.get(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getSenderPort() {
+        return senderPort;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+}
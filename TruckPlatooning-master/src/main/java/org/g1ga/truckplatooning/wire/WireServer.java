@@ -0,0 +1,243 @@
+package org.g1ga.truckplatooning.wire;
+
+import org.g1ga.truckplatooning.HeartbeatMonitor;
+import org.g1ga.truckplatooning.Util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Diese Klasse nimmt Frames des binären Protokolls über persistente TCP-Verbindungen entgegen. Ein Selector-Thread liest
+ * die Frames aller Verbindungen, die Handler laufen in einem eigenen Thread-Pool, damit ein Handler, der z.B. auf einen
+ * Lock wartet, die anderen Verbindungen nicht blockiert. Nach dem Handler wird ein ACK mit derselben Sequenznummer
+ * zurückgeschickt, sodass der Absender wie bei einer HTTP-Anfrage erfährt, dass der Befehl ausgeführt wurde. Das ACK
+ * schreibt der Selector-Thread: Passt es nicht sofort in den Sendepuffer, wartet er mit OP_WRITE, statt zu blockieren.
+ * Der Server nimmt nur Verbindungen über den Host der Services an, nicht über alle Interfaces.
+ * Das Protokoll ist optional und wird nur mit -Dwire.enabled=true gestartet.
+ */
+public final class WireServer {
+
+    private static final boolean ENABLED = Boolean.getBoolean("wire.enabled");
+    private static final int HANDLER_THREADS = Integer.getInteger("wire.handler-threads", 8);
+
+    private final Map<Byte, IntConsumer> handlers;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ExecutorService handlerExecutor;
+    //Verbindungen, für die ein Handler ein ACK eingereiht hat, das der Selector-Thread schreiben muss
+    private final Queue<SelectionKey> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Startet einen Server auf einem freien Port, falls das Protokoll mit wire.enabled aktiviert wurde.
+     * @param name Name des Services, wird für die Thread-Namen verwendet
+     * @param handlers Handler pro Frame-Typ, die mit dem Wert des Frames aufgerufen werden
+     * @return der gestartete Server, null falls das Protokoll nicht aktiviert ist oder nicht gestartet werden konnte
+     */
+    public static WireServer startIfEnabled(String name, Map<Byte, IntConsumer> handlers) {
+        if (!ENABLED) {
+            return null;
+        }
+        try {
+            WireServer server = new WireServer(name, handlers);
+            System.out.println("Binäres Protokoll wartet auf Port " + server.getPort());
+            return server;
+        } catch (IOException e) {
+            System.err.println("Binäres Protokoll konnte nicht gestartet werden, verwende nur HTTP: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Konstruktor, der den Server auf einem freien Port startet.
+     * @param name Name des Services, wird für die Thread-Namen verwendet
+     * @param handlers Handler pro Frame-Typ, die mit dem Wert des Frames aufgerufen werden
+     * @throws IOException falls der Port nicht geöffnet werden kann
+     */
+    public WireServer(String name, Map<Byte, IntConsumer> handlers) throws IOException {
+        this.handlers = handlers;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getByName(Util.getHost()), 0));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.handlerExecutor = Executors.newFixedThreadPool(HANDLER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, name + "-wire-handler-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread selectorThread = new Thread(this::selectLoop, name + "-wire-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * Gibt den Port zurück, auf dem der Server Verbindungen annimmt
+     * @return Port des Servers
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void selectLoop() {
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+                SelectionKey pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    if (pending.isValid()) {
+                        write(pending);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    if (key.isReadable()) {
+                        read(key);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        write(key);
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Fehler im binären Protokoll: " + e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = ((Connection) key.attachment()).in;
+        try {
+            int read;
+            while ((read = channel.read(buffer)) > 0) {
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    WireFrame frame = WireFrame.readFrom(buffer);
+                    buffer.clear();
+                    handlerExecutor.execute(() -> handle(key, frame));
+                }
+            }
+            if (read < 0) {
+                close(key);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Verbindung im binären Protokoll wird geschlossen: " + e);
+            close(key);
+        }
+    }
+
+    private void handle(SelectionKey key, WireFrame frame) {
+        if (frame.getSenderPort() > 0) {
+            HeartbeatMonitor.messageFrom(frame.getSenderPort());
+        }
+        int status = WireFrame.STATUS_OK;
+        IntConsumer handler = handlers.get(frame.getType());
+        if (handler == null) {
+            status = WireFrame.STATUS_UNSUPPORTED;
+        } else {
+            try {
+                handler.accept(frame.getValue());
+            } catch (RuntimeException e) {
+                System.err.println("Fehler beim Ausführen eines Befehls aus dem binären Protokoll: " + e);
+                status = WireFrame.STATUS_FAILED;
+            }
+        }
+        ByteBuffer ack = ByteBuffer.allocate(WireFrame.SIZE);
+        new WireFrame(WireFrame.ACK, frame.getSequence(), 0, status).writeTo(ack);
+        ack.flip();
+        ((Connection) key.attachment()).out.add(ack);
+        pendingWrites.add(key);
+        selector.wakeup();
+    }
+
+    /**
+     * Schreibt die eingereihten ACKs einer Verbindung, soweit der Sendepuffer sie aufnimmt. Der Rest wird geschrieben,
+     * sobald der Selector die Verbindung wieder als beschreibbar meldet. Läuft nur im Selector-Thread.
+     * @param key Schlüssel der Verbindung
+     */
+    private void write(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Queue<ByteBuffer> out = ((Connection) key.attachment()).out;
+        try {
+            ByteBuffer ack;
+            while ((ack = out.peek()) != null) {
+                channel.write(ack);
+                if (ack.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                out.poll();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException | CancelledKeyException e) {
+            System.err.println("ACK im binären Protokoll konnte nicht gesendet werden: " + e);
+            close(key);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            //Die Verbindung ist bereits geschlossen
+        }
+    }
+
+    /**
+     * Schließt alle Verbindungen und beendet den Server.
+     */
+    public void shutdown() {
+        try {
+            selector.close();
+            serverChannel.close();
+        } catch (IOException e) {
+            System.err.println("Binäres Protokoll konnte nicht sauber beendet werden: " + e);
+        }
+        handlerExecutor.shutdownNow();
+    }
+
+    /**
+     * Zustand einer Verbindung.
+     */
+    private static final class Connection {
+        //Nimmt den gerade gelesenen Frame auf
+        private final ByteBuffer in = ByteBuffer.allocate(WireFrame.SIZE);
+        //ACKs der Handler, die der Selector-Thread noch schreiben muss
+        private final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+    }
+
+}
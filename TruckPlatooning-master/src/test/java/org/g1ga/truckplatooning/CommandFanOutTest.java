@@ -0,0 +1,74 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.truck.cruise.CommandFanOut;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+public class CommandFanOutTest {
+
+    @Test
+    void testDispatchReportsEveryTarget() {
+        CommandFanOut fanOut = new CommandFanOut(8, 200);
+        CommandFanOut.Result result = fanOut.dispatch(List.of(1, 2, 3), port -> {
+            if (port == 2) {
+                throw new ResourceAccessException("offline");
+            }
+            if (port == 3) {
+                sleep(1000);
+            }
+        });
+        fanOut.shutdown();
+
+        Assert.isTrue(result.getDelivered().equals(List.of(1)), "Port 1 muss erfolgreich erreicht werden.");
+        Assert.isTrue(result.getUnreachable().equals(List.of(2)), "Port 2 muss als nicht erreichbar gemeldet werden.");
+        Assert.isTrue(result.getMissedDeadline().equals(List.of(3)), "Port 3 muss als zu langsam gemeldet werden.");
+    }
+
+    @Test
+    void testDispatchIsIndependentOfPlatoonLength() {
+        CommandFanOut fanOut = new CommandFanOut(32, 2000);
+        CommandFanOut.Result result = fanOut.dispatch(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), port -> sleep(100));
+        fanOut.shutdown();
+
+        Assert.isTrue(result.getDelivered().size() == 10, "Alle Trucks müssen den Befehl erhalten.");
+        Assert.isTrue(result.getElapsedNanos() < TimeUnit.MILLISECONDS.toNanos(500), "Die Trucks müssen gleichzeitig angesprochen werden.");
+    }
+
+    @Test
+    void testSlowTargetIsCancelledAndDroppedAfterRepeatedMisses() {
+        CommandFanOut fanOut = new CommandFanOut(8, 100, 2);
+        AtomicInteger interrupted = new AtomicInteger();
+        IntConsumer sender = port -> {
+            if (port == 2) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    interrupted.incrementAndGet();
+                }
+            }
+        };
+        CommandFanOut.Result first = fanOut.dispatch(List.of(1, 2), sender);
+        CommandFanOut.Result second = fanOut.dispatch(List.of(1, 2), sender);
+        sleep(100);
+        fanOut.shutdown();
+
+        Assert.isTrue(first.getMissedDeadline().equals(List.of(2)), "Die erste verpasste Deadline muss nur gemeldet werden.");
+        Assert.isTrue(second.getUnreachable().equals(List.of(2)), "Nach wiederholt verpassten Deadlines muss der Empfänger als nicht erreichbar gelten.");
+        Assert.isTrue(interrupted.get() == 2, "Das Senden an einen zu langsamen Empfänger muss abgebrochen werden.");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.g1ga.truckplatooning;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ConsistentHashRingTest {
+
+    private static final int PLATOONS = 3000;
+
+    @Test
+    void testPlatoonsAreSpreadEvenlyOverShards() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList(1112, 1113, 1114));
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int platoonId = 1; platoonId <= PLATOONS; platoonId++) {
+            counts.merge(ring.nodeFor(platoonId), 1, Integer::sum);
+        }
+        for (int shard : ring.getNodes()) {
+            int count = counts.getOrDefault(shard, 0);
+            Assert.isTrue(count > PLATOONS / 3 * 0.75 && count < PLATOONS / 3 * 1.25, "Shard " + shard + " zeigt " + count + " Platoons an, die Verteilung ist zu ungleichmäßig.");
+        }
+        Assert.isTrue(new ConsistentHashRing(Arrays.asList(1114, 1112, 1113)).nodeFor(42) == ring.nodeFor(42),
+                "Die Zuordnung darf nur von den Ports und nicht von ihrer Reihenfolge abhängen.");
+    }
+
+    @Test
+    void testOnlyPlatoonsOfNewShardMove() {
+        ConsistentHashRing before = new ConsistentHashRing(Arrays.asList(1112, 1113, 1114));
+        ConsistentHashRing after = new ConsistentHashRing(Arrays.asList(1112, 1113, 1114, 1115));
+        int moved = 0;
+        for (int platoonId = 1; platoonId <= PLATOONS; platoonId++) {
+            int oldShard = before.nodeFor(platoonId);
+            int newShard = after.nodeFor(platoonId);
+            if (oldShard != newShard) {
+                Assert.isTrue(newShard == 1115, "Ein Platoon darf nur zum neuen Shard wechseln.");
+                moved++;
+            }
+        }
+        Assert.isTrue(moved > PLATOONS / 4 * 0.75 && moved < PLATOONS / 4 * 1.25, "Der neue Shard muss etwa ein Viertel der Platoons übernehmen, übernommen wurden " + moved);
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.truck.cruise.CruiseControlLoop;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CruiseControlLoopTest {
+
+    @Test
+    void testAccelerationPerSecondIsIndependentOfTickRate() {
+        for (int tickRate : new int[] {1, 50, 100}) {
+            CruiseControlLoop loop = new CruiseControlLoop(tickRate, () -> {});
+            loop.setSpeed(30);
+            loop.setTargetSpeed(40);
+            for (int i = 0; i < tickRate; i++) {
+                loop.tick();
+            }
+            Assert.isTrue(Math.abs(loop.getSpeed() - 32) < 1e-9, "Zwischen 20 und 50 km/h muss um 2 km/h pro Sekunde beschleunigt werden.");
+        }
+    }
+
+    @Test
+    void testTargetSpeedIsNotExceeded() {
+        CruiseControlLoop loop = new CruiseControlLoop(50, () -> {});
+        loop.setSpeed(30);
+        loop.setTargetSpeed(31);
+        for (int i = 0; i < 500; i++) {
+            loop.tick();
+        }
+        Assert.isTrue(loop.getSpeed() == 31, "targetSpeed muss genau erreicht werden.");
+    }
+
+    @Test
+    void testGapIsClosedWithoutOvershoot() {
+        AtomicInteger closed = new AtomicInteger();
+        CruiseControlLoop loop = new CruiseControlLoop(100, closed::incrementAndGet);
+        loop.setSpeed(40);
+        loop.setTargetSpeed(50);
+        loop.setGap(0.06);
+
+        int ticks = 0;
+        while (loop.getGap() != 0 && ticks < 100 * 3600) {
+            loop.tick();
+            ticks++;
+        }
+
+        Assert.isTrue(closed.get() == 1, "Das Schließen der Lücke muss genau einmal gemeldet werden.");
+        //Pro Zeitschritt nähert sich der Truck höchstens um 10 km/h * 0,01 s an
+        double maxStep = 10 * 0.01 / 3600.0;
+        Assert.isTrue(loop.getTruckDistance() <= 0.025 && loop.getTruckDistance() > 0.025 - maxStep - 1e-12,
+                "Die Lücke muss innerhalb eines Zeitschritts genau geschlossen werden.");
+    }
+
+    @Test
+    void testStopIsNotOverwrittenByRunningTick() {
+        CruiseControlLoop loop = new CruiseControlLoop(1000, () -> {});
+        loop.start();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                loop.setSpeeds(50, 80);
+                loop.setSpeeds(0, 0);
+                Assert.isTrue(loop.getSpeed() == 0, "Ein laufender Tick darf den Stopp nicht überschreiben.");
+            }
+        } finally {
+            loop.stop();
+        }
+    }
+
+}
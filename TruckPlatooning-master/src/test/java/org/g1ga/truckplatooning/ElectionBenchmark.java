@@ -0,0 +1,224 @@
+package org.g1ga.truckplatooning;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.g1ga.truckplatooning.truck.platoon.ChangRobertsElection;
+import org.g1ga.truckplatooning.truck.platoon.PlatooningContact;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Misst, wie lange eine Wahl in Ringen mit 5 bis 200 simulierten Trucks dauert, bis der Leader die Reihenfolge des
+ * Platoons kennt. Die Nachrichten werden wie im Netzwerk mit Jackson serialisiert und von mehreren Threads zugestellt.
+ * Verglichen werden die bisherige Ringwahl (wachsende Liste, zwei Runden) und die Wahl nach Chang und Roberts.
+ * Start mit {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.g1ga.truckplatooning.ElectionBenchmark"}. Dass beide Wahlen die richtige
+ * Reihenfolge ermitteln, prüft der ElectionTest mit derselben Simulation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElectionBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<PlatooningContact>> CONTACT_LIST = new TypeReference<List<PlatooningContact>>() {};
+
+    @Param({"5", "10", "25", "50", "100", "200"})
+    int ringSize;
+
+    private ExecutorService network;
+    private List<PlatooningContact> ring;
+
+    @Setup
+    public void setUp() {
+        network = Executors.newFixedThreadPool(4);
+        ring = createRing(ringSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        network.shutdownNow();
+    }
+
+    @Benchmark
+    public List<PlatooningContact> ringElection() throws Exception {
+        return runRingElection(ring);
+    }
+
+    @Benchmark
+    public List<PlatooningContact> changRobertsElection() throws Exception {
+        return runChangRobertsElection(ring);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ElectionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * Erstellt einen Ring, in dem Truck 0 der bisherige Leader ist. Die PIDs sind zufällig verteilt.
+     */
+    static List<PlatooningContact> createRing(int size) {
+        List<Long> pids = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            pids.add(1000L + i);
+        }
+        Collections.shuffle(pids, new Random(size));
+        List<PlatooningContact> ring = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ring.add(new PlatooningContact(50000 + i, 60000 + i, pids.get(i)));
+        }
+        return ring;
+    }
+
+    static List<PlatooningContact> expectedOrder(List<PlatooningContact> ring) {
+        List<PlatooningContact> expected = new ArrayList<>(ring);
+        Collections.rotate(expected, -expected.indexOf(Collections.max(ring)));
+        return expected;
+    }
+
+    private static int front(int index, int size) {
+        return index == 0 ? size - 1 : index - 1;
+    }
+
+    private static int back(int index, int size) {
+        return index == size - 1 ? 0 : index + 1;
+    }
+
+    private int indexOf(int platooningPort) {
+        return platooningPort - 50000;
+    }
+
+    /**
+     * Serialisiert eine Nachricht und stellt sie asynchron zu.
+     */
+    private <T> void send(Object message, Class<T> type, TypeReference<T> typeReference, Consumer<T> receiver) {
+        try {
+            byte[] body = MAPPER.writeValueAsBytes(message);
+            network.execute(() -> {
+                try {
+                    receiver.accept(typeReference != null ? MAPPER.readValue(body, typeReference) : MAPPER.readValue(body, type));
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Bildet die Ringwahl des PlatooningControllers nach: Die Liste wächst in jedem Schritt um einen Truck, danach wird
+     * der neue Leader in einer zweiten Runde bekannt gegeben.
+     */
+    List<PlatooningContact> runRingElection(List<PlatooningContact> ring) throws Exception {
+        int size = ring.size();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<List<PlatooningContact>> result = new AtomicReference<>();
+        Object[] locks = new Object[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new Object();
+        }
+
+        class RingNode {
+            void receiveContinueElection(int index, List<PlatooningContact> contacts) {
+                synchronized (locks[index]) {
+                    PlatooningContact self = ring.get(index);
+                    if (contacts.contains(self)) {
+                        PlatooningContact newLeader = Collections.max(contacts);
+                        Collections.reverse(contacts);
+                        Collections.rotate(contacts, contacts.size() - contacts.indexOf(newLeader));
+                        result.set(contacts);
+                        sendNewLeader(index, self.getPlatooningPid(), newLeader);
+                    } else {
+                        contacts.add(self);
+                        int next = front(index, size);
+                        send(contacts, null, CONTACT_LIST, body -> receiveContinueElection(next, body));
+                    }
+                }
+            }
+
+            void receiveNewLeader(int index, long senderPid, PlatooningContact newLeader) {
+                synchronized (locks[index]) {
+                    if (ring.get(index).getPlatooningPid() != senderPid) {
+                        sendNewLeader(index, senderPid, newLeader);
+                    } else {
+                        done.countDown();
+                    }
+                }
+            }
+
+            void sendNewLeader(int index, long senderPid, PlatooningContact newLeader) {
+                int next = front(index, size);
+                send(newLeader, PlatooningContact.class, null, body -> receiveNewLeader(next, senderPid, body));
+            }
+        }
+
+        RingNode node = new RingNode();
+        //Der hinterste Truck ist neu hinzugekommen und startet die Wahl
+        int initiator = size - 1;
+        List<PlatooningContact> initial = new ArrayList<>();
+        initial.add(ring.get(initiator));
+        send(initial, null, CONTACT_LIST, body -> node.receiveContinueElection(front(initiator, size), body));
+        Assert.isTrue(done.await(60, TimeUnit.SECONDS), "Die Ringwahl muss abgeschlossen werden.");
+        return result.get();
+    }
+
+    List<PlatooningContact> runChangRobertsElection(List<PlatooningContact> ring) throws Exception {
+        int size = ring.size();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<List<PlatooningContact>> result = new AtomicReference<>();
+        ChangRobertsElection[] nodes = new ChangRobertsElection[size];
+
+        ChangRobertsElection.Transport transport = new ChangRobertsElection.Transport() {
+            @Override
+            public void sendElection(int port, PlatooningContact candidate) {
+                send(candidate, PlatooningContact.class, null, body -> nodes[indexOf(port)].onElection(body));
+            }
+
+            @Override
+            public void sendCoordinator(int port, PlatooningContact leader, int hops) {
+                send(leader, PlatooningContact.class, null, body -> nodes[indexOf(port)].onCoordinator(body, hops));
+            }
+
+            @Override
+            public void sendReport(int port, PlatooningContact member, int backTruckPort) {
+                send(member, PlatooningContact.class, null, body -> nodes[indexOf(port)].onReport(body, backTruckPort));
+            }
+        };
+        ChangRobertsElection.Listener listener = new ChangRobertsElection.Listener() {
+            @Override
+            public void onNewLeader(PlatooningContact leader) {
+            }
+
+            @Override
+            public void onMembership(List<PlatooningContact> ordered) {
+                result.set(ordered);
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < size; i++) {
+            int frontPort = ring.get(front(i, size)).getPlatooningPort();
+            int backPort = ring.get(back(i, size)).getPlatooningPort();
+            nodes[i] = new ChangRobertsElection(ring.get(i), () -> frontPort, () -> backPort, transport, listener);
+        }
+
+        nodes[size - 1].start();
+        Assert.isTrue(done.await(60, TimeUnit.SECONDS), "Die Wahl nach Chang und Roberts muss abgeschlossen werden.");
+        return result.get();
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.truck.platoon.PlatooningContact;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.util.List;
+
+public class ElectionTest {
+
+    private static final int[] RING_SIZES = {5, 10, 25, 50, 100, 200};
+
+    @Test
+    void testBothElectionsDetermineThePlatoonOrder() throws Exception {
+        for (int size : RING_SIZES) {
+            ElectionBenchmark simulation = new ElectionBenchmark();
+            simulation.ringSize = size;
+            simulation.setUp();
+            try {
+                List<PlatooningContact> expected = ElectionBenchmark.expectedOrder(ElectionBenchmark.createRing(size));
+                Assert.isTrue(expected.equals(simulation.ringElection()), "Die Ringwahl muss die richtige Reihenfolge ermitteln.");
+                Assert.isTrue(expected.equals(simulation.changRobertsElection()), "Die Wahl nach Chang und Roberts muss die richtige Reihenfolge ermitteln.");
+            } finally {
+                simulation.tearDown();
+            }
+        }
+    }
+
+}
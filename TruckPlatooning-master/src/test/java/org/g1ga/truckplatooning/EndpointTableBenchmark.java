@@ -0,0 +1,60 @@
+package org.g1ga.truckplatooning;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import org.springframework.web.util.UriTemplateHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vergleicht den Aufbau von URI und Request-Entity einer Nachricht über den UriComponentsBuilder mit der EndpointTable.
+ * Der Builder-Fall entspricht dem, was bisher pro Nachricht passiert ist: die URL wird als String gebaut und vom
+ * RestTemplate über seinen UriTemplateHandler wieder in eine URI umgewandelt.
+ * Start mit {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.g1ga.truckplatooning.EndpointTableBenchmark"}, die Allokationsrate steht in der
+ * Spalte gc.alloc.rate.norm (Bytes pro Nachricht).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointTableBenchmark {
+
+    private static final int[] PORTS = {50001, 50002, 50003, 50004};
+    private static final String[] PATHS = {PathRegister.SPEEDUP, PathRegister.SLOW_DOWN, PathRegister.HEALTH_CHECK, PathRegister.REPORT_SPEED};
+
+    //Derselbe Handler, den das RestTemplate für URLs als String verwendet
+    private final UriTemplateHandler uriTemplateHandler = new DefaultUriBuilderFactory();
+    private int message = 0;
+
+    @Benchmark
+    public void uriComponentsBuilder(Blackhole blackhole) {
+        int i = message++ & 15;
+        String url = Util.getBaseUriComponentsBuilder(PORTS[i & 3], PATHS[i >> 2]).toUriString();
+        blackhole.consume(uriTemplateHandler.expand(url));
+        blackhole.consume(new HttpEntity<>(10));
+    }
+
+    @Benchmark
+    public void endpointTable(Blackhole blackhole) {
+        int i = message++ & 15;
+        blackhole.consume(EndpointTable.get(PORTS[i & 3], PATHS[i >> 2]));
+        blackhole.consume(EndpointTable.entityOf(10));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EndpointTableBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.g1ga.truckplatooning;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+
+public class EndpointTableTest {
+
+    private static final int PORT = 50001;
+
+    @Test
+    void testEndpointsMatchTheBuilderAndAreBuiltOnce() {
+        URI uri = EndpointTable.get(PORT, PathRegister.SPEEDUP);
+        Assert.isTrue(uri.toString().equals(Util.getBaseUriComponentsBuilder(PORT, PathRegister.SPEEDUP).toUriString()), "Die URI muss der bisher gebauten URL entsprechen.");
+        Assert.isTrue(EndpointTable.get(PORT, PathRegister.SPEEDUP) == uri, "Die URI eines Ports und Pfades darf nur einmal gebaut werden.");
+        Assert.isTrue(EndpointTable.get(PORT + 1, PathRegister.SPEEDUP) != uri, "Jeder Port muss eine eigene URI bekommen.");
+
+        Assert.isTrue(EndpointTable.entityOf(10) == EndpointTable.entityOf(10) && EndpointTable.entityOf(true) == EndpointTable.entityOf(true), "Entities für kleine Zahlen und Wahrheitswerte müssen wiederverwendet werden.");
+        Assert.isTrue(Integer.valueOf(1000).equals(EndpointTable.entityOf(1000).getBody()), "Andere Bodies müssen unverändert übernommen werden.");
+        Assert.isNull(EndpointTable.entityOf(null), "Nachrichten ohne Body dürfen keine Entity bekommen.");
+    }
+
+    @Test
+    void testSteadyStateLookupsDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        String[] paths = {PathRegister.SPEEDUP, PathRegister.SLOW_DOWN, PathRegister.STOP, PathRegister.HEALTH_CHECK};
+        for (int i = 0; i < 16; i++) {
+            EndpointTable.get(PORT + (i & 3), paths[i >> 2]);
+        }
+
+        long before = threads.getThreadAllocatedBytes(id);
+        int hash = 0;
+        for (int i = 0; i < 100_000; i++) {
+            hash += EndpointTable.get(PORT + (i & 3), paths[(i >> 2) & 3]).getPort();
+            hash += System.identityHashCode(EndpointTable.entityOf(i & 127));
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - before;
+        Assert.isTrue(hash != 0, "Die Abfragen dürfen nicht wegoptimiert werden.");
+        Assert.isTrue(allocated < 10_000, "Im laufenden Betrieb darf für eine Nachricht keine URL gebaut werden, allokiert: " + allocated + " Bytes");
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.g1ga.truckplatooning;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HeartbeatMonitorTest {
+
+    private static final int PEER = 50001;
+
+    @Test
+    void testTrafficReplacesHealthChecks() throws InterruptedException {
+        AtomicInteger probes = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        HeartbeatMonitor monitor = new HeartbeatMonitor("test", port -> probes.incrementAndGet());
+        try {
+            monitor.start(() -> new int[] {PEER}, port -> failures.incrementAndGet());
+            Thread.sleep(300);
+            Assert.isTrue(probes.get() > 0, "Ohne Verkehr müssen Health-Checks geschickt werden.");
+
+            int probesBeforeTraffic = probes.get();
+            for (int i = 0; i < 50; i++) {
+                HeartbeatMonitor.messageFrom(PEER);
+                Thread.sleep(20);
+            }
+            Assert.isTrue(probes.get() - probesBeforeTraffic <= 1, "Solange Nachrichten eingehen, darf kein Health-Check geschickt werden.");
+            Assert.isTrue(failures.get() == 0, "Solange Nachrichten eingehen, darf kein Ausfall erkannt werden.");
+
+            int probesAfterTraffic = probes.get();
+            Thread.sleep(500);
+            Assert.isTrue(probes.get() > probesAfterTraffic, "Ist die Verbindung untätig, müssen wieder Health-Checks geschickt werden.");
+            Assert.isTrue(failures.get() == 0, "Beantwortete Health-Checks dürfen nicht zu einem Ausfall führen.");
+        } finally {
+            monitor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.truck.platoon.LeaderCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+class LeaderCacheTest {
+
+    @Test
+    void olderElectionDoesNotOverwriteNewerLeader() {
+        LeaderCache cache = new LeaderCache();
+        Assert.isTrue(cache.update(50001, 0), "Der Port vom RegistrationServer muss übernommen werden.");
+        Assert.isTrue(cache.update(50002, 3), "Der Leader einer neueren Wahl muss übernommen werden.");
+        Assert.isTrue(!cache.update(50001, 2), "Ein Leader aus einer älteren Wahl darf nicht übernommen werden.");
+        Assert.isTrue(cache.getLeaderPort() == 50002, "Der Leader der neuesten Wahl muss gespeichert bleiben.");
+    }
+
+    @Test
+    void notLeaderInvalidatesOnlyTheRejectingPort() {
+        LeaderCache cache = new LeaderCache();
+        cache.update(50002, 3);
+        Assert.isTrue(!cache.invalidate(50001), "Die Antwort eines anderen Trucks darf den Eintrag nicht verwerfen.");
+        Assert.isTrue(cache.invalidate(50002), "Antwortet der gespeicherte Leader mit NOT_LEADER, muss der Eintrag verworfen werden.");
+        Assert.isTrue(cache.getLeaderPort() == LeaderCache.UNKNOWN, "Nach dem Verwerfen darf kein Leader bekannt sein.");
+        Assert.isTrue(!cache.update(50001, 2), "Auch nach dem Verwerfen darf kein älterer Hinweis übernommen werden.");
+        Assert.isTrue(cache.update(50003, 3), "Ein Hinweis aus derselben Wahl muss übernommen werden.");
+    }
+
+}
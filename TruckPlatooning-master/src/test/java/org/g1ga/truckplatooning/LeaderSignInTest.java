@@ -0,0 +1,82 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.truck.platoon.LeaderCache;
+import org.g1ga.truckplatooning.truck.platoon.LeaderSignIn;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class LeaderSignInTest {
+
+    private static final int OWN_PORT = 50009;
+
+    @Test
+    void notLeaderHintIsFollowed() {
+        LeaderCache cache = new LeaderCache();
+        cache.update(50001, 2);
+        Transport transport = new Transport(Map.of(
+                50001, notLeader("50002", "3"),
+                50002, ResponseEntity.ok(50005)), LeaderCache.UNKNOWN);
+
+        ResponseEntity<Integer> response = new LeaderSignIn(cache, 4, transport).signIn(OWN_PORT);
+
+        Assert.isTrue(response != null && response.getBody() == 50005, "Die Anmeldung muss beim genannten Leader gelingen.");
+        Assert.isTrue(transport.signIns.equals(List.of(50001, 50002)), "Nach NOT_LEADER muss der genannte Leader gefragt werden.");
+        Assert.isTrue(cache.getLeaderPort() == 50002 && cache.getTerm() == 3, "Der Hinweis muss mit seiner Term-Nummer gespeichert werden.");
+        Assert.isTrue(transport.lookups == 0, "Solange ein Hinweis vorliegt, darf der RegistrationServer nicht gefragt werden.");
+    }
+
+    @Test
+    void malformedHintIsTreatedAsAbsent() {
+        LeaderCache cache = new LeaderCache();
+        cache.update(50001, 2);
+        Transport transport = new Transport(Map.of(
+                50001, notLeader("kein-port", "3"),
+                50002, notLeader("50003", "keine-zahl"),
+                50003, ResponseEntity.ok(50005)), 50002);
+
+        ResponseEntity<Integer> response = new LeaderSignIn(cache, 4, transport).signIn(OWN_PORT);
+
+        Assert.isTrue(transport.lookups == 1, "Ohne gültigen Hinweis muss der RegistrationServer gefragt werden.");
+        Assert.isTrue(response == null && transport.signIns.equals(List.of(50001, 50002)),
+                "Ein Hinweis mit ungültiger Term-Nummer darf nicht übernommen werden.");
+        Assert.isTrue(cache.getLeaderPort() == LeaderCache.UNKNOWN && cache.getTerm() == 2, "Ungültige Hinweise dürfen den Cache nicht ändern.");
+    }
+
+    private static ResponseEntity<Integer> notLeader(String leaderPort, String term) {
+        return ResponseEntity.ok()
+                .header(PathRegister.LEADER_PORT_HEADER, leaderPort)
+                .header(PathRegister.ELECTION_EPOCH_HEADER, term)
+                .body(-1);
+    }
+
+    private static final class Transport implements LeaderSignIn.Transport {
+
+        private final Map<Integer, ResponseEntity<Integer>> responses;
+        private final int registeredLeader;
+        private final List<Integer> signIns = new ArrayList<>();
+        private int lookups = 0;
+
+        private Transport(Map<Integer, ResponseEntity<Integer>> responses, int registeredLeader) {
+            this.responses = responses;
+            this.registeredLeader = registeredLeader;
+        }
+
+        @Override
+        public ResponseEntity<Integer> signIn(int leaderPort, int ownPlatooningPort) {
+            signIns.add(leaderPort);
+            return responses.get(leaderPort);
+        }
+
+        @Override
+        public int lookupLeader() {
+            lookups++;
+            return registeredLeader;
+        }
+    }
+
+}
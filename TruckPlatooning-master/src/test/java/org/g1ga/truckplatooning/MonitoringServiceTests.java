@@ -3,6 +3,7 @@ package org.g1ga.truckplatooning;
 import org.g1ga.truckplatooning.monitoring.MonitoringController;
 import org.g1ga.truckplatooning.monitoring.MonitoringModel;
 import org.g1ga.truckplatooning.monitoring.MonitoringService;
+import org.g1ga.truckplatooning.truck.platoon.PlatooningContact;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -11,6 +12,10 @@ import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.Assert;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes={MonitoringService.class})
 public class MonitoringServiceTests {
 
@@ -38,6 +43,57 @@ public class MonitoringServiceTests {
         Assert.isNull(getTruckDataTest(0), "Es soll null zurückgegeben werden, wenn der Truck mit dem angegebenen Index nicht da ist.");
     }
 
+    @Test
+    void setSpeedBatchDropsStaleReportsTest() {
+        String setListUrl = Util.getBaseUriComponentsBuilder(port, PathRegister.SET_LIST).toUriString();
+        restTemplate.put(setListUrl, Collections.singletonList(new PlatooningContact(50001, 50002, 1)));
+
+        String batchUrl = Util.getBaseUriComponentsBuilder(port, PathRegister.SET_SPEED_BATCH).toUriString();
+        long[] batch = {50002, 2000, 40, 50, 50002, 1000, 10, 20, 40000, 3000, 30, 30};
+        restTemplate.put(batchUrl, batch);
+
+        MonitoringModel truck = getTruckDataTest(0);
+        Assert.notNull(truck, "Der Truck aus der Liste muss angezeigt werden.");
+        Assert.isTrue(truck.getSpeed() == 40 && truck.getTargetSpeed() == 50, "Veraltete Meldungen dürfen die neueste Meldung nicht überschreiben.");
+        restTemplate.delete(Util.getBaseUriComponentsBuilder(port, PathRegister.REMOVE_TRUCK_BY_PLATOON).buildAndExpand(50001).toUriString());
+    }
+
+    @Test
+    void platoonsAreMonitoredIndependentlyTest() {
+        restTemplate.put(setListUrl(21), Arrays.asList(new PlatooningContact(51001, 51002, 1), new PlatooningContact(51003, 51004, 2)));
+        restTemplate.put(setListUrl(22), Collections.singletonList(new PlatooningContact(52001, 52002, 1)));
+
+        String batchUrl = Util.getBaseUriComponentsBuilder(port, PathRegister.SET_SPEED_BATCH).toUriString();
+        restTemplate.put(batchUrl, new long[] {51004, 1000, 40, 50, 52002, 1000, 60, 70});
+        Assert.isTrue(getTruckDataTest(1, 21).getSpeed() == 40 && getTruckDataTest(0, 22).getSpeed() == 60,
+                "Geschwindigkeitsmeldungen müssen dem Truck in seinem Platoon zugeordnet werden.");
+        Assert.isNull(getTruckDataTest(1, 22), "Die Trucks eines Platoons dürfen in keinem anderen Platoon angezeigt werden.");
+
+        //Der Truck wechselt in Platoon 22 und muss aus Platoon 21 verschwinden
+        restTemplate.put(setListUrl(22), Arrays.asList(new PlatooningContact(52001, 52002, 1), new PlatooningContact(51003, 51004, 2)));
+        Assert.isNull(getTruckDataTest(1, 21), "Ein Truck, der das Platoon wechselt, muss aus seinem alten Platoon entfernt werden.");
+        Assert.isTrue(getTruckDataTest(1, 22).getCruisePort() == 51004, "Ein Truck, der das Platoon wechselt, muss im neuen Platoon angezeigt werden.");
+
+        Map<?, ?> platoons = restTemplate.getForObject(Util.getBaseUriComponentsBuilder(port, PathRegister.GET_PLATOONS).toUriString(), Map.class);
+        Assert.isTrue(Integer.valueOf(1).equals(platoons.get("21")) && Integer.valueOf(2).equals(platoons.get("22")), "Alle Platoons müssen mit ihrer Größe abgefragt werden können.");
+        for (int platooningPort : new int[] {52001, 51003}) {
+            restTemplate.delete(Util.getBaseUriComponentsBuilder(port, PathRegister.REMOVE_TRUCK_BY_PLATOON)
+                    .queryParam(PathRegister.PLATOON_PARAM, 22).buildAndExpand(platooningPort).toUriString());
+        }
+        restTemplate.delete(Util.getBaseUriComponentsBuilder(port, PathRegister.REMOVE_TRUCK_BY_PLATOON)
+                .queryParam(PathRegister.PLATOON_PARAM, 21).buildAndExpand(51001).toUriString());
+    }
+
+    private String setListUrl(int platoonId) {
+        return Util.getBaseUriComponentsBuilder(port, PathRegister.SET_LIST).queryParam(PathRegister.PLATOON_PARAM, platoonId).toUriString();
+    }
+
+    private MonitoringModel getTruckDataTest(int index, int platoonId) {
+        String url = Util.getBaseUriComponentsBuilder(port, PathRegister.GET_TRUCK_DATA).queryParam(PathRegister.PLATOON_PARAM, platoonId)
+                .buildAndExpand(index).toUriString();
+        return restTemplate.getForEntity(url, MonitoringModel.class).getBody();
+    }
+
     private MonitoringModel getTruckDataTest(int index) {
         String url = Util.getBaseUriComponentsBuilder(port, PathRegister.GET_TRUCK_DATA).buildAndExpand(index).toUriString();
         ResponseEntity<MonitoringModel> response = restTemplate.getForEntity(url, MonitoringModel.class);
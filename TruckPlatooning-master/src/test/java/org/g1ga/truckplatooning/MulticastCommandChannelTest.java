@@ -0,0 +1,145 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.wire.MulticastCommandChannel;
+import org.g1ga.truckplatooning.wire.SequenceTracker;
+import org.g1ga.truckplatooning.wire.WireFrame;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+public class MulticastCommandChannelTest {
+
+    private static final int LEADER_PORT = 50001;
+    private static final int FOLLOWERS = 3;
+    private static final int COMMANDS = 500;
+
+    @Test
+    void testCommandsAreExecutedInOrderAfterGaps() {
+        SequenceTracker<Integer> tracker = new SequenceTracker<>();
+        Assert.isTrue(tracker.receive(5, 5).equals(Collections.singletonList(5)), "Der erste Befehl eines Absenders muss sofort ausgeführt werden.");
+        Assert.isTrue(tracker.receive(8, 8).isEmpty(), "Befehle hinter einer Lücke müssen zurückgehalten werden.");
+        Assert.isTrue(tracker.getMissing().equals(Arrays.asList(6, 7)), "Alle Sequenznummern der Lücke müssen angefordert werden.");
+        Assert.isTrue(tracker.receive(7, 7).isEmpty() && tracker.getMissing().equals(Collections.singletonList(6)), "Eine teilweise geschlossene Lücke darf nur noch den Rest anfordern.");
+        Assert.isTrue(tracker.receive(6, 6).equals(Arrays.asList(6, 7, 8)), "Nach dem Schließen der Lücke müssen alle Befehle in Reihenfolge ausgeführt werden.");
+        Assert.isTrue(tracker.receive(7, 7).isEmpty(), "Duplikate dürfen nicht erneut ausgeführt werden.");
+
+        tracker.announce(9);
+        Assert.isTrue(tracker.getMissing().equals(Collections.singletonList(9)), "Ein verlorener letzter Befehl muss über die Ankündigung erkannt werden.");
+        tracker.receive(10, 10);
+        Assert.isTrue(tracker.skipIfStalled(2).isEmpty() && tracker.skipIfStalled(2).isEmpty(), "Eine Lücke darf erst nach den erlaubten Runden übersprungen werden.");
+        Assert.isTrue(tracker.skipIfStalled(2).equals(Collections.singletonList(10)) && tracker.getSkipped() == 1, "Eine dauerhafte Lücke muss übersprungen werden, damit die folgenden Befehle ausgeführt werden.");
+    }
+
+    @Test
+    void testLostDatagramsAreRepairedOnLoopback() throws Exception {
+        InetSocketAddress group = new InetSocketAddress(InetAddress.getByName("239.255.42.98"), 45446);
+        NetworkInterface loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+        MulticastCommandChannel leader = new MulticastCommandChannel("test-leader", LEADER_PORT, group, loopback,
+                new HashMap<>(), frame -> true);
+
+        List<MulticastCommandChannel> followers = new ArrayList<>();
+        List<List<Integer>> executed = new ArrayList<>();
+        AtomicInteger dropped = new AtomicInteger();
+        try {
+            for (int i = 0; i < FOLLOWERS; i++) {
+                List<Integer> values = Collections.synchronizedList(new ArrayList<>());
+                Map<Byte, IntConsumer> handlers = new HashMap<>();
+                handlers.put(WireFrame.SPEEDUP, values::add);
+                executed.add(values);
+                int follower = i;
+                //Jeder Follower verliert andere Datagramme der Gruppe, darunter auch das letzte
+                followers.add(new MulticastCommandChannel("test-follower-" + i, LEADER_PORT + 1 + i, group, loopback, handlers,
+                        frame -> {
+                            boolean drop = frame.getType() == WireFrame.SPEEDUP && frame.getSequence() > 1
+                                    && (frame.getSequence() % 10 == follower || frame.getSequence() == COMMANDS);
+                            if (drop) {
+                                dropped.incrementAndGet();
+                            }
+                            return !drop;
+                        }));
+            }
+
+            for (int i = 1; i <= COMMANDS; i++) {
+                Assert.isTrue(leader.publish(PathRegister.SPEEDUP, i), "Der Befehl muss an die Gruppe geschickt werden.");
+            }
+            Assert.isTrue(!leader.publish(PathRegister.SET_LEADER, 1), "Befehle ohne Frame-Typ müssen einzeln verschickt werden.");
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (System.currentTimeMillis() < deadline && executed.stream().anyMatch(values -> values.size() < COMMANDS)) {
+                Thread.sleep(20);
+            }
+            Assert.isTrue(dropped.get() > 0, "Im Test müssen Datagramme verloren gehen.");
+            for (int i = 0; i < FOLLOWERS; i++) {
+                List<Integer> values = new ArrayList<>(executed.get(i));
+                Assert.isTrue(values.size() == COMMANDS, "Follower " + i + " muss jeden Befehl genau einmal ausführen, hat aber " + values.size());
+                for (int j = 0; j < COMMANDS; j++) {
+                    Assert.isTrue(values.get(j) == j + 1, "Follower " + i + " muss die Befehle in der gesendeten Reihenfolge ausführen.");
+                }
+                Assert.isTrue(followers.get(i).getLost() == 0, "Verlorene Datagramme müssen wiederholt werden.");
+            }
+        } finally {
+            leader.shutdown();
+            followers.forEach(MulticastCommandChannel::shutdown);
+        }
+    }
+
+    @Test
+    void testOnlyCommandsOfTheCurrentLeaderAreExecuted() throws Exception {
+        InetSocketAddress group = new InetSocketAddress(InetAddress.getByName("239.255.42.97"), 45447);
+        NetworkInterface loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+        int followerPort = LEADER_PORT + 1;
+        int otherPort = LEADER_PORT + 2;
+        List<Integer> values = Collections.synchronizedList(new ArrayList<>());
+        Map<Byte, IntConsumer> handlers = new HashMap<>();
+        handlers.put(WireFrame.SPEEDUP, values::add);
+        MulticastCommandChannel leader = new MulticastCommandChannel("test-leader", LEADER_PORT, group, loopback,
+                new HashMap<>(), frame -> true);
+        MulticastCommandChannel other = new MulticastCommandChannel("test-other", otherPort, group, loopback,
+                new HashMap<>(), frame -> true);
+        MulticastCommandChannel follower = new MulticastCommandChannel("test-follower", followerPort, group, loopback,
+                handlers, frame -> true);
+        try {
+            leader.publish(PathRegister.SPEEDUP, 1);
+            Assert.isTrue(await(() -> values.equals(Collections.singletonList(1))), "Der Befehl des Leaders muss ausgeführt werden.");
+            other.publish(PathRegister.SPEEDUP, 99);
+            Thread.sleep(300);
+            Assert.isTrue(values.equals(Collections.singletonList(1)), "Solange der Leader sendet, dürfen Befehle anderer Absender nicht ausgeführt werden.");
+
+            List<Integer> followers = Arrays.asList(followerPort, 59999);
+            Assert.isTrue(leader.takeSilentFollowers(followers).isEmpty(), "Neue Follower dürfen erst nach dem Timeout gemeldet werden.");
+            Thread.sleep(1300);
+            Assert.isTrue(leader.takeSilentFollowers(followers).equals(Collections.singletonList(59999)),
+                    "Nur der Follower, der keine Ankündigung bestätigt, darf gemeldet werden.");
+
+            leader.resign();
+            Thread.sleep(100);
+            other.publish(PathRegister.SPEEDUP, 2);
+            Assert.isTrue(await(() -> values.equals(Arrays.asList(1, 2))), "Nach dem Rücktritt des Leaders müssen die Befehle des neuen Leaders ausgeführt werden.");
+        } finally {
+            leader.shutdown();
+            other.shutdown();
+            follower.shutdown();
+        }
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline && !condition.getAsBoolean()) {
+            Thread.sleep(20);
+        }
+        return condition.getAsBoolean();
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.g1ga.truckplatooning;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PhiAccrualFailureDetectorTest {
+
+    private static final int PEER = 50001;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(8, 200, 50, 300, 100, clock::get);
+
+    private void heartbeats(int count, long... intervals) {
+        for (int i = 0; i < count; i++) {
+            clock.addAndGet(intervals[i % intervals.length]);
+            detector.heartbeat(PEER);
+        }
+    }
+
+    @Test
+    void testFailureIsDetectedWithinAFewHundredMilliseconds() {
+        detector.watch(PEER);
+        heartbeats(100, 100);
+        Assert.isTrue(detector.isAvailable(PEER), "Bei regelmäßigen Heartbeats darf kein Ausfall erkannt werden.");
+
+        clock.addAndGet(400);
+        Assert.isTrue(detector.isAvailable(PEER), "Eine Pause innerhalb der tolerierten Zeit darf nicht zu einem Ausfall führen.");
+        clock.addAndGet(400);
+        Assert.isTrue(!detector.isAvailable(PEER), "Nach 800 ms ohne Heartbeat muss der Ausfall erkannt werden.");
+    }
+
+    @Test
+    void testPhiGrowsWithTimeSinceLastHeartbeat() {
+        detector.watch(PEER);
+        heartbeats(100, 100);
+        double previous = detector.phi(PEER);
+        for (int i = 0; i < 10; i++) {
+            clock.addAndGet(50);
+            double phi = detector.phi(PEER);
+            Assert.isTrue(phi >= previous, "Der Verdachtswert darf ohne Heartbeat nicht sinken.");
+            previous = phi;
+        }
+        heartbeats(1, 100);
+        Assert.isTrue(detector.phi(PEER) < 1, "Nach einem Heartbeat muss der Verdachtswert wieder klein sein.");
+    }
+
+    @Test
+    void testIrregularHeartbeatsAreToleratedLonger() {
+        detector.watch(PEER);
+        heartbeats(100, 50, 450);
+        clock.addAndGet(1000);
+        Assert.isTrue(detector.isAvailable(PEER), "Bei stark schwankenden Heartbeats muss eine längere Pause toleriert werden.");
+        clock.addAndGet(2000);
+        Assert.isTrue(!detector.isAvailable(PEER), "Auch bei schwankenden Heartbeats muss ein Ausfall erkannt werden.");
+    }
+
+    @Test
+    void testPeerThatNeverAnswersIsSuspected() {
+        detector.watch(PEER);
+        clock.addAndGet(10);
+        Assert.isTrue(detector.isAvailable(PEER), "Direkt nach Beginn der Überwachung darf kein Ausfall erkannt werden.");
+        clock.addAndGet(1000);
+        Assert.isTrue(!detector.isAvailable(PEER), "Ein Service, der nie antwortet, muss als ausgefallen erkannt werden.");
+    }
+
+    @Test
+    void testHeartbeatsOfUnwatchedPeersAreIgnored() {
+        detector.heartbeat(PEER);
+        Assert.isTrue(!detector.isMonitoring(PEER), "Ein nicht überwachter Service darf durch einen Heartbeat nicht überwacht werden.");
+        detector.watch(PEER);
+        detector.remove(PEER);
+        Assert.isTrue(detector.getSuspicionLevels().isEmpty(), "Ein entfernter Service darf keinen Verdachtswert mehr haben.");
+    }
+
+}
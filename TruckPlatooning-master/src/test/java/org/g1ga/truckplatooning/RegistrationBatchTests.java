@@ -0,0 +1,72 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.registration.RegistrationServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes={RegistrationServer.class},
+        properties = "registration.batch-window-ms=500")
+class RegistrationBatchTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void batchAdmitsSeveralTrucksUntilBatchIsClosed() throws Exception {
+        int[] leader = registerPlatooningService(50001);
+        Assert.isTrue(leader != null && leader[1] == 50001 && leader[2] == 500, "Der erste Truck muss der Leader sein und das Zeitfenster erhalten.");
+        Assert.notNull(registerCruiseService(60001), "Der CruiseService des Leaders muss zugelassen werden.");
+        //Der Leader meldet nach seinem Beitritt, dass keine Wahl mehr läuft
+        updateElectionStatus(false);
+
+        Assert.notNull(registerPlatooningService(50002), "Im Batch-Modus müssen mehrere Trucks gleichzeitig zugelassen werden.");
+        Assert.notNull(registerPlatooningService(50003), "Im Batch-Modus müssen mehrere Trucks gleichzeitig zugelassen werden.");
+        int[] firstCruise = registerCruiseService(60002);
+        int[] secondCruise = registerCruiseService(60003);
+        Assert.isTrue(firstCruise != null && firstCruise[1] == 50002, "Der Cruise Service muss den am längsten wartenden Platooning Service erhalten.");
+        Assert.isTrue(secondCruise != null && secondCruise[1] == 50003, "Der Cruise Service muss den am längsten wartenden Platooning Service erhalten.");
+
+        Assert.isTrue(!closeBatch(1), "Die Wahl darf erst starten, wenn alle zugelassenen Trucks beim Leader angemeldet sind.");
+        Assert.isTrue(closeBatch(2), "Sind alle Trucks angemeldet, muss die Wahl starten dürfen.");
+
+        Assert.notNull(registerPlatooningService(50004), "Platooning Services müssen auch während der Wahl zugelassen werden.");
+        CompletableFuture<int[]> waiting = CompletableFuture.supplyAsync(() -> registerCruiseService(60004));
+        Thread.sleep(300);
+        Assert.isTrue(!waiting.isDone(), "Während der gemeinsamen Wahl darf kein Truck vollständig werden.");
+
+        updateElectionStatus(false);
+        Assert.notNull(waiting.get(5, TimeUnit.SECONDS), "Nach der Wahl müssen wieder Trucks zugelassen werden.");
+    }
+
+    private void updateElectionStatus(boolean running) {
+        restTemplate.put(Util.getBaseUriComponentsBuilder(port, PathRegister.UPDATE_ELECTION_STATUS).toUriString(), running);
+    }
+
+    private int[] registerPlatooningService(int platooningPort) {
+        String url = Util.getBaseUriComponentsBuilder(port, PathRegister.REGISTER_PLATOON).buildAndExpand(platooningPort).toUriString();
+        return restTemplate.getForObject(url, int[].class);
+    }
+
+    private int[] registerCruiseService(int cruisePort) {
+        String url = Util.getBaseUriComponentsBuilder(port, PathRegister.REGISTER_CRUISE).buildAndExpand(cruisePort).toUriString();
+        return restTemplate.getForObject(url, int[].class);
+    }
+
+    private boolean closeBatch(int joined) {
+        String url = Util.getBaseUriComponentsBuilder(port, PathRegister.CLOSE_BATCH).queryParam("joined", joined).toUriString();
+        Boolean closed = restTemplate.exchange(url, HttpMethod.PUT, null, Boolean.class).getBody();
+        return Boolean.TRUE.equals(closed);
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.registration.RegistrationServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Startet drei Replikate des RegistrationServers in einem Prozess und prüft, dass Änderungen nur vom Leader angenommen,
+ * von allen Replikaten gelesen und nach dem Ausfall des Leaders vom neuen Leader weitergeführt werden.
+ */
+class RegistrationReplicationTests {
+
+    private final TestRestTemplate restTemplate = new TestRestTemplate();
+
+    @Test
+    void testRegistrationSurvivesLeaderFailure(@TempDir Path dir) throws Exception {
+        int[] ports = {freePort(), freePort(), freePort()};
+        String replicas = ports[0] + "," + ports[1] + "," + ports[2];
+        List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+        try {
+            for (int port : ports) {
+                contexts.add(new SpringApplicationBuilder(RegistrationServer.class)
+                        .properties("spring.config.name=reg-server")
+                        .run("--server.port=" + port, "--registration.replicas=" + replicas,
+                                "--registration.replication.dir=" + dir));
+            }
+            int leader = awaitLeader(ports, 0);
+            int follower = Arrays.stream(ports).filter(port -> port != leader).findFirst().getAsInt();
+
+            int[] first = restTemplate.getForObject(registerUrl(leader, 50001), int[].class);
+            Assert.isTrue(first != null && first[0] == 1 && first[1] == 50001, "Der Leader muss den ersten Truck registrieren.");
+            Assert.isTrue(awaitLeaderPort(follower, 50001), "Ein Follower muss den bestätigten Zustand lesen können.");
+
+            ResponseEntity<String> rejected = restTemplate.getForEntity(registerUrl(follower, 50002), String.class);
+            Assert.isTrue(rejected.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE, "Ein Follower darf keine Änderungen annehmen.");
+            Assert.isTrue(String.valueOf(leader).equals(rejected.getHeaders().getFirst(PathRegister.REGISTRATION_LEADER_HEADER)),
+                    "Ein Follower muss den Port des Leaders nennen.");
+
+            contexts.get(indexOf(ports, leader)).close();
+            int newLeader = awaitLeader(ports, leader);
+            Assert.isTrue(awaitLeaderPort(newLeader, 50001), "Der neue Leader muss den Zustand des alten Leaders kennen.");
+            int[] second = restTemplate.getForObject(registerUrl(newLeader, 50002), int[].class);
+            Assert.isTrue(second != null && second[0] == 2 && second[1] == 50001, "Der neue Leader muss die Registrierung fortsetzen.");
+        } finally {
+            contexts.forEach(ConfigurableApplicationContext::close);
+        }
+    }
+
+    private String registerUrl(int registrationPort, int platooningPort) {
+        return Util.getBaseUriComponentsBuilder(registrationPort, PathRegister.REGISTER_PLATOON)
+                .queryParam(PathRegister.PLATOON_PARAM, 5).buildAndExpand(platooningPort).toUriString();
+    }
+
+    /**
+     * Wartet, bis eines der Replikate als Leader Änderungen annimmt.
+     * @param excluded Port eines beendeten Replikats, das nicht mehr gefragt wird
+     * @return Port des Leaders
+     */
+    @SuppressWarnings("unchecked")
+    private int awaitLeader(int[] ports, int excluded) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15000;
+        while (System.currentTimeMillis() < deadline) {
+            for (int port : ports) {
+                if (port == excluded) {
+                    continue;
+                }
+                Map<String, Object> status = restTemplate.getForObject(
+                        Util.getBaseUriComponentsBuilder(port, PathRegister.REPLICATION_STATUS).toUriString(), Map.class);
+                if (status != null && "LEADER".equals(status.get("role")) && Boolean.TRUE.equals(status.get("ready"))) {
+                    return port;
+                }
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Die Replikate haben keinen Leader gewählt.");
+    }
+
+    private boolean awaitLeaderPort(int registrationPort, int platooningPort) throws InterruptedException {
+        String url = Util.getBaseUriComponentsBuilder(registrationPort, PathRegister.GET_LEADER)
+                .queryParam(PathRegister.PLATOON_PARAM, 5).toUriString();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            int[] leader = restTemplate.getForObject(url, int[].class);
+            if (leader != null && leader[0] == platooningPort) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+    private static int indexOf(int[] ports, int port) {
+        for (int i = 0; i < ports.length; i++) {
+            if (ports[i] == port) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
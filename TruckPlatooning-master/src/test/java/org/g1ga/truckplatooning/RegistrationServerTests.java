@@ -7,8 +7,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.Assert;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes={RegistrationServer.class})
 class RegistrationServerTests {
@@ -35,4 +42,91 @@ class RegistrationServerTests {
         Assert.isNull(response.getBody(), "Es soll nicht möglich sein, dass sich der CruiseService zuerst registriert.");
     }
 
-}
\ No newline at end of file
+    @Test
+    void testTrucksArePairedByToken() throws Exception {
+        try {
+            int[] leader = register(PathRegister.REGISTER_PLATOON, 50001, 0);
+            int[] second = register(PathRegister.REGISTER_PLATOON, 50002, 0);
+            Assert.notNull(second, "Mehrere PlatooningServices müssen gleichzeitig auf ihren CruiseService warten können.");
+            Assert.isTrue(leader[3] != second[3], "Jeder PlatooningService muss ein eigenes Pairing-Token erhalten.");
+
+            //Der zweite Truck muss warten, bis der erste Truck vollständig ist und sich dem Platoon angeschlossen hat
+            CompletableFuture<int[]> waiting = CompletableFuture.supplyAsync(() -> register(PathRegister.REGISTER_CRUISE, 60002, second[3]));
+            Thread.sleep(300);
+            Assert.isTrue(!waiting.isDone(), "Vor dem ersten Truck darf kein anderer CruiseService zugelassen werden.");
+
+            int[] leaderCruise = register(PathRegister.REGISTER_CRUISE, 60001, leader[3]);
+            Assert.isTrue(leaderCruise != null && leaderCruise[1] == 50001, "Der CruiseService muss den PlatooningService zu seinem Token erhalten.");
+            Thread.sleep(300);
+            Assert.isTrue(!waiting.isDone(), "Solange der Leader nicht beigetreten ist, darf kein weiterer CruiseService zugelassen werden.");
+
+            restTemplate.put(Util.getBaseUriComponentsBuilder(port, PathRegister.UPDATE_ELECTION_STATUS).toUriString(), false);
+            int[] data = waiting.get(5, TimeUnit.SECONDS);
+            Assert.isTrue(data != null && data[1] == 50002 && data[3] == 50001, "Der wartende CruiseService muss seinen PlatooningService und den Leader-Port erhalten.");
+
+            Assert.isNull(register(PathRegister.REGISTER_CRUISE, 60003, 12345), "Ein unbekanntes Token muss sofort abgelehnt werden.");
+        } finally {
+            restTemplate.put(Util.getBaseUriComponentsBuilder(port, PathRegister.RESET).toUriString(), null);
+            restTemplate.put(Util.getBaseUriComponentsBuilder(port, PathRegister.UPDATE_ELECTION_STATUS).toUriString(), false);
+        }
+    }
+
+    @Test
+    void testPlatoonsRegisterIndependently() {
+        int[] first = register(PathRegister.REGISTER_PLATOON, 51001, 0, 7);
+        int[] second = register(PathRegister.REGISTER_PLATOON, 52001, 0, 8);
+        Assert.isTrue(first[1] == 51001 && second[1] == 52001, "Der erste Truck jedes Platoons muss dessen Leader werden.");
+
+        //Während in Platoon 7 eine Wahl läuft, muss Platoon 8 weiterhin Trucks zulassen
+        restTemplate.put(Util.getBaseUriComponentsBuilder(port, PathRegister.UPDATE_ELECTION_STATUS).queryParam(PathRegister.PLATOON_PARAM, 7).toUriString(), true);
+        int[] cruise = register(PathRegister.REGISTER_CRUISE, 62001, second[3], 8);
+        Assert.isTrue(cruise != null && cruise[1] == 52001, "Der CruiseService muss unabhängig von anderen Platoons zugelassen werden.");
+        Assert.isNull(register(PathRegister.REGISTER_CRUISE, 61001, second[3], 7), "Ein Pairing-Token darf nur in seinem eigenen Platoon gelten.");
+
+        restTemplate.put(Util.getBaseUriComponentsBuilder(port, PathRegister.SET_LEADER_PORT).queryParam("platooningPort", 52001)
+                .queryParam("cruisePort", 62001).queryParam(PathRegister.PLATOON_PARAM, 8).toUriString(), null);
+        Map<?, ?> platoons = restTemplate.getForObject(Util.getBaseUriComponentsBuilder(port, PathRegister.GET_PLATOONS).toUriString(), Map.class);
+        Assert.isTrue(platoons.containsKey("7") && Arrays.asList(52001, 62001).equals(platoons.get("8")), "Alle Platoons müssen mit ihrem Leader abgefragt werden können.");
+
+        ResponseEntity<String> invalid = restTemplate.getForEntity(Util.getBaseUriComponentsBuilder(port, PathRegister.REGISTER_PLATOON)
+                .queryParam(PathRegister.PLATOON_PARAM, 0).buildAndExpand(53001).toUriString(), String.class);
+        Assert.isTrue(invalid.getStatusCode() == HttpStatus.BAD_REQUEST, "Ungültige Platoon-IDs müssen abgelehnt werden.");
+    }
+
+    @Test
+    void testMonitoringShardIsDiscovered() {
+        Integer shard = restTemplate.getForObject(Util.getBaseUriComponentsBuilder(port, PathRegister.GET_MONITORING_SHARD)
+                .queryParam(PathRegister.PLATOON_PARAM, 8).toUriString(), Integer.class);
+        Assert.isTrue(Integer.valueOf(1112).equals(shard), "Ohne konfigurierte Shards muss jedes Platoon vom MonitoringService auf Port 1112 angezeigt werden.");
+    }
+
+    @Test
+    void testCruiseServiceWaitsAtMostItsOwnBudget() {
+        register(PathRegister.REGISTER_PLATOON, 54001, 0, 9);
+        int[] second = register(PathRegister.REGISTER_PLATOON, 54002, 0, 9);
+        //Solange der erste Truck nicht vollständig ist, wartet der zweite CruiseService, aber nur so lange wie angegeben
+        long start = System.nanoTime();
+        int[] data = restTemplate.getForObject(Util.getBaseUriComponentsBuilder(port, PathRegister.REGISTER_CRUISE)
+                .queryParam("token", second[3]).queryParam(PathRegister.PLATOON_PARAM, 9)
+                .queryParam(PathRegister.WAIT_PARAM, 500).buildAndExpand(64002).toUriString(), int[].class);
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.isNull(data, "Ein nicht zugelassener CruiseService darf keine Daten erhalten.");
+        Assert.isTrue(waitedMillis < 5000, "Der RegistrationServer darf die Anfrage nicht länger halten, als der CruiseService wartet, gewartet: " + waitedMillis + " ms");
+    }
+
+    private int[] register(String path, int servicePort, int token) {
+        return register(path, servicePort, token, 1);
+    }
+
+    private int[] register(String path, int servicePort, int token, int platoonId) {
+        UriComponentsBuilder builder = Util.getBaseUriComponentsBuilder(port, path);
+        if (token > 0) {
+            builder.queryParam("token", token);
+        }
+        if (platoonId != 1) {
+            builder.queryParam(PathRegister.PLATOON_PARAM, platoonId);
+        }
+        return restTemplate.getForObject(builder.buildAndExpand(servicePort).toUriString(), int[].class);
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.registration.LogEntry;
+import org.g1ga.truckplatooning.registration.PlatoonSnapshot;
+import org.g1ga.truckplatooning.registration.ReplicationNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.Assert;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Prüft, dass ein Registration-Replikat Term, Stimme und Log über einen Neustart behält.
+ */
+class ReplicationNodeTest {
+
+    private static final int OWN_PORT = 41111;
+    private static final int PEER_PORT = 41121;
+    private static final int OTHER_PEER_PORT = 41131;
+
+    @Test
+    void testVoteAndLogSurviveRestart(@TempDir Path dir) {
+        ReplicationNode node = createNode(dir);
+        Assert.isTrue(node.handleVote(voteRequest(3, PEER_PORT)).granted, "Die erste Stimme im Term muss vergeben werden.");
+        PlatoonSnapshot snapshot = new PlatoonSnapshot();
+        snapshot.platoonId = 1;
+        ReplicationNode.AppendRequest append = new ReplicationNode.AppendRequest();
+        append.term = 3;
+        append.leaderPort = PEER_PORT;
+        append.entries = List.of(logEntry(1, 3, snapshot), logEntry(2, 3, null));
+        Assert.isTrue(node.handleAppend(append).success, "Die Einträge des Leaders müssen übernommen werden.");
+        node.shutdown();
+
+        ReplicationNode restarted = createNode(dir);
+        try {
+            Assert.isTrue(Long.valueOf(3).equals(restarted.getStatus().get("term")), "Der Term muss den Neustart überstehen.");
+            Assert.isTrue(Long.valueOf(2).equals(restarted.getStatus().get("lastIndex")), "Das Log muss den Neustart überstehen.");
+            Assert.isTrue(!restarted.handleVote(voteRequest(3, OTHER_PEER_PORT)).granted,
+                    "Nach einem Neustart darf im selben Term keine zweite Stimme vergeben werden.");
+            Assert.isTrue(restarted.handleVote(voteRequest(3, PEER_PORT)).granted,
+                    "Derselbe Kandidat muss die Stimme erneut erhalten.");
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    private static ReplicationNode createNode(Path dir) {
+        //Ohne Heartbeat der anderen Replikate startet in der Laufzeit des Tests keine Wahl
+        return new ReplicationNode(OWN_PORT, List.of(OWN_PORT, PEER_PORT, OTHER_PEER_PORT), 60000, 60000,
+                () -> {}, () -> {}, dir);
+    }
+
+    private static ReplicationNode.VoteRequest voteRequest(long term, int candidatePort) {
+        ReplicationNode.VoteRequest request = new ReplicationNode.VoteRequest();
+        request.term = term;
+        request.candidatePort = candidatePort;
+        request.lastLogIndex = 2;
+        request.lastLogTerm = 3;
+        return request;
+    }
+
+    private static LogEntry logEntry(long index, long term, PlatoonSnapshot snapshot) {
+        LogEntry entry = new LogEntry();
+        entry.index = index;
+        entry.term = term;
+        entry.snapshot = snapshot;
+        return entry;
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.monitoring.HistoryWindow;
+import org.g1ga.truckplatooning.monitoring.TelemetryHistory;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+
+public class TelemetryHistoryTest {
+
+    @Test
+    void testDownsamplingAggregatesSpeed() {
+        TelemetryHistory history = new TelemetryHistory(new long[] {1000, 10000}, new int[] {60, 60});
+        for (int second = 0; second < 20; second++) {
+            history.record(1, second * 1000L, second, 50, second * 0.01);
+        }
+
+        HistoryWindow raw = history.query(1, 0, 19000, 1000);
+        Assert.isTrue(raw.size() == 20, "In der feinsten Stufe muss jede Meldung einzeln enthalten sein.");
+
+        HistoryWindow coarse = history.query(1, 0, 19000, 10000);
+        Assert.isTrue(coarse.size() == 2, "20 Sekunden müssen in zwei Einträge zu je 10 Sekunden zusammengefasst werden.");
+        Assert.isTrue(coarse.speedMin[1] == 10 && coarse.speedMax[1] == 19, "Minimum und Maximum müssen über den Zeitraum gebildet werden.");
+        Assert.isTrue(Math.abs(coarse.speedAvg[1] - 14.5) < 1e-9, "Der Durchschnitt muss über den Zeitraum gebildet werden.");
+        Assert.isTrue(Math.abs(coarse.traveledDistance[1] - 0.19) < 1e-9, "Die Strecke muss dem letzten Wert im Zeitraum entsprechen.");
+    }
+
+    @Test
+    void testRingBufferOverwritesOldestEntries() {
+        TelemetryHistory history = new TelemetryHistory(new long[] {1000, 10000}, new int[] {10, 10});
+        for (int second = 0; second < 25; second++) {
+            history.record(1, second * 1000L, second, 50, 0);
+        }
+
+        HistoryWindow raw = history.query(1, 0, 24000, 1000);
+        Assert.isTrue(raw.size() == 10, "Der Ringpuffer darf nur die neuesten Einträge enthalten.");
+        Assert.isTrue(raw.timestamps[0] == 15000 && raw.speedMax[9] == 24, "Es müssen die ältesten Einträge überschrieben werden.");
+
+        HistoryWindow automatic = history.query(1, 0, 24000, 0);
+        Assert.isTrue(automatic.resolution == 10000, "Reicht die feinste Stufe nicht weit genug zurück, muss eine gröbere gewählt werden.");
+        Assert.isNull(history.query(2, 0, 24000, 0), "Für unbekannte Trucks darf kein Verlauf zurückgegeben werden.");
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.monitoring.TelemetryLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class TelemetryLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReplayAfterReopenAndSegmentRolling() throws IOException {
+        //Ein Segment fasst 4 Einträge
+        try (TelemetryLog log = new TelemetryLog(directory, 4 * TelemetryLog.RECORD_SIZE, 10)) {
+            for (int i = 0; i < 6; i++) {
+                log.append(TelemetryLog.SPEED, 50000, i, i, 80, 0);
+            }
+        }
+        try (TelemetryLog log = new TelemetryLog(directory, 4 * TelemetryLog.RECORD_SIZE, 10)) {
+            log.append(TelemetryLog.TELEMETRY, 50000, 6, 6, 80, Double.doubleToRawLongBits(1.5));
+        }
+
+        List<Long> timestamps = new ArrayList<>();
+        List<Double> distances = new ArrayList<>();
+        long count = TelemetryLog.replay(directory, (type, cruisePort, timestamp, value1, value2, value3) -> {
+            timestamps.add(timestamp);
+            if (type == TelemetryLog.TELEMETRY) {
+                distances.add(Double.longBitsToDouble(value3));
+            }
+        });
+
+        Assert.isTrue(count == 7, "Alle geschriebenen Einträge müssen wieder gelesen werden.");
+        for (int i = 0; i < timestamps.size(); i++) {
+            Assert.isTrue(timestamps.get(i) == i, "Die Einträge müssen in der geschriebenen Reihenfolge gelesen werden.");
+        }
+        Assert.isTrue(distances.size() == 1 && distances.get(0) == 1.5, "Die Werte eines Eintrags müssen unverändert gelesen werden.");
+    }
+
+    @Test
+    void testOldestSegmentsAreDeleted() throws IOException {
+        try (TelemetryLog log = new TelemetryLog(directory, 2 * TelemetryLog.RECORD_SIZE, 2)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(TelemetryLog.SPEED, 50000, i, i, 80, 0);
+            }
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.isTrue(files.count() == 2, "Es dürfen nur die neuesten Segmente aufbewahrt werden.");
+        }
+        List<Long> timestamps = new ArrayList<>();
+        TelemetryLog.replay(directory, (type, cruisePort, timestamp, value1, value2, value3) -> timestamps.add(timestamp));
+        Assert.isTrue(timestamps.size() == 4 && timestamps.get(0) == 6, "Es müssen die neuesten Einträge erhalten bleiben.");
+    }
+
+    @Test
+    void testEverySegmentStartsWithCheckpoint() throws IOException {
+        //Ein Segment fasst 4 Einträge, der Checkpoint belegt davon 2
+        TelemetryLog.Checkpoint checkpoint = log -> {
+            log.append(TelemetryLog.MEMBERS, 0, -1, 1, 1, 0);
+            log.append(TelemetryLog.MEMBER, 50000, -1, 60000, 0, 1000);
+        };
+        try (TelemetryLog log = new TelemetryLog(directory, 4 * TelemetryLog.RECORD_SIZE, 2, checkpoint)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(TelemetryLog.SPEED, 50000, i, i, 80, 0);
+            }
+        }
+
+        List<Byte> types = new ArrayList<>();
+        List<Long> timestamps = new ArrayList<>();
+        TelemetryLog.replay(directory, (type, cruisePort, timestamp, value1, value2, value3) -> {
+            types.add(type);
+            timestamps.add(timestamp);
+        });
+        Assert.isTrue(types.get(0) == TelemetryLog.MEMBERS && types.get(1) == TelemetryLog.MEMBER,
+                "Auch nach dem Löschen alter Segmente muss das Replay mit den Mitgliedern beginnen.");
+        Assert.isTrue(timestamps.get(timestamps.size() - 1) == 9, "Der auslösende Eintrag muss nach dem Checkpoint geschrieben werden.");
+        Assert.isTrue(timestamps.stream().filter(timestamp -> timestamp >= 0).count() == 4, "Jeder Eintrag darf nur einmal geschrieben werden.");
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.g1ga.truckplatooning;
+
+import com.sun.net.httpserver.HttpServer;
+import org.g1ga.truckplatooning.wire.WireClient;
+import org.g1ga.truckplatooning.wire.WireFrame;
+import org.g1ga.truckplatooning.wire.WireServer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Vergleicht einen Befehl über das binäre Protokoll mit demselben Befehl als HTTP-PUT über das gemeinsame RestTemplate.
+ * Start mit {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.g1ga.truckplatooning.WireProtocolBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireProtocolBenchmark {
+
+    private static final int HTTP_PORT = 50001;
+
+    private WireServer wireServer;
+    private WireClient wireClient;
+    private HttpServer httpServer;
+    private RestTemplate restTemplate;
+    private String url;
+
+    @Setup
+    public void setUp() throws IOException {
+        Map<Byte, IntConsumer> handlers = Map.of(WireFrame.SPEEDUP, value -> {});
+        wireServer = new WireServer("benchmark", handlers);
+        wireClient = new WireClient(HTTP_PORT + 1, port -> port == HTTP_PORT ? wireServer.getPort() : -1);
+
+        httpServer = HttpServer.create(new InetSocketAddress(0), 0);
+        httpServer.createContext(PathRegister.SPEEDUP, exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        httpServer.start();
+        restTemplate = RestClientFactory.getRestTemplate();
+        url = Util.getBaseUriComponentsBuilder(httpServer.getAddress().getPort(), PathRegister.SPEEDUP).toUriString();
+    }
+
+    @TearDown
+    public void tearDown() {
+        wireClient.shutdown();
+        wireServer.shutdown();
+        httpServer.stop(0);
+    }
+
+    @Benchmark
+    public boolean wire() {
+        return wireClient.send(HTTP_PORT, PathRegister.SPEEDUP, 1);
+    }
+
+    @Benchmark
+    public void http() {
+        restTemplate.put(url, 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WireProtocolBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.g1ga.truckplatooning;
+
+import org.g1ga.truckplatooning.wire.WireClient;
+import org.g1ga.truckplatooning.wire.WireFrame;
+import org.g1ga.truckplatooning.wire.WireServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.Assert;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+public class WireProtocolTest {
+
+    private static final int HTTP_PORT = 50001;
+    private static final int COMMANDS = 5000;
+
+    @Test
+    void testCommandsAreExecutedOverPersistentConnection() throws Exception {
+        AtomicInteger speed = new AtomicInteger();
+        Map<Byte, IntConsumer> handlers = new HashMap<>();
+        handlers.put(WireFrame.SPEEDUP, speed::addAndGet);
+        handlers.put(WireFrame.STOP, value -> speed.set(0));
+        WireServer server = new WireServer("test", handlers);
+        WireClient client = new WireClient(HTTP_PORT + 1, port -> port == HTTP_PORT ? server.getPort() : -1);
+        try {
+            for (int i = 0; i < COMMANDS; i++) {
+                Assert.isTrue(client.send(HTTP_PORT, PathRegister.SPEEDUP, 1), "Der Befehl muss über das binäre Protokoll zugestellt werden.");
+            }
+            Assert.isTrue(speed.get() == COMMANDS, "Jeder Befehl muss genau einmal ausgeführt werden.");
+
+            Assert.isTrue(client.send(HTTP_PORT, PathRegister.STOP, null) && speed.get() == 0, "Befehle ohne Body müssen ebenfalls zugestellt werden.");
+            Assert.isTrue(!client.send(HTTP_PORT, PathRegister.SLOW_DOWN, 1), "Befehle ohne Handler müssen über HTTP geschickt werden.");
+            Assert.isTrue(!client.send(HTTP_PORT, PathRegister.SET_LEADER, 1), "Befehle ohne Frame-Typ müssen über HTTP geschickt werden.");
+            Assert.isTrue(!client.send(HTTP_PORT + 2, PathRegister.SPEEDUP, 1), "Trucks ohne binäres Protokoll müssen über HTTP angesprochen werden.");
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+
+        boolean unreachable = false;
+        try {
+            client.send(HTTP_PORT, PathRegister.SPEEDUP, 1);
+        } catch (ResourceAccessException e) {
+            unreachable = true;
+        }
+        Assert.isTrue(unreachable, "Ein beendeter WireServer muss wie ein nicht erreichbarer Truck gemeldet werden.");
+    }
+
+    @Test
+    void testAckIsSentAfterAsynchronousHandlerCompleted() throws Exception {
+        AtomicInteger backTruckPort = new AtomicInteger();
+        //Wie im PlatooningController wird die Zustandsänderung in einem eigenen Executor ausgeführt
+        ExecutorService control = Executors.newSingleThreadExecutor();
+        Map<Byte, IntConsumer> handlers = new HashMap<>();
+        handlers.put(WireFrame.UPDATE_BACK_TRUCK, value -> CompletableFuture.runAsync(() -> {
+            sleep(200);
+            backTruckPort.set(value);
+        }, control).join());
+        handlers.put(WireFrame.CLOSE_GAP, value -> CompletableFuture.runAsync(() -> {
+            throw new IllegalStateException("Handler fehlgeschlagen");
+        }, control).join());
+        WireServer server = new WireServer("test", handlers);
+        WireClient client = new WireClient(HTTP_PORT + 1, port -> port == HTTP_PORT ? server.getPort() : -1);
+        try {
+            Assert.isTrue(client.send(HTTP_PORT, PathRegister.UPDATE_BACK_TRUCK, 50005), "Der Befehl muss über das binäre Protokoll zugestellt werden.");
+            Assert.isTrue(backTruckPort.get() == 50005, "Das ACK darf erst nach der Zustandsänderung ankommen.");
+
+            boolean failed = false;
+            try {
+                client.send(HTTP_PORT, PathRegister.CLOSE_GAP, 50006);
+            } catch (RestClientException e) {
+                failed = true;
+            }
+            Assert.isTrue(failed, "Ein fehlgeschlagenes Future muss als Fehler gemeldet werden.");
+        } finally {
+            client.shutdown();
+            server.shutdown();
+            control.shutdownNow();
+        }
+    }
+
+    @Test
+    void testReceiverWithoutProtocolIsAskedAgainAfterTtl() throws Exception {
+        AtomicInteger speed = new AtomicInteger();
+        Map<Byte, IntConsumer> handlers = new HashMap<>();
+        handlers.put(WireFrame.SPEEDUP, speed::addAndGet);
+        WireServer server = new WireServer("test", handlers);
+        AtomicInteger lookups = new AtomicInteger();
+        //Beim ersten Mal läuft der WireServer des Empfängers noch nicht
+        WireClient client = new WireClient(HTTP_PORT + 1, port -> lookups.incrementAndGet() == 1 ? -1 : server.getPort(), 200);
+        try {
+            Assert.isTrue(!client.send(HTTP_PORT, PathRegister.SPEEDUP, 1), "Ohne WireServer muss der Befehl über HTTP geschickt werden.");
+            Assert.isTrue(!client.send(HTTP_PORT, PathRegister.SPEEDUP, 1) && lookups.get() == 1,
+                    "Innerhalb der TTL darf der Empfänger nicht erneut gefragt werden.");
+            sleep(300);
+            Assert.isTrue(client.send(HTTP_PORT, PathRegister.SPEEDUP, 1) && speed.get() == 1,
+                    "Nach der TTL muss der Empfänger erneut gefragt und über das binäre Protokoll angesprochen werden.");
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}